@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.embedded.JettyConfig;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.cloud.MiniSolrCloudCluster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MiniSolrCloudCluster} set up with the benchmark configset, plus helpers to create
+ * and fill collections with {@link Docs}. Benchmarks start one in their
+ * {@link org.openjdk.jmh.annotations.Level#Trial} setup so that cluster start-up and indexing
+ * are not part of the measurement.
+ */
+public class BenchCluster implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String CONFIG_NAME = "bench";
+
+  private final Path baseDir;
+  private final MiniSolrCloudCluster cluster;
+
+  private BenchCluster(Path baseDir, MiniSolrCloudCluster cluster) {
+    this.baseDir = baseDir;
+    this.cluster = cluster;
+  }
+
+  /** Starts a cluster with the given number of nodes and uploads the benchmark configset. */
+  public static BenchCluster start(int numNodes) throws Exception {
+    final Path baseDir = Files.createTempDirectory("solr-bench");
+    final MiniSolrCloudCluster cluster = new MiniSolrCloudCluster(numNodes, baseDir, JettyConfig.builder().build());
+    cluster.uploadConfigSet(configDir(), CONFIG_NAME);
+    return new BenchCluster(baseDir, cluster);
+  }
+
+  static Path configDir() throws URISyntaxException {
+    return Paths.get(BenchCluster.class.getResource("/configs/bench/conf").toURI());
+  }
+
+  public MiniSolrCloudCluster getCluster() {
+    return cluster;
+  }
+
+  public CloudSolrClient getClient() {
+    return cluster.getSolrClient();
+  }
+
+  /**
+   * Returns a client bound to the first node of the cluster. The caller is responsible for
+   * closing it.
+   */
+  public SolrClient newNodeClient() {
+    return new HttpSolrClient.Builder(cluster.getJettySolrRunner(0).getBaseUrl().toString()).build();
+  }
+
+  /** Creates a collection and waits for all its replicas to become active. */
+  public void createCollection(String collection, int numShards, int numReplicas) throws Exception {
+    CollectionAdminRequest.createCollection(collection, CONFIG_NAME, numShards, numReplicas)
+        .process(getClient());
+    cluster.waitForActiveCollection(collection, numShards, numShards * numReplicas);
+  }
+
+  /**
+   * Indexes documents <code>[0, numDocs)</code> from <code>docs</code> in batches, committing
+   * every <code>commitEvery</code> documents so the index ends up with several segments, and
+   * finally once more to open a searcher over everything.
+   */
+  public void index(String collection, Docs docs, int numDocs, int batchSize, int commitEvery)
+      throws Exception {
+    log.info("Indexing {} docs into {}", numDocs, collection);
+    final CloudSolrClient client = getClient();
+    int sinceCommit = 0;
+    for (int start = 0; start < numDocs; start += batchSize) {
+      final int count = Math.min(batchSize, numDocs - start);
+      final UpdateRequest req = new UpdateRequest();
+      req.add(docs.docs(start, count));
+      req.process(client, collection);
+      sinceCommit += count;
+      if (commitEvery > 0 && sinceCommit >= commitEvery) {
+        client.commit(collection);
+        sinceCommit = 0;
+      }
+    }
+    client.commit(collection);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      cluster.shutdown();
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      IOUtils.rm(baseDir);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Distributed search over a multi-shard collection: shard fan-out, the id/sort value merge in
+ * <code>QueryComponent.mergeIds</code> and the stored field retrieval phase.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class DistributedSearchBenchmark {
+
+  static final String COLLECTION = "distrib";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("2")
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int shards;
+
+    @Param("200000")
+    public int docs;
+
+    @Param("1000")
+    public int cardinality;
+
+    @Param({"10", "100"})
+    public int rows;
+
+    @Param({"0", "1000"})
+    public int start;
+
+    @Param({"score desc", "long_l asc"})
+    public String sort;
+
+    @Param("42")
+    public long seed;
+
+    BenchCluster cluster;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      cluster = BenchCluster.start(nodes);
+      cluster.createCollection(COLLECTION, shards, 1);
+      cluster.index(COLLECTION, new Docs(seed, cardinality), docs, 1000, docs / 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      cluster.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    final Random random = new Random(0);
+  }
+
+  @Benchmark
+  public QueryResponse query(BenchState state, ThreadState ts) throws Exception {
+    final ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set("q", "text_t:" + Docs.WORDS[ts.random.nextInt(Docs.WORDS.length)]);
+    params.set("fq", "int_i:[0 TO " + (state.cardinality / 2) + "]");
+    params.set("sort", state.sort + ",id asc");
+    params.set("start", state.start);
+    params.set("rows", state.rows);
+    params.set("fl", "id,cat_s,int_i,price_d");
+    return state.cluster.getClient().query(COLLECTION, params);
+  }
+}
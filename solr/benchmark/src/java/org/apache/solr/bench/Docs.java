@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Generates synthetic documents for the benchmarks. Each document is derived only from the
+ * generator seed and its own position, so the same parameters always produce the same index
+ * regardless of batching, thread scheduling or the commit that is being measured.
+ *
+ * <p>Fields (all non-text fields have docValues):
+ * <ul>
+ *   <li><code>cat_s</code>: single valued string, <code>cardinality</code> distinct values</li>
+ *   <li><code>tags_ss</code>: multi valued string, up to 4 values drawn from <code>cardinality</code></li>
+ *   <li><code>int_i</code>: int in <code>[0, cardinality)</code></li>
+ *   <li><code>long_l</code>: unbounded long (high cardinality numeric)</li>
+ *   <li><code>price_d</code>: double in <code>[0, 1000)</code></li>
+ *   <li><code>ts_dt</code>: date spread over one year</li>
+ *   <li><code>text_t</code>: a handful of terms from a small fixed vocabulary</li>
+ * </ul>
+ */
+public class Docs {
+
+  /** Start of the date range covered by <code>ts_dt</code> (2020-01-01T00:00:00Z). */
+  public static final long BASE_TIME_MS = 1577836800000L;
+  private static final long YEAR_MS = 365L * 24 * 60 * 60 * 1000;
+
+  static final String[] WORDS = {
+      "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+      "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango"
+  };
+
+  private final long seed;
+  private final int cardinality;
+
+  public Docs(long seed, int cardinality) {
+    if (cardinality <= 0) {
+      throw new IllegalArgumentException("cardinality must be positive: " + cardinality);
+    }
+    this.seed = seed;
+    this.cardinality = cardinality;
+  }
+
+  public int getCardinality() {
+    return cardinality;
+  }
+
+  /** Returns the <code>cat_s</code>/<code>tags_ss</code> value for the given ordinal. */
+  public static String term(int ord) {
+    return "t" + ord;
+  }
+
+  /** Returns the document at the given position. */
+  public SolrInputDocument doc(int pos) {
+    final Random r = new Random(seed * 31 + pos);
+    final SolrInputDocument doc = new SolrInputDocument();
+    doc.addField("id", Integer.toString(pos));
+    doc.addField("cat_s", term(r.nextInt(cardinality)));
+    final int numTags = r.nextInt(5);
+    for (int i = 0; i < numTags; i++) {
+      doc.addField("tags_ss", term(r.nextInt(cardinality)));
+    }
+    doc.addField("int_i", r.nextInt(cardinality));
+    doc.addField("long_l", r.nextLong());
+    doc.addField("price_d", r.nextDouble() * 1000);
+    doc.addField("ts_dt", new Date(BASE_TIME_MS + (long) (r.nextDouble() * YEAR_MS)));
+    final StringBuilder text = new StringBuilder();
+    final int numWords = 3 + r.nextInt(8);
+    for (int i = 0; i < numWords; i++) {
+      if (i > 0) text.append(' ');
+      // skewed towards the start of the vocabulary so term frequencies differ
+      text.append(WORDS[Math.min(r.nextInt(WORDS.length), r.nextInt(WORDS.length))]);
+    }
+    doc.addField("text_t", text.toString());
+    return doc;
+  }
+
+  /** Returns the documents in <code>[start, start + count)</code>. */
+  public List<SolrInputDocument> docs(int start, int count) {
+    final List<SolrInputDocument> docs = new ArrayList<>(count);
+    for (int i = start; i < start + count; i++) {
+      docs.add(doc(i));
+    }
+    return docs;
+  }
+}
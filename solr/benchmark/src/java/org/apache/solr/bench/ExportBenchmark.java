@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.impl.InputStreamResponseParser;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full sorted export of a single shard through <code>/export</code> (<code>ExportWriter</code>).
+ * The response is read off the wire and discarded, so client side parsing is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class ExportBenchmark {
+
+  static final String COLLECTION = "export";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("1000000")
+    public int docs;
+
+    @Param("10000")
+    public int cardinality;
+
+    @Param({"id asc", "cat_s asc,long_l desc"})
+    public String sort;
+
+    @Param({"id,int_i", "id,cat_s,tags_ss,int_i,long_l,price_d,ts_dt"})
+    public String fl;
+
+    @Param({"json", "javabin"})
+    public String wt;
+
+    @Param("42")
+    public long seed;
+
+    BenchCluster cluster;
+    SolrClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      cluster = BenchCluster.start(1);
+      cluster.createCollection(COLLECTION, 1, 1);
+      cluster.index(COLLECTION, new Docs(seed, cardinality), docs, 5000, docs / 10);
+      client = cluster.newNodeClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      client.close();
+      cluster.close();
+    }
+  }
+
+  /** Returns the number of response bytes read. */
+  @Benchmark
+  public long export(BenchState state) throws Exception {
+    final ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set("q", "*:*");
+    params.set("sort", state.sort);
+    params.set("fl", state.fl);
+    final QueryRequest req = new QueryRequest(params, SolrRequest.METHOD.POST);
+    req.setPath("/export");
+    req.setResponseParser(new InputStreamResponseParser(state.wt));
+    final NamedList<Object> rsp = state.client.request(req, COLLECTION);
+    long bytes = 0;
+    try (InputStream in = (InputStream) rsp.get("stream")) {
+      final byte[] buf = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buf)) != -1) {
+        bytes += read;
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent update requests against a single shard, i.e. <code>DistributedUpdateProcessor</code>,
+ * <code>UpdateLog.add</code> and the <code>IndexWriter</code>. Run with <code>-t N</code> to measure
+ * how well indexing threads scale on one core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class IndexingBenchmark {
+
+  static final String COLLECTION = "indexing";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("100")
+    public int batchSize;
+
+    @Param("1000")
+    public int cardinality;
+
+    @Param("42")
+    public long seed;
+
+    BenchCluster cluster;
+    SolrClient client;
+    final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      cluster = BenchCluster.start(1);
+      cluster.createCollection(COLLECTION, 1, 1);
+      client = cluster.newNodeClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      client.close();
+      cluster.close();
+    }
+  }
+
+  /**
+   * Pre-built batches over an id range of their own, so threads don't overwrite each other's
+   * documents and document construction is not measured.
+   */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final int NUM_BATCHES = 16;
+
+    final List<UpdateRequest> batches = new ArrayList<>(NUM_BATCHES);
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(BenchState state) {
+      final Docs docs = new Docs(state.seed, state.cardinality);
+      final int start = state.threads.getAndIncrement() * NUM_BATCHES * state.batchSize;
+      for (int i = 0; i < NUM_BATCHES; i++) {
+        final UpdateRequest req = new UpdateRequest();
+        req.add(docs.docs(start + i * state.batchSize, state.batchSize));
+        batches.add(req);
+      }
+    }
+  }
+
+  @Benchmark
+  public UpdateResponse addBatch(BenchState state, ThreadState ts) throws Exception {
+    return ts.batches.get(ts.next++ % ThreadState.NUM_BATCHES).process(state.client, COLLECTION);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link JavaBinCodec} marshalling and unmarshalling of a search response, a
+ * <code>SolrDocumentList</code> wrapped in a <code>NamedList</code>, as written by
+ * <code>BinaryResponseWriter</code> and read by SolrJ.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class JavaBinCodecBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    @Param("1000")
+    public int cardinality;
+
+    @Param("42")
+    public long seed;
+
+    NamedList<Object> response;
+    byte[] marshalled;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      final Docs docs = new Docs(seed, cardinality);
+      final SolrDocumentList list = new SolrDocumentList();
+      list.setNumFound(rows * 100L);
+      list.setStart(0);
+      list.setMaxScore(1.0f);
+      for (int i = 0; i < rows; i++) {
+        final SolrInputDocument in = docs.doc(i);
+        final SolrDocument out = new SolrDocument();
+        for (SolrInputField f : in) {
+          out.setField(f.getName(), f.getValue());
+        }
+        out.setField("score", 1.0f / (i + 1));
+        list.add(out);
+      }
+      final NamedList<Object> header = new SimpleOrderedMap<>();
+      header.add("status", 0);
+      header.add("QTime", 3);
+      response = new NamedList<>();
+      response.add("responseHeader", header);
+      response.add("response", list);
+      marshalled = marshal(response);
+    }
+  }
+
+  static byte[] marshal(Object o) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (JavaBinCodec codec = new JavaBinCodec()) {
+      codec.marshal(o, out);
+    }
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] marshal(BenchState state) throws IOException {
+    return marshal(state.response);
+  }
+
+  @Benchmark
+  public Object unmarshal(BenchState state) throws IOException {
+    try (JavaBinCodec codec = new JavaBinCodec()) {
+      return codec.unmarshal(new ByteArrayInputStream(state.marshalled));
+    }
+  }
+}
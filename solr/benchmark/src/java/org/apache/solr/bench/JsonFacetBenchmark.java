@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON Facet API terms facets on a single shard, e.g. <code>FacetFieldProcessorByArrayDV</code>
+ * for <code>method=dv</code>, with and without a nested stat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class JsonFacetBenchmark {
+
+  static final String COLLECTION = "facets";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("100000")
+    public int docs;
+
+    @Param({"100", "10000", "100000"})
+    public int cardinality;
+
+    @Param({"cat_s", "tags_ss", "int_i"})
+    public String field;
+
+    @Param({"dv", "uif", "smart"})
+    public String method;
+
+    @Param("10")
+    public int limit;
+
+    @Param("42")
+    public long seed;
+
+    BenchCluster cluster;
+    SolrClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      cluster = BenchCluster.start(1);
+      cluster.createCollection(COLLECTION, 1, 1);
+      cluster.index(COLLECTION, new Docs(seed, cardinality), docs, 1000, docs / 10);
+      client = cluster.newNodeClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      client.close();
+      cluster.close();
+    }
+
+    ModifiableSolrParams params(Random r, String subFacets) {
+      final ModifiableSolrParams params = new ModifiableSolrParams();
+      // a varying base query so the facet isn't always counted over the same DocSet
+      params.set("q", "text_t:" + Docs.WORDS[r.nextInt(Docs.WORDS.length)]);
+      params.set("rows", 0);
+      params.set("json.facet", "{f:{type:terms, field:" + field + ", method:" + method
+          + ", limit:" + limit + subFacets + "}}");
+      return params;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    final Random random = new Random(0);
+  }
+
+  @Benchmark
+  public QueryResponse terms(BenchState state, ThreadState ts) throws Exception {
+    return state.client.query(COLLECTION, state.params(ts.random, ""));
+  }
+
+  @Benchmark
+  public QueryResponse termsWithStats(BenchState state, ThreadState ts) throws Exception {
+    return state.client.query(COLLECTION, state.params(ts.random,
+        ", facet:{sum:'sum(price_d)', max:'max(long_l)', unique:'unique(cat_s)'}"));
+  }
+
+  @Benchmark
+  public QueryResponse termsSortedByStat(BenchState state, ThreadState ts) throws Exception {
+    return state.client.query(COLLECTION, state.params(ts.random,
+        ", sort:'sum desc', facet:{sum:'sum(price_d)'}"));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Query + filter on a single shard, i.e. <code>SolrIndexSearcher.getDocListC</code> and, when
+ * a DocSet is needed as well, <code>getDocListAndSet</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class SearchBenchmark {
+
+  static final String COLLECTION = "search";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("100000")
+    public int docs;
+
+    @Param({"100", "10000"})
+    public int cardinality;
+
+    /** When false, filters are sent with <code>cache=false</code> so each call computes its DocSet. */
+    @Param({"true", "false"})
+    public boolean cacheFilters;
+
+    @Param("42")
+    public long seed;
+
+    BenchCluster cluster;
+    SolrClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      cluster = BenchCluster.start(1);
+      cluster.createCollection(COLLECTION, 1, 1);
+      cluster.index(COLLECTION, new Docs(seed, cardinality), docs, 1000, docs / 10);
+      client = cluster.newNodeClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+      client.close();
+      cluster.close();
+    }
+
+    ModifiableSolrParams params(Random r) {
+      final ModifiableSolrParams params = new ModifiableSolrParams();
+      params.set("q", "text_t:" + Docs.WORDS[r.nextInt(Docs.WORDS.length)]);
+      params.add("fq", (cacheFilters ? "" : "{!cache=false}") + "cat_s:" + Docs.term(r.nextInt(cardinality)));
+      params.add("fq", (cacheFilters ? "" : "{!cache=false}") + "int_i:[0 TO " + (cardinality / 2) + "]");
+      params.set("rows", 10);
+      params.set("fl", "id,score");
+      return params;
+    }
+  }
+
+  /** Per-thread random source, seeded so every run issues the same sequence of queries. */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    final Random random = new Random(0);
+  }
+
+  @Benchmark
+  public QueryResponse queryWithFilters(BenchState state, ThreadState ts) throws Exception {
+    return state.client.query(COLLECTION, state.params(ts.random));
+  }
+
+  @Benchmark
+  public QueryResponse queryWithFiltersSortedByField(BenchState state, ThreadState ts) throws Exception {
+    final ModifiableSolrParams params = state.params(ts.random);
+    params.set("sort", "int_i asc, id asc");
+    return state.client.query(COLLECTION, params);
+  }
+
+  /** A facet query forces the DocSet of the results to be built along with the DocList. */
+  @Benchmark
+  public QueryResponse queryWithFiltersAndDocSet(BenchState state, ThreadState ts) throws Exception {
+    final ModifiableSolrParams params = state.params(ts.random);
+    params.set("facet", true);
+    params.set("facet.query", "price_d:[0 TO 500]");
+    return state.client.query(COLLECTION, params);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.bench.Docs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appending add commands to a {@link TransactionLog}, the per-update cost paid by
+ * <code>UpdateLog.add</code>. Lives in this package because the log's constructor is package
+ * private. Run with <code>-t N</code> to measure contention between indexing threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class TransactionLogBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("1000")
+    public int cardinality;
+
+    @Param("42")
+    public long seed;
+
+    Path dir;
+    TransactionLog tlog;
+    final AtomicLong version = new AtomicLong();
+
+    // a fresh log per iteration keeps the file size bounded
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+      dir = Files.createTempDirectory("solr-bench-tlog");
+      final String name = String.format(Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, 1L);
+      tlog = new TransactionLog(new File(dir.toFile(), name), Collections.emptyList());
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() throws IOException {
+      tlog.decref();
+      IOUtils.rm(dir);
+    }
+  }
+
+  /** Pre-built commands, so document construction is not measured. */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final int NUM_DOCS = 1024;
+
+    final AddUpdateCommand[] cmds = new AddUpdateCommand[NUM_DOCS];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(BenchState state) {
+      final Docs docs = new Docs(state.seed, state.cardinality);
+      for (int i = 0; i < NUM_DOCS; i++) {
+        final AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = docs.doc(i);
+        cmds[i] = cmd;
+      }
+    }
+
+    AddUpdateCommand next(BenchState state) {
+      final AddUpdateCommand cmd = cmds[next++ & (NUM_DOCS - 1)];
+      cmd.setVersion(state.version.incrementAndGet());
+      return cmd;
+    }
+  }
+
+  @Benchmark
+  public long append(BenchState state, ThreadState ts) {
+    return state.tlog.write(ts.next(state));
+  }
+
+  /** Serializes the command before appending it, as <code>UpdateLog.add</code> does outside its lock. */
+  @Benchmark
+  public long encodeThenAppend(BenchState state, ThreadState ts) {
+    final AddUpdateCommand cmd = ts.next(state);
+    final MemOutputStream out = state.tlog.encode(cmd);
+    return out != null ? state.tlog.append(out) : state.tlog.write(cmd);
+  }
+
+  /** Append followed by the flush done at the end of each update request (syncLevel=FLUSH). */
+  @Benchmark
+  public long appendAndFlush(BenchState state, ThreadState ts) {
+    final long pos = state.tlog.write(ts.next(state));
+    state.tlog.finish(UpdateLog.SyncLevel.FLUSH);
+    return pos;
+  }
+}
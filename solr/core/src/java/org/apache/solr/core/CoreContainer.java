@@ -221,6 +221,8 @@ public class CoreContainer {
 
   private final OrderedExecutor replayUpdatesExecutor;
 
+  private final ExecutorService collectorExecutor;
+
   @SuppressWarnings({"rawtypes"})
   protected volatile LogWatcher logging = null;
 
@@ -393,6 +395,9 @@ public class CoreContainer {
         ExecutorUtil.newMDCAwareCachedThreadPool(
             cfg.getReplayUpdatesThreads(),
             new SolrNamedThreadFactory("replayUpdatesExecutor")));
+    this.collectorExecutor = ExecutorUtil.newMDCAwareFixedThreadPool(
+        cfg.getIndexSearcherExecutorThreads(),
+        new SolrNamedThreadFactory("searcherCollector"));
 
     SolrPaths.AllowPathBuilder allowPathBuilder = new SolrPaths.AllowPathBuilder();
     allowPathBuilder.addPath(cfg.getSolrHome());
@@ -610,6 +615,7 @@ public class CoreContainer {
     cfg = null;
     containerProperties = null;
     replayUpdatesExecutor = null;
+    collectorExecutor = null;
     distributedCollectionCommandRunner = Optional.empty();
     allowPaths = null;
     allowListUrlChecker = null;
@@ -666,6 +672,11 @@ public class CoreContainer {
     return replayUpdatesExecutor;
   }
 
+  /** The executor shared by all cores for multi-threaded searches, may be null. */
+  public ExecutorService getCollectorExecutor() {
+    return collectorExecutor;
+  }
+
   public PackageLoader getPackageLoader() {
     return packageLoader;
   }
@@ -1159,6 +1170,10 @@ public class CoreContainer {
         replayUpdatesExecutor.shutdownAndAwaitTermination();
       });
 
+      customThreadPool.submit(() -> {
+        ExecutorUtil.shutdownAndAwaitTermination(collectorExecutor);
+      });
+
       if (metricsHistoryHandler != null) {
         metricsHistoryHandler.close();
         IOUtils.closeQuietly(metricsHistoryHandler.getSolrClient());
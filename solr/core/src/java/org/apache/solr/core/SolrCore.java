@@ -141,6 +141,7 @@ import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.ManagedIndexSchema;
 import org.apache.solr.schema.SimilarityFactory;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SegmentFilterCache;
 import org.apache.solr.search.SolrFieldCacheBean;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
@@ -260,6 +261,8 @@ public final class SolrCore implements SolrInfoBean, Closeable {
 
   private final Map<IndexReader.CacheKey, IndexFingerprint> perSegmentFingerprintCache = new MapMaker().weakKeys().makeMap();
 
+  private final SegmentFilterCache segmentFilterCache;
+
   public long getStartNanoTime() {
     return startNanoTime;
   }
@@ -996,6 +999,9 @@ public final class SolrCore implements SolrInfoBean, Closeable {
       solrFieldCacheBean.initializeMetrics(solrMetricsContext, "core");
       infoRegistry.put("fieldCache", solrFieldCacheBean);
 
+      this.segmentFilterCache = solrConfig.segmentFilterCacheConfig == null ? null
+          : SegmentFilterCache.create(solrConfig.segmentFilterCacheConfig, solrMetricsContext);
+
       this.maxWarmingSearchers = solrConfig.maxWarmingSearchers;
       this.slowQueryThresholdMillis = solrConfig.slowQueryThresholdMillis;
 
@@ -1645,6 +1651,8 @@ public final class SolrCore implements SolrInfoBean, Closeable {
       }
     }
 
+    IOUtils.closeQuietly(segmentFilterCache);
+
     if (coreStateClosed) {
       try {
         cleanupOldIndexDirectories(false);
@@ -1928,6 +1936,13 @@ public final class SolrCore implements SolrInfoBean, Closeable {
     }
   }
 
+  /**
+   * The segment level filter cache shared by the searchers of this core, or null if it is not configured.
+   */
+  public SegmentFilterCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
   /**
    * Computes fingerprint of a segment and caches it only if all the version in segment are included in the fingerprint.
    * We can't use computeIfAbsent as caching is conditional (as described above)
@@ -16,12 +16,18 @@
  */
 package org.apache.solr.handler.component;
 
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.opentracing.Span;
@@ -132,6 +138,9 @@ public class HttpShardHandler extends ShardHandler {
     params.remove(CommonParams.VERSION);
     QueryRequest req = makeQueryRequest(sreq, params, shard);
     req.setMethod(SolrRequest.METHOD.POST);
+    if (sreq.responseParser != null) {
+      req.setResponseParser(sreq.responseParser);
+    }
 
     LBSolrClient.Req lbReq = httpShardHandlerFactory.newLBHttpSolrClientReq(req, urls);
 
@@ -156,36 +165,143 @@ public class HttpShardHandler extends ShardHandler {
       return;
     }
 
-    // all variables that set inside this listener must be at least volatile
-    responseCancellableMap.put(srsp, this.lbClient.asyncReq(lbReq, new AsyncListener<>() {
-      volatile long startTime = System.nanoTime();
+    SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+    final Principal principal = requestInfo == null ? null : requestInfo.getReq().getUserPrincipal();
+    ShardAttempts attempts = new ShardAttempts(srsp, ssr, tracer, span, principal);
+    responseCancellableMap.put(srsp, attempts);
+    attempts.send(req, lbReq);
+
+    // if the first replica is slow to answer, send the request to the next one as well
+    long hedgeDelayNanos = urls.size() > 1 ? httpShardHandlerFactory.getHedgeDelayNanos(urls.get(0)) : -1;
+    if (hedgeDelayNanos >= 0) {
+      List<String> hedgeUrls = new ArrayList<>(urls.subList(1, urls.size()));
+      hedgeUrls.add(urls.get(0));
+      QueryRequest hedgeReq = makeQueryRequest(sreq, new ModifiableSolrParams(params), shard);
+      hedgeReq.setMethod(SolrRequest.METHOD.POST);
+      if (sreq.responseParser != null) {
+        hedgeReq.setResponseParser(sreq.responseParser);
+      }
+      LBSolrClient.Req hedgeLbReq = httpShardHandlerFactory.newLBHttpSolrClientReq(hedgeReq, hedgeUrls);
+      attempts.hedge(hedgeReq, hedgeLbReq, hedgeDelayNanos);
+    }
+  }
+
+  /**
+   * The requests sent for one {@link ShardResponse}: the first one, and possibly a hedged one sent to another
+   * replica when the first replica is slow to answer. The first successful response is used and the other
+   * request is cancelled; a failure is only reported once every request failed.
+   */
+  private class ShardAttempts implements Cancellable {
+    private final ShardResponse srsp;
+    private final SimpleSolrResponse ssr;
+    private final Tracer tracer;
+    private final Span span;
+    private final Principal principal;
+    private final long startTime = System.nanoTime();
+    private final List<Cancellable> cancellables = new CopyOnWriteArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile ScheduledFuture<?> scheduledHedge;
+    private volatile boolean cancelled;
+
+    ShardAttempts(ShardResponse srsp, SimpleSolrResponse ssr, Tracer tracer, Span span, Principal principal) {
+      this.srsp = srsp;
+      this.ssr = ssr;
+      this.tracer = tracer;
+      this.span = span;
+      this.principal = principal;
+    }
+
+    void send(QueryRequest req, LBSolrClient.Req lbReq) {
+      running.incrementAndGet();
+      final ReplicaLatencies latencies =
+          httpShardHandlerFactory.isRecordingLatencies() ? httpShardHandlerFactory.getReplicaLatencies() : null;
+      final String replica = lbReq.getServers().get(0);
+      if (latencies != null) {
+        latencies.started(replica);
+      }
+      final long sendTime = System.nanoTime();
+      Cancellable cancellable = lbClient.asyncReq(lbReq, new AsyncListener<>() {
+        @Override
+        public void onStart() {
+          if (span != null) {
+            tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new SolrRequestCarrier(req));
+          }
+          if (principal != null) req.setUserPrincipal(principal);
+        }
+
+        @Override
+        public void onSuccess(LBSolrClient.Rsp rsp) {
+          if (latencies != null) {
+            latencies.record(rsp.getServer(), System.nanoTime() - sendTime);
+            latencies.finished(replica);
+          }
+          if (done.compareAndSet(false, true)) {
+            ssr.nl = rsp.getResponse();
+            srsp.setShardAddress(rsp.getServer());
+            ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            responses.add(srsp);
+            cancelHedge();
+          }
+        }
 
-      @Override
-      public void onStart() {
-        if (span != null) {
-          tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new SolrRequestCarrier(req));
+        @Override
+        public void onFailure(Throwable throwable) {
+          if (latencies != null) {
+            latencies.finished(replica);
+            if (!cancelled) {
+              // requests that were cancelled because another one answered first didn't fail
+              latencies.failed(replica, System.nanoTime() - sendTime);
+            }
+          }
+          if (running.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+            ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            srsp.setException(throwable);
+            if (throwable instanceof SolrException) {
+              srsp.setResponseCode(((SolrException) throwable).code());
+            }
+            responses.add(srsp);
+            cancelHedge();
+          }
         }
-        SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
-        if (requestInfo != null) req.setUserPrincipal(requestInfo.getReq().getUserPrincipal());
+      });
+      cancellables.add(cancellable);
+      if (cancelled) {
+        cancellable.cancel();
       }
+    }
 
-      @Override
-      public void onSuccess(LBSolrClient.Rsp rsp) {
-        ssr.nl = rsp.getResponse();
-        srsp.setShardAddress(rsp.getServer());
-        ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
-        responses.add(srsp);
+    void hedge(QueryRequest req, LBSolrClient.Req lbReq, long delayNanos) {
+      try {
+        scheduledHedge = httpShardHandlerFactory.getHedgeScheduler().schedule(() -> {
+          if (!done.get() && !cancelled) {
+            httpShardHandlerFactory.hedgedRequests.mark();
+            send(req, lbReq);
+          }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // shutting down, don't hedge
       }
+    }
 
-      public void onFailure(Throwable throwable) {
-        ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
-        srsp.setException(throwable);
-        if (throwable instanceof SolrException) {
-          srsp.setResponseCode(((SolrException) throwable).code());
-        }
-        responses.add(srsp);
+    // once a response is in, the request that's still running (if any) is no longer needed
+    private void cancelHedge() {
+      if (scheduledHedge != null) {
+        cancel();
       }
-    }));
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      ScheduledFuture<?> hedge = scheduledHedge;
+      if (hedge != null) {
+        hedge.cancel(false);
+      }
+      for (Cancellable cancellable : cancellables) {
+        cancellable.cancel();
+      }
+    }
   }
 
   /**
@@ -24,9 +24,12 @@ import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.Meter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.impl.Http2SolrClient;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
@@ -91,8 +94,17 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   int   permittedLoadBalancerRequestsMinimumAbsolute = 0;
   float permittedLoadBalancerRequestsMaximumFraction = 1.0f;
   boolean accessPolicy = false;
+  float hedgeDelayPercentile = 0f;
+  int hedgeMinDelayMs = 5;
   private SolrMetricsContext solrMetricsContext;
 
+  // the hedge scheduler is only created when hedging is on
+  private ReplicaLatencies replicaLatencies = new ReplicaLatencies(false);
+  // set once a request is routed by latency, from then on latencies are recorded even without hedging
+  private volatile boolean latencyRoutingUsed;
+  private ScheduledExecutorService hedgeScheduler;
+  Meter hedgedRequests = new Meter();
+
   private String scheme = null;
 
   private InstrumentedHttpListenerFactory.NameStrategy metricNameStrategy;
@@ -125,6 +137,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   // Configure if the threadpool favours fairness over throughput
   static final String INIT_FAIRNESS_POLICY = "fairnessPolicy";
 
+  // Percentile of a replica's latency after which a shard request is also sent to another replica, 0 to disable
+  static final String HEDGE_DELAY_PERCENTILE = "hedgeDelayPercentile";
+
+  // The shortest time to wait before sending a hedged shard request
+  static final String HEDGE_MIN_DELAY_MS = "hedgeMinDelayMs";
+
   /**
    * Get {@link ShardHandler} that uses the default http client.
    */
@@ -157,6 +175,14 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   private void initReplicaListTransformers(@SuppressWarnings({"rawtypes"})NamedList routingConfig) {
     String defaultRouting = null;
     ReplicaListTransformerFactory stableRltFactory = null;
+    final ReplicaListTransformer latencyRlt = new LatencyReplicaListTransformer(replicaLatencies, r);
+    final ReplicaListTransformerFactory latencyRltFactory =
+        (String configSpec, SolrParams requestParams, ReplicaListTransformerFactory fallback) -> {
+          if (!latencyRoutingUsed) {
+            latencyRoutingUsed = true;
+          }
+          return latencyRlt;
+        };
     ReplicaListTransformerFactory defaultRltFactory;
     if (routingConfig != null && routingConfig.size() > 0) {
       Iterator<Entry<String,?>> iter = routingConfig.iterator();
@@ -176,6 +202,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
             defaultRouting = checkDefaultReplicaListTransformer(c, key, defaultRouting);
             stableRltFactory = new AffinityReplicaListTransformerFactory(c);
             break;
+          case ShardParams.REPLICA_LATENCY:
+            defaultRouting = checkDefaultReplicaListTransformer(getNamedList(e.getValue()), key, defaultRouting);
+            break;
           default:
             throw new IllegalArgumentException("invalid replica routing spec name: " + key);
         }
@@ -186,10 +215,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     }
     if (ShardParams.REPLICA_STABLE.equals(defaultRouting)) {
       defaultRltFactory = stableRltFactory;
+    } else if (ShardParams.REPLICA_LATENCY.equals(defaultRouting)) {
+      defaultRltFactory = latencyRltFactory;
     } else {
       defaultRltFactory = RequestReplicaListTransformerGenerator.RANDOM_RLTF;
     }
-    this.requestReplicaListTransformerGenerator = new RequestReplicaListTransformerGenerator(defaultRltFactory, stableRltFactory);
+    this.requestReplicaListTransformerGenerator = new RequestReplicaListTransformerGenerator(defaultRltFactory, stableRltFactory,
+        latencyRltFactory, null, null, null, null);
   }
 
   @Override
@@ -224,6 +256,16 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
         permittedLoadBalancerRequestsMaximumFraction,
         sb);
     this.accessPolicy = getParameter(args, INIT_FAIRNESS_POLICY, accessPolicy,sb);
+    this.hedgeDelayPercentile = getParameter(args, HEDGE_DELAY_PERCENTILE, hedgeDelayPercentile, sb);
+    this.hedgeMinDelayMs = getParameter(args, HEDGE_MIN_DELAY_MS, hedgeMinDelayMs, sb);
+    if (hedgeDelayPercentile < 0f || hedgeDelayPercentile >= 100f) {
+      throw new SolrException(ErrorCode.SERVER_ERROR,
+          HEDGE_DELAY_PERCENTILE + " must be in [0, 100), got: " + hedgeDelayPercentile);
+    }
+    if (hedgeDelayPercentile > 0f) {
+      this.replicaLatencies = new ReplicaLatencies(true);
+      this.hedgeScheduler = Executors.newSingleThreadScheduledExecutor(new SolrNamedThreadFactory("httpShardHedgeScheduler"));
+    }
 
     if (args != null && args.get("shardsWhitelist") != null) {
       log.warn("Property 'shardsWhitelist' is deprecated, please use '{}' instead.", AllowListUrlChecker.URL_ALLOW_LIST);
@@ -301,6 +343,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
         }
       } finally {
         ExecutorUtil.shutdownAndAwaitTermination(commExecutor);
+        if (hedgeScheduler != null) {
+          ExecutorUtil.shutdownNowAndAwaitTermination(hedgeScheduler);
+        }
       }
     }
     try {
@@ -323,6 +368,38 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     return new LBSolrClient.Req(req, urls, numServersToTry);
   }
 
+  /**
+   * Returns how long to wait for the replica at the given url before sending the same request to another
+   * replica of the shard, or -1 to not hedge requests to it: when hedging is off, or when there are too few
+   * latency samples of the replica to tell whether it is slow.
+   */
+  long getHedgeDelayNanos(String url) {
+    if (hedgeDelayPercentile <= 0f) {
+      return -1;
+    }
+    long delay = replicaLatencies.getQuantile(url, hedgeDelayPercentile / 100.0);
+    if (delay < 0) {
+      return -1;
+    }
+    return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs));
+  }
+
+  ReplicaLatencies getReplicaLatencies() {
+    return replicaLatencies;
+  }
+
+  /**
+   * Whether shard requests should record the latencies of their replicas: only hedging and routing by
+   * latency need them.
+   */
+  boolean isRecordingLatencies() {
+    return hedgeDelayPercentile > 0f || latencyRoutingUsed;
+  }
+
+  ScheduledExecutorService getHedgeScheduler() {
+    return hedgeScheduler;
+  }
+
   /**
    * Creates a list of urls for the given shard.
    *
@@ -380,6 +457,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     solrMetricsContext = parentContext.getChildContext(this);
     String expandedScope = SolrMetricManager.mkName(scope, SolrInfoBean.Category.QUERY.name());
     httpListenerFactory.initializeMetrics(solrMetricsContext, expandedScope);
+    hedgedRequests = solrMetricsContext.meter("hedgedRequests", expandedScope);
     commExecutor = MetricUtils.instrumentedExecutorService(commExecutor, null,
         solrMetricsContext.getMetricRegistry(),
         SolrMetricManager.mkName("httpShardExecutor", expandedScope, "threadPool"));
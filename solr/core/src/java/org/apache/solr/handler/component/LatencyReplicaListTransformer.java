@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.apache.solr.client.solrj.routing.ReplicaListTransformer;
+import org.apache.solr.common.cloud.Replica;
+
+/**
+ * Orders replicas by the time they are expected to take to answer, from the latencies of their recent answers
+ * and the shard requests they are still busy with; see {@link ReplicaLatencies#getExpectedLatency(String)}.
+ * Replicas that are expected to be equally fast, such as replicas that weren't asked yet, are shuffled.
+ *
+ * @lucene.experimental
+ */
+public class LatencyReplicaListTransformer implements ReplicaListTransformer {
+
+  private final ReplicaLatencies latencies;
+  private final Random r;
+
+  public LatencyReplicaListTransformer(ReplicaLatencies latencies, Random r) {
+    this.latencies = latencies;
+    this.r = r;
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void transform(List<?> choices) {
+    int size = choices.size();
+    if (size > 1) {
+      Collections.shuffle(choices, r);
+      // latencies change while sorting, so they are read once
+      ScoredChoice[] scoredChoices = new ScoredChoice[size];
+      int i = 0;
+      for (Object o : choices) {
+        scoredChoices[i++] = new ScoredChoice(o, latencies.getExpectedLatency(url(o)));
+      }
+      Arrays.sort(scoredChoices, SCORED_CHOICE_COMPARATOR);
+      ListIterator iter = choices.listIterator();
+      for (ScoredChoice scoredChoice : scoredChoices) {
+        iter.next();
+        iter.set(scoredChoice.choice);
+      }
+    }
+  }
+
+  private static String url(Object choice) {
+    if (choice instanceof Replica) {
+      return ((Replica) choice).getCoreUrl();
+    } else if (choice instanceof String) {
+      return (String) choice;
+    } else {
+      throw new IllegalArgumentException("can't handle type " + choice.getClass());
+    }
+  }
+
+  private static final class ScoredChoice {
+
+    private final Object choice;
+    private final double expectedLatency;
+
+    private ScoredChoice(Object choice, double expectedLatency) {
+      this.choice = choice;
+      this.expectedLatency = expectedLatency;
+    }
+  }
+
+  private static final Comparator<ScoredChoice> SCORED_CHOICE_COMPARATOR = Comparator.comparingDouble(o -> o.expectedLatency);
+}
@@ -25,11 +25,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.index.ExitableDirectoryReader;
 import org.apache.lucene.index.IndexReaderContext;
@@ -390,6 +393,7 @@ public class QueryComponent extends SearchComponent
     QueryResult result = new QueryResult();
 
     cmd.setSegmentTerminateEarly(params.getBool(CommonParams.SEGMENT_TERMINATE_EARLY, CommonParams.SEGMENT_TERMINATE_EARLY_DEFAULT));
+    cmd.setMultiThreaded(params.getBool(CommonParams.MULTI_THREADED, CommonParams.MULTI_THREADED_DEFAULT));
     if (cmd.getSegmentTerminateEarly()) {
       result.setSegmentTerminatedEarly(Boolean.FALSE);
     }
@@ -640,7 +644,13 @@ public class QueryComponent extends SearchComponent
 
   protected void handleRegularResponses(ResponseBuilder rb, ShardRequest sreq) {
     if ((sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
-      mergeIds(rb, sreq);
+      if (!requestMissingTopIds(rb, sreq)) {
+        mergeIds(rb, sreq);
+      }
+    }
+
+    if ((sreq.purpose & ShardRequest.PURPOSE_REFINE_TOP_IDS) != 0) {
+      mergeRefinedIds(rb, sreq);
     }
 
     if ((sreq.purpose & ShardRequest.PURPOSE_GET_TERM_STATS) != 0) {
@@ -746,7 +756,8 @@ public class QueryComponent extends SearchComponent
     ReturnFields fields = rb.rsp.getReturnFields();
 
     // distrib.singlePass=true forces a one-pass query regardless of requested fields
-    boolean distribSinglePass = rb.req.getParams().getBool(ShardParams.DISTRIB_SINGLE_PASS, false);
+    Boolean singlePassParam = rb.req.getParams().getBool(ShardParams.DISTRIB_SINGLE_PASS);
+    boolean distribSinglePass = singlePassParam != null ? singlePassParam : isSmallForSinglePass(rb);
 
     if(distribSinglePass || (fields != null && fields.wantsField(keyFieldName)
         && fields.getRequestedFieldNames() != null  
@@ -820,9 +831,156 @@ public class QueryComponent extends SearchComponent
 
     if (additionalAdded) sreq.params.add(CommonParams.FL, additionalFL.toString());
 
+    int topN = rb.getSortSpec().getOffset() + rb.getSortSpec().getCount();
+    if (topN > 0 && isSortedByScore(rb.getSortSpec()) && rb.shards_rows < 0 && rb.shards_start < 0
+        && rb.getMergeStrategies() == null) {
+      // shard documents that can't make the top N are dropped as the responses are read
+      sreq.responseParser = new TopIdsResponseParser(keyFieldName, topN);
+    }
+
+    int initialRows = rb.req.getParams().getInt(ShardParams.SHARDS_ROWS_INITIAL, 0);
+    // not with a one-pass query: the shards' documents are returned as they are, asking some again is for ids only
+    if (initialRows > 0 && initialRows < topN && rb.shards_rows < 0 && !rb.onePassDistributedQuery
+        && rb.shards != null && rb.shards.length > 1 && rb.getMergeStrategies() == null) {
+      // keep the params before other components add theirs, for asking shards again in requestMissingTopIds
+      ModifiableSolrParams refineParams = new ModifiableSolrParams(sreq.params);
+      rb.req.getContext().put(REFINE_TOP_IDS_PARAMS, refineParams);
+      sreq.params.set(CommonParams.ROWS, initialRows);
+    }
+
     rb.addRequest(this, sreq);
   }
+
+  private static boolean isSortedByScore(SortSpec sortSpec) {
+    Sort sort = sortSpec.getSort();
+    if (sort == null) {
+      return true;
+    }
+    SortField first = sort.getSort()[0];
+    return first.getType() == SortField.Type.SCORE && !first.getReverse();
+  }
+
+  private static final String REFINE_TOP_IDS_PARAMS = "QueryComponent.refineTopIdsParams";
+  private static final String REFINE_TOP_IDS_RESPONSES = "QueryComponent.refineTopIdsResponses";
+
+  /**
+   * With shards.rows.initial, shards are first asked for fewer documents than start+rows. A shard that returned
+   * all it was asked for can only hold more of the merged top start+rows if its last document is among them:
+   * its remaining documents sort after that one. Only those shards are asked again, for start+rows, and the
+   * merge waits for their answers.
+   *
+   * @return true if shards were asked again and merging the ids is left to {@link #mergeRefinedIds}
+   */
+  protected boolean requestMissingTopIds(ResponseBuilder rb, ShardRequest sreq) {
+    ModifiableSolrParams refineParams = (ModifiableSolrParams) rb.req.getContext().remove(REFINE_TOP_IDS_PARAMS);
+    if (refineParams == null) {
+      return false;
+    }
+
+    SortSpec ss = rb.getSortSpec();
+    SortField[] sortFields = ss.getSort() != null ? ss.getSort().getSort() : new SortField[]{SortField.FIELD_SCORE};
+    IndexSchema schema = rb.req.getSchema();
+    String keyFieldName = schema.getUniqueKeyField().getName();
+    int topN = ss.getOffset() + ss.getCount();
+    int shardRows = sreq.params.getInt(CommonParams.ROWS, topN);
+
+    final ShardFieldSortedHitQueue queue = new ShardFieldSortedHitQueue(sortFields, topN, rb.req.getSearcher());
+    Map<String, ShardDoc> lastDocs = new HashMap<>();
+    HashSet<Object> ids = new HashSet<>();
+    for (ShardResponse srsp : sreq.responses) {
+      if (srsp.getException() != null) {
+        continue;
+      }
+      NamedList<Object> response = srsp.getSolrResponse().getResponse();
+      NamedList<?> responseHeader = (NamedList<?>) response.get("responseHeader");
+      if (Boolean.TRUE.equals(responseHeader.getBooleanArg(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY))) {
+        // partial results are merged as they are
+        return false;
+      }
+      SolrDocumentList docs = (SolrDocumentList) response.get("response");
+      @SuppressWarnings({"rawtypes"})
+      NamedList unmarshalledSortFieldValues = unmarshalSortValues(ss, (NamedList) response.get("sort_values"), schema);
+      ShardDoc last = null;
+      for (int i = 0; i < docs.size(); i++) {
+        SolrDocument doc = docs.get(i);
+        Object id = doc.getFieldValue(keyFieldName);
+        if (!ids.add(id)) {
+          continue;
+        }
+        ShardDoc shardDoc = new ShardDoc();
+        shardDoc.id = id;
+        shardDoc.shard = srsp.getShard();
+        shardDoc.orderInShard = i;
+        Object scoreObj = doc.getFieldValue("score");
+        if (scoreObj != null) {
+          shardDoc.score = scoreObj instanceof String ? Float.parseFloat((String) scoreObj) : (Float) scoreObj;
+        }
+        shardDoc.sortFieldValues = unmarshalledSortFieldValues;
+        queue.insertWithOverflow(shardDoc);
+        last = shardDoc;
+      }
+      if (last != null && docs.size() >= shardRows) {
+        lastDocs.put(srsp.getShard(), last);
+      }
+    }
+
+    Set<ShardDoc> top = Collections.newSetFromMap(new IdentityHashMap<>());
+    while (queue.size() > 0) {
+      top.add(queue.pop());
+    }
+    List<String> shards = new ArrayList<>();
+    for (Map.Entry<String, ShardDoc> entry : lastDocs.entrySet()) {
+      if (top.contains(entry.getValue())) {
+        shards.add(entry.getKey());
+      }
+    }
+    if (shards.isEmpty()) {
+      return false;
+    }
+
+    List<ShardResponse> kept = new ArrayList<>();
+    for (ShardResponse srsp : sreq.responses) {
+      if (!shards.contains(srsp.getShard())) {
+        kept.add(srsp);
+      }
+    }
+    rb.req.getContext().put(REFINE_TOP_IDS_RESPONSES, kept);
+
+    ShardRequest refineReq = new ShardRequest();
+    // private: other components already got what they need from the first request
+    refineReq.purpose = ShardRequest.PURPOSE_PRIVATE | ShardRequest.PURPOSE_REFINE_TOP_IDS;
+    refineReq.shards = shards.toArray(new String[0]);
+    refineReq.params = refineParams;
+    rb.addRequest(this, refineReq);
+    return true;
+  }
+
+  /** Merges the ids of the shards asked again by {@link #requestMissingTopIds} with those of the other shards. */
+  protected void mergeRefinedIds(ResponseBuilder rb, ShardRequest sreq) {
+    @SuppressWarnings({"unchecked"})
+    List<ShardResponse> kept = (List<ShardResponse>) rb.req.getContext().remove(REFINE_TOP_IDS_RESPONSES);
+    ShardRequest merged = new ShardRequest();
+    merged.purpose = ShardRequest.PURPOSE_GET_TOP_IDS;
+    merged.params = sreq.params;
+    merged.responses = new ArrayList<>(kept);
+    merged.responses.addAll(sreq.responses);
+    mergeIds(rb, merged);
+  }
   
+  /**
+   * distrib.singlePass.maxDocs turns on a one-pass query when the shards return few enough documents in
+   * total that fetching all their fields up front is cheaper than a second round-trip to every shard.
+   */
+  protected boolean isSmallForSinglePass(ResponseBuilder rb) {
+    int maxDocs = rb.req.getParams().getInt(ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, 0);
+    if (maxDocs <= 0 || rb.shards == null) {
+      return false;
+    }
+    long perShard = rb.shards_rows > -1 ? rb.shards_rows
+        : (long) rb.getSortSpec().getOffset() + rb.getSortSpec().getCount();
+    return perShard >= 0 && perShard * rb.shards.length <= maxDocs;
+  }
+
   protected boolean addFL(StringBuilder fl, String field, boolean additionalAdded) {
     if (additionalAdded) fl.append(",");
     fl.append(field);
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+
+/**
+ * Latencies and outstanding requests of the replicas that shard requests were sent to, keyed by replica URL.
+ * Latencies decay exponentially, so they follow a replica that turns slow because of a GC pause or heavy
+ * merging, and recovers from it. Replicas that were not sent a request for a while are forgotten, so the
+ * replicas of deleted or moved collections don't stay around.
+ *
+ * @lucene.experimental
+ */
+public class ReplicaLatencies {
+
+  /** Replicas with fewer samples than this have no known latency percentiles. */
+  static final int MIN_SAMPLES = 20;
+
+  // taking a snapshot sorts the reservoir, so it's reused for a while
+  private static final long SNAPSHOT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  // weight of a new sample in the moving average
+  private static final double ALPHA = 0.2;
+
+  // the average of a replica that isn't asked anymore halves every that often, so it's eventually tried again
+  private static final double HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  // a failed request counts as an answer this many times slower than the replica's average, and at least
+  // MIN_FAILURE_NANOS, so a replica that fails fast isn't ranked first
+  private static final double FAILURE_FACTOR = 4;
+  static final long MIN_FAILURE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  // replicas that weren't sent a request for that long are forgotten; by then their averages decayed to nothing
+  static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private final boolean histograms;
+  private final long idleNanos;
+  private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+  private volatile long lastExpiry = System.nanoTime();
+
+  /**
+   * @param histograms whether to keep latency histograms for {@link #getQuantile}, which are more expensive to
+   *                   update than the moving averages
+   */
+  public ReplicaLatencies(boolean histograms) {
+    this(histograms, IDLE_NANOS);
+  }
+
+  ReplicaLatencies(boolean histograms, long idleNanos) {
+    this.histograms = histograms;
+    this.idleNanos = idleNanos;
+  }
+
+  /** Records that a shard request is sent to a replica, until {@link #finished} is called. */
+  public void started(String url) {
+    latency(url).outstanding.incrementAndGet();
+  }
+
+  /** Records that a shard request sent to a replica got an answer or failed. */
+  public void finished(String url) {
+    Latency latency = latencies.get(key(url));
+    if (latency != null) {
+      // the replica may have been forgotten and asked again meanwhile
+      latency.outstanding.updateAndGet(n -> Math.max(0, n - 1));
+    }
+  }
+
+  /** Records the time a replica took to answer a shard request. */
+  public void record(String url, long elapsedNanos) {
+    latency(url).update(elapsedNanos);
+  }
+
+  /**
+   * Records that a shard request to a replica failed after the given time. The replica's moving average is
+   * updated with a penalty rather than the time it took to fail; the latency histogram is left as it is.
+   */
+  public void failed(String url, long elapsedNanos) {
+    latency(url).penalize(elapsedNanos);
+  }
+
+  /**
+   * Returns the given quantile of the latency of a replica in nanoseconds, or -1 if histograms aren't kept or
+   * the replica did not answer enough requests yet.
+   */
+  public long getQuantile(String url, double quantile) {
+    Latency latency = latencies.get(key(url));
+    if (latency == null || latency.histogram == null || latency.histogram.getCount() < MIN_SAMPLES) {
+      return -1;
+    }
+    return (long) latency.getSnapshot().getValue(quantile);
+  }
+
+  /**
+   * Returns the expected time for a replica to answer a new request: its moving average latency, times the
+   * requests it is already busy with plus one. Replicas that never answered are expected to be instant.
+   */
+  public double getExpectedLatency(String url) {
+    Latency latency = latencies.get(key(url));
+    if (latency == null) {
+      return 0;
+    }
+    return latency.getAverage(System.nanoTime()) * (1 + Math.max(0, latency.outstanding.get()));
+  }
+
+  /** The number of replicas with known latencies, for tests. */
+  int size() {
+    return latencies.size();
+  }
+
+  private Latency latency(String url) {
+    long now = System.nanoTime();
+    if (now - lastExpiry > idleNanos) {
+      expire(now);
+    }
+    Latency latency = latencies.computeIfAbsent(key(url), k -> new Latency(histograms));
+    latency.used = now;
+    return latency;
+  }
+
+  private void expire(long now) {
+    lastExpiry = now;
+    latencies.values().removeIf(latency -> now - latency.used > idleNanos && latency.outstanding.get() == 0);
+  }
+
+  // core URLs are used with and without a trailing slash
+  private static String key(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  private static class Latency {
+    final Histogram histogram;
+    final AtomicInteger outstanding = new AtomicInteger();
+    volatile long used;
+    private boolean sampled;
+    private double average;
+    private long updated;
+    volatile Snapshot snapshot;
+    volatile long snapshotTime;
+
+    Latency(boolean histogram) {
+      this.histogram = histogram ? new Histogram(new ExponentiallyDecayingReservoir()) : null;
+    }
+
+    void update(long elapsedNanos) {
+      if (histogram != null) {
+        histogram.update(elapsedNanos);
+      }
+      updateAverage(elapsedNanos, System.nanoTime());
+    }
+
+    synchronized void penalize(long elapsedNanos) {
+      long now = System.nanoTime();
+      double penalty = Math.max(elapsedNanos, Math.max(MIN_FAILURE_NANOS, FAILURE_FACTOR * getAverage(now)));
+      updateAverage(penalty, now);
+    }
+
+    private synchronized void updateAverage(double elapsedNanos, long now) {
+      if (sampled) {
+        double current = getAverage(now);
+        average = current + ALPHA * (elapsedNanos - current);
+      } else {
+        average = elapsedNanos;
+        sampled = true;
+      }
+      updated = now;
+    }
+
+    synchronized double getAverage(long now) {
+      if (!sampled) {
+        return 0;
+      }
+      return average * Math.pow(0.5, (now - updated) / HALF_LIFE_NANOS);
+    }
+
+    Snapshot getSnapshot() {
+      long now = System.nanoTime();
+      Snapshot s = snapshot;
+      if (s == null || now - snapshotTime > SNAPSHOT_INTERVAL_NANOS) {
+        s = histogram.getSnapshot();
+        snapshot = s;
+        snapshotTime = now;
+      }
+      return s;
+    }
+  }
+}
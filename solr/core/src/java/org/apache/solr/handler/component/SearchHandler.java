@@ -27,6 +27,7 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.CloseHook;
@@ -57,7 +58,9 @@ import org.slf4j.LoggerFactory;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
+import java.security.Principal;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.solr.common.params.CommonParams.*;
@@ -70,6 +73,8 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
   static final String INIT_COMPONENTS = "components";
   static final String INIT_FIRST_COMPONENTS = "first-components";
   static final String INIT_LAST_COMPONENTS = "last-components";
+  static final String INIT_DISTRIB_RESULT_CACHE = "distribResultCache";
+  static final String INIT_DISTRIB_RESULT_CACHE_MAX_AGE_MS = "distribResultCacheMaxAgeMs";
 
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
@@ -82,6 +87,8 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
   private ShardHandlerFactory shardHandlerFactory;
   private PluginInfo shfInfo;
   private SolrCore core;
+  private String distribResultCacheName;
+  private long distribResultCacheMaxAgeNanos;
 
   protected List<String> getDefaultComponents() {
     ArrayList<String> names = new ArrayList<>(8);
@@ -134,6 +141,10 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
     if (c != null && (first != null || last != null)) throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
         "First/Last components only valid if you do not declare 'components'");
 
+    distribResultCacheName = (String) initArgs.get(INIT_DISTRIB_RESULT_CACHE);
+    Object maxAge = initArgs.get(INIT_DISTRIB_RESULT_CACHE_MAX_AGE_MS);
+    distribResultCacheMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge == null ? 60000 : Long.parseLong(maxAge.toString()));
+
     if (shfInfo == null) {
       shardHandlerFactory = core.getCoreContainer().getShardHandlerFactory();
     } else {
@@ -406,6 +417,8 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
       } finally {
         SolrQueryTimeoutImpl.reset();
       }
+    } else if (addCachedDistribResult(rb)) {
+      // a distributed request answered by the coordinator's result cache
     } else {
       // a distributed request
 
@@ -513,6 +526,8 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
 
         // we are done when the next stage is MAX_VALUE
       } while (nextStage != Integer.MAX_VALUE);
+
+      cacheDistribResult(rb);
     }
     
     // SOLR-5550: still provide shards.info if requested even for a short circuited distrib request
@@ -547,6 +562,89 @@ public class SearchHandler extends RequestHandlerBase implements SolrCoreAware,
     }
   }
 
+  /**
+   * A merged distributed response in the coordinator result cache. Entries go with the searcher of the
+   * coordinating core, so a commit drops them, and expire after distribResultCacheMaxAgeMs for changes to
+   * shards that aren't on this core.
+   */
+  private static final Set<String> DISTRIB_RESULT_CACHE_IGNORED_PARAMS = Set.of(CommonParams.REQUEST_ID, CommonParams.WT,
+      "indent", CommonParams.HEADER_ECHO_PARAMS, CommonParams.OMIT_HEADER);
+
+  private static class CachedDistribResult {
+    final long time;
+    final NamedList<Object> values;
+
+    CachedDistribResult(long time, NamedList<Object> values) {
+      this.time = time;
+      this.values = values;
+    }
+  }
+
+  /**
+   * Returns the key of a distributed request in the coordinator result cache, or null if its response can't
+   * be cached: when no cache is configured, for debug and shards.info requests that report on the shard
+   * requests themselves, and for cache=false.
+   */
+  private String getDistribResultCacheKey(ResponseBuilder rb) {
+    if (distribResultCacheName == null || rb.isDebug()) {
+      return null;
+    }
+    SolrParams params = rb.req.getParams();
+    if (!params.getBool(CommonParams.CACHE, true) || params.getBool(ShardParams.SHARDS_INFO, false)) {
+      return null;
+    }
+    // the same params in any order, without the request id and the ones that only change how the response is written
+    TreeMap<String, String[]> sorted = new TreeMap<>();
+    for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+      String name = it.next();
+      if (!DISTRIB_RESULT_CACHE_IGNORED_PARAMS.contains(name)) {
+        sorted.put(name, params.getParams(name));
+      }
+    }
+    StringBuilder key = new StringBuilder(String.valueOf(rb.req.getContext().get(PATH)));
+    Principal principal = rb.req.getUserPrincipal();
+    if (principal != null) {
+      key.append('|').append(principal.getName());
+    }
+    for (Map.Entry<String, String[]> param : sorted.entrySet()) {
+      for (String value : param.getValue()) {
+        key.append('&').append(param.getKey()).append('=').append(value);
+      }
+    }
+    return key.toString();
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private boolean addCachedDistribResult(ResponseBuilder rb) {
+    String key = getDistribResultCacheKey(rb);
+    if (key == null) {
+      return false;
+    }
+    CachedDistribResult cached = (CachedDistribResult) rb.req.getSearcher().cacheLookup(distribResultCacheName, key);
+    if (cached == null || System.nanoTime() - cached.time > distribResultCacheMaxAgeNanos) {
+      return false;
+    }
+    for (Map.Entry<String, Object> entry : cached.values) {
+      rb.rsp.add(entry.getKey(), entry.getValue());
+    }
+    return true;
+  }
+
+  private void cacheDistribResult(ResponseBuilder rb) {
+    String key = getDistribResultCacheKey(rb);
+    if (key == null || rb.rsp.getException() != null
+        || Boolean.TRUE.equals(rb.rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY))) {
+      return;
+    }
+    NamedList<Object> values = new SimpleOrderedMap<>();
+    for (Map.Entry<String, Object> entry : rb.rsp.getValues()) {
+      if (!"responseHeader".equals(entry.getKey())) {
+        values.add(entry.getKey(), entry.getValue());
+      }
+    }
+    rb.req.getSearcher().cacheInsert(distribResultCacheName, key, new CachedDistribResult(System.nanoTime(), values));
+  }
+
   private void tagRequestWithRequestId(ResponseBuilder rb) {
     final boolean ridTaggingDisabled = rb.req.getParams().getBool(CommonParams.DISABLE_REQUEST_ID, false);
     if (! ridTaggingDisabled) {
@@ -18,6 +18,7 @@ package org.apache.solr.handler.component;
 
 import io.opentracing.Tracer;
 import io.opentracing.util.GlobalTracer;
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.common.params.ModifiableSolrParams;
 
 import java.util.ArrayList;
@@ -51,6 +52,8 @@ public class ShardRequest {
 
   public ModifiableSolrParams params;
 
+  /** parses the shard responses, null for the shard handler's default */
+  public ResponseParser responseParser;
 
   /** list of responses... filled out by framework */
   public List<ShardResponse> responses = new ArrayList<>();
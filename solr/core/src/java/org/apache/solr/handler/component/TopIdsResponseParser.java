@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.DataInputInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Parses the shard responses of a distributed request for the top ids sorted by score, dropping the documents
+ * that can't make the merged top N as they are read. The N best scores seen so far are shared by the responses
+ * of all shards; once a document of a shard scores below all of them, so do the rest of its documents, which
+ * are then read and left for garbage collection instead of being kept until the merge.
+ * <p>
+ * Only the "response" document list of a shard response is trimmed. Its numFound and maxScore are kept, so
+ * the merge still reports the totals of all shards.
+ */
+class TopIdsResponseParser extends BinaryResponseParser {
+
+  private final String keyFieldName;
+  private final CompetitiveScores scores;
+
+  /**
+   * @param keyFieldName the unique key field, so documents returned by more than one shard count once
+   * @param topN how many documents the merge keeps, start+rows
+   */
+  TopIdsResponseParser(String keyFieldName, int topN) {
+    this.keyFieldName = keyFieldName;
+    this.scores = new CompetitiveScores(topN);
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked"})
+  public NamedList<Object> processResponse(InputStream body, String encoding) {
+    try (JavaBinCodec codec = new TopIdsCodec()) {
+      return (NamedList<Object>) codec.unmarshal(body);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
+    }
+  }
+
+  private class TopIdsCodec extends JavaBinCodec {
+
+    private int depth;
+    private boolean topDocs;
+
+    TopIdsCodec() {
+      super(null, stringCache);
+    }
+
+    @Override
+    public SimpleOrderedMap<Object> readOrderedMap(DataInputInputStream dis) throws IOException {
+      int sz = readSize(dis);
+      SimpleOrderedMap<Object> nl = new SimpleOrderedMap<>(sz);
+      boolean top = depth++ == 0;
+      try {
+        for (int i = 0; i < sz; i++) {
+          String name = (String) readVal(dis);
+          topDocs = top && "response".equals(name);
+          Object val = readVal(dis);
+          topDocs = false;
+          nl.add(name, val);
+        }
+      } finally {
+        depth--;
+      }
+      return nl;
+    }
+
+    @Override
+    public SolrDocumentList readSolrDocumentList(DataInputInputStream dis) throws IOException {
+      if (!topDocs) {
+        return super.readSolrDocumentList(dis);
+      }
+      topDocs = false;
+
+      SolrDocumentList solrDocs = new SolrDocumentList();
+      @SuppressWarnings("unchecked")
+      List<Object> list = (List<Object>) readVal(dis);
+      solrDocs.setNumFound((Long) list.get(0));
+      solrDocs.setStart((Long) list.get(1));
+      solrDocs.setMaxScore((Float) list.get(2));
+      if (list.size() > 3) {
+        solrDocs.setNumFoundExact((Boolean) list.get(3));
+      }
+
+      tagByte = dis.readByte();
+      if ((tagByte >>> 5) != (ARR >>> 5)) {
+        throw new RuntimeException("doclist must have an array");
+      }
+      int sz = readSize(dis);
+      boolean competitive = true;
+      for (int i = 0; i < sz; i++) {
+        SolrDocument doc = (SolrDocument) readVal(dis);
+        // documents come sorted by score, so the first one out of the top N ends the ones to keep
+        competitive = competitive && scores.offer(doc.getFieldValue(keyFieldName), doc.getFieldValue("score"));
+        if (competitive) {
+          solrDocs.add(doc);
+        }
+      }
+      return solrDocs;
+    }
+  }
+
+  /** The N best scores of distinct documents over all the shard responses parsed so far. */
+  static final class CompetitiveScores {
+    private final int size;
+    private final PriorityQueue<ScoredId> queue;
+    private final Set<Object> ids = new HashSet<>();
+
+    CompetitiveScores(int size) {
+      this.size = size;
+      this.queue = new PriorityQueue<>(Math.min(size, 1024));
+    }
+
+    /** Adds a document, returns false if its score is below the N best ones, so it can't make the top N. */
+    synchronized boolean offer(Object id, Object scoreObj) {
+      if (scoreObj == null) {
+        return true;
+      }
+      float score = scoreObj instanceof String ? Float.parseFloat((String) scoreObj) : (Float) scoreObj;
+      if (queue.size() >= size && score < queue.peek().score) {
+        return false;
+      }
+      if (ids.add(id)) {
+        queue.add(new ScoredId(id, score));
+        if (queue.size() > size) {
+          ids.remove(queue.poll().id);
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class ScoredId implements Comparable<ScoredId> {
+    final Object id;
+    final float score;
+
+    ScoredId(Object id, float score) {
+      this.id = id;
+      this.score = score;
+    }
+
+    @Override
+    public int compareTo(ScoredId o) {
+      return Float.compare(score, o.score);
+    }
+  }
+}
@@ -40,7 +40,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Helper class implementing a "double buffering" producer / consumer.
+ * Helper class implementing a "double buffering" producer / consumer. The producer may in turn
+ * be fed by a pool of sort workers, see {@link ExportWriter#SORT_WORKERS_PARAM}.
  */
 class ExportBuffers {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -61,6 +62,7 @@ class ExportBuffers {
   Buffer outputBuffer;
   Runnable filler;
   ExecutorService service;
+  ExecutorService sortService;
   Throwable error;
   LongAdder outputCounter = new LongAdder();
   volatile boolean shutDown = false;
@@ -88,7 +90,17 @@ class ExportBuffers {
     outputBuffer = bufferTwo;
     SortDoc writerSortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
 
-    MergeIterator mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc);
+    int sortWorkers = Math.min(exportWriter.sortWorkers, leaves.size());
+    if (sortWorkers > 1) {
+      sortService = ExecutorUtil.newMDCAwareFixedThreadPool(sortWorkers, new SolrNamedThreadFactory("ExportSortWorker"));
+    }
+    MergeIterator mergeIterator;
+    try {
+      mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc, sortService);
+    } catch (IOException | RuntimeException e) {
+      shutdownNow();
+      throw e;
+    }
 
     bufferOne.initialize(writerSortDoc);
     bufferTwo.initialize(writerSortDoc);
@@ -191,6 +203,10 @@ class ExportBuffers {
       service.shutdownNow();
       service = null;
     }
+    if (sortService != null) {
+      sortService.shutdownNow();
+      sortService = null;
+    }
     shutDown = true;
   }
 
@@ -26,6 +26,11 @@ import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.codahale.metrics.Timer;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -90,15 +95,21 @@ import static org.apache.solr.common.util.Utils.makeMap;
  * bitmap identifies the smallest docs (default is {@link #DEFAULT_BATCH_SIZE}) that haven't been sent yet and stores them in a
  * Priority Queue.  They are then exported (written across the wire) and marked as sent (unset in the bitmap).
  * This process repeats until all matching documents have been sent.
+ * <p>
+ * When {@link #SORT_WORKERS_PARAM} is greater than one, the per-segment passes run on a pool of sort workers:
+ * each segment computes its next batch while the merge is still consuming the current one, so the bitmap
+ * scans of all segments proceed in parallel and overlap with merging and writing.
  */
 public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   public static final String BATCH_SIZE_PARAM = "batchSize";
   public static final String QUEUE_SIZE_PARAM = "queueSize";
+  public static final String SORT_WORKERS_PARAM = "sortWorkers";
 
   public static final int DEFAULT_BATCH_SIZE = 30000;
   public static final int DEFAULT_QUEUE_SIZE = 150000;
+  public static final int DEFAULT_SORT_WORKERS = 1;
 
 
   private OutputStreamWriter respWriter;
@@ -111,6 +122,12 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   final int batchSize;
   //The max combined size of the segment level priority queues.
   private int priorityQueueSize;
+  //The number of threads sorting segments in parallel, 1 sorts them on the filler thread.
+  final int sortWorkers;
+  //Time spent sorting a batch of a segment, filling a buffer and writing a buffer out.
+  final Timer sortTimer;
+  final Timer fillTimer;
+  final Timer writeTimer;
   StreamExpression streamExpression;
   StreamContext streamContext;
   FieldWriter[] fieldWriters;
@@ -132,6 +149,26 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     this.metricsPath = metricsPath;
     this.priorityQueueSize = req.getParams().getInt(QUEUE_SIZE_PARAM, DEFAULT_QUEUE_SIZE);
     this.batchSize = DEFAULT_BATCH_SIZE;
+    this.sortWorkers = Math.max(1, req.getParams().getInt(SORT_WORKERS_PARAM, DEFAULT_SORT_WORKERS));
+    if (solrMetricsContext != null) {
+      this.sortTimer = solrMetricsContext.timer("sortTimes", metricsPath);
+      this.fillTimer = solrMetricsContext.timer("fillTimes", metricsPath);
+      this.writeTimer = solrMetricsContext.timer("writeTimes", metricsPath);
+    } else {
+      this.sortTimer = null;
+      this.fillTimer = null;
+      this.writeTimer = null;
+    }
+  }
+
+  static Timer.Context time(Timer timer) {
+    return timer == null ? null : timer.time();
+  }
+
+  static void stop(Timer.Context timerContext) {
+    if (timerContext != null) {
+      timerContext.stop();
+    }
   }
 
   @Override
@@ -369,6 +406,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         tupleStream.open();
       } catch (Exception e) {
         buffers.getWriter().add((MapWriter) ew -> Tuple.EXCEPTION(e, true).writeMap(ew));
+        buffers.shutdownNow();
         return;
       }
       buffers.run(() -> {
@@ -411,6 +449,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
             log.debug("--- writer interrupted");
             break;
           }
+          Timer.Context writeTime = time(writeTimer);
           try {
             for (int i = 0; i <= buffer.outDocsIndex; ++i) {
               // we're using the raw writer here because there's no potential
@@ -420,6 +459,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
               writer.add((MapWriter) ew -> writeDoc(currentDoc, leaves, ew, fieldWriters));
             }
           } finally {
+            stop(writeTime);
           }
           //log.debug("--- writer exchanging from {}", buffer);
           try {
@@ -441,7 +481,12 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   void fillOutDocs(MergeIterator mergeIterator,
                    ExportBuffers.Buffer buffer) throws IOException {
-    transferBatchToBufferForOutput(mergeIterator, buffer);
+    Timer.Context fillTime = time(fillTimer);
+    try {
+      transferBatchToBufferForOutput(mergeIterator, buffer);
+    } finally {
+      stop(fillTime);
+    }
   }
 
   void writeDoc(SortDoc sortDoc,
@@ -661,6 +706,15 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   }
 
   public MergeIterator getMergeIterator(List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc) throws IOException {
+    return getMergeIterator(leaves, bits, sortDoc, null);
+  }
+
+  /**
+   * @param sortExecutor if non-null, segments are sorted asynchronously on this executor, each one
+   *                     a batch ahead of the merge
+   */
+  MergeIterator getMergeIterator(List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc,
+                                 ExecutorService sortExecutor) throws IOException {
     try {
       long totalDocs = 0;
       for (int i = 0; i < leaves.size(); i++) {
@@ -702,7 +756,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       SegmentIterator[] segmentIterators = new SegmentIterator[leaves.size()];
       for (int i = 0; i < segmentIterators.length; i++) {
         SortQueue sortQueue = new SortQueue(sizes[i], sortDoc.copy());
-        segmentIterators[i] = new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy());
+        segmentIterators[i] = new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy(), sortExecutor, sortTimer);
       }
 
       return new MergeIterator(segmentIterators, sortDoc);
@@ -713,23 +767,41 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static class SegmentIterator {
 
     private final FixedBitSet bits;
-    private final SortQueue queue;
     private final SortDoc sortDoc;
     private final LeafReaderContext context;
-    private final SortDoc[] outDocs;
+    private final ExecutorService sortExecutor;
+    private final Timer sortTimer;
+
+    private SortQueue queue;
+    private SortDoc[] outDocs;
+    // second queue and output array, filled by a sort worker while the current batch is merged
+    private SortQueue nextQueue;
+    private SortDoc[] nextOutDocs;
+    private Future<Integer> pending;
+    private boolean exhausted;
 
     private SortDoc nextDoc;
     private int index;
 
 
-    public SegmentIterator(FixedBitSet bits, LeafReaderContext context, SortQueue sortQueue, SortDoc sortDoc) throws IOException {
+    public SegmentIterator(FixedBitSet bits, LeafReaderContext context, SortQueue sortQueue, SortDoc sortDoc,
+                           ExecutorService sortExecutor, Timer sortTimer) throws IOException {
       this.bits = bits;
       this.queue = sortQueue;
       this.sortDoc = sortDoc;
       this.nextDoc = sortDoc.copy();
       this.context = context;
+      this.sortExecutor = sortExecutor;
+      this.sortTimer = sortTimer;
       this.outDocs = new SortDoc[sortQueue.maxSize];
-      topDocs();
+      if (sortExecutor == null) {
+        nextBatch();
+      } else {
+        this.nextQueue = new SortQueue(sortQueue.maxSize, sortDoc.copy());
+        this.nextOutDocs = new SortDoc[sortQueue.maxSize];
+        this.index = -1;
+        sortAhead();
+      }
     }
 
     public SortDoc next() throws IOException {
@@ -737,16 +809,13 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       if (index > -1) {
         _sortDoc = outDocs[index--];
       } else {
-        topDocs();
+        nextBatch();
         if (index > -1) {
           _sortDoc = outDocs[index--];
         }
       }
 
       if (_sortDoc != null) {
-        //Clear the bit so it's not loaded again.
-        bits.clear(_sortDoc.docId);
-
         //Load the global ordinal (only matters for strings)
         _sortDoc.setGlobalValues(nextDoc);
 
@@ -759,7 +828,58 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       return nextDoc;
     }
 
-    private void topDocs() throws IOException {
+    private void nextBatch() throws IOException {
+      if (exhausted) {
+        index = -1;
+        return;
+      }
+      if (pending == null) {
+        index = topDocs(queue, outDocs);
+      } else {
+        index = awaitSortAhead();
+        SortQueue q = queue;
+        queue = nextQueue;
+        nextQueue = q;
+        SortDoc[] docs = outDocs;
+        outDocs = nextOutDocs;
+        nextOutDocs = docs;
+      }
+
+      // A batch that didn't fill the queue holds every remaining doc of the segment.
+      exhausted = index + 1 < queue.maxSize;
+      if (!exhausted && sortExecutor != null) {
+        sortAhead();
+      }
+    }
+
+    private void sortAhead() {
+      final SortQueue q = nextQueue;
+      final SortDoc[] docs = nextOutDocs;
+      pending = sortExecutor.submit(() -> topDocs(q, docs));
+    }
+
+    private int awaitSortAhead() throws IOException {
+      try {
+        return pending.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      } finally {
+        pending = null;
+      }
+    }
+
+    /**
+     * Fills outDocs with the top docs of the segment that haven't been sent yet, and clears their bits
+     * so the next pass skips them. Returns the index of the last doc in outDocs, -1 if there are none.
+     */
+    private int topDocs(SortQueue queue, SortDoc[] outDocs) throws IOException {
+      Timer.Context sortTime = time(sortTimer);
       try {
         queue.reset();
         SortDoc top = queue.top();
@@ -775,19 +895,22 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         }
 
         //Pop the queue and load up the array.
-        index = -1;
+        int index = -1;
 
         SortDoc _sortDoc;
         while ((_sortDoc = queue.pop()) != null) {
           if (_sortDoc.docId > -1) {
             outDocs[++index] = _sortDoc;
+            //Clear the bit so it's not loaded again.
+            bits.clear(_sortDoc.docId);
           }
         }
+        return index;
       } catch (Exception e) {
         log.error("Segment Iterator Error:", e);
         throw new IOException(e);
       } finally {
-
+        stop(sortTime);
       }
     }
   }
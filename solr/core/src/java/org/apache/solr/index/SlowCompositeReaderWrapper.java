@@ -18,8 +18,14 @@ package org.apache.solr.index;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 import org.apache.lucene.index.*;
 import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
@@ -59,6 +65,12 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
   // TODO: this could really be a weak map somewhere else on the coreCacheKey,
   // but do we really need to optimize slow-wrapper any more?
   final Map<String,OrdinalMap> cachedOrdMaps = new HashMap<>();
+  // fields whose ordinal maps were asked for through this reader, guarded by cachedOrdMaps
+  final Set<String> requestedOrdMaps = new HashSet<>();
+
+  private final LongAdder ordMapsBuilt = new LongAdder();
+  private final LongAdder ordMapsReused = new LongAdder();
+  private final LongAdder ordMapsBuildNanos = new LongAdder();
 
   /** This method is sugar for getting an {@link LeafReader} from
    * an {@link IndexReader} of any kind. If the reader is already atomic,
@@ -153,17 +165,27 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
   @Override
   public SortedDocValues getSortedDocValues(String field) throws IOException {
     ensureOpen();
+    return getSortedDocValues(field, true);
+  }
+
+  private SortedDocValues getSortedDocValues(String field, boolean request) throws IOException {
     OrdinalMap map = null;
     synchronized (cachedOrdMaps) {
+      if (request) {
+        requestedOrdMaps.add(field);
+      }
       map = cachedOrdMaps.get(field);
       if (map == null) {
         // uncached, or not a multi dv
+        final long start = System.nanoTime();
         SortedDocValues dv = MultiDocValues.getSortedValues(in, field);
         if (dv instanceof MultiSortedDocValues) {
           map = ((MultiSortedDocValues)dv).mapping;
           IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
           if (cacheHelper != null && map.owner == cacheHelper.getKey()) {
             cachedOrdMaps.put(field, map);
+            ordMapsBuilt.increment();
+            ordMapsBuildNanos.add(System.nanoTime() - start);
           }
         }
         return dv;
@@ -195,17 +217,27 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
   @Override
   public SortedSetDocValues getSortedSetDocValues(String field) throws IOException {
     ensureOpen();
+    return getSortedSetDocValues(field, true);
+  }
+
+  private SortedSetDocValues getSortedSetDocValues(String field, boolean request) throws IOException {
     OrdinalMap map = null;
     synchronized (cachedOrdMaps) {
+      if (request) {
+        requestedOrdMaps.add(field);
+      }
       map = cachedOrdMaps.get(field);
       if (map == null) {
         // uncached, or not a multi dv
+        final long start = System.nanoTime();
         SortedSetDocValues dv = MultiDocValues.getSortedSetValues(in, field);
         if (dv instanceof MultiDocValues.MultiSortedSetDocValues) {
           map = ((MultiDocValues.MultiSortedSetDocValues)dv).mapping;
           IndexReader.CacheHelper cacheHelper = getReaderCacheHelper();
           if (cacheHelper != null && map.owner == cacheHelper.getKey()) {
             cachedOrdMaps.put(field, map);
+            ordMapsBuilt.increment();
+            ordMapsBuildNanos.add(System.nanoTime() - start);
           }
         }
         return dv;
@@ -236,6 +268,88 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     return new MultiDocValues.MultiSortedSetDocValues(values, starts, map, cost);
   }
 
+  /**
+   * Carries the ordinal maps that were asked for through <code>previous</code>, typically the reader of
+   * the searcher this one replaces, over to this reader. A map is reused as is when every segment still
+   * holds the same values for its field, e.g. after a commit that only deleted documents. Otherwise it is
+   * rebuilt right away, so that the first request against this reader doesn't pay for it.
+   */
+  public void warmOrdinalMaps(SlowCompositeReaderWrapper previous) throws IOException {
+    ensureOpen();
+    final Map<String,OrdinalMap> previousMaps;
+    synchronized (previous.cachedOrdMaps) {
+      previousMaps = new HashMap<>(previous.cachedOrdMaps);
+      previousMaps.keySet().retainAll(previous.requestedOrdMaps);
+    }
+    for (Map.Entry<String,OrdinalMap> entry : previousMaps.entrySet()) {
+      final String field = entry.getKey();
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+      if (fieldInfo == null) {
+        continue;
+      }
+      if (hasSameValues(previous.in.leaves(), in.leaves(), field)) {
+        synchronized (cachedOrdMaps) {
+          if (cachedOrdMaps.putIfAbsent(field, entry.getValue()) == null) {
+            ordMapsReused.increment();
+          }
+        }
+      } else if (fieldInfo.getDocValuesType() == DocValuesType.SORTED) {
+        getSortedDocValues(field, false);
+      } else if (fieldInfo.getDocValuesType() == DocValuesType.SORTED_SET) {
+        getSortedSetDocValues(field, false);
+      }
+    }
+  }
+
+  /**
+   * Whether both lists hold the same segments, in the same order, with the same doc values for the field.
+   * Deletions don't matter since ordinal maps are built from the terms of the segments.
+   */
+  private static boolean hasSameValues(List<LeafReaderContext> a, List<LeafReaderContext> b, String field) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      final LeafReader ra = a.get(i).reader();
+      final LeafReader rb = b.get(i).reader();
+      final CacheHelper ha = ra.getCoreCacheHelper();
+      final CacheHelper hb = rb.getCoreCacheHelper();
+      if (ha == null || hb == null || ha.getKey() != hb.getKey()) {
+        return false;
+      }
+      final FieldInfo fa = ra.getFieldInfos().fieldInfo(field);
+      final FieldInfo fb = rb.getFieldInfos().fieldInfo(field);
+      if (fa == null || fb == null) {
+        if (fa != fb) {
+          return false;
+        }
+      } else if (fa.getDocValuesType() != fb.getDocValuesType() || fa.getDocValuesGen() != fb.getDocValuesGen()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reports how many ordinal maps this reader built and reused from a previous reader, the time spent
+   * building them, and the memory held by the cached maps.
+   */
+  public void getOrdinalMapMetrics(BiConsumer<String,Object> consumer) {
+    long ramBytesUsed = 0;
+    int size;
+    synchronized (cachedOrdMaps) {
+      size = cachedOrdMaps.size();
+      for (OrdinalMap map : cachedOrdMaps.values()) {
+        ramBytesUsed += map.ramBytesUsed();
+      }
+    }
+    consumer.accept("size", size);
+    consumer.accept("built", ordMapsBuilt.sum());
+    consumer.accept("reused", ordMapsReused.sum());
+    consumer.accept("buildTimeMs", TimeUnit.NANOSECONDS.toMillis(ordMapsBuildNanos.sum()));
+    consumer.accept("ramBytesUsed", ramBytesUsed);
+  }
+
   @Override
   public NumericDocValues getNormValues(String field) throws IOException {
     ensureOpen();
@@ -156,6 +156,12 @@ public class BinaryResponseWriter implements BinaryQueryResponseWriter {
 
     protected void writeResultsBody( ResultContext res, JavaBinCodec codec ) throws IOException {
       codec.writeTag(JavaBinCodec.ARR, res.getDocList().size());
+      DocValuesJavaBinWriter docValuesWriter = DocValuesJavaBinWriter.create(res);
+      if (docValuesWriter != null) {
+        // all fields come from docValues, stream them without building SolrDocuments
+        docValuesWriter.writeDocs(res.getDocList(), codec);
+        return;
+      }
       Iterator<SolrDocument> docStreamer = res.getProcessedDocuments();
       while (docStreamer.hasNext()) {
         SolrDocument doc = docStreamer.next();
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.schema.AbstractEnumField;
+import org.apache.solr.schema.BoolField;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.LatLonPointSpatialField;
+import org.apache.solr.schema.NumberType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocList;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SolrReturnFields;
+
+/**
+ * Writes the documents of a result in javabin format straight from docValues, when every requested field
+ * is read from docValues. The bytes written are the same as for the {@link org.apache.solr.common.SolrDocument}s
+ * produced by {@link DocsStreamer}, but no documents, value lists, boxed numbers or decoded strings are created
+ * per hit.
+ *
+ * @see org.apache.solr.search.SolrDocumentFetcher#getDocValuesOnlyFields(SolrReturnFields)
+ */
+class DocValuesJavaBinWriter {
+  // the number of results written straight from docValues, for tests
+  static final AtomicLong numResultsWritten = new AtomicLong();
+
+  private final SolrIndexSearcher searcher;
+  private final FieldValues[] fields;
+  private final boolean[] present;
+
+  private DocValuesJavaBinWriter(SolrIndexSearcher searcher, FieldValues[] fields) {
+    this.searcher = searcher;
+    this.fields = fields;
+    this.present = new boolean[fields.length];
+  }
+
+  /**
+   * Returns a writer for the documents of the result, or null if they have to go through
+   * {@link ResultContext#getProcessedDocuments()}.
+   */
+  static DocValuesJavaBinWriter create(ResultContext ctx) {
+    if (!(ctx instanceof BasicResultContext) || !(ctx.getReturnFields() instanceof SolrReturnFields)) {
+      return null;
+    }
+    SolrReturnFields returnFields = (SolrReturnFields) ctx.getReturnFields();
+    SolrIndexSearcher searcher = ctx.getSearcher();
+    if (searcher == null || returnFields.getTransformer() != null || ctx.getDocList().size() == 0) {
+      return null;
+    }
+    Set<String> dvFields = searcher.getDocFetcher().getDocValuesOnlyFields(returnFields);
+    if (dvFields == null) {
+      return null;
+    }
+    List<FieldValues> fields = new ArrayList<>(dvFields.size());
+    for (String name : dvFields) {
+      SchemaField sf = searcher.getSchema().getFieldOrNull(name);
+      FieldInfo fi = searcher.getFieldInfos().fieldInfo(name);
+      if (sf == null || !sf.hasDocValues() || fi == null) {
+        continue; // never populated from docValues either
+      }
+      FieldValues values = FieldValues.create(sf, fi.getDocValuesType());
+      if (values == null) {
+        return null;
+      }
+      fields.add(values);
+    }
+    returnFields.setFieldSources(SolrReturnFields.FIELD_SOURCES.ALL_FROM_DV);
+    return new DocValuesJavaBinWriter(searcher, fields.toArray(new FieldValues[0]));
+  }
+
+  void writeDocs(DocList docs, JavaBinCodec codec) throws IOException {
+    numResultsWritten.incrementAndGet();
+    List<LeafReaderContext> leaves = searcher.getLeafContexts();
+    DocIterator iterator = docs.iterator();
+    while (iterator.hasNext()) {
+      int docId = iterator.nextDoc();
+      LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+      int localId = docId - leaf.docBase;
+      int size = 0;
+      for (int i = 0; i < fields.length; i++) {
+        present[i] = fields[i].advanceExact(leaf, localId);
+        if (present[i]) {
+          size++;
+        }
+      }
+      codec.writeTag(JavaBinCodec.SOLRDOC);
+      codec.writeTag(JavaBinCodec.ORDERED_MAP, size);
+      for (int i = 0; i < fields.length; i++) {
+        if (present[i]) {
+          codec.writeExternString(fields[i].name);
+          fields[i].write(codec);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the docValues of one field. The iterator is reused as long as docs are requested in
+   * increasing order within a segment, and pulled again otherwise.
+   */
+  private abstract static class FieldValues {
+    final String name;
+    final SchemaField schemaField;
+    private int leafOrd = -1;
+    private DocIdSetIterator iterator;
+
+    FieldValues(SchemaField schemaField) {
+      this.name = schemaField.getName();
+      this.schemaField = schemaField;
+    }
+
+    static FieldValues create(SchemaField sf, DocValuesType dvType) {
+      FieldType ft = sf.getType();
+      switch (dvType) {
+        case NUMERIC:
+          return isDecodableNumber(ft) ? new Numeric(sf) : null;
+        case SORTED_NUMERIC:
+          return isDecodableNumber(ft) ? new SortedNumeric(sf) : null;
+        case SORTED:
+          return new Sorted(sf);
+        case SORTED_SET:
+          // other types convert the terms with FieldType.toObject
+          return ft.getClass() == StrField.class || ft instanceof BoolField ? new SortedSet(sf) : null;
+        case BINARY:
+          return new Binary(sf);
+        default:
+          return null;
+      }
+    }
+
+    // the types SolrDocumentFetcher decodes to a plain number or date
+    private static boolean isDecodableNumber(FieldType ft) {
+      return ft.getNumberType() != null && !(ft instanceof AbstractEnumField) && !(ft instanceof LatLonPointSpatialField);
+    }
+
+    boolean advanceExact(LeafReaderContext leaf, int localId) throws IOException {
+      if (leaf.ord != leafOrd || (iterator != null && localId < iterator.docID())) {
+        iterator = load(leaf.reader());
+        leafOrd = leaf.ord;
+      }
+      return iterator != null && advanceExact(localId);
+    }
+
+    abstract DocIdSetIterator load(LeafReader reader) throws IOException;
+
+    abstract boolean advanceExact(int localId) throws IOException;
+
+    abstract void write(JavaBinCodec codec) throws IOException;
+
+    void writeNumber(JavaBinCodec codec, long value, boolean sortableNumeric) throws IOException {
+      NumberType numberType = schemaField.getType().getNumberType();
+      switch (numberType) {
+        case INTEGER:
+          codec.writeInt((int) value);
+          break;
+        case LONG:
+          codec.writeLong(value);
+          break;
+        case FLOAT:
+          codec.writeFloat(sortableNumeric ? NumericUtils.sortableIntToFloat((int) value) : Float.intBitsToFloat((int) value));
+          break;
+        case DOUBLE:
+          codec.writeDouble(sortableNumeric ? NumericUtils.sortableLongToDouble(value) : Double.longBitsToDouble(value));
+          break;
+        case DATE:
+          codec.writeDate(value);
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  private static class Numeric extends FieldValues {
+    private NumericDocValues values;
+
+    Numeric(SchemaField sf) {
+      super(sf);
+    }
+
+    @Override
+    DocIdSetIterator load(LeafReader reader) throws IOException {
+      return values = reader.getNumericDocValues(name);
+    }
+
+    @Override
+    boolean advanceExact(int localId) throws IOException {
+      return values.advanceExact(localId);
+    }
+
+    @Override
+    void write(JavaBinCodec codec) throws IOException {
+      writeNumber(codec, values.longValue(), false);
+    }
+  }
+
+  private static class SortedNumeric extends FieldValues {
+    private SortedNumericDocValues values;
+
+    SortedNumeric(SchemaField sf) {
+      super(sf);
+    }
+
+    @Override
+    DocIdSetIterator load(LeafReader reader) throws IOException {
+      return values = reader.getSortedNumericDocValues(name);
+    }
+
+    @Override
+    boolean advanceExact(int localId) throws IOException {
+      return values.advanceExact(localId);
+    }
+
+    @Override
+    void write(JavaBinCodec codec) throws IOException {
+      if (!schemaField.multiValued()) {
+        writeNumber(codec, values.nextValue(), true);
+        return;
+      }
+      int count = values.docValueCount();
+      codec.writeTag(JavaBinCodec.ARR, count);
+      for (int i = 0; i < count; i++) {
+        writeNumber(codec, values.nextValue(), true);
+      }
+    }
+  }
+
+  private static class Sorted extends FieldValues {
+    private final boolean bool;
+    private final ByteArrayUtf8CharSequence utf8 = new ByteArrayUtf8CharSequence(null, 0, 0);
+    private SortedDocValues values;
+
+    Sorted(SchemaField sf) {
+      super(sf);
+      this.bool = sf.getType() instanceof BoolField;
+    }
+
+    @Override
+    DocIdSetIterator load(LeafReader reader) throws IOException {
+      return values = reader.getSortedDocValues(name);
+    }
+
+    @Override
+    boolean advanceExact(int localId) throws IOException {
+      return values.advanceExact(localId);
+    }
+
+    @Override
+    void write(JavaBinCodec codec) throws IOException {
+      BytesRef term = values.lookupOrd(values.ordValue());
+      if (bool) {
+        codec.writeBoolean(term.bytes[term.offset] == 'T');
+      } else {
+        codec.writeUTF8Str(utf8.reset(term.bytes, term.offset, term.length, null));
+      }
+    }
+  }
+
+  private static class SortedSet extends FieldValues {
+    private final boolean bool;
+    private final ByteArrayUtf8CharSequence utf8 = new ByteArrayUtf8CharSequence(null, 0, 0);
+    private long[] ords = new long[8];
+    private SortedSetDocValues values;
+
+    SortedSet(SchemaField sf) {
+      super(sf);
+      this.bool = sf.getType() instanceof BoolField;
+    }
+
+    @Override
+    DocIdSetIterator load(LeafReader reader) throws IOException {
+      values = reader.getSortedSetDocValues(name);
+      return values == null || values.getValueCount() == 0 ? null : values;
+    }
+
+    @Override
+    boolean advanceExact(int localId) throws IOException {
+      return values.advanceExact(localId);
+    }
+
+    @Override
+    void write(JavaBinCodec codec) throws IOException {
+      int count = 0;
+      for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+        ords = ArrayUtil.grow(ords, count + 1);
+        ords[count++] = ord;
+      }
+      codec.writeTag(JavaBinCodec.ARR, count);
+      for (int i = 0; i < count; i++) {
+        BytesRef term = values.lookupOrd(ords[i]);
+        if (bool) {
+          codec.writeBoolean(term.bytes[term.offset] == 'T');
+        } else {
+          codec.writeUTF8Str(utf8.reset(term.bytes, term.offset, term.length, null));
+        }
+      }
+    }
+  }
+
+  private static class Binary extends FieldValues {
+    private BinaryDocValues values;
+
+    Binary(SchemaField sf) {
+      super(sf);
+    }
+
+    @Override
+    DocIdSetIterator load(LeafReader reader) throws IOException {
+      return values = reader.getBinaryDocValues(name);
+    }
+
+    @Override
+    boolean advanceExact(int localId) throws IOException {
+      return values.advanceExact(localId);
+    }
+
+    @Override
+    void write(JavaBinCodec codec) throws IOException {
+      // not a known javabin type, so this falls back to the class name and toString() of the BytesRef, as for
+      // the BytesRef that SolrDocumentFetcher decodes
+      codec.writeVal(values.binaryValue());
+    }
+  }
+}
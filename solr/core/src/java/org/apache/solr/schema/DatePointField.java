@@ -17,13 +17,16 @@
 
 package org.apache.solr.schema;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.queries.function.valuesource.LongFieldSource;
 import org.apache.lucene.queries.function.valuesource.MultiValuedLongFieldSource;
@@ -35,6 +38,8 @@ import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.mutable.MutableValueDate;
 import org.apache.lucene.util.mutable.MutableValueLong;
 import org.apache.solr.search.QParser;
+import org.apache.solr.search.function.BatchValueSource;
+import org.apache.solr.search.function.BatchValues;
 import org.apache.solr.uninverting.UninvertingReader;
 import org.apache.solr.update.processor.TimestampUpdateProcessorFactory;
 import org.apache.solr.util.DateMathParser;
@@ -219,7 +224,7 @@ public class DatePointField extends PointField implements DateValueFieldType {
     return new StoredField(sf.getName(), ((Date) this.toNativeType(value)).getTime());
   }
 
-  private static class DatePointFieldSource extends LongFieldSource {
+  private static class DatePointFieldSource extends LongFieldSource implements BatchValueSource {
 
     public DatePointFieldSource(String field) {
       super(field);
@@ -249,6 +254,11 @@ public class DatePointField extends PointField implements DateValueFieldType {
     public long externalToLong(String extVal) {
       return DateMathParser.parseMath(null, extVal).getTime();
     }
+
+    @Override
+    public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+      return BatchValues.longField(readerContext, field);
+    }
   }
 }
 
@@ -30,6 +30,7 @@ import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.solr.legacy.LegacyDoubleField;
 import org.apache.solr.legacy.LegacyFieldType;
 import org.apache.solr.legacy.LegacyFloatField;
@@ -56,6 +57,8 @@ import org.apache.lucene.util.mutable.MutableValueLong;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.response.TextResponseWriter;
 import org.apache.solr.search.QParser;
+import org.apache.solr.search.function.BatchValueSource;
+import org.apache.solr.search.function.BatchValues;
 import org.apache.solr.uninverting.UninvertingReader.Type;
 import org.apache.solr.util.DateMathParser;
 import org.slf4j.Logger;
@@ -649,7 +652,7 @@ public class TrieField extends NumericFieldType {
 }
 
 @Deprecated
-class TrieDateFieldSource extends LongFieldSource {
+class TrieDateFieldSource extends LongFieldSource implements BatchValueSource {
 
   public TrieDateFieldSource(String field) {
     super(field);
@@ -679,6 +682,11 @@ class TrieDateFieldSource extends LongFieldSource {
   public long externalToLong(String extVal) {
     return DateMathParser.parseMath(null, extVal).getTime();
   }
+
+  @Override
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    return BatchValues.longField(readerContext, field);
+  }
 }
 
 
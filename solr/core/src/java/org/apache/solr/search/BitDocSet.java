@@ -200,6 +200,8 @@ public class BitDocSet extends DocSet {
     FixedBitSet newbits = bits.clone();
     if (other instanceof BitDocSet) {
       newbits.andNot(((BitDocSet) other).bits);
+    } else if (other instanceof OffHeapBitDocSet) {
+      ((OffHeapBitDocSet) other).removeAllFrom(newbits);
     } else {
       DocIterator iter = other.iterator();
       while (iter.hasNext()) {
@@ -219,6 +221,9 @@ public class BitDocSet extends DocSet {
       BitDocSet otherDocSet = (BitDocSet) other;
       newbits = FixedBitSet.ensureCapacity(newbits, otherDocSet.bits.length());
       newbits.or(otherDocSet.bits);
+    } else if (other instanceof OffHeapBitDocSet) {
+      newbits = FixedBitSet.ensureCapacity(newbits, ((OffHeapBitDocSet) other).getBits().length());
+      other.addAllTo(newbits);
     } else {
       DocIterator iter = other.iterator();
       while (iter.hasNext()) {
@@ -24,6 +24,7 @@ import org.apache.lucene.search.Query;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.function.BatchDoubleValuesSource;
 
 /**
  * Create a boosted query from the input value.  The main value is the query to be boosted.
@@ -60,7 +61,7 @@ public class BoostQParserPlugin extends QParserPlugin {
         } else {
           vs = new QueryValueSource(bq, 0.0f);
         }
-        return FunctionScoreQuery.boostByValue(q, vs.asDoubleValuesSource());
+        return FunctionScoreQuery.boostByValue(q, BatchDoubleValuesSource.of(vs));
       }
 
 
@@ -31,6 +31,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import com.github.benmanes.caffeine.cache.RemovalCause;
@@ -94,6 +95,8 @@ public class CaffeineCache<K, V> extends SolrCacheBase implements SolrCache<K, V
   private long initialRamBytes = 0;
   private final LongAdder ramBytes = new LongAdder();
 
+  private volatile BiConsumer<? super K, ? super V> evictionListener;
+
   public CaffeineCache() {
     this.priorStats = CacheStats.empty();
   }
@@ -162,6 +165,10 @@ public class CaffeineCache<K, V> extends SolrCacheBase implements SolrCache<K, V
 
   @Override
   public void onRemoval(K key, V value, RemovalCause cause) {
+    final BiConsumer<? super K, ? super V> evictionListener = this.evictionListener;
+    if (evictionListener != null && cause.wasEvicted()) {
+      evictionListener.accept(key, value);
+    }
     ramBytes.add(
         - (RamUsageEstimator.sizeOfObject(key, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED) +
         RamUsageEstimator.sizeOfObject(value, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED) +
@@ -169,6 +176,14 @@ public class CaffeineCache<K, V> extends SolrCacheBase implements SolrCache<K, V
     );
   }
 
+  /**
+   * Sets the listener notified of the entries that the cache evicts on its own, because of its size, RAM or idle
+   * time limits.  Entries that are removed, replaced or cleared are not reported.
+   */
+  public void setEvictionListener(BiConsumer<? super K, ? super V> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
   @Override
   public long ramBytesUsed() {
     return BASE_RAM_BYTES_USED + initialRamBytes + ramBytes.sum();
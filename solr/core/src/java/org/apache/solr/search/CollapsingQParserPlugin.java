@@ -26,6 +26,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.carrotsearch.hppc.FloatArrayList;
 import com.carrotsearch.hppc.IntArrayList;
@@ -146,12 +151,28 @@ public class CollapsingQParserPlugin extends QParserPlugin {
    */
   public static final String HINT_BLOCK = "block";
 
+  /**
+   * <p>
+   * Buffers the matching documents and their scores per segment during collection, and finds the group head of
+   * each segment ordinal on the collector executor of the searcher, one slice of segments per task, before
+   * merging them through the ordinal map of the collapse field.  This hint only applies to collapsing on a string
+   * field by score, and is ignored with elevated documents, the <code>top_fc</code> hint or single segment indexes.
+   * </p>
+   * <p>
+   * The buffered hits take a bit per document of each segment with matches, and 4 bytes per match.
+   * </p>
+   */
+  public static final String HINT_PARALLEL = "parallel";
+
   /**
    * If elevation is used in combination with the collapse query parser, we can define that we only want to return the
    * representative and not all elevated docs by setting this parameter to false (true by default).
    */
   public static String COLLECT_ELEVATED_DOCS_WHEN_COLLAPSING = "collectElevatedDocsWhenCollapsing";
 
+  // the number of collapses whose group heads were found in parallel, see HINT_PARALLEL; for tests
+  static final AtomicLong numParallelCollapses = new AtomicLong();
+
   /**
    * @deprecated use {@link NullPolicy} instead.
    */
@@ -596,13 +617,20 @@ public class CollapsingQParserPlugin extends QParserPlugin {
 
     private final BoostedDocsCollector boostedDocsCollector;
 
+    // only set when group heads are found per segment in finish(), see HINT_PARALLEL
+    private ExecutorService executor;
+    private List<List<LeafReaderContext>> slices;
+    private SegmentHits[] segmentHits;
+    private SegmentHits currentHits;
+
     public OrdScoreCollector(int maxDoc,
                              int segments,
                              DocValuesProducer collapseValuesProducer,
                              int nullPolicy,
                              IntIntHashMap boostDocsMap,
                              IndexSearcher searcher,
-                             boolean collectElevatedDocsWhenCollapsing) throws IOException {
+                             boolean collectElevatedDocsWhenCollapsing,
+                             boolean parallel) throws IOException {
       this.maxDoc = maxDoc;
       this.contexts = new LeafReaderContext[segments];
       this.collectElevatedDocsWhenCollapsing = collectElevatedDocsWhenCollapsing;
@@ -627,6 +655,16 @@ public class CollapsingQParserPlugin extends QParserPlugin {
         nullScores = new FloatArrayList();
       }
       this.boostedDocsCollector = BoostedDocsCollector.build(boostDocsMap);
+
+      if (parallel && ordinalMap != null && (boostDocsMap == null || boostDocsMap.isEmpty())
+          && searcher instanceof SolrIndexSearcher) {
+        final SolrIndexSearcher solrSearcher = (SolrIndexSearcher) searcher;
+        if (solrSearcher.getCollectorExecutor() != null && solrSearcher.getCollectorSlices().size() > 1) {
+          this.executor = solrSearcher.getCollectorExecutor();
+          this.slices = solrSearcher.getCollectorSlices();
+          this.segmentHits = new SegmentHits[segments];
+        }
+      }
     }
 
     @Override public ScoreMode scoreMode() { return ScoreMode.COMPLETE; }
@@ -635,7 +673,9 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     protected void doSetNextReader(LeafReaderContext context) throws IOException {
       this.contexts[context.ord] = context;
       this.docBase = context.docBase;
-      if(ordinalMap != null) {
+      if (segmentHits != null) {
+        currentHits = segmentHits[context.ord] = new SegmentHits(context.reader().maxDoc());
+      } else if(ordinalMap != null) {
         this.segmentValues = this.multiSortedDocValues.values[context.ord];
         this.segmentOrdinalMap = ordinalMap.getGlobalOrds(context.ord);
       } else {
@@ -645,6 +685,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
 
     @Override
     public void collect(int contextDoc) throws IOException {
+      if (currentHits != null) {
+        currentHits.add(contextDoc, scorer.score());
+        return;
+      }
+
       int globalDoc = contextDoc+this.docBase;
       int ord = -1;
       if(this.ordinalMap != null) {
@@ -696,6 +741,10 @@ public class CollapsingQParserPlugin extends QParserPlugin {
         return;
       }
 
+      if (segmentHits != null) {
+        findGroupHeadsInParallel();
+      }
+
       // Handle the boosted docs.
       boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(collapsedSet,
                                                           (ord) -> { ords.remove(ord); },
@@ -778,6 +827,172 @@ public class CollapsingQParserPlugin extends QParserPlugin {
         ((DelegatingCollector) delegate).finish();
       }
     }
+
+    /**
+     * Finds the group heads of every segment from the buffered hits, one slice of segments per task, and merges
+     * them in segment order.  Since a head only replaces another one with a strictly higher score, the first doc
+     * wins ties just like when collecting serially.
+     */
+    private void findGroupHeadsInParallel() throws IOException {
+      numParallelCollapses.incrementAndGet();
+      final SegmentGroupHeads[] heads = new SegmentGroupHeads[contexts.length];
+      final Long timeoutAt = SolrQueryTimeoutImpl.getTimeoutAtNs(); // for ExitableDirectoryReader on other threads
+      final Thread requestThread = Thread.currentThread();
+      final List<FutureTask<Void>> tasks = new ArrayList<>(slices.size());
+      for (List<LeafReaderContext> slice : slices) {
+        tasks.add(new FutureTask<>(() -> {
+          final boolean forked = Thread.currentThread() != requestThread;
+          if (forked && timeoutAt != null) {
+            SolrQueryTimeoutImpl.setTimeoutAtNs(timeoutAt);
+          }
+          try {
+            for (LeafReaderContext leaf : slice) {
+              final SegmentHits hits = segmentHits[leaf.ord];
+              if (hits != null && hits.size > 0) {
+                heads[leaf.ord] = new SegmentGroupHeads(hits, multiSortedDocValues.values[leaf.ord], nullPolicy);
+              }
+            }
+          } finally {
+            if (forked) {
+              SolrQueryTimeoutImpl.reset();
+            }
+          }
+          return null;
+        }));
+      }
+      final int last = tasks.size() - 1;
+      for (int i = 0; i < last; i++) {
+        try {
+          executor.execute(tasks.get(i));
+        } catch (RejectedExecutionException e) {
+          tasks.get(i).run(); // the executor is shutting down
+        }
+      }
+      tasks.get(last).run();
+
+      Throwable failure = null;
+      for (FutureTask<Void> task : tasks) {
+        try {
+          task.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+        } catch (ExecutionException e) {
+          if (failure == null) failure = e.getCause();
+        }
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else if (failure != null) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, failure);
+      }
+      segmentHits = null; // better GC
+
+      for (int i = 0; i < heads.length; i++) {
+        final SegmentGroupHeads segmentHeads = heads[i];
+        if (segmentHeads == null) {
+          continue;
+        }
+        final int segmentDocBase = contexts[i].docBase;
+        final LongValues toGlobal = ordinalMap.getGlobalOrds(i);
+        for (int segmentOrd = 0; segmentOrd < segmentHeads.docs.length; segmentOrd++) {
+          if (segmentHeads.docs[segmentOrd] < 0) {
+            continue;
+          }
+          final int ord = (int) toGlobal.get(segmentOrd);
+          final float score = segmentHeads.scores[segmentOrd];
+          if (score > scores.get(ord)) {
+            ords.put(ord, segmentDocBase + segmentHeads.docs[segmentOrd]);
+            scores.put(ord, score);
+          }
+        }
+        if (segmentHeads.nullScore > nullScore) {
+          nullScore = segmentHeads.nullScore;
+          nullDoc = segmentDocBase + segmentHeads.nullDoc;
+        }
+        if (segmentHeads.nullDocs != null) {
+          for (int j = 0; j < segmentHeads.nullDocs.size(); j++) {
+            collapsedSet.set(segmentDocBase + segmentHeads.nullDocs.get(j));
+            nullScores.add(segmentHeads.nullScores.get(j));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The docs of a segment collected by an {@link OrdScoreCollector} with {@link #HINT_PARALLEL}, with their scores
+   * in doc order.
+   */
+  private static class SegmentHits {
+    private final int maxDoc;
+    private FixedBitSet docs;
+    private float[] scores = new float[16];
+    private int size;
+
+    SegmentHits(int maxDoc) {
+      this.maxDoc = maxDoc;
+    }
+
+    void add(int doc, float score) {
+      if (docs == null) {
+        docs = new FixedBitSet(maxDoc);
+      }
+      docs.set(doc);
+      if (size == scores.length) {
+        scores = ArrayUtil.grow(scores, size + 1);
+      }
+      scores[size++] = score;
+    }
+  }
+
+  /**
+   * The highest scoring doc of each ordinal of a segment, and the null group of the segment, found from its
+   * {@link SegmentHits} with the same rules as {@link OrdScoreCollector#collect}.
+   */
+  private static class SegmentGroupHeads {
+    final int[] docs;
+    final float[] scores;
+    int nullDoc = -1;
+    float nullScore = -Float.MAX_VALUE;
+    IntArrayList nullDocs;
+    FloatArrayList nullScores;
+
+    SegmentGroupHeads(SegmentHits hits, SortedDocValues values, int nullPolicy) throws IOException {
+      docs = new int[values.getValueCount()];
+      scores = new float[values.getValueCount()];
+      Arrays.fill(docs, -1);
+      Arrays.fill(scores, -Float.MAX_VALUE);
+      if (nullPolicy == NullPolicy.EXPAND.getCode()) {
+        nullDocs = new IntArrayList();
+        nullScores = new FloatArrayList();
+      }
+
+      final DocIdSetIterator it = new BitSetIterator(hits.docs, 0L); // cost is not useful here
+      int index = 0;
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        final float score = hits.scores[index++];
+        if (values.advanceExact(doc)) {
+          final int ord = values.ordValue();
+          if (score > scores[ord]) {
+            docs[ord] = doc;
+            scores[ord] = score;
+          }
+        } else if (nullPolicy == NullPolicy.COLLAPSE.getCode()) {
+          if (score > nullScore) {
+            nullScore = score;
+            nullDoc = doc;
+          }
+        } else if (nullPolicy == NullPolicy.EXPAND.getCode()) {
+          nullDocs.add(doc);
+          nullScores.add(score);
+        }
+      }
+    }
   }
 
   /**
@@ -1932,7 +2147,8 @@ public class CollapsingQParserPlugin extends QParserPlugin {
           if (blockCollapse) {
             return new BlockOrdScoreCollector(collapseField, nullPolicy, boostDocs);
           }
-          return new OrdScoreCollector(maxDoc, leafCount, docValuesProducer, nullPolicy, boostDocs, searcher, collectElevatedDocsWhenCollapsing);
+          return new OrdScoreCollector(maxDoc, leafCount, docValuesProducer, nullPolicy, boostDocs, searcher,
+                                       collectElevatedDocsWhenCollapsing, HINT_PARALLEL.equals(hint));
 
         } else if (isNumericCollapsible(collapseFieldType)) {
           if (blockCollapse) {
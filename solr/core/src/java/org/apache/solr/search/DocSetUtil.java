@@ -250,6 +250,19 @@ public class DocSetUtil {
     return new SortedIntDocSet(docs);
   }
 
+  /**
+   * Returns a {@link RoaringDocSet} copy of the set if that takes less memory, otherwise the set itself.
+   * Small sets are returned as is, since they are already compact as a {@link SortedIntDocSet}.
+   * @lucene.experimental
+   */
+  public static DocSet compress(DocSet docs, int maxDoc) {
+    if (docs instanceof RoaringDocSet || docs.size() < smallSetSize(maxDoc)) {
+      return docs;
+    }
+    DocSet compressed = RoaringDocSet.from(docs, maxDoc);
+    return compressed.ramBytesUsed() < docs.ramBytesUsed() ? compressed : docs;
+  }
+
   public static void collectSortedDocSet(DocSet docs, IndexReader reader, Collector collector) throws IOException {
     // TODO add SortedDocSet sub-interface and take that.
     // TODO collectUnsortedDocSet: iterate segment, then all docSet per segment.
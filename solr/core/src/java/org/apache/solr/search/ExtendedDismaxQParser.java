@@ -38,7 +38,6 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.function.FunctionQuery;
 import org.apache.lucene.queries.function.FunctionScoreQuery;
 import org.apache.lucene.queries.function.ValueSource;
-import org.apache.lucene.queries.function.valuesource.ProductFloatFunction;
 import org.apache.lucene.queries.function.valuesource.QueryValueSource;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -61,6 +60,8 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.search.ExtendedDismaxQParser.ExtendedSolrQueryParser.Alias;
+import org.apache.solr.search.function.BatchDoubleValuesSource;
+import org.apache.solr.search.function.BatchProductFloatFunction;
 import org.apache.solr.util.SolrPluginUtils;
 
 import com.google.common.collect.Multimap;
@@ -203,10 +204,10 @@ public class ExtendedDismaxQParser extends QParser {
     Query topQuery = QueryUtils.build(query, this);
     List<ValueSource> boosts = getMultiplicativeBoosts();
     if (boosts.size()>1) {
-      ValueSource prod = new ProductFloatFunction(boosts.toArray(new ValueSource[boosts.size()]));
-      topQuery = FunctionScoreQuery.boostByValue(topQuery, prod.asDoubleValuesSource());
+      ValueSource prod = new BatchProductFloatFunction(boosts.toArray(new ValueSource[boosts.size()]));
+      topQuery = FunctionScoreQuery.boostByValue(topQuery, BatchDoubleValuesSource.of(prod));
     } else if (boosts.size() == 1) {
-      topQuery = FunctionScoreQuery.boostByValue(topQuery, boosts.get(0).asDoubleValuesSource());
+      topQuery = FunctionScoreQuery.boostByValue(topQuery, BatchDoubleValuesSource.of(boosts.get(0)));
     }
     
     return topQuery;
@@ -32,6 +32,8 @@ import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.facet.AggValueSource;
+import org.apache.solr.search.function.BatchFunctionQuery;
+import org.apache.solr.search.function.BatchValueSource;
 import org.apache.solr.search.function.FieldNameValueSource;
 
 public class FunctionQParser extends QParser {
@@ -115,7 +117,7 @@ public class FunctionQParser extends QParser {
       vs = new VectorValueSource(lst);
     }
 
-    return new FunctionQuery(vs);
+    return vs instanceof BatchValueSource ? new BatchFunctionQuery(vs) : new FunctionQuery(vs);
   }
 
   /**
@@ -280,7 +280,8 @@ public class GraphTermsQParserPlugin extends QParserPlugin {
 
         @Override
         public boolean isCacheable(LeafReaderContext ctx) {
-          return true;
+          // the terms are selected by their doc freq in the whole index
+          return false;
         }
 
       };
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+
+/**
+ * Maps the (top-level) docValues ordinals of a "from" field to the ordinals of the same values in a "to" field
+ * of the same searcher, so that joins between the two fields translate matching values with array lookups
+ * instead of enumerating or searching the terms of the "to" field.
+ * <p>
+ * Indexes are kept in the optional {@link #CACHE_NAME} user cache, and are only valid for the searcher they were
+ * built with. Configure the cache with a {@link Regenerator} to build the indexes of a new searcher while it warms.
+ *
+ * @lucene.experimental
+ */
+public class JoinIndex implements Accountable {
+  public static final String CACHE_NAME = "joinIndexCache";
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(JoinIndex.class);
+
+  private final long toValueCount;
+  private final PackedInts.Reader toOrds; // "to" ordinal + 1 for each "from" ordinal, 0 if the value is not in "to"
+
+  private JoinIndex(long toValueCount, PackedInts.Reader toOrds) {
+    this.toValueCount = toValueCount;
+    this.toOrds = toOrds;
+  }
+
+  /** Returns true if joins from <code>fromField</code> to <code>toField</code> can use a join index. */
+  public static boolean supports(SchemaField fromField, SchemaField toField) {
+    return fromField.hasDocValues() && toField.hasDocValues()
+        && fromField.getType() instanceof StrField && toField.getType() instanceof StrField;
+  }
+
+  /**
+   * Returns the join index of the two fields in the cache of the searcher, building it if needed, or null if the
+   * searcher has no {@link #CACHE_NAME} cache or if the fields aren't {@link #supports supported}.
+   */
+  public static JoinIndex get(SolrIndexSearcher searcher, String fromField, String toField) throws IOException {
+    if (searcher.getCache(CACHE_NAME) == null) {
+      return null;
+    }
+    final SchemaField fromSchemaField = searcher.getSchema().getFieldOrNull(fromField);
+    final SchemaField toSchemaField = searcher.getSchema().getFieldOrNull(toField);
+    if (fromSchemaField == null || toSchemaField == null || !supports(fromSchemaField, toSchemaField)) {
+      return null;
+    }
+    final List<String> key = Arrays.asList(fromField, toField);
+    JoinIndex index = (JoinIndex) searcher.cacheLookup(CACHE_NAME, key);
+    if (index == null) {
+      index = build(getTopLevelDocValues(searcher, fromSchemaField), getTopLevelDocValues(searcher, toSchemaField));
+      if (index == null) {
+        return null;
+      }
+      searcher.cacheInsert(CACHE_NAME, key, index);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the join index of the two {@link #supports supported} fields from the cache of the searcher, or builds
+   * one that is only cached if the searcher has a {@link #CACHE_NAME} cache. Returns null if the "from" field has
+   * too many values to be indexed.
+   */
+  public static JoinIndex getOrBuild(SolrIndexSearcher searcher, SchemaField fromField, SchemaField toField) throws IOException {
+    final JoinIndex index = get(searcher, fromField.getName(), toField.getName());
+    if (index != null) {
+      return index;
+    }
+    return build(getTopLevelDocValues(searcher, fromField), getTopLevelDocValues(searcher, toField));
+  }
+
+  /** Returns the top-level docValues of a string field of the searcher. */
+  public static SortedSetDocValues getTopLevelDocValues(SolrIndexSearcher searcher, SchemaField field) throws IOException {
+    final LeafReader leafReader = searcher.getSlowAtomicReader();
+    if (field.multiValued()) {
+      return DocValues.getSortedSet(leafReader, field.getName());
+    }
+    return DocValues.singleton(DocValues.getSorted(leafReader, field.getName()));
+  }
+
+  /**
+   * Builds the index by walking the values of both fields in order, or returns null if the "from" field has too
+   * many values to be indexed.
+   */
+  static JoinIndex build(SortedSetDocValues from, SortedSetDocValues to) throws IOException {
+    final long fromValueCount = from.getValueCount();
+    final long toValueCount = to.getValueCount();
+    if (fromValueCount > Integer.MAX_VALUE - 1) {
+      return null;
+    }
+    final PackedInts.Mutable toOrds = PackedInts.getMutable((int) fromValueCount,
+        PackedInts.bitsRequired(toValueCount), PackedInts.DEFAULT);
+    // the values are copied since both sides may share the buffer of the same docValues
+    final BytesRefBuilder fromTerm = new BytesRefBuilder();
+    long fromOrd = 0;
+    long toOrd = 0;
+    if (fromValueCount > 0) {
+      fromTerm.copyBytes(from.lookupOrd(0));
+    }
+    while (fromOrd < fromValueCount && toOrd < toValueCount) {
+      final int cmp = to.lookupOrd(toOrd).compareTo(fromTerm.get());
+      if (cmp < 0) {
+        toOrd++;
+      } else {
+        if (cmp == 0) {
+          toOrds.set((int) fromOrd, toOrd + 1);
+          toOrd++;
+        }
+        if (++fromOrd < fromValueCount) {
+          fromTerm.copyBytes(from.lookupOrd(fromOrd));
+        }
+      }
+    }
+    return new JoinIndex(toValueCount, toOrds);
+  }
+
+  /** Returns the "to" ordinal of the value of <code>fromOrd</code>, or -1 if the value is not in the "to" field. */
+  public long getToOrd(long fromOrd) {
+    return toOrds.get((int) fromOrd) - 1;
+  }
+
+  /** Returns the number of values of the "to" field. */
+  public long getToValueCount() {
+    return toValueCount;
+  }
+
+  /**
+   * Sets the "to" ordinals of the values in <code>fromOrds</code>.
+   * @return the number of "to" ordinals that were set
+   */
+  public long mapOrds(LongBitSet fromOrds, LongBitSet toOrdBitSet) {
+    long count = 0;
+    final long length = Math.min(fromOrds.length(), toOrds.size());
+    for (long fromOrd = length > 0 ? fromOrds.nextSetBit(0) : -1; fromOrd >= 0; ) {
+      final long toOrd = getToOrd(fromOrd);
+      if (toOrd >= 0) {
+        toOrdBitSet.set(toOrd);
+        count++;
+      }
+      fromOrd = fromOrd + 1 < length ? fromOrds.nextSetBit(fromOrd + 1) : -1;
+    }
+    return count;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + toOrds.ramBytesUsed();
+  }
+
+  /** Builds the join indexes of the old cache again with the new searcher. */
+  public static class Regenerator implements CacheRegenerator {
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache, SolrCache oldCache,
+                                  Object oldKey, Object oldVal) throws IOException {
+      // global ordinals are renumbered when segments change, so the old index can't be patched
+      final List<String> fields = (List<String>) oldKey;
+      final SchemaField fromField = newSearcher.getSchema().getFieldOrNull(fields.get(0));
+      final SchemaField toField = newSearcher.getSchema().getFieldOrNull(fields.get(1));
+      if (fromField != null && toField != null && supports(fromField, toField)) {
+        final JoinIndex index = build(getTopLevelDocValues(newSearcher, fromField), getTopLevelDocValues(newSearcher, toField));
+        if (index != null) {
+          newCache.put(oldKey, index);
+        }
+      }
+      return true;
+    }
+  }
+}
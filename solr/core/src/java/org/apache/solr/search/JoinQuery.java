@@ -29,6 +29,7 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiPostingsEnum;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.ConstantScoreScorer;
@@ -43,6 +44,7 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.StringHelper;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.SimpleOrderedMap;
@@ -53,6 +55,7 @@ import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.schema.TrieField;
 import org.apache.solr.search.join.GraphPointsCollector;
+import org.apache.solr.search.join.MultiValueTermOrdinalCollector;
 import org.apache.solr.util.RTimer;
 import org.apache.solr.util.RefCounted;
 
@@ -231,7 +234,8 @@ class JoinQuery extends Query {
       }
 
       if (!usePoints) {
-        return getDocSetEnumerate();
+        DocSet indexed = getDocSetWithIndex(fromSchemaField, toSchemaField);
+        return indexed != null ? indexed : getDocSetEnumerate();
       }
 
       // point fields
@@ -245,6 +249,47 @@ class JoinQuery extends Query {
 
 
 
+    /**
+     * Joins through the {@link JoinIndex} of the fields when the searcher keeps one: the "from" ordinals of the docs
+     * matching the query are translated to "to" ordinals, and the docs with any of those are collected.
+     * Returns null if there is no join index for the fields.
+     */
+    private DocSet getDocSetWithIndex(SchemaField fromSchemaField, SchemaField toSchemaField) throws IOException {
+      // self joins map ordinals to themselves, and are handled as well by enumerating terms
+      if (fromSearcher != toSearcher || fromField.equals(toField)) return null;
+      JoinIndex joinIndex = JoinIndex.get(toSearcher, fromField, toField);
+      if (joinIndex == null) return null;
+
+      DocSet fromSet = fromSearcher.getDocSet(q);
+      fromSetSize = fromSet.size();
+
+      SortedSetDocValues fromDocValues = JoinIndex.getTopLevelDocValues(fromSearcher, fromSchemaField);
+      LongBitSet fromOrds = new LongBitSet(fromDocValues.getValueCount());
+      DocSetUtil.collectSortedDocSet(fromSet, fromSearcher.getIndexReader(),
+          new MultiValueTermOrdinalCollector(fromField, fromDocValues, fromOrds));
+      fromTermHits = (int) fromOrds.cardinality();
+
+      LongBitSet toOrds = new LongBitSet(joinIndex.getToValueCount());
+      toTermHits = (int) joinIndex.mapOrds(fromOrds, toOrds);
+      if (toTermHits == 0) return DocSet.empty();
+
+      // need to use liveDocs here so we don't map to any deleted ones
+      Bits toLiveDocs = toSearcher.getLiveDocsBits();
+      SortedSetDocValues toDocValues = JoinIndex.getTopLevelDocValues(toSearcher, toSchemaField);
+      FixedBitSet resultBits = new FixedBitSet(toSearcher.maxDoc());
+      for (int doc = toDocValues.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = toDocValues.nextDoc()) {
+        if (toLiveDocs != null && !toLiveDocs.get(doc)) continue;
+        for (long ord = toDocValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = toDocValues.nextOrd()) {
+          if (toOrds.get(ord)) {
+            resultBits.set(doc);
+            resultListDocs++;
+            break;
+          }
+        }
+      }
+      return new BitDocSet(resultBits, (int) resultListDocs);
+    }
+
     public DocSet getDocSetEnumerate() throws IOException {
       FixedBitSet resultBits = null;
 
@@ -443,8 +488,15 @@ class JoinQuery extends Query {
       int[] docs = new int[sz];
       int pos = 0;
       for (DocSet set : resultList) {
-        System.arraycopy(((SortedIntDocSet)set).getDocs(), 0, docs, pos, set.size());
-        pos += set.size();
+        if (set instanceof SortedIntDocSet) {
+          System.arraycopy(((SortedIntDocSet)set).getDocs(), 0, docs, pos, set.size());
+          pos += set.size();
+        } else {
+          // small sets of the filter cache aren't always sorted int sets, e.g. off-heap or roaring ones
+          for (DocIterator it = set.iterator(); it.hasNext(); ) {
+            docs[pos++] = it.nextDoc();
+          }
+        }
       }
       Arrays.sort(docs);
       int[] dedup = new int[sz];
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A read-only bitset {@link DocSet} whose words live in a direct (off-heap) buffer.  It is a copy of
+ * a {@link BitDocSet} meant for long lived cache entries: the heap only holds this small object, so
+ * large filterCache entries no longer have to be promoted to and collected from the old generation.
+ * <p>
+ * Set operations against {@link BitDocSet} and other instances of this class read the words in
+ * place; results that are new sets are created on the heap as {@link BitDocSet}.
+ * <p>
+ * The native memory is released when this object is garbage collected, like any direct
+ * {@link ByteBuffer}; there is no explicit release since the set may still be in use by a request
+ * after it has been evicted from a cache.
+ *
+ * @see OffHeapFilterCache
+ */
+public class OffHeapBitDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OffHeapBitDocSet.class)
+      + RamUsageEstimator.shallowSizeOfInstance(ByteBuffer.class)
+      + RamUsageEstimator.shallowSizeOfInstance(LongBuffer.class);
+
+  private final LongBuffer words;
+  private final int numWords;
+  private final int numBits;
+  private final int size;
+  /** A shared heap copy for {@link #heapView()}, dropped by the GC when memory is short. */
+  private volatile SoftReference<BitDocSet> heapView;
+
+  private OffHeapBitDocSet(LongBuffer words, int numBits, int size) {
+    this.words = words;
+    this.numWords = FixedBitSet.bits2words(numBits);
+    this.numBits = numBits;
+    this.size = size;
+  }
+
+  /** Copies the bits of the given set to a newly allocated direct buffer. */
+  public static OffHeapBitDocSet copyOf(BitDocSet docs) {
+    final FixedBitSet bits = docs.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    final LongBuffer words = ByteBuffer.allocateDirect(numWords * Long.BYTES)
+        .order(ByteOrder.nativeOrder())
+        .asLongBuffer();
+    words.put(bits.getBits(), 0, numWords);
+    return new OffHeapBitDocSet(words, bits.length(), docs.size());
+  }
+
+  /** The number of bytes held outside of the heap by this set. */
+  public long offHeapBytesUsed() {
+    return (long) numWords * Long.BYTES;
+  }
+
+  /** Returns a heap copy of this set. */
+  public BitDocSet toBitDocSet() {
+    return new BitDocSet(getFixedBitSetClone(), size);
+  }
+
+  /**
+   * Returns a heap copy of this set that is shared between callers and must not be modified.  Sets
+   * that are repeatedly needed as a {@link FixedBitSet} (such as block join parent filters and graph
+   * roots) are then only copied once instead of on every request.  The copy is softly referenced so
+   * it doesn't pin heap memory that the collector needs back.
+   */
+  public BitDocSet heapView() {
+    final SoftReference<BitDocSet> ref = heapView;
+    BitDocSet view = ref == null ? null : ref.get();
+    if (view == null) {
+      // racing threads may each make a copy; they are equal and only one is kept
+      view = toBitDocSet();
+      heapView = new SoftReference<>(view);
+    }
+    return view;
+  }
+
+  private long word(int i) {
+    return words.get(i);
+  }
+
+  /** Same contract as {@link FixedBitSet#nextSetBit(int)}, but returns NO_MORE_DOCS past the end. */
+  private int nextSetBit(int index) {
+    if (index >= numBits) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    int i = index >> 6;
+    long word = word(i) >> index; // skip all the bits to the right of index
+    if (word != 0) {
+      return index + Long.numberOfTrailingZeros(word);
+    }
+    while (++i < numWords) {
+      word = word(i);
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  /** Returns the words of the other set if it is bitset based and can be read directly, else null. */
+  private static LongBuffer wordsOf(DocSet other) {
+    if (other instanceof OffHeapBitDocSet) {
+      return ((OffHeapBitDocSet) other).words;
+    } else if (other instanceof BitDocSet) {
+      final FixedBitSet bits = ((BitDocSet) other).getBits();
+      return LongBuffer.wrap(bits.getBits(), 0, FixedBitSet.bits2words(bits.length())).slice();
+    }
+    return null;
+  }
+
+  private static int numWords(DocSet other) {
+    if (other instanceof OffHeapBitDocSet) {
+      return ((OffHeapBitDocSet) other).numWords;
+    }
+    return FixedBitSet.bits2words(((BitDocSet) other).getBits().length());
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    return doc < numBits && (word(doc >> 6) & (1L << doc)) != 0;
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private int pos = nextSetBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        pos = old + 1 >= numBits ? DocIdSetIterator.NO_MORE_DOCS : nextSetBit(old + 1);
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocIdSetIterator iterator(LeafReaderContext context) {
+    final int base;
+    final int max;
+    if (context.isTopLevel) {
+      if (size == 0) {
+        return null;
+      }
+      base = 0;
+      max = numBits;
+    } else {
+      final int maxDoc = context.reader().maxDoc();
+      if (maxDoc < 1) {
+        return null;
+      }
+      base = context.docBase;
+      max = Math.min(numBits, base + maxDoc); // one past the max doc in this segment.
+    }
+
+    return new DocIdSetIterator() {
+      int adjustedDoc = -1;
+
+      @Override
+      public int docID() {
+        return adjustedDoc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(adjustedDoc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+        int adjusted = target + base;
+        if (adjusted >= max) {
+          return adjustedDoc = NO_MORE_DOCS;
+        }
+        int pos = nextSetBit(adjusted);
+        return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        // pro-rate the size of the set for the segment
+        return numBits == 0 ? 0 : (long) (size * ((max - base) / (double) numBits));
+      }
+    };
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    final LongBuffer otherWords = wordsOf(other);
+    if (otherWords == null) {
+      // small sets are better at this; they probe us with exists()
+      return other.intersection(this);
+    }
+    final FixedBitSet result = new FixedBitSet(numBits);
+    final long[] resultWords = result.getBits();
+    final int n = Math.min(numWords, numWords(other));
+    for (int i = 0; i < n; i++) {
+      resultWords[i] = word(i) & otherWords.get(i);
+    }
+    return new BitDocSet(result);
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    final LongBuffer otherWords = wordsOf(other);
+    if (otherWords == null) {
+      return other.intersectionSize(this);
+    }
+    long count = 0;
+    final int n = Math.min(numWords, numWords(other));
+    for (int i = 0; i < n; i++) {
+      count += Long.bitCount(word(i) & otherWords.get(i));
+    }
+    return (int) count;
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    final LongBuffer otherWords = wordsOf(other);
+    if (otherWords == null) {
+      return other.intersects(this);
+    }
+    final int n = Math.min(numWords, numWords(other));
+    for (int i = 0; i < n; i++) {
+      if ((word(i) & otherWords.get(i)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int andNotSize(DocSet other) {
+    final LongBuffer otherWords = wordsOf(other);
+    if (otherWords == null) {
+      return super.andNotSize(other);
+    }
+    long count = 0;
+    final int n = Math.min(numWords, numWords(other));
+    for (int i = 0; i < n; i++) {
+      count += Long.bitCount(word(i) & ~otherWords.get(i));
+    }
+    for (int i = n; i < numWords; i++) {
+      count += Long.bitCount(word(i));
+    }
+    return (int) count;
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    final FixedBitSet newbits = getFixedBitSetClone();
+    if (other instanceof BitDocSet) {
+      newbits.andNot(((BitDocSet) other).getBits());
+    } else if (other instanceof OffHeapBitDocSet) {
+      ((OffHeapBitDocSet) other).removeAllFrom(newbits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        if (doc < newbits.length()) {
+          newbits.clear(doc);
+        }
+      }
+    }
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    FixedBitSet newbits = getFixedBitSetClone();
+    if (other instanceof BitDocSet || other instanceof OffHeapBitDocSet) {
+      newbits = FixedBitSet.ensureCapacity(newbits, numWords(other) << 6);
+      other.addAllTo(newbits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        newbits = FixedBitSet.ensureCapacity(newbits, doc);
+        newbits.set(doc);
+      }
+    }
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    final long[] targetWords = target.getBits();
+    assert numWords <= targetWords.length : "target is too small";
+    final int n = Math.min(numWords, targetWords.length);
+    for (int i = 0; i < n; i++) {
+      targetWords[i] |= word(i);
+    }
+  }
+
+  /** Clears all the docs of this set from the target. */
+  void removeAllFrom(FixedBitSet target) {
+    final long[] targetWords = target.getBits();
+    final int n = Math.min(numWords, targetWords.length);
+    for (int i = 0; i < n; i++) {
+      targetWords[i] &= ~word(i);
+    }
+  }
+
+  /** Returns a modifiable heap copy, as callers of clone may modify the result. */
+  @Override
+  public DocSet clone() {
+    return toBitDocSet();
+  }
+
+  @Override
+  public Bits getBits() {
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return (word(index >> 6) & (1L << index)) != 0;
+      }
+
+      @Override
+      public int length() {
+        return numBits;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    final FixedBitSet bits = new FixedBitSet(numBits);
+    // duplicate() so that concurrent readers don't share a position
+    words.duplicate().get(bits.getBits(), 0, numWords);
+    return bits;
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return new Filter() {
+      @Override
+      public DocIdSet getDocIdSet(final LeafReaderContext context, final Bits acceptDocs) {
+        // all Solr DocSets that are used as filters only include live docs
+        final Bits acceptDocs2 = acceptDocs == null ? null : (context.reader().getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+        return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+          @Override
+          public DocIdSetIterator iterator() {
+            return OffHeapBitDocSet.this.iterator(context);
+          }
+
+          @Override
+          public long ramBytesUsed() {
+            return OffHeapBitDocSet.this.ramBytesUsed();
+          }
+
+          @Override
+          public Bits bits() {
+            final int base = context.docBase;
+            final int length = context.reader().maxDoc();
+
+            return new Bits() {
+              @Override
+              public boolean get(int index) {
+                return exists(index + base);
+              }
+
+              @Override
+              public int length() {
+                return length;
+              }
+            };
+          }
+
+        }, acceptDocs2);
+      }
+
+      private OffHeapBitDocSet docSet() {
+        return OffHeapBitDocSet.this;
+      }
+
+      @Override
+      public String toString(String field) {
+        return "OffHeapBitSetDocTopFilter";
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        return sameClassAs(other) &&
+               docSet() == getClass().cast(other).docSet();
+      }
+
+      @Override
+      public int hashCode() {
+        return classHash() * 31 + System.identityHashCode(docSet());
+      }
+    };
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    // includes the off-heap words so that RAM based cache eviction (maxRamMB) accounts for them
+    return BASE_RAM_BYTES_USED + offHeapBytesUsed();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return "OffHeapBitDocSet{" +
+        "size=" + size() +
+        ",offHeapUsed=" + RamUsageEstimator.humanReadableUnits(offHeapBytesUsed()) +
+        '}';
+  }
+}
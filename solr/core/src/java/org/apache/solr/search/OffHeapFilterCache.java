@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.function.Function;
+
+import org.apache.lucene.search.Query;
+
+/**
+ * A {@link CaffeineCache} for the filterCache that moves {@link BitDocSet} values off-heap (see
+ * {@link OffHeapBitDocSet}) as they are inserted.  Small {@link SortedIntDocSet} values stay on the
+ * heap.  The off-heap bytes are included in each entry's weight, so <code>maxRamMB</code> bounds
+ * the total memory used by the cache, on and off heap.
+ * <p>
+ * Example configuration:
+ * <pre class="prettyprint">
+ * &lt;filterCache class="solr.OffHeapFilterCache" maxRamMB="4096" autowarmCount="0"/&gt;
+ * </pre>
+ * <p>
+ * Direct memory is released when evicted entries are garbage collected, so
+ * <code>-XX:MaxDirectMemorySize</code> should leave some headroom above <code>maxRamMB</code>.
+ */
+public class OffHeapFilterCache extends CaffeineCache<Query, DocSet> {
+
+  private static DocSet toOffHeap(DocSet docs) {
+    return docs instanceof BitDocSet ? OffHeapBitDocSet.copyOf((BitDocSet) docs) : docs;
+  }
+
+  @Override
+  public DocSet put(Query key, DocSet value) {
+    return super.put(key, toOffHeap(value));
+  }
+
+  @Override
+  public DocSet computeIfAbsent(Query key, Function<? super Query, ? extends DocSet> mappingFunction) {
+    return super.computeIfAbsent(key, k -> {
+      DocSet value = mappingFunction.apply(k);
+      return value == null ? null : toOffHeap(value);
+    });
+  }
+
+  @Override
+  public String getName() {
+    return OffHeapFilterCache.class.getName();
+  }
+
+  @Override
+  public String getDescription() {
+    return "Off-heap " + super.getDescription();
+  }
+}
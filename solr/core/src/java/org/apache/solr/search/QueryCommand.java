@@ -231,6 +231,18 @@ public class QueryCommand {
     }
   }
 
+  public boolean getMultiThreaded() {
+    return (flags & SolrIndexSearcher.MULTI_THREADED) != 0;
+  }
+
+  public QueryCommand setMultiThreaded(boolean multiThreaded) {
+    if (multiThreaded) {
+      return setFlags(SolrIndexSearcher.MULTI_THREADED);
+    } else {
+      return clearFlags(SolrIndexSearcher.MULTI_THREADED);
+    }
+  }
+
   public void setQueryID(String queryID) {
     this.queryID = queryID;
   }
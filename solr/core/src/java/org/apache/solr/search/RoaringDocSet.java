@@ -0,0 +1,886 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A compressed {@link DocSet} in the style of Roaring bitmaps: the doc id space is split in blocks
+ * of 64K docs and each non empty block is stored in whichever container is smallest for its
+ * contents, a sorted array of 16 bit values, a 64K bit bitmap, or a list of runs.
+ * <p>
+ * Sets of medium density, too large for a {@link SortedIntDocSet} to be compact and too sparse for
+ * a {@link BitDocSet}, usually take several times less memory in this form, which makes it a good
+ * fit for cached sets.  See {@link DocSetUtil#compress(DocSet, int)}.
+ * <p>
+ * Instances are immutable; build them with a {@link Builder} or {@link #from(DocSet, int)}.
+ *
+ * @lucene.experimental
+ */
+public class RoaringDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class)
+      + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  /** Number of words in a bitmap container */
+  static final int BLOCK_WORDS = BLOCK_SIZE >>> 6;
+
+  private final Container[] containers; // indexed by block number, null for empty blocks
+  private final int maxDoc;
+  private final int size;
+  private final long ramBytesUsed;
+
+  private RoaringDocSet(Container[] containers, int maxDoc, int size) {
+    this.containers = containers;
+    this.maxDoc = maxDoc;
+    this.size = size;
+    long ram = BASE_RAM_BYTES_USED + (long) containers.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    for (Container c : containers) {
+      if (c != null) {
+        ram += c.ramBytesUsed();
+      }
+    }
+    this.ramBytesUsed = ram;
+  }
+
+  private static int numBlocks(int maxDoc) {
+    return (maxDoc + BLOCK_MASK) >>> BLOCK_SHIFT;
+  }
+
+  /** Builds a compressed copy of the given set. */
+  public static RoaringDocSet from(DocSet docs, int maxDoc) {
+    if (docs instanceof RoaringDocSet) {
+      return (RoaringDocSet) docs;
+    }
+    if (docs instanceof BitDocSet) {
+      // convert word blocks directly instead of going doc by doc
+      final long[] words = ((BitDocSet) docs).getBits().getBits();
+      final Container[] containers = new Container[numBlocks(maxDoc)];
+      final long[] scratch = new long[BLOCK_WORDS];
+      int size = 0;
+      for (int block = 0; block < containers.length; block++) {
+        final int from = block * BLOCK_WORDS;
+        if (from >= words.length) break;
+        final int len = Math.min(BLOCK_WORDS, words.length - from);
+        System.arraycopy(words, from, scratch, 0, len);
+        Arrays.fill(scratch, len, BLOCK_WORDS, 0L);
+        final int cardinality = cardinality(scratch);
+        if (cardinality > 0) {
+          containers[block] = Container.of(scratch, cardinality);
+          size += cardinality;
+        }
+      }
+      return new RoaringDocSet(containers, maxDoc, size);
+    }
+    final Builder builder = new Builder(maxDoc);
+    final DocIterator iter = docs.iterator();
+    while (iter.hasNext()) {
+      builder.add(iter.nextDoc());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Builds a {@link RoaringDocSet} from docs added in increasing order.  A builder may only be used
+   * to build a single set.
+   */
+  public static final class Builder {
+    private final int maxDoc;
+    private final Container[] containers;
+    private final long[] scratch = new long[BLOCK_WORDS];
+    private int currentBlock = -1;
+    private int blockCardinality;
+    private int lastDoc = -1;
+    private int size;
+
+    public Builder(int maxDoc) {
+      this.maxDoc = maxDoc;
+      this.containers = new Container[numBlocks(maxDoc)];
+    }
+
+    /** Adds a doc, which must be greater than all previously added docs and less than maxDoc. */
+    public void add(int doc) {
+      assert doc > lastDoc && doc < maxDoc : "doc=" + doc + " lastDoc=" + lastDoc + " maxDoc=" + maxDoc;
+      final int block = doc >>> BLOCK_SHIFT;
+      if (block != currentBlock) {
+        flush();
+        currentBlock = block;
+      }
+      scratch[(doc & BLOCK_MASK) >>> 6] |= 1L << doc;
+      blockCardinality++;
+      lastDoc = doc;
+    }
+
+    private void flush() {
+      if (blockCardinality > 0) {
+        containers[currentBlock] = Container.of(scratch, blockCardinality);
+        size += blockCardinality;
+        Arrays.fill(scratch, 0L);
+        blockCardinality = 0;
+      }
+    }
+
+    public RoaringDocSet build() {
+      flush();
+      return new RoaringDocSet(containers, maxDoc, size);
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    final int block = doc >>> BLOCK_SHIFT;
+    if (block >= containers.length) {
+      return false;
+    }
+    final Container c = containers[block];
+    return c != null && c.contains(doc & BLOCK_MASK);
+  }
+
+  /** Returns the first doc in the set that is &gt;= the target, or NO_MORE_DOCS. */
+  private int nextDoc(int target) {
+    int block = target >>> BLOCK_SHIFT;
+    int low = target & BLOCK_MASK;
+    for (; block < containers.length; block++, low = 0) {
+      final Container c = containers[block];
+      if (c != null) {
+        final int v = c.next(low);
+        if (v >= 0) {
+          return (block << BLOCK_SHIFT) | v;
+        }
+      }
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private int pos = nextDoc(0);
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public int nextDoc() {
+        final int old = pos;
+        pos = RoaringDocSet.this.nextDoc(old + 1);
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocIdSetIterator iterator(LeafReaderContext context) {
+    final int base;
+    final int max;
+    if (context.isTopLevel) {
+      if (size == 0) {
+        return null;
+      }
+      base = 0;
+      max = maxDoc;
+    } else {
+      final int segMaxDoc = context.reader().maxDoc();
+      if (segMaxDoc < 1) {
+        return null;
+      }
+      base = context.docBase;
+      max = base + segMaxDoc; // one past the max doc in this segment.
+    }
+
+    return new DocIdSetIterator() {
+      int adjustedDoc = -1;
+
+      @Override
+      public int docID() {
+        return adjustedDoc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(adjustedDoc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+        final int adjusted = target + base;
+        if (adjusted >= max) {
+          return adjustedDoc = NO_MORE_DOCS;
+        }
+        final int pos = RoaringDocSet.this.nextDoc(adjusted);
+        return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        // pro-rate the size of the set for the segment
+        return maxDoc == 0 ? 0 : (long) (size * ((max - base) / (double) maxDoc));
+      }
+    };
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final Container[] otherContainers = ((RoaringDocSet) other).containers;
+      final int n = Math.min(containers.length, otherContainers.length);
+      long count = 0;
+      for (int block = 0; block < n; block++) {
+        final Container a = containers[block];
+        final Container b = otherContainers[block];
+        if (a != null && b != null) {
+          count += a.intersectionCount(b);
+        }
+      }
+      return (int) count;
+    } else if (other instanceof BitDocSet) {
+      final long[] words = ((BitDocSet) other).getBits().getBits();
+      long count = 0;
+      for (int block = 0; block < containers.length; block++) {
+        final Container c = containers[block];
+        if (c != null) {
+          count += c.intersectionCount(words, block * BLOCK_WORDS);
+        }
+      }
+      return (int) count;
+    } else if (other instanceof SortedIntDocSet) {
+      // the small set probes us
+      return other.intersectionSize(this);
+    }
+    int count = 0;
+    for (DocIterator iter = iterator(); iter.hasNext(); ) {
+      if (other.exists(iter.nextDoc())) count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof SortedIntDocSet) {
+      return other.intersects(this);
+    } else if (other instanceof RoaringDocSet || other instanceof BitDocSet) {
+      return intersectionSize(other) > 0;
+    }
+    for (DocIterator iter = iterator(); iter.hasNext(); ) {
+      if (other.exists(iter.nextDoc())) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof SortedIntDocSet) {
+      // the result is at most as large as the small set, which probes us
+      return other.intersection(this);
+    }
+    return combine(other, true);
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other.size() == 0) {
+      return this;
+    }
+    return combine(other, false);
+  }
+
+  /** Intersection (and == true) or difference (and == false) with the other set, block by block. */
+  private RoaringDocSet combine(DocSet other, boolean and) {
+    final Container[] result = new Container[containers.length];
+    final long[] scratch = new long[BLOCK_WORDS];
+    final long[] otherScratch = new long[BLOCK_WORDS];
+    final Container[] otherContainers = other instanceof RoaringDocSet ? ((RoaringDocSet) other).containers : null;
+    final long[] otherWords = other instanceof BitDocSet ? ((BitDocSet) other).getBits().getBits() : null;
+    int size = 0;
+    for (int block = 0; block < containers.length; block++) {
+      final Container c = containers[block];
+      if (c == null) continue;
+      c.toBitmap(scratch);
+      if (otherContainers != null) {
+        final Container o = block < otherContainers.length ? otherContainers[block] : null;
+        if (o == null) {
+          Arrays.fill(otherScratch, 0L);
+        } else {
+          o.toBitmap(otherScratch);
+        }
+      } else if (otherWords != null) {
+        final int from = block * BLOCK_WORDS;
+        final int len = Math.max(0, Math.min(BLOCK_WORDS, otherWords.length - from));
+        if (len > 0) {
+          System.arraycopy(otherWords, from, otherScratch, 0, len);
+        }
+        Arrays.fill(otherScratch, len, BLOCK_WORDS, 0L);
+      } else {
+        // random access into the other set
+        Arrays.fill(otherScratch, 0L);
+        final int base = block << BLOCK_SHIFT;
+        for (int v = c.next(0); v >= 0; v = v + 1 < BLOCK_SIZE ? c.next(v + 1) : -1) {
+          if (other.exists(base | v)) {
+            otherScratch[v >>> 6] |= 1L << v;
+          }
+        }
+      }
+      int cardinality = 0;
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        final long w = and ? scratch[i] & otherScratch[i] : scratch[i] & ~otherScratch[i];
+        scratch[i] = w;
+        cardinality += Long.bitCount(w);
+      }
+      if (cardinality > 0) {
+        result[block] = Container.of(scratch, cardinality);
+        size += cardinality;
+      }
+    }
+    return new RoaringDocSet(result, maxDoc, size);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    FixedBitSet newbits = getFixedBitSetClone();
+    if (other instanceof BitDocSet) {
+      final FixedBitSet otherBits = ((BitDocSet) other).getBits();
+      newbits = FixedBitSet.ensureCapacity(newbits, otherBits.length());
+      newbits.or(otherBits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        newbits = FixedBitSet.ensureCapacity(newbits, doc);
+        newbits.set(doc);
+      }
+    }
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    final long[] words = target.getBits();
+    for (int block = 0; block < containers.length; block++) {
+      final Container c = containers[block];
+      if (c != null) {
+        c.orInto(words, block * BLOCK_WORDS);
+      }
+    }
+  }
+
+  /** Returns this instance, which is immutable. */
+  @Override
+  public DocSet clone() {
+    return this;
+  }
+
+  @Override
+  public Bits getBits() {
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return exists(index);
+      }
+
+      @Override
+      public int length() {
+        return maxDoc;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    final FixedBitSet bits = new FixedBitSet(maxDoc);
+    addAllTo(bits);
+    return bits;
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return new Filter() {
+      @Override
+      public DocIdSet getDocIdSet(final LeafReaderContext context, final Bits acceptDocs) {
+        // all Solr DocSets that are used as filters only include live docs
+        final Bits acceptDocs2 = acceptDocs == null ? null : (context.reader().getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+        return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+          @Override
+          public DocIdSetIterator iterator() {
+            return RoaringDocSet.this.iterator(context);
+          }
+
+          @Override
+          public long ramBytesUsed() {
+            return RoaringDocSet.this.ramBytesUsed();
+          }
+
+          @Override
+          public Bits bits() {
+            final int base = context.docBase;
+            final int length = context.reader().maxDoc();
+
+            return new Bits() {
+              @Override
+              public boolean get(int index) {
+                return exists(index + base);
+              }
+
+              @Override
+              public int length() {
+                return length;
+              }
+            };
+          }
+
+        }, acceptDocs2);
+      }
+
+      private RoaringDocSet docSet() {
+        return RoaringDocSet.this;
+      }
+
+      @Override
+      public String toString(String field) {
+        return "RoaringDocTopFilter";
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        return sameClassAs(other) &&
+               docSet() == getClass().cast(other).docSet();
+      }
+
+      @Override
+      public int hashCode() {
+        return classHash() * 31 + System.identityHashCode(docSet());
+      }
+    };
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    int arrays = 0, bitmaps = 0, runs = 0;
+    for (Container c : containers) {
+      if (c instanceof ArrayContainer) arrays++;
+      else if (c instanceof BitmapContainer) bitmaps++;
+      else if (c instanceof RunContainer) runs++;
+    }
+    return "RoaringDocSet{" +
+        "size=" + size +
+        ",containers(array/bitmap/run)=" + arrays + "/" + bitmaps + "/" + runs +
+        ",ramUsed=" + RamUsageEstimator.humanReadableUnits(ramBytesUsed()) +
+        '}';
+  }
+
+  //////////////////////// bitmap helpers //////////////////////
+
+  static int cardinality(long[] bitmap) {
+    int cardinality = 0;
+    for (long w : bitmap) {
+      cardinality += Long.bitCount(w);
+    }
+    return cardinality;
+  }
+
+  /** Number of runs of consecutive set bits. */
+  static int countRuns(long[] bitmap) {
+    int runs = 0;
+    long carry = 0; // top bit of the previous word
+    for (long w : bitmap) {
+      runs += Long.bitCount(w & ~((w << 1) | carry));
+      carry = w >>> 63;
+    }
+    return runs;
+  }
+
+  /** First set bit &gt;= index in the block bitmap, or -1 */
+  static int nextSetBit(long[] bitmap, int index) {
+    int i = index >>> 6;
+    long word = bitmap[i] & (-1L << index);
+    while (true) {
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++i == BLOCK_WORDS) {
+        return -1;
+      }
+      word = bitmap[i];
+    }
+  }
+
+  /** First clear bit &gt;= index in the block bitmap, or BLOCK_SIZE */
+  static int nextClearBit(long[] bitmap, int index) {
+    int i = index >>> 6;
+    long word = ~bitmap[i] & (-1L << index);
+    while (true) {
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++i == BLOCK_WORDS) {
+        return BLOCK_SIZE;
+      }
+      word = ~bitmap[i];
+    }
+  }
+
+  /** Sets the bits in [from, to) of words starting at word wordOffset, ignoring words past the end. */
+  static void setRange(long[] words, int wordOffset, int from, int to) {
+    if (to <= from) return;
+    final int startWord = wordOffset + (from >>> 6);
+    final int endWord = wordOffset + ((to - 1) >>> 6);
+    if (startWord >= words.length) return;
+    final long startmask = -1L << from;
+    final long endmask = -1L >>> -to;
+    if (startWord == endWord) {
+      words[startWord] |= (startmask & endmask);
+      return;
+    }
+    words[startWord] |= startmask;
+    Arrays.fill(words, startWord + 1, Math.min(endWord, words.length), -1L);
+    if (endWord < words.length) {
+      words[endWord] |= endmask;
+    }
+  }
+
+  /** Counts the bits set in [from, to) of words starting at word wordOffset. */
+  static int countRange(long[] words, int wordOffset, int from, int to) {
+    if (to <= from) return 0;
+    final int startWord = wordOffset + (from >>> 6);
+    final int endWord = wordOffset + ((to - 1) >>> 6);
+    if (startWord >= words.length) return 0;
+    final long startmask = -1L << from;
+    final long endmask = -1L >>> -to;
+    if (startWord == endWord) {
+      return Long.bitCount(words[startWord] & startmask & endmask);
+    }
+    int count = Long.bitCount(words[startWord] & startmask);
+    final int last = Math.min(endWord, words.length);
+    for (int i = startWord + 1; i < last; i++) {
+      count += Long.bitCount(words[i]);
+    }
+    if (endWord < words.length) {
+      count += Long.bitCount(words[endWord] & endmask);
+    }
+    return count;
+  }
+
+  //////////////////////// containers //////////////////////
+
+  /** The docs of one block, as values in [0, BLOCK_SIZE). */
+  abstract static class Container {
+
+    /** Picks the smallest container for the given block bitmap, which is copied. */
+    static Container of(long[] bitmap, int cardinality) {
+      final long arrayBytes = (long) cardinality * Character.BYTES;
+      final long runBytes = (long) countRuns(bitmap) * 2 * Character.BYTES;
+      final long bitmapBytes = (long) BLOCK_WORDS * Long.BYTES;
+      if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+        return RunContainer.of(bitmap, cardinality);
+      } else if (arrayBytes < bitmapBytes) {
+        return ArrayContainer.of(bitmap, cardinality);
+      }
+      return new BitmapContainer(bitmap.clone(), cardinality);
+    }
+
+    abstract int cardinality();
+
+    abstract boolean contains(int value);
+
+    /** Returns the smallest value &gt;= target, or -1 */
+    abstract int next(int target);
+
+    /** Writes the values to a block bitmap, overwriting its contents. */
+    abstract void toBitmap(long[] bitmap);
+
+    /** Sets the values in the given words, where the block starts at word wordOffset. */
+    abstract void orInto(long[] words, int wordOffset);
+
+    /** Number of values that are set in the given words, where the block starts at word wordOffset. */
+    abstract int intersectionCount(long[] words, int wordOffset);
+
+    abstract long ramBytesUsed();
+
+    int intersectionCount(Container other) {
+      if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+        return other.intersectionCount(((BitmapContainer) this).bitmap, 0);
+      }
+      // probe the larger container with the values of the smaller
+      final Container small = cardinality() <= other.cardinality() ? this : other;
+      final Container large = small == this ? other : this;
+      int count = 0;
+      for (int v = small.next(0); v >= 0; v = v + 1 < BLOCK_SIZE ? small.next(v + 1) : -1) {
+        if (large.contains(v)) count++;
+      }
+      return count;
+    }
+  }
+
+  static final class ArrayContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ArrayContainer.class);
+
+    final char[] values; // sorted
+
+    ArrayContainer(char[] values) {
+      this.values = values;
+    }
+
+    static ArrayContainer of(long[] bitmap, int cardinality) {
+      final char[] values = new char[cardinality];
+      int n = 0;
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        long w = bitmap[i];
+        while (w != 0) {
+          values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+          w &= w - 1;
+        }
+      }
+      assert n == cardinality;
+      return new ArrayContainer(values);
+    }
+
+    @Override
+    int cardinality() {
+      return values.length;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return Arrays.binarySearch(values, (char) value) >= 0;
+    }
+
+    @Override
+    int next(int target) {
+      final int idx = Arrays.binarySearch(values, (char) target);
+      if (idx >= 0) return target;
+      final int ins = -idx - 1;
+      return ins < values.length ? values[ins] : -1;
+    }
+
+    @Override
+    void toBitmap(long[] bitmap) {
+      Arrays.fill(bitmap, 0L);
+      for (char v : values) {
+        bitmap[v >>> 6] |= 1L << v;
+      }
+    }
+
+    @Override
+    void orInto(long[] words, int wordOffset) {
+      for (char v : values) {
+        final int idx = wordOffset + (v >>> 6);
+        if (idx >= words.length) break;
+        words[idx] |= 1L << v;
+      }
+    }
+
+    @Override
+    int intersectionCount(long[] words, int wordOffset) {
+      int count = 0;
+      for (char v : values) {
+        final int idx = wordOffset + (v >>> 6);
+        if (idx >= words.length) break;
+        if ((words[idx] & (1L << v)) != 0) count++;
+      }
+      return count;
+    }
+
+    @Override
+    long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(values);
+    }
+  }
+
+  static final class BitmapContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BitmapContainer.class);
+
+    final long[] bitmap; // BLOCK_WORDS words
+    final int cardinality;
+
+    BitmapContainer(long[] bitmap, int cardinality) {
+      this.bitmap = bitmap;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return (bitmap[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int next(int target) {
+      return nextSetBit(bitmap, target);
+    }
+
+    @Override
+    void toBitmap(long[] dest) {
+      System.arraycopy(bitmap, 0, dest, 0, BLOCK_WORDS);
+    }
+
+    @Override
+    void orInto(long[] words, int wordOffset) {
+      final int n = Math.min(BLOCK_WORDS, words.length - wordOffset);
+      for (int i = 0; i < n; i++) {
+        words[wordOffset + i] |= bitmap[i];
+      }
+    }
+
+    @Override
+    int intersectionCount(long[] words, int wordOffset) {
+      final int n = Math.min(BLOCK_WORDS, words.length - wordOffset);
+      int count = 0;
+      for (int i = 0; i < n; i++) {
+        count += Long.bitCount(words[wordOffset + i] & bitmap[i]);
+      }
+      return count;
+    }
+
+    @Override
+    long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(bitmap);
+    }
+  }
+
+  static final class RunContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RunContainer.class);
+
+    final char[] starts; // sorted
+    final char[] lengths; // length - 1 of each run, so that a run can cover the whole block
+    final int cardinality;
+
+    RunContainer(char[] starts, char[] lengths, int cardinality) {
+      this.starts = starts;
+      this.lengths = lengths;
+      this.cardinality = cardinality;
+    }
+
+    static RunContainer of(long[] bitmap, int cardinality) {
+      final int numRuns = countRuns(bitmap);
+      final char[] starts = new char[numRuns];
+      final char[] lengths = new char[numRuns];
+      int r = 0;
+      int start = nextSetBit(bitmap, 0);
+      while (start >= 0) {
+        final int end = nextClearBit(bitmap, start); // exclusive
+        starts[r] = (char) start;
+        lengths[r] = (char) (end - start - 1);
+        r++;
+        start = end < BLOCK_SIZE ? nextSetBit(bitmap, end) : -1;
+      }
+      assert r == numRuns;
+      return new RunContainer(starts, lengths, cardinality);
+    }
+
+    /** Index of the last run starting at or before value, or -1 */
+    private int runFor(int value) {
+      final int idx = Arrays.binarySearch(starts, (char) value);
+      return idx >= 0 ? idx : -idx - 2;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+      final int r = runFor(value);
+      return r >= 0 && value <= starts[r] + lengths[r];
+    }
+
+    @Override
+    int next(int target) {
+      final int r = runFor(target);
+      if (r >= 0 && target <= starts[r] + lengths[r]) {
+        return target;
+      }
+      return r + 1 < starts.length ? starts[r + 1] : -1;
+    }
+
+    @Override
+    void toBitmap(long[] bitmap) {
+      Arrays.fill(bitmap, 0L);
+      orInto(bitmap, 0);
+    }
+
+    @Override
+    void orInto(long[] words, int wordOffset) {
+      for (int r = 0; r < starts.length; r++) {
+        setRange(words, wordOffset, starts[r], starts[r] + lengths[r] + 1);
+      }
+    }
+
+    @Override
+    int intersectionCount(long[] words, int wordOffset) {
+      int count = 0;
+      for (int r = 0; r < starts.length; r++) {
+        count += countRange(words, wordOffset, starts[r], starts[r] + lengths[r] + 1);
+      }
+      return count;
+    }
+
+    @Override
+    long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(starts) + RamUsageEstimator.sizeOf(lengths);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * A filter cache at the level of index segments, shared by all the searchers of a core.  The docs matching a query
+ * in a segment are cached by the segment's core cache key, so a new searcher only computes its filters on the
+ * segments that are new since the previous searcher, and assembles the rest from the cache.
+ * <p>
+ * Cached sets are computed without regard to deletions, which are applied when they are assembled for a searcher,
+ * so a segment's entries remain valid as it gets new deletes.  Entries of a segment are removed when the segment is
+ * closed.  Only queries whose {@link Weight#isCacheable(LeafReaderContext)} allows it are cached per segment.
+ * <p>
+ * Configured in the &lt;query&gt; section of solrconfig.xml as <code>segmentFilterCache</code>, with the same
+ * options as the <code>filterCache</code>.  Autowarming does not apply.
+ *
+ * @lucene.experimental
+ */
+public class SegmentFilterCache implements Closeable {
+  /** The cache key: a query in a segment */
+  static final class Key implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+    final IndexReader.CacheKey segment;
+    final Query query;
+    private final int hash;
+
+    Key(IndexReader.CacheKey segment, Query query) {
+      this.segment = segment;
+      this.query = query;
+      this.hash = 31 * segment.hashCode() + query.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return segment == other.segment && query.equals(other.query);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOfObject(query, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED);
+    }
+
+    @Override
+    public String toString() {
+      return query + "@" + Integer.toHexString(System.identityHashCode(segment));
+    }
+  }
+
+  private final SolrCache<Key, DocSet> cache;
+  // the cached keys of each segment, to remove them when the segment is closed; evicted keys are dropped
+  private final ConcurrentMap<IndexReader.CacheKey, Set<Key>> keysBySegment = new ConcurrentHashMap<>();
+
+  public SegmentFilterCache(SolrCache<Key, DocSet> cache) {
+    this.cache = cache;
+    if (cache instanceof CaffeineCache) {
+      ((CaffeineCache<Key, DocSet>) cache).setEvictionListener(this::onEvicted);
+    }
+  }
+
+  /**
+   * Creates the cache from its configuration, or returns null if the cache can't be created.
+   */
+  @SuppressWarnings({"unchecked"})
+  public static SegmentFilterCache create(CacheConfig config, SolrMetricsContext parentContext) {
+    SolrCache<Key, DocSet> cache = config.newInstance();
+    if (cache == null) {
+      return null;
+    }
+    cache.initializeMetrics(parentContext, cache.name());
+    return new SegmentFilterCache(cache);
+  }
+
+  public SolrCache<Key, DocSet> getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the live docs of the searcher matching the (positive) query, using and populating the per segment
+   * sets of the cache.
+   */
+  public DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException {
+    // keyed by the rewritten query, like Lucene's LRUQueryCache: rewrites may depend on the whole index (e.g. the
+    // terms a fuzzy query expands to), so sets computed from another searcher's rewrite must not be reused
+    final Query rewritten = searcher.rewrite(query);
+    final Weight weight = searcher.createWeight(rewritten, ScoreMode.COMPLETE_NO_SCORES, 1);
+    final int maxDoc = searcher.maxDoc();
+    final FixedBitSet bits = new FixedBitSet(maxDoc);
+    int size = 0;
+
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      final IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+      final boolean cacheable = cacheHelper != null && weight.isCacheable(leaf);
+      final Key key = cacheable ? new Key(cacheHelper.getKey(), rewritten) : null;
+
+      DocSet leafDocs = cacheable ? cache.get(key) : null;
+      if (leafDocs == null) {
+        leafDocs = collect(weight, leaf);
+        if (cacheable) {
+          put(cacheHelper, key, leafDocs);
+        }
+      }
+
+      // add the live docs of the segment
+      final Bits liveDocs = leaf.reader().getLiveDocs();
+      final int base = leaf.docBase;
+      for (DocIterator iter = leafDocs.iterator(); iter.hasNext(); ) {
+        final int doc = iter.nextDoc();
+        if (liveDocs == null || liveDocs.get(doc)) {
+          bits.set(base + doc);
+          size++;
+        }
+      }
+    }
+
+    final BitDocSet docSet = new BitDocSet(bits, size);
+    return DocSetUtil.getDocSet(size < DocSetUtil.smallSetSize(maxDoc) ? DocSetUtil.toSmallSet(docSet) : docSet, searcher);
+  }
+
+  /** All the docs of the segment matching the weight, deleted or not, relative to the segment. */
+  private static DocSet collect(Weight weight, LeafReaderContext leaf) throws IOException {
+    final RoaringDocSet.Builder builder = new RoaringDocSet.Builder(leaf.reader().maxDoc());
+    final Scorer scorer = weight.scorer(leaf);
+    if (scorer != null) {
+      final DocIdSetIterator iter = scorer.iterator();
+      for (int doc = iter.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iter.nextDoc()) {
+        builder.add(doc);
+      }
+    }
+    return builder.build();
+  }
+
+  private void put(IndexReader.CacheHelper cacheHelper, Key key, DocSet leafDocs) {
+    keysBySegment.computeIfAbsent(key.segment, segment -> {
+      cacheHelper.addClosedListener(this::onSegmentClosed);
+      return ConcurrentHashMap.newKeySet();
+    }).add(key);
+    cache.put(key, leafDocs);
+  }
+
+  private void onEvicted(Key key, DocSet leafDocs) {
+    // the set of the segment stays, it is the one the closed listener of the segment removes
+    final Set<Key> keys = keysBySegment.get(key.segment);
+    if (keys != null) {
+      keys.remove(key);
+    }
+  }
+
+  /** The number of cached keys tracked for the segments of the cache, for tests */
+  int numTrackedKeys() {
+    int numKeys = 0;
+    for (Set<Key> keys : keysBySegment.values()) {
+      numKeys += keys.size();
+    }
+    return numKeys;
+  }
+
+  private void onSegmentClosed(IndexReader.CacheKey segment) {
+    final Set<Key> keys = keysBySegment.remove(segment);
+    if (keys != null) {
+      for (Key key : keys) {
+        cache.remove(key);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    keysBySegment.clear();
+    cache.close();
+  }
+
+  @Override
+  public String toString() {
+    return "SegmentFilterCache{" + cache + '}';
+  }
+}
@@ -288,6 +288,16 @@ public class SolrDocumentFetcher {
     return solrReturnFields.getFetchOptimizer(rfoSupplier).getSolrDoc(luceneDocId);
   }
 
+  /**
+   * Returns the docValues fields {@link #solrDoc(int, SolrReturnFields)} would populate, in the same order, if no
+   * stored fields have to be loaded for the given return fields. Returns null if stored fields are needed.
+   */
+  public Set<String> getDocValuesOnlyFields(SolrReturnFields solrReturnFields) {
+    Supplier<RetrieveFieldsOptimizer> rfoSupplier = () -> new RetrieveFieldsOptimizer(solrReturnFields);
+    RetrieveFieldsOptimizer rfo = solrReturnFields.getFetchOptimizer(rfoSupplier);
+    return rfo.returnStoredFields() ? null : rfo.getDvFields();
+  }
+
   /** {@link StoredFieldVisitor} which loads the specified fields eagerly (or all if null).
    * If {@link #enableLazyFieldLoading} then the rest get special lazy field entries.  Designated "large"
    * fields will always get a special field entry. */
@@ -31,7 +31,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -57,6 +62,7 @@ import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Counter;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
@@ -100,6 +106,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   // These should *only* be used for debugging or monitoring purposes
   public static final AtomicLong numOpens = new AtomicLong();
   public static final AtomicLong numCloses = new AtomicLong();
+  // the number of searches whose segments were collected in parallel, see searchMultiThreaded; for tests
+  static final AtomicLong numMultiThreadedSearches = new AtomicLong();
   @SuppressWarnings({"rawtypes"})
   private static final Map<String,SolrCache> NO_GENERIC_CACHES = Collections.emptyMap();
   @SuppressWarnings({"rawtypes"})
@@ -120,6 +128,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
   private final boolean useFilterForSortedQuery;
+  private final boolean useCompressedDocSets;
+
+  // shared by the searchers of the core, may be null
+  private final SegmentFilterCache segmentFilterCache;
+
+  // shared by all cores for multi-threaded searches, may be null
+  private final ExecutorService collectorExecutor;
+  private volatile List<List<LeafReaderContext>> collectorSlices;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
@@ -287,10 +303,13 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
+    this.useCompressedDocSets = solrConfig.useCompressedDocSets;
+    this.collectorExecutor = core.getCoreContainer() == null ? null : core.getCoreContainer().getCollectorExecutor();
 
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
 
     this.cachingEnabled = enableCache;
+    this.segmentFilterCache = enableCache ? core.getSegmentFilterCache() : null;
     if (cachingEnabled) {
       final ArrayList<SolrCache> clist = new ArrayList<>();
       fieldValueCache = solrConfig.fieldValueCacheConfig == null ? null
@@ -772,7 +791,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // or OS disk cache.
     if (optionalAnswer != null) {
       if (filterCache != null) {
-        filterCache.put(query, optionalAnswer);
+        filterCache.put(query, toCached(optionalAnswer));
       }
       return;
     }
@@ -785,12 +804,23 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     getDocSet(query);
   }
 
+  /** The form of the set to put in the filterCache, compressed if {@code useCompressedDocSets} is enabled. */
+  private DocSet toCached(DocSet docs) {
+    return useCompressedDocSets ? DocSetUtil.compress(docs, maxDoc()) : docs;
+  }
+
   private BitDocSet makeBitDocSet(DocSet answer) {
     // TODO: this should be implemented in DocSet, most likely with a getBits method that takes a maxDoc argument
     // or make DocSet instances remember maxDoc
     if (answer instanceof BitDocSet) {
       return (BitDocSet) answer;
     }
+    if (answer instanceof OffHeapBitDocSet) {
+      return ((OffHeapBitDocSet) answer).heapView();
+    }
+    if (answer instanceof RoaringDocSet) {
+      return new BitDocSet(answer.getFixedBitSet(), answer.size());
+    }
     FixedBitSet bs = new FixedBitSet(maxDoc());
     DocIterator iter = answer.iterator();
     while (iter.hasNext()) {
@@ -803,7 +833,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public BitDocSet getDocSetBits(Query q) throws IOException {
     DocSet answer = getDocSet(q);
     BitDocSet answerBits = makeBitDocSet(answer);
-    if (answerBits != answer && filterCache != null) {
+    // off-heap and compressed sets were cached in that form on purpose; keep them as they are
+    if (answerBits != answer && filterCache != null
+        && !(answer instanceof OffHeapBitDocSet) && !(answer instanceof RoaringDocSet)) {
       filterCache.put(q, answerBits);
     }
     return answerBits;
@@ -841,12 +873,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
     }
 
-    DocSet absAnswer = getDocSetNC(absQ, null);
+    DocSet absAnswer = getCacheableDocSetNC(absQ);
     DocSet answer = positive ? absAnswer : getLiveDocSet().andNot(absAnswer);
 
     if (filterCache != null) {
       // cache negative queries as positive
-      filterCache.put(absQ, absAnswer);
+      filterCache.put(absQ, toCached(absAnswer));
     }
 
     return answer;
@@ -859,8 +891,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       answer = filterCache.get(q);
       if (answer != null) return answer;
     }
-    answer = getDocSetNC(q, null);
-    if (filterCache != null) filterCache.put(q, answer);
+    answer = getCacheableDocSetNC(q);
+    if (filterCache != null) filterCache.put(q, toCached(answer));
     return answer;
   }
 
@@ -1175,12 +1207,23 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     if (useCache) {
-      filterCache.put(key, result);
+      filterCache.put(key, toCached(result));
     }
 
     return result;
   }
 
+  /**
+   * Computes the set of a positive query that may be cached, from the segment filter cache if there is one.
+   * Queries producing their own top level DocSet don't benefit from it.
+   */
+  private DocSet getCacheableDocSetNC(Query query) throws IOException {
+    if (segmentFilterCache == null || query instanceof DocSetProducer) {
+      return getDocSetNC(query, null);
+    }
+    return segmentFilterCache.getDocSet(this, query);
+  }
+
   // query must be positive
   protected DocSet getDocSetNC(Query query, DocSet filter) throws IOException {
     return DocSetUtil.createDocSet(this, query, filter);
@@ -1217,8 +1260,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     if (filterCache != null) {
       first = filterCache.get(absQ);
       if (first == null) {
-        first = getDocSetNC(absQ, null);
-        filterCache.put(absQ, first);
+        first = getCacheableDocSetNC(absQ);
+        filterCache.put(absQ, toCached(first));
       }
       return positive ? first.intersection(filter) : filter.andNot(first);
     }
@@ -1298,6 +1341,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public static final int GET_DOCSET = 0x40000000;
   static final int NO_CHECK_FILTERCACHE = 0x20000000;
   static final int NO_SET_QCACHE = 0x10000000;
+  static final int MULTI_THREADED = 0x10;
   static final int SEGMENT_TERMINATE_EARLY = 0x08;
   public static final int TERMINATE_EARLY = 0x04;
   public static final int GET_DOCLIST = 0x02; // get the documents actually returned in a response
@@ -1423,7 +1467,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         // the base query and all filters.
         DocSet qDocSet = getDocListAndSetNC(qr, cmd);
         // cache the docSet matching the query w/o filtering
-        if (qDocSet != null && filterCache != null && !qr.isPartialResults()) filterCache.put(cmd.getQuery(), qDocSet);
+        if (qDocSet != null && filterCache != null && !qr.isPartialResults()) filterCache.put(cmd.getQuery(), toCached(qDocSet));
       } else {
         getDocListNC(qr, cmd);
       }
@@ -1548,6 +1592,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     final Query query = QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
     Relation hitsRelation;
 
+    if (useMultiThreaded(cmd, pf)) {
+      getDocListMultiThreaded(qr, cmd, query, len, lastDocRequested, false);
+      return;
+    }
+
     // handle zero case...
     if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
@@ -1659,6 +1708,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     ProcessedFilter pf = getProcessedFilter(cmd.getFilter(), cmd.getFilterList());
     final Query query = QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
 
+    if (useMultiThreaded(cmd, pf)) {
+      getDocListMultiThreaded(qr, cmd, query, len, lastDocRequested, true);
+      return pf.filter == null && pf.postFilter == null ? qr.getDocSet() : null;
+    }
+
     // handle zero case...
     if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
@@ -1755,6 +1809,267 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return pf.filter == null && pf.postFilter == null ? qr.getDocSet() : null;
   }
 
+  /**
+   * Whether the query of the command may be collected by {@link #getDocListMultiThreaded}.  Collector chains that
+   * keep state across segments (post filters, early termination, cancellation, rank queries) always run serially.
+   */
+  private boolean useMultiThreaded(QueryCommand cmd, ProcessedFilter pf) {
+    return cmd.getMultiThreaded() && collectorExecutor != null && pf.postFilter == null
+        && !cmd.getTerminateEarly() && !cmd.getSegmentTerminateEarly() && !cmd.isQueryCancellable()
+        && !(cmd.getQuery() instanceof RankQuery) && getCollectorSlices().size() > 1;
+  }
+
+  /**
+   * The executor shared by the node to collect slices of segments in parallel, or null if there is none.
+   * @lucene.internal
+   */
+  public ExecutorService getCollectorExecutor() {
+    return collectorExecutor;
+  }
+
+  /**
+   * Groups consecutive segments in about as many slices as there are processors.  Slices are in doc id order, so
+   * that merging their top docs breaks ties by doc id like a serial search does.
+   * @lucene.internal
+   */
+  public List<List<LeafReaderContext>> getCollectorSlices() {
+    List<List<LeafReaderContext>> slices = collectorSlices;
+    if (slices == null) {
+      final int numSlices = Math.min(leafContexts.size(), Runtime.getRuntime().availableProcessors());
+      final long docsPerSlice = numSlices == 0 ? 0 : ((long) maxDoc() + numSlices - 1) / numSlices;
+      slices = new ArrayList<>(numSlices);
+      List<LeafReaderContext> slice = new ArrayList<>();
+      long docs = 0;
+      for (LeafReaderContext leaf : leafContexts) {
+        slice.add(leaf);
+        docs += leaf.reader().maxDoc();
+        if (docs >= docsPerSlice) {
+          slices.add(slice);
+          slice = new ArrayList<>();
+          docs = 0;
+        }
+      }
+      if (!slice.isEmpty()) {
+        slices.add(slice);
+      }
+      collectorSlices = slices;
+    }
+    return slices;
+  }
+
+  /**
+   * Collects each slice of segments with its own collector from the manager, in parallel on the collector
+   * executor, and reduces them.  The request thread collects the last slice itself.  As with
+   * {@link #buildAndRunCollectorChain}, hitting timeAllowed stops collection and flags partial results while
+   * keeping what was collected.
+   */
+  private <C extends Collector, T> T searchMultiThreaded(QueryResult qr, Query query, QueryCommand cmd,
+      CollectorManager<C, T> manager) throws IOException {
+    numMultiThreadedSearches.incrementAndGet();
+    final List<List<LeafReaderContext>> slices = getCollectorSlices();
+    final List<C> collectors = new ArrayList<>(slices.size());
+    for (int i = 0; i < slices.size(); i++) {
+      collectors.add(manager.newCollector());
+    }
+    final Weight weight = createWeight(rewrite(query), collectors.get(0).scoreMode(), 1);
+
+    final long timeAllowed = cmd.getTimeAllowed();
+    final Counter clock = TimeLimitingCollector.getGlobalCounter();
+    final Long timeoutAt = SolrQueryTimeoutImpl.getTimeoutAtNs(); // for ExitableDirectoryReader on other threads
+    final Thread requestThread = Thread.currentThread();
+    final AtomicBoolean partialResults = new AtomicBoolean();
+
+    final List<FutureTask<Void>> tasks = new ArrayList<>(slices.size());
+    for (int i = 0; i < slices.size(); i++) {
+      final List<LeafReaderContext> leaves = slices.get(i);
+      final Collector collector = timeAllowed > 0
+          ? new TimeLimitingCollector(collectors.get(i), clock, timeAllowed) : collectors.get(i);
+      tasks.add(new FutureTask<>(() -> {
+        final boolean forked = Thread.currentThread() != requestThread;
+        if (forked && timeoutAt != null) {
+          SolrQueryTimeoutImpl.setTimeoutAtNs(timeoutAt);
+        }
+        try {
+          search(leaves, weight, collector);
+        } catch (TimeLimitingCollector.TimeExceededException | ExitableDirectoryReader.ExitingReaderException x) {
+          log.warn("Query: [{}]; ", query, x);
+          partialResults.set(true);
+        } finally {
+          if (forked) {
+            SolrQueryTimeoutImpl.reset();
+          }
+        }
+        return null;
+      }));
+    }
+    for (int i = 0; i < tasks.size() - 1; i++) {
+      try {
+        collectorExecutor.execute(tasks.get(i));
+      } catch (RejectedExecutionException e) {
+        tasks.get(i).run(); // the executor is shutting down
+      }
+    }
+    tasks.get(tasks.size() - 1).run();
+
+    Throwable failure = null;
+    for (FutureTask<Void> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(ErrorCode.SERVER_ERROR, e);
+      } catch (ExecutionException e) {
+        if (failure == null) failure = e.getCause();
+      }
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, failure);
+    }
+
+    if (partialResults.get()) {
+      qr.setPartialResults(true);
+    }
+    return manager.reduce(collectors);
+  }
+
+  /**
+   * Multi-threaded equivalent of {@link #getDocListNC} and {@link #getDocListAndSetNC}: every slice of segments
+   * gets its own top docs, max score and doc set collectors, and their results are merged.
+   */
+  private void getDocListMultiThreaded(QueryResult qr, QueryCommand cmd, Query query, int len, int lastDocRequested,
+      boolean needDocSet) throws IOException {
+    final boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
+    final boolean needTopDocs = lastDocRequested > 0;
+    final int maxDoc = maxDoc();
+
+    // the collectors of every slice, by kind
+    final List<TopDocsCollector<?>> topCollectors = new ArrayList<>();
+    final List<TotalHitCountCollector> countCollectors = new ArrayList<>();
+    final List<MaxScoreCollector> maxScoreCollectors = new ArrayList<>();
+    final List<DocSetCollector> setCollectors = new ArrayList<>();
+
+    final ScoreMode scoreModeUsed = searchMultiThreaded(qr, query, cmd, new CollectorManager<Collector, ScoreMode>() {
+      @Override
+      public Collector newCollector() throws IOException {
+        final List<Collector> collectors = new ArrayList<>(3);
+        if (needTopDocs) {
+          final TopDocsCollector<?> topCollector = buildTopDocsCollector(len, cmd);
+          topCollectors.add(topCollector);
+          collectors.add(topCollector);
+        } else if (!needDocSet) {
+          final TotalHitCountCollector countCollector = new TotalHitCountCollector();
+          countCollectors.add(countCollector);
+          collectors.add(countCollector);
+        }
+        if (needScores) {
+          final MaxScoreCollector maxScoreCollector = new MaxScoreCollector();
+          maxScoreCollectors.add(maxScoreCollector);
+          collectors.add(maxScoreCollector);
+        }
+        if (needDocSet) {
+          final DocSetCollector setCollector = new DocSetCollector(maxDoc);
+          setCollectors.add(setCollector);
+          collectors.add(setCollector);
+        }
+        return MultiCollector.wrap(collectors);
+      }
+
+      @Override
+      public ScoreMode reduce(Collection<Collector> collectors) {
+        // the results are merged per kind of collector by the caller
+        return collectors.iterator().next().scoreMode();
+      }
+    });
+
+    DocSet set = null;
+    if (needDocSet) {
+      final FixedBitSet bits = new FixedBitSet(maxDoc);
+      int size = 0;
+      for (DocSetCollector setCollector : setCollectors) {
+        final DocSet sliceSet = setCollector.getDocSet();
+        sliceSet.addAllTo(bits);
+        size += sliceSet.size();
+      }
+      final BitDocSet bitSet = new BitDocSet(bits, size);
+      set = DocSetUtil.getDocSet(size < DocSetUtil.smallSetSize(maxDoc) ? DocSetUtil.toSmallSet(bitSet) : bitSet, this);
+    }
+
+    float maxScore = Float.NaN;
+    for (MaxScoreCollector maxScoreCollector : maxScoreCollectors) {
+      final float sliceMax = maxScoreCollector.getMaxScore();
+      if (!Float.isNaN(sliceMax) && (Float.isNaN(maxScore) || sliceMax > maxScore)) {
+        maxScore = sliceMax;
+      }
+    }
+
+    int totalHits;
+    Relation hitsRelation = Relation.EQUAL_TO;
+    int[] ids;
+    float[] scores;
+    if (!needTopDocs) {
+      if (needDocSet) {
+        totalHits = set.size();
+      } else {
+        totalHits = 0;
+        for (TotalHitCountCollector countCollector : countCollectors) {
+          totalHits += countCollector.getTotalHits();
+        }
+      }
+      // like the serial search, the max score is only tracked when scores are requested
+      maxScore = totalHits > 0 ? (needScores ? maxScore : Float.NEGATIVE_INFINITY) : 0.0f;
+      ids = new int[0];
+      scores = new float[0];
+      // no docs on this page, so cursor doesn't change
+      qr.setNextCursorMark(cmd.getCursorMark());
+    } else {
+      final TopDocs topDocs;
+      if (cmd.getSort() == null) {
+        final TopDocs[] sliceDocs = new TopDocs[topCollectors.size()];
+        for (int i = 0; i < sliceDocs.length; i++) {
+          sliceDocs[i] = topCollectors.get(i).topDocs(0, len);
+        }
+        topDocs = TopDocs.merge(len, sliceDocs);
+      } else {
+        final TopFieldDocs[] sliceDocs = new TopFieldDocs[topCollectors.size()];
+        for (int i = 0; i < sliceDocs.length; i++) {
+          sliceDocs[i] = (TopFieldDocs) topCollectors.get(i).topDocs(0, len);
+        }
+        topDocs = TopDocs.merge(weightSort(cmd.getSort()), len, sliceDocs);
+      }
+      totalHits = (int) topDocs.totalHits.value;
+      assert !needDocSet || totalHits == set.size() || qr.isPartialResults();
+      if (!needDocSet && scoreModeUsed != ScoreMode.COMPLETE && scoreModeUsed != ScoreMode.COMPLETE_NO_SCORES) {
+        hitsRelation = topDocs.totalHits.relation;
+      }
+      if (cmd.getSort() != null && needScores) {
+        TopFieldCollector.populateScores(topDocs.scoreDocs, this, query);
+      }
+      populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
+
+      maxScore = totalHits > 0 ? maxScore : 0.0f;
+      ids = new int[topDocs.scoreDocs.length];
+      scores = needScores ? new float[ids.length] : null;
+      for (int i = 0; i < ids.length; i++) {
+        ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+        ids[i] = scoreDoc.doc;
+        if (scores != null) scores[i] = scoreDoc.score;
+      }
+    }
+
+    int sliceLen = Math.min(lastDocRequested, ids.length);
+    if (sliceLen < 0) sliceLen = 0;
+    qr.setDocList(new DocSlice(0, sliceLen, ids, scores, totalHits, maxScore, hitsRelation));
+    if (needDocSet) {
+      qr.setDocSet(set);
+    }
+  }
+
   /**
    * Returns documents matching both <code>query</code> and <code>filter</code> and sorted by <code>sort</code>. FUTURE:
    * The returned DocList may be retrieved from a cache.
@@ -2024,7 +2339,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // bit of a hack to tell if a set is sorted - do it better in the future.
-    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet;
+    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet || set instanceof OffHeapBitDocSet
+        || set instanceof RoaringDocSet;
 
     @SuppressWarnings({"rawtypes"})
     TopDocsCollector topCollector = buildTopDocsCollector(nDocs, cmd);
@@ -2153,6 +2469,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public void warm(SolrIndexSearcher old) {
     // Make sure this is first! filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
+    // reuse or rebuild the ordinal maps the old searcher used, so that regenerators and first requests don't build them
+    if (leafReader instanceof SlowCompositeReaderWrapper && old.leafReader instanceof SlowCompositeReaderWrapper) {
+      try {
+        ((SlowCompositeReaderWrapper) leafReader).warmOrdinalMaps((SlowCompositeReaderWrapper) old.leafReader);
+      } catch (Exception e) {
+        log.warn("Exception warming ordinal maps of {}", this, e);
+      }
+    }
     // warm the caches in order...
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming", "true");
@@ -2308,6 +2632,13 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         return parentContext.nullNumber();
       }
     }, true, "indexCommitSize", Category.SEARCHER.toString(), scope);
+    // ordinal maps of top-level string docValues
+    parentContext.gauge(
+        new MetricsMap(map -> {
+          if (leafReader instanceof SlowCompositeReaderWrapper) {
+            ((SlowCompositeReaderWrapper) leafReader).getOrdinalMapMetrics(map::putNoEx);
+          }
+        }), true, "ordinalMaps", Category.SEARCHER.toString(), scope);
     // statsCache metrics
     parentContext.gauge(
         new MetricsMap(map -> {
@@ -91,6 +91,14 @@ public class SolrQueryTimeoutImpl implements QueryTimeout {
     timeoutAt.set(time);
   }
 
+  /**
+   * Sets the time (nanoseconds) at which the request should be considered timed out, to carry the timeout of a
+   * request over to other threads working on it.
+   */
+  public static void setTimeoutAtNs(long timeoutAtNs) {
+    timeoutAt.set(timeoutAtNs);
+  }
+
   /**
    * Cleanup the ThreadLocal timeout value.
    */
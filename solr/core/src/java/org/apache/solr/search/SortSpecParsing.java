@@ -29,6 +29,7 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.function.BatchSortField;
 
 public class SortSpecParsing {
   
@@ -147,7 +148,7 @@ public class SortSpecParsing {
             if (null != top) {
               // we have a Query and a valid direction
               if (q instanceof FunctionQuery) {
-                sorts.add(((FunctionQuery)q).getValueSource().getSortField(top));
+                sorts.add(BatchSortField.of(((FunctionQuery)q).getValueSource(), top));
               } else {
                 sorts.add((new QueryValueSource(q, 0.0f)).getSortField(top));
               }
@@ -20,8 +20,6 @@ package org.apache.solr.search;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 
-import org.apache.lucene.index.DocValues;
-import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.Collector;
@@ -74,7 +72,11 @@ public class TopLevelJoinQuery extends JoinQuery {
 
       final LongBitSet fromOrdBitSet = findFieldOrdinalsMatchingQuery(q, fromField, fromSearcher, topLevelFromDocValues);
       final LongBitSet toOrdBitSet = new LongBitSet(topLevelToDocValues.getValueCount());
-      final BitsetBounds toBitsetBounds = convertFromOrdinalsIntoToField(fromOrdBitSet, topLevelFromDocValues, toOrdBitSet, topLevelToDocValues);
+      final JoinIndex joinIndex = fromSearcher == toSearcher && !(this instanceof SelfJoin) ?
+          JoinIndex.get(toSearcher, fromField, toField) : null;
+      final BitsetBounds toBitsetBounds = joinIndex != null ?
+          convertFromOrdinalsWithIndex(fromOrdBitSet, joinIndex, toOrdBitSet) :
+          convertFromOrdinalsIntoToField(fromOrdBitSet, topLevelFromDocValues, toOrdBitSet, topLevelToDocValues);
 
       final boolean toMultivalued = toSearcher.getSchema().getFieldOrNull(toField).multiValued();
       return new ConstantScoreWeight(this, boost) {
@@ -146,11 +148,7 @@ public class TopLevelJoinQuery extends JoinQuery {
               " field [" + fieldName +  "] does not.");
     }
 
-    final LeafReader leafReader = solrSearcher.getSlowAtomicReader();
-    if (field.multiValued()) {
-      return DocValues.getSortedSet(leafReader, fieldName);
-    }
-    return DocValues.singleton(DocValues.getSorted(leafReader, fieldName));
+    return JoinIndex.getTopLevelDocValues(solrSearcher, field);
   }
 
   private static LongBitSet findFieldOrdinalsMatchingQuery(Query q, String field, SolrIndexSearcher searcher, SortedSetDocValues docValues) throws IOException {
@@ -182,6 +180,13 @@ public class TopLevelJoinQuery extends JoinQuery {
       return new BitsetBounds(firstToOrd, lastToOrd);
   }
 
+  private static BitsetBounds convertFromOrdinalsWithIndex(LongBitSet fromOrdBitSet, JoinIndex joinIndex, LongBitSet toOrdBitSet) {
+    if (joinIndex.mapOrds(fromOrdBitSet, toOrdBitSet) == 0) {
+      return new BitsetBounds(BitsetBounds.NO_MATCHES, 0);
+    }
+    return new BitsetBounds(toOrdBitSet.nextSetBit(0), toOrdBitSet.prevSetBit(toOrdBitSet.length() - 1));
+  }
+
   /*
    * Same binary-search based implementation as SortedSetDocValues.lookupTerm(BytesRef), but with an
    * optimization to narrow the search space where possible by providing a startOrd instead of beginning each search
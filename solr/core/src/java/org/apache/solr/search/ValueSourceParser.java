@@ -44,6 +44,7 @@ import org.apache.lucene.search.spell.JaroWinklerDistance;
 import org.apache.lucene.search.spell.LevenshteinDistance;
 import org.apache.lucene.search.spell.NGramDistance;
 import org.apache.lucene.search.spell.StringDistance;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
@@ -70,6 +71,15 @@ import org.apache.solr.search.facet.UniqueAgg;
 import org.apache.solr.search.facet.UniqueBlockFieldAgg;
 import org.apache.solr.search.facet.UniqueBlockQueryAgg;
 import org.apache.solr.search.facet.VarianceAgg;
+import org.apache.solr.search.function.BatchDoubleValuesSource;
+import org.apache.solr.search.function.BatchIfFunction;
+import org.apache.solr.search.function.BatchLinearFloatFunction;
+import org.apache.solr.search.function.BatchProductFloatFunction;
+import org.apache.solr.search.function.BatchRangeMapFloatFunction;
+import org.apache.solr.search.function.BatchReciprocalFloatFunction;
+import org.apache.solr.search.function.BatchSumFloatFunction;
+import org.apache.solr.search.function.BatchValueSource;
+import org.apache.solr.search.function.BatchValues;
 import org.apache.solr.search.function.CollapseScoreFunction;
 import org.apache.solr.search.function.ConcatStringFunction;
 import org.apache.solr.search.function.EqualFunction;
@@ -191,7 +201,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         ValueSource source = fp.parseValueSource();
         float slope = fp.parseFloat();
         float intercept = fp.parseFloat();
-        return new LinearFloatFunction(source, slope, intercept);
+        return new BatchLinearFloatFunction(source, slope, intercept);
       }
     });
     addParser("recip", new ValueSourceParser() {
@@ -201,7 +211,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         float m = fp.parseFloat();
         float a = fp.parseFloat();
         float b = fp.parseFloat();
-        return new ReciprocalFloatFunction(source, m, a, b);
+        return new BatchReciprocalFloatFunction(source, m, a, b);
       }
     });
     addParser("scale", new ValueSourceParser() {
@@ -246,7 +256,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         float max = fp.parseFloat();
         ValueSource target = fp.parseValueSource();
         ValueSource def = fp.hasMoreArguments() ? fp.parseValueSource() : null;
-        return new RangeMapFloatFunction(source, min, max, target, def);
+        return new BatchRangeMapFloatFunction(source, min, max, target, def);
       }
     });
 
@@ -277,7 +287,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
       @Override
       public ValueSource parse(FunctionQParser fp) throws SyntaxError {
         List<ValueSource> sources = fp.parseValueSourceList();
-        return new SumFloatFunction(sources.toArray(new ValueSource[sources.size()]));
+        return new BatchSumFloatFunction(sources.toArray(new ValueSource[sources.size()]));
       }
     });
     alias("sum","add");    
@@ -286,7 +296,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
       @Override
       public ValueSource parse(FunctionQParser fp) throws SyntaxError {
         List<ValueSource> sources = fp.parseValueSourceList();
-        return new ProductFloatFunction(sources.toArray(new ValueSource[sources.size()]));
+        return new BatchProductFloatFunction(sources.toArray(new ValueSource[sources.size()]));
       }
     });
     alias("product","mul");
@@ -332,7 +342,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
       public ValueSource parse(FunctionQParser fp) throws SyntaxError {
         Query q = fp.parseNestedQuery();
         ValueSource vs = fp.parseValueSource();
-        return new QueryValueSource(FunctionScoreQuery.boostByValue(q, vs.asDoubleValuesSource()), 0.0f);
+        return new QueryValueSource(FunctionScoreQuery.boostByValue(q, BatchDoubleValuesSource.of(vs)), 0.0f);
       }
     });
     addParser("joindf", new ValueSourceParser() {
@@ -462,134 +472,134 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
 
     addParser(new DoubleParser("rad") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return vals.doubleVal(doc) * DistanceUtils.DEGREES_TO_RADIANS;
+      public double func(double val) {
+        return val * DistanceUtils.DEGREES_TO_RADIANS;
       }
     });
     addParser(new DoubleParser("deg") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return vals.doubleVal(doc) * DistanceUtils.RADIANS_TO_DEGREES;
+      public double func(double val) {
+        return val * DistanceUtils.RADIANS_TO_DEGREES;
       }
     });
     addParser(new DoubleParser("sqrt") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.sqrt(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.sqrt(val);
       }
     });
     addParser(new DoubleParser("cbrt") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.cbrt(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.cbrt(val);
       }
     });
     addParser(new DoubleParser("log") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.log10(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.log10(val);
       }
     });
     addParser(new DoubleParser("ln") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.log(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.log(val);
       }
     });
     addParser(new DoubleParser("exp") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.exp(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.exp(val);
       }
     });
     addParser(new DoubleParser("sin") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.sin(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.sin(val);
       }
     });
     addParser(new DoubleParser("cos") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.cos(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.cos(val);
       }
     });
     addParser(new DoubleParser("tan") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.tan(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.tan(val);
       }
     });
     addParser(new DoubleParser("asin") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.asin(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.asin(val);
       }
     });
     addParser(new DoubleParser("acos") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.acos(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.acos(val);
       }
     });
     addParser(new DoubleParser("atan") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.atan(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.atan(val);
       }
     });
     addParser(new DoubleParser("sinh") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.sinh(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.sinh(val);
       }
     });
     addParser(new DoubleParser("cosh") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.cosh(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.cosh(val);
       }
     });
     addParser(new DoubleParser("tanh") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.tanh(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.tanh(val);
       }
     });
     addParser(new DoubleParser("ceil") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.ceil(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.ceil(val);
       }
     });
     addParser(new DoubleParser("floor") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.floor(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.floor(val);
       }
     });
     addParser(new DoubleParser("rint") {
       @Override
-      public double func(int doc, FunctionValues vals) throws IOException {
-        return Math.rint(vals.doubleVal(doc));
+      public double func(double val) {
+        return Math.rint(val);
       }
     });
     addParser(new Double2Parser("pow") {
       @Override
-      public double func(int doc, FunctionValues a, FunctionValues b) throws IOException {
-        return Math.pow(a.doubleVal(doc), b.doubleVal(doc));
+      public double func(double a, double b) {
+        return Math.pow(a, b);
       }
     });
     addParser(new Double2Parser("hypot") {
       @Override
-      public double func(int doc, FunctionValues a, FunctionValues b) throws IOException {
-        return Math.hypot(a.doubleVal(doc), b.doubleVal(doc));
+      public double func(double a, double b) {
+        return Math.hypot(a, b);
       }
     });
     addParser(new Double2Parser("atan2") {
       @Override
-      public double func(int doc, FunctionValues a, FunctionValues b) throws IOException {
-        return Math.atan2(a.doubleVal(doc), b.doubleVal(doc));
+      public double func(double a, double b) {
+        return Math.atan2(a, b);
       }
     });
     addParser("max", new ValueSourceParser() {
@@ -877,7 +887,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         ValueSource trueValueSource = fp.parseValueSource();
         ValueSource falseValueSource = fp.parseValueSource();
 
-        return new IfFunction(ifValueSource, trueValueSource, falseValueSource);
+        return new BatchIfFunction(ifValueSource, trueValueSource, falseValueSource);
       }
     });
 
@@ -1241,51 +1251,64 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
 
       // "dv"
       if (d1 != null && v2 != null)
-        return new DualFloatFunction(new LongConstValueSource(ms1), v2) {
-          @Override
-          protected String name() {
-            return "ms";
-          }
-
-          @Override
-          protected float func(int doc, FunctionValues aVals, FunctionValues bVals) throws IOException {
-            return ms1 - bVals.longVal(doc);
-          }
-        };
+        return new MsFunction(new LongConstValueSource(ms1), v2);
 
       // "vd"
       if (v1 != null && d2 != null)
-        return new DualFloatFunction(v1, new LongConstValueSource(ms2)) {
-          @Override
-          protected String name() {
-            return "ms";
-          }
-
-          @Override
-          protected float func(int doc, FunctionValues aVals, FunctionValues bVals) throws IOException {
-            return aVals.longVal(doc) - ms2;
-          }
-        };
+        return new MsFunction(v1, new LongConstValueSource(ms2));
 
       // "vv"
       if (v1 != null && v2 != null)
-        return new DualFloatFunction(v1, v2) {
-          @Override
-          protected String name() {
-            return "ms";
-          }
-
-          @Override
-          protected float func(int doc, FunctionValues aVals, FunctionValues bVals) throws IOException {
-            return aVals.longVal(doc) - bVals.longVal(doc);
-          }
-        };
+        return new MsFunction(v1, v2);
 
       return null; // shouldn't happen
     }
 
   }
 
+  /** The difference in milliseconds between two dates, either of which may be a constant */
+  static class MsFunction extends DualFloatFunction implements BatchValueSource {
+    private final ValueSource msA;
+    private final ValueSource msB;
+
+    public MsFunction(ValueSource a, ValueSource b) {
+      super(a, b);
+      this.msA = a;
+      this.msB = b;
+    }
+
+    @Override
+    protected String name() {
+      return "ms";
+    }
+
+    @Override
+    protected float func(int doc, FunctionValues aVals, FunctionValues bVals) throws IOException {
+      return aVals.longVal(doc) - bVals.longVal(doc);
+    }
+
+    @Override
+    public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+      final BatchValues aVals = BatchValues.get(msA, context, readerContext);
+      final BatchValues bVals = BatchValues.get(msB, context, readerContext);
+      return new BatchValues.FloatValues() {
+        private long[] aValues = new long[0];
+        private long[] bValues = new long[0];
+
+        @Override
+        public void floatVals(int[] docs, int count, float[] values) throws IOException {
+          aValues = ArrayUtil.grow(aValues, count);
+          bValues = ArrayUtil.grow(bValues, count);
+          aVals.longVals(docs, count, aValues);
+          bVals.longVals(docs, count, bValues);
+          for (int i = 0; i < count; i++) {
+            values[i] = aValues[i] - bValues[i];
+          }
+        }
+      };
+    }
+  }
+
   // Private for now - we need to revisit how to handle typing in function queries
   static class LongConstValueSource extends ConstNumberSource {
     final long constant;
@@ -1392,14 +1415,14 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
       super(name);
     }
 
-    public abstract double func(int doc, FunctionValues vals) throws IOException;
+    public abstract double func(double val);
 
     @Override
     public ValueSource parse(FunctionQParser fp) throws SyntaxError {
       return new Function(fp.parseValueSource());
     }
 
-    class Function extends SingleFunction {
+    class Function extends SingleFunction implements BatchValueSource {
       public Function(ValueSource source) {
         super(source);
       }
@@ -1416,7 +1439,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         return new DoubleDocValues(this) {
           @Override
           public double doubleVal(int doc) throws IOException {
-            return func(doc, vals);
+            return func(vals.doubleVal(doc));
           }
           @Override
           public String toString(int doc) throws IOException {
@@ -1424,6 +1447,20 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
           }
         };
       }
+
+      @Override
+      public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+        final BatchValues vals = BatchValues.get(source, context, readerContext);
+        return new BatchValues.DoubleValues() {
+          @Override
+          public void doubleVals(int[] docs, int count, double[] values) throws IOException {
+            vals.doubleVals(docs, count, values);
+            for (int i = 0; i < count; i++) {
+              values[i] = func(values[i]);
+            }
+          }
+        };
+      }
     }
   }
 
@@ -1432,14 +1469,14 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
       super(name);
     }
 
-    public abstract double func(int doc, FunctionValues a, FunctionValues b) throws IOException;
+    public abstract double func(double a, double b);
 
     @Override
     public ValueSource parse(FunctionQParser fp) throws SyntaxError {
       return new Function(fp.parseValueSource(), fp.parseValueSource());
     }
 
-    class Function extends ValueSource {
+    class Function extends ValueSource implements BatchValueSource {
       private final ValueSource a;
       private final ValueSource b;
 
@@ -1466,7 +1503,7 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         return new DoubleDocValues(this) {
           @Override
           public double doubleVal(int doc) throws IOException {
-            return func(doc, aVals, bVals);
+            return func(aVals.doubleVal(doc), bVals.doubleVal(doc));
           }
           @Override
           public String toString(int doc) throws IOException {
@@ -1475,6 +1512,25 @@ public abstract class ValueSourceParser implements NamedListInitializedPlugin {
         };
       }
 
+      @Override
+      public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+        final BatchValues aVals = BatchValues.get(a, context, readerContext);
+        final BatchValues bVals = BatchValues.get(b, context, readerContext);
+        return new BatchValues.DoubleValues() {
+          private double[] bValues = new double[0];
+
+          @Override
+          public void doubleVals(int[] docs, int count, double[] values) throws IOException {
+            bValues = ArrayUtil.grow(bValues, count);
+            aVals.doubleVals(docs, count, values);
+            bVals.doubleVals(docs, count, bValues);
+            for (int i = 0; i < count; i++) {
+              values[i] = func(values[i], bValues[i]);
+            }
+          }
+        };
+      }
+
       @Override
       public void createWeight(@SuppressWarnings({"rawtypes"})Map context, IndexSearcher searcher) throws IOException {
       }
@@ -41,6 +41,8 @@ public class FacetContext {
   boolean cache = true;
   int flags;
   FacetDebugInfo debugInfo;
+  private DocSet keyedBase; // the base that baseKey identifies
+  private Object baseKey;
 
   public void setDebugInfo(FacetDebugInfo debugInfo) {
     this.debugInfo = debugInfo;
@@ -54,6 +56,22 @@ public class FacetContext {
     return (flags & IS_SHARD) != 0;
   }
 
+  /**
+   * Sets a key that identifies the documents of {@link #base} across requests on the same searcher, such as the
+   * query and filters it was computed from.  The key only holds as long as <code>base</code> isn't replaced.
+   */
+  public void setBaseKey(Object baseKey) {
+    this.keyedBase = base;
+    this.baseKey = baseKey;
+  }
+
+  /**
+   * @return the key set by {@link #setBaseKey}, or null if none was set or if {@link #base} has changed since
+   */
+  public Object getBaseKey() {
+    return keyedBase == base ? baseKey : null;
+  }
+
   public FacetProcessor<?> getFacetProcessor() {
     return processor;
   }
@@ -106,6 +124,29 @@ public class FacetContext {
     ctx.qcontext = qcontext;
     ctx.req = req;
     ctx.searcher = searcher;
+    if (domain == base) {
+      ctx.setBaseKey(getBaseKey());
+    }
+
+    return ctx;
+  }
+
+  /**
+   * Returns a copy of this context with its own {@link QueryContext}, for accumulators collecting on another
+   * thread than the request's.  That query context should be closed once the accumulators are done with it.
+   */
+  FacetContext forkQueryContext() {
+    FacetContext ctx = new FacetContext();
+    ctx.processor = processor;
+    ctx.facetInfo = facetInfo;
+    ctx.parent = parent;
+    ctx.base = base;
+    ctx.filter = filter;
+    ctx.cache = cache;
+    ctx.flags = flags;
+    ctx.qcontext = QueryContext.newContext(searcher);
+    ctx.req = req;
+    ctx.searcher = searcher;
 
     return ctx;
   }
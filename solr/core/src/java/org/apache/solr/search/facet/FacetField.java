@@ -47,6 +47,7 @@ public class FacetField extends FacetRequestSorted {
     DV,  // DocValues, collect into ordinal array
     UIF, // UnInvertedField, collect into ordinal array
     DVHASH, // DocValues, collect into hash
+    DV_PARALLEL, // DocValues, collect slices of segments concurrently into ordinal arrays, then merge them
     ENUM, // TermsEnum then intersect DocSet (stream-able)
     STREAM, // presently equivalent to ENUM
     SMART,
@@ -58,6 +59,7 @@ public class FacetField extends FacetRequestSorted {
         case "dv": return DV;
         case "uif": return UIF;
         case "dvhash": return DVHASH;
+        case "dvparallel": return DV_PARALLEL;
         case "enum": return ENUM;
         case "stream": return STREAM; // TODO replace with enum?
         case "smart": return SMART;
@@ -78,7 +80,7 @@ public class FacetField extends FacetRequestSorted {
 
     if (fcontext.facetInfo != null) {
       // refinement... we will end up either skipping the entire facet, or doing calculating only specific facet buckets
-      if (multiToken && !sf.hasDocValues() && method!=FacetMethod.DV && sf.isUninvertible()) {
+      if (multiToken && !sf.hasDocValues() && method!=FacetMethod.DV && method!=FacetMethod.DV_PARALLEL && sf.isUninvertible()) {
         // Match the access method from the first phase.
         // It won't always matter, but does currently for an all-values bucket
         return new FacetFieldProcessorByArrayUIF(fcontext, this, sf);
@@ -141,7 +143,7 @@ public class FacetField extends FacetRequestSorted {
 
     // multi-valued after this point
 
-    if (sf.hasDocValues() || method == FacetMethod.DV || !sf.isUninvertible()) {
+    if (sf.hasDocValues() || method == FacetMethod.DV || method == FacetMethod.DV_PARALLEL || !sf.isUninvertible()) {
       // single and multi-valued string docValues
       return new FacetFieldProcessorByArrayDV(fcontext, this, sf);
     }
@@ -18,7 +18,9 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.function.IntFunction;
 
 import org.apache.lucene.util.BytesRef;
@@ -26,6 +28,7 @@ import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.search.Query;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.facet.SlotAcc.CountSlotArrAcc;
 import org.apache.solr.search.facet.SlotAcc.SlotContext;
 import org.apache.solr.search.facet.SlotAcc.SweepingCountSlotAcc;
 
@@ -40,6 +43,13 @@ import static org.apache.solr.search.facet.FacetContext.SKIP_FACET;
  * @see SweepingCountSlotAcc
  */
 abstract class FacetFieldProcessorByArray extends FacetFieldProcessor {
+  /**
+   * Name of the optional user cache in which the counts of every slot are kept by domain, so that facets that
+   * only need counts (i.e. sorted by count or index, with no allBuckets) can be re-sorted and paged without
+   * counting again.  Only domains with a {@link FacetContext#getBaseKey() key} are cached.
+   */
+  public static final String COUNTS_CACHE_NAME = "facetCountsCache";
+
   BytesRefBuilder prefixRef;
   int startTermIndex;
   int endTermIndex;
@@ -147,7 +157,25 @@ abstract class FacetFieldProcessorByArray extends FacetFieldProcessor {
       allBucketsAcc = new SpecialSlotAcc(fcontext, collectAcc, allBucketsSlot, otherAccs, 0);
     }
 
-    collectDocs();
+    final List<Object> countsKey = getCountsCacheKey();
+    final int[] cachedCounts = countsKey == null ? null : (int[]) fcontext.searcher.cacheLookup(COUNTS_CACHE_NAME, countsKey);
+    if (cachedCounts != null) {
+      for (int slot = 0; slot < cachedCounts.length; slot++) {
+        if (cachedCounts[slot] != 0) {
+          countAcc.incrementCount(slot, cachedCounts[slot]);
+        }
+      }
+    } else {
+      collectDocs();
+      if (countsKey != null) {
+        final long[] counts = ((CountSlotArrAcc) countAcc).getCountArray();
+        final int[] toCache = new int[nTerms];
+        for (int slot = 0; slot < nTerms; slot++) {
+          toCache[slot] = (int) counts[slot];
+        }
+        fcontext.searcher.cacheInsert(COUNTS_CACHE_NAME, countsKey, toCache);
+      }
+    }
 
     return super.findTopSlots(nTerms, nTerms,
         slotNum -> { // getBucketValFromSlotNum
@@ -161,6 +189,21 @@ abstract class FacetFieldProcessorByArray extends FacetFieldProcessor {
     );
   }
 
+  /**
+   * Returns the key of the slot counts of this facet in the {@link #COUNTS_CACHE_NAME} cache, or null if they
+   * can't be cached: when collection computes more than counts, or when the domain has no key.
+   */
+  private List<Object> getCountsCacheKey() {
+    final Object baseKey = fcontext.getBaseKey();
+    if (baseKey == null || !fcontext.cache || collectAcc != null || allBucketsAcc != null
+        || !(countAcc instanceof CountSlotArrAcc) || !SweepingCountSlotAcc.otherStructsOf(this).isEmpty()
+        || fcontext.searcher.getCache(COUNTS_CACHE_NAME) == null) {
+      return null;
+    }
+    // slots are ords (or term numbers for UIF) from startTermIndex, which are specific to the processor
+    return Arrays.asList(getClass(), sf.getName(), startTermIndex, nTerms, baseKey);
+  }
+
   private static String valueObjToString(Object obj) {
     return (obj instanceof Date) ? ((Date)obj).toInstant().toString() : obj.toString();
   }
@@ -17,8 +17,13 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
@@ -32,6 +37,7 @@ import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrQueryTimeoutImpl;
 import org.apache.solr.search.facet.SlotAcc.CountSlotAcc;
 import org.apache.solr.search.facet.SlotAcc.SweepCountAccStruct;
 import org.apache.solr.search.facet.SlotAcc.SweepingCountSlotAcc;
@@ -125,6 +131,10 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
 
     if (freq.perSeg != null) accumSeg = canDoPerSeg && freq.perSeg;  // internal - override perSeg heuristic
 
+    if (freq.method == FacetField.FacetMethod.DV_PARALLEL && others.isEmpty() && collectParallel(accumSeg)) {
+      return;
+    }
+
     final int maxSize = others.size() + 1; // others + base
     final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
     final DocIdSetIterator[] subIterators = new DocIdSetIterator[maxSize];
@@ -204,6 +214,241 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     return si.lookupOrd(ord);
   }
 
+  /**
+   * Collects the domain with one {@link SliceCollector} per slice of segments of the searcher, in parallel on its
+   * collector executor.  Every slice counts into its own slot array, and collects into its own copies of the
+   * collection accumulators, which are summed into <code>countAcc</code> and merged into <code>collectAcc</code>
+   * at the end.  The request thread collects the last slice, straight into the accumulators of this processor.
+   *
+   * @return false if the request can't be collected in parallel, in which case nothing was collected
+   */
+  private boolean collectParallel(boolean accumSeg) throws IOException {
+    final ExecutorService executor = fcontext.searcher.getCollectorExecutor();
+    final List<List<LeafReaderContext>> slices = fcontext.searcher.getCollectorSlices();
+    if (executor == null || slices.size() < 2 || allBucketsAcc != null) {
+      return false;
+    }
+
+    final SlotAcc[] mergeAccs;
+    if (collectAcc == null) {
+      mergeAccs = new SlotAcc[0];
+    } else if (collectAcc instanceof MultiAcc) {
+      mergeAccs = ((MultiAcc) collectAcc).subAccs;
+    } else {
+      mergeAccs = new SlotAcc[] { collectAcc };
+    }
+    for (SlotAcc acc : mergeAccs) {
+      if (!(acc instanceof SlotAcc.MergeableSlotAcc) || !freq.getFacetStats().containsKey(acc.key)) {
+        return false;
+      }
+    }
+
+    FacetDebugInfo fdebug = fcontext.getDebugInfo();
+    if (fdebug != null) fdebug.putInfoItem("parallelSlices", slices.size());
+
+    final int last = slices.size() - 1;
+    final List<SliceCollector> collectors = new ArrayList<>(slices.size());
+    try {
+      for (int i = 0; i < last; i++) {
+        final FacetContext sliceContext = fcontext.forkQueryContext();
+        final SlotAcc[] sliceAccs = new SlotAcc[mergeAccs.length];
+        collectors.add(new SliceCollector(slices.get(i), sliceContext, sliceAccs, accumSeg));
+        for (int j = 0; j < mergeAccs.length; j++) {
+          sliceAccs[j] = freq.getFacetStats().get(mergeAccs[j].key).createSlotAcc(sliceContext, nDocs, nTerms);
+          sliceAccs[j].key = mergeAccs[j].key;
+        }
+      }
+      collectors.add(new SliceCollector(slices.get(last), fcontext, mergeAccs, accumSeg));
+
+      final Long timeoutAt = SolrQueryTimeoutImpl.getTimeoutAtNs(); // for ExitableDirectoryReader on other threads
+      final List<FutureTask<Void>> tasks = new ArrayList<>(collectors.size());
+      for (SliceCollector collector : collectors) {
+        final boolean forked = collector.fcontext != fcontext;
+        tasks.add(new FutureTask<>(() -> {
+          if (forked && timeoutAt != null) {
+            SolrQueryTimeoutImpl.setTimeoutAtNs(timeoutAt);
+          }
+          try {
+            collector.collect();
+          } finally {
+            if (forked) {
+              SolrQueryTimeoutImpl.reset();
+            }
+          }
+          return null;
+        }));
+      }
+      for (int i = 0; i < last; i++) {
+        try {
+          executor.execute(tasks.get(i));
+        } catch (RejectedExecutionException e) {
+          tasks.get(i).run(); // the executor is shutting down
+        }
+      }
+      tasks.get(last).run();
+
+      Throwable failure = null;
+      for (FutureTask<Void> task : tasks) {
+        try {
+          task.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+        } catch (ExecutionException e) {
+          if (failure == null) failure = e.getCause();
+        }
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else if (failure != null) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, failure);
+      }
+
+      for (SliceCollector collector : collectors) {
+        final int[] counts = collector.counts;
+        for (int slot = 0; slot < nTerms; slot++) {
+          if (counts[slot] > 0) {
+            countAcc.incrementCount(slot, counts[slot]);
+          }
+        }
+        if (collector.fcontext != fcontext) {
+          for (int j = 0; j < mergeAccs.length; j++) {
+            ((SlotAcc.MergeableSlotAcc) mergeAccs[j]).merge(collector.accs[j]);
+          }
+        }
+      }
+    } finally {
+      for (SliceCollector collector : collectors) {
+        if (collector.fcontext != fcontext) {
+          collector.fcontext.qcontext.close();
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Counts the ords of the domain in a slice of segments into a private slot array, and collects them into the
+   * given accumulators, which only this collector uses.
+   */
+  private class SliceCollector {
+    final List<LeafReaderContext> leaves;
+    final FacetContext fcontext;
+    final SlotAcc[] accs;
+    final boolean accumSeg;
+    final int[] counts;
+
+    SliceCollector(List<LeafReaderContext> leaves, FacetContext fcontext, SlotAcc[] accs, boolean accumSeg) {
+      this.leaves = leaves;
+      this.fcontext = fcontext;
+      this.accs = accs;
+      this.accumSeg = accumSeg;
+      this.counts = new int[nTerms];
+    }
+
+    void collect() throws IOException {
+      int[] segCounts = null;
+      for (LeafReaderContext subCtx : leaves) {
+        final DocIdSetIterator disi = fcontext.base.iterator(subCtx);
+        if (disi == null) {
+          continue;
+        }
+
+        SortedDocValues singleDv = null;
+        SortedSetDocValues multiDv = null;
+        if (multiValuedField) {
+          multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
+          if (multiDv == null || multiDv.getValueCount() < 1) {
+            continue;
+          }
+          if (unwrap_singleValued_multiDv) {
+            singleDv = DocValues.unwrapSingleton(multiDv);
+          }
+        } else {
+          singleDv = subCtx.reader().getSortedDocValues(sf.getName());
+          if (singleDv == null || singleDv.getValueCount() < 1) {
+            continue;
+          }
+        }
+
+        for (SlotAcc acc : accs) {
+          acc.setNextReader(subCtx);
+        }
+        final LongValues toGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subCtx.ord);
+
+        if (accumSeg) {
+          // count only, over all ords: count by segment ord, then map the counts to global ords once
+          final int segMax = singleDv != null ? singleDv.getValueCount() : (int) multiDv.getValueCount();
+          if (segCounts == null || segCounts.length < segMax) {
+            segCounts = new int[segMax];
+          } else {
+            Arrays.fill(segCounts, 0, segMax, 0);
+          }
+          countSegOrds(disi, singleDv, multiDv, segCounts);
+          for (int segOrd = 0; segOrd < segMax; segOrd++) {
+            if (segCounts[segOrd] > 0) {
+              counts[toGlobal == null ? segOrd : (int) toGlobal.get(segOrd)] += segCounts[segOrd];
+            }
+          }
+        } else {
+          collectOrds(disi, singleDv, multiDv, toGlobal);
+        }
+      }
+    }
+
+    private void countSegOrds(DocIdSetIterator disi, SortedDocValues singleDv, SortedSetDocValues multiDv,
+                              int[] segCounts) throws IOException {
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (singleDv != null) {
+          if (singleDv.advanceExact(doc)) {
+            segCounts[singleDv.ordValue()]++;
+          }
+        } else if (multiDv.advanceExact(doc)) {
+          for (;;) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            segCounts[segOrd]++;
+          }
+        }
+      }
+    }
+
+    private void collectOrds(DocIdSetIterator disi, SortedDocValues singleDv, SortedSetDocValues multiDv,
+                             LongValues toGlobal) throws IOException {
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (singleDv != null) {
+          if (singleDv.advanceExact(doc)) {
+            collectOrd(doc, singleDv.ordValue(), toGlobal);
+          }
+        } else if (multiDv.advanceExact(doc)) {
+          for (;;) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            collectOrd(doc, segOrd, toGlobal);
+          }
+        }
+      }
+    }
+
+    private void collectOrd(int doc, int segOrd, LongValues toGlobal) throws IOException {
+      int ord = toGlobal != null ? (int) toGlobal.get(segOrd) : segOrd;
+      int arrIdx = ord - startTermIndex;
+      // skip the ords outside of the prefix
+      if (arrIdx >= 0 && arrIdx < nTerms) {
+        counts[arrIdx]++;
+        for (SlotAcc acc : accs) {
+          acc.collect(doc, arrIdx, slotContext);
+        }
+      }
+    }
+  }
+
   private void collectPerSeg(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal) throws IOException {
     int segMax = singleDv.getValueCount();
     final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
@@ -38,9 +38,10 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DocSetUtil;
 import org.apache.solr.search.facet.SlotAcc.SlotContext;
+import org.apache.solr.util.OffHeapLongCounts;
 
 /**
- * Facets numbers into a hash table.  The number is either a raw numeric DocValues value, or
+ * Facets numbers into a hash table (an {@link OffHeapLongCounts}).  The number is either a raw numeric DocValues value, or
  * a term global ordinal integer.
  * Limitations:
  * <ul>
@@ -51,100 +52,6 @@ import org.apache.solr.search.facet.SlotAcc.SlotContext;
 class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   static int MAXIMUM_STARTING_TABLE_SIZE=1024;  // must be a power of two, non-final to support setting by tests
 
-  /** a hash table with long keys (what we're counting) and integer values (counts) */
-  private static class LongCounts {
-
-    static final float LOAD_FACTOR = 0.7f;
-
-    long[] vals;
-    long[] counts;  // maintain the counts here since we need them to tell if there was actually a value anyway
-    long[] oldToNewMapping;
-
-    int cardinality;
-    int threshold;
-
-    /** sz must be a power of two */
-    LongCounts(int sz) {
-      vals = new long[sz];
-      counts = new long[sz];
-      threshold = (int) (sz * LOAD_FACTOR);
-    }
-
-    /** Current number of slots in the hash table */
-    int numSlots() {
-      return vals.length;
-    }
-
-    private int hash(long val) {
-      // For floats: exponent bits start at bit 23 for single precision,
-      // and bit 52 for double precision.
-      // Many values will only have significant bits just to the right of that,
-      // and the leftmost bits will all be zero.
-
-      // For now, lets just settle to get first 8 significant mantissa bits of double or float in the lowest bits of our hash
-      // The upper bits of our hash will be irrelevant.
-      int h = (int) (val + (val >>> 44) + (val >>> 15));
-      return h;
-    }
-
-    /** returns the slot */
-    int add(long val) {
-      if (cardinality >= threshold) {
-        rehash();
-      }
-
-      int h = hash(val);
-      for (int slot = h & (vals.length-1);  ;slot = (slot + ((h>>7)|1)) & (vals.length-1)) {
-        long count = counts[slot];
-        if (count == 0) {
-          counts[slot] = 1;
-          vals[slot] = val;
-          cardinality++;
-          return slot;
-        } else if (vals[slot] == val) {
-          // val is already in the set
-          counts[slot] = count + 1;
-          return slot;
-        }
-      }
-    }
-
-    protected void rehash() {
-      long[] oldVals = vals;
-      long[] oldCounts = counts;  // after retrieving the count, this array is reused as a mapping to new array
-      int newCapacity = vals.length << 1;
-      vals = new long[newCapacity];
-      counts = new long[newCapacity];
-      threshold = (int) (newCapacity * LOAD_FACTOR);
-
-      for (int i=0; i<oldVals.length; i++) {
-        long count = oldCounts[i];
-        if (count == 0) {
-          oldCounts[i] = -1;
-          continue;
-        }
-
-        long val = oldVals[i];
-
-        int h = hash(val);
-        int slot = h & (vals.length-1);
-        while (counts[slot] != 0) {
-          slot = (slot + ((h>>7)|1)) & (vals.length-1);
-        }
-        counts[slot] = count;
-        vals[slot] = val;
-        oldCounts[i] = slot;
-      }
-
-      oldToNewMapping = oldCounts;
-    }
-
-    int cardinality() {
-      return cardinality;
-    }
-
-  }
-
   /** A hack instance of Calc for Term ordinals in DocValues. */
   // TODO consider making FacetRangeProcessor.Calc facet top level; then less of a hack?
   private class TermOrdCalc extends FacetRangeProcessor.Calc {
@@ -190,7 +97,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   }
 
   FacetRangeProcessor.Calc calc;
-  LongCounts table;
+  OffHeapLongCounts table;
   int allBucketsSlot = -1;
 
   FacetFieldProcessorByHashDV(FacetContext fcontext, FacetField freq, SchemaField sf) {
@@ -216,8 +123,14 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   @Override
   public void process() throws IOException {
     super.process();
-    response = calcFacets();
-    table = null;//gc
+    try {
+      response = calcFacets();
+    } finally {
+      if (table != null) {
+        table.close(); // back to the pool
+        table = null;
+      }
+    }
   }
 
   private SimpleOrderedMap<Object> calcFacets() throws IOException {
@@ -234,16 +147,9 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
     int possibleValues = fcontext.base.size();
     // size smaller tables so that no resize will be necessary
-    int currHashSize = BitUtil.nextHighestPowerOfTwo((int) (possibleValues * (1 / LongCounts.LOAD_FACTOR) + 1));
+    int currHashSize = BitUtil.nextHighestPowerOfTwo((int) (possibleValues * (1 / OffHeapLongCounts.LOAD_FACTOR) + 1));
     currHashSize = Math.min(currHashSize, MAXIMUM_STARTING_TABLE_SIZE);
-    table = new LongCounts(currHashSize) {
-      @Override
-      protected void rehash() {
-        super.rehash();
-        doRehash(this);
-        oldToNewMapping = null; // allow for gc
-      }
-    };
+    table = new OffHeapLongCounts(currHashSize);
 
     // note: these methods/phases align with FacetFieldProcessorByArray's
 
@@ -252,7 +158,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     collectDocs();
 
     return super.findTopSlots(table.numSlots(), table.cardinality(),
-        slotNum -> calc.bitsToValue(table.vals[slotNum]), // getBucketValFromSlotNum
+        slotNum -> calc.bitsToValue(table.getVal(slotNum)), // getBucketValFromSlotNum
         val -> calc.formatValue(val)); // getFieldQueryVal
   }
 
@@ -270,8 +176,8 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
       @Override
       public int compare(int slotA, int slotB) {
-        long s1 = calc.bitsToSortableBits(table.vals[slotA]);
-        long s2 = calc.bitsToSortableBits(table.vals[slotB]);
+        long s1 = calc.bitsToSortableBits(table.getVal(slotA));
+        long s2 = calc.bitsToSortableBits(table.getVal(slotB));
         return Long.compare(s1, s2);
       }
 
@@ -297,7 +203,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
       @Override
       public long getCount(int slot) {
-        return table.counts[slot];
+        return table.getCount(slot);
       }
 
       @Override
@@ -317,7 +223,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
       @Override
       public int compare(int slotA, int slotB) {
-        return Long.compare( table.counts[slotA], table.counts[slotB] );
+        return Long.compare( table.getCount(slotA), table.getCount(slotB) );
       }
 
       @Override
@@ -332,6 +238,12 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     if (freq.allBuckets) {
       allBucketsAcc = new SpecialSlotAcc(fcontext, collectAcc, allBucketsSlot, otherAccs, 0);
     }
+
+    // Our "count" acc is backed by the hash table and will already be rehashed
+    // otherAccs don't need to be rehashed
+    if (collectAcc != null || allBucketsAcc != null) {
+      table.setRehashListener(this::doRehash);
+    }
   }
 
   private void collectDocs() throws IOException {
@@ -440,18 +352,13 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
    * This avoids a memory allocation for each invocation of collectValFirstPhase.
    */
   private IntFunction<SlotContext> slotContext = (slotNum) -> {
-    long val = table.vals[slotNum];
+    long val = table.getVal(slotNum);
     @SuppressWarnings({"rawtypes"})
     Comparable value = calc.bitsToValue(val);
     return new SlotContext(sf.getType().getFieldQuery(null, sf, calc.formatValue(value)));
   };
 
-  private void doRehash(LongCounts table) {
-    if (collectAcc == null && allBucketsAcc == null) return;
-
-    // Our "count" acc is backed by the hash table and will already be rehashed
-    // otherAccs don't need to be rehashed
-
+  private void doRehash(int[] mapping) {
     int newTableSize = table.numSlots();
     int numSlots = newTableSize;
     final int oldAllBucketsSlot = allBucketsSlot;
@@ -460,7 +367,6 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     }
 
     final int finalNumSlots = numSlots;
-    final long[] mapping = table.oldToNewMapping;
 
     SlotAcc.Resizer resizer = new SlotAcc.Resizer() {
       @Override
@@ -471,7 +377,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
       @Override
       public int getNewSlot(int oldSlot) {
         if (oldSlot < mapping.length) {
-          return (int) mapping[oldSlot];
+          return mapping[oldSlot];
         }
         if (oldSlot == oldAllBucketsSlot) {
           return allBucketsSlot;
@@ -17,6 +17,7 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -143,6 +144,16 @@ public class FacetModule extends SearchComponent {
         fcontext.flags |= FacetContext.SKIP_FACET; // the root bucket should have been received from all shards previously
       }
     }
+    NamedList<Object> responseHeader = rb.rsp.getResponseHeader();
+    if (responseHeader == null || !Boolean.TRUE.equals(responseHeader.get(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY))) {
+      // lets facets cache what they computed over the docs matching the query (see FacetFieldProcessorByArray)
+      List<Object> baseKey = new ArrayList<>();
+      baseKey.add(rb.getQuery());
+      if (rb.getFilters() != null) {
+        baseKey.addAll(rb.getFilters());
+      }
+      fcontext.setBaseKey(baseKey);
+    }
     if (rb.isDebug()) {
       FacetDebugInfo fdebug = new FacetDebugInfo();
       fcontext.setDebugInfo(fdebug);
@@ -236,7 +236,7 @@ public class MinMaxAgg extends SimpleAggValueSource {
     }
   }
 
-  class DFuncAcc extends SlotAcc.DoubleFuncSlotAcc {
+  class DFuncAcc extends SlotAcc.DoubleFuncSlotAcc implements SlotAcc.MergeableSlotAcc {
     public DFuncAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots, Double.NaN);
     }
@@ -261,9 +261,22 @@ public class MinMaxAgg extends SimpleAggValueSource {
         return val;
       }
     }
+
+    @Override
+    public void merge(SlotAcc other) {
+      double[] otherResult = ((DFuncAcc) other).result;
+      for (int slot = 0; slot < result.length; slot++) {
+        double val = otherResult[slot];
+        if (Double.isNaN(val)) continue;
+        double currVal = result[slot];
+        if (Double.compare(val, currVal) * minmax < 0 || Double.isNaN(currVal)) {
+          result[slot] = val;
+        }
+      }
+    }
   }
 
-  class LFuncAcc extends SlotAcc.LongFuncSlotAcc {
+  class LFuncAcc extends SlotAcc.LongFuncSlotAcc implements SlotAcc.MergeableSlotAcc {
     FixedBitSet exists;
     public LFuncAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots, 0);
@@ -321,9 +334,24 @@ public class MinMaxAgg extends SimpleAggValueSource {
       exists.clear(0, exists.length());
     }
 
+    @Override
+    public void merge(SlotAcc other) {
+      LFuncAcc otherAcc = (LFuncAcc) other;
+      for (int slot = 0; slot < result.length; slot++) {
+        if (!otherAcc.exists.get(slot)) continue;
+        long val = otherAcc.result[slot];
+        if (!exists.get(slot)) {
+          exists.set(slot);
+          result[slot] = val;
+        } else if (Long.compare(val, result[slot]) * minmax < 0) {
+          result[slot] = val;
+        }
+      }
+    }
+
   }
 
-  class DateFuncAcc extends SlotAcc.LongFuncSlotAcc {
+  class DateFuncAcc extends SlotAcc.LongFuncSlotAcc implements SlotAcc.MergeableSlotAcc {
     private static final long MISSING = Long.MIN_VALUE;
     public DateFuncAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots, MISSING);
@@ -346,6 +374,19 @@ public class MinMaxAgg extends SimpleAggValueSource {
     public Object getValue(int slot) {
       return result[slot] == MISSING ? null : new Date(result[slot]);
     }
+
+    @Override
+    public void merge(SlotAcc other) {
+      long[] otherResult = ((DateFuncAcc) other).result;
+      for (int slot = 0; slot < result.length; slot++) {
+        long val = otherResult[slot];
+        if (val == MISSING) continue;
+        long currVal = result[slot];
+        if (Long.compare(val, currVal) * minmax < 0 || currVal == MISSING) {
+          result[slot] = val;
+        }
+      }
+    }
   }
 
 
@@ -390,7 +431,7 @@ public class MinMaxAgg extends SimpleAggValueSource {
     }
   }
 
-  class SingleValuedOrdAcc extends OrdAcc {
+  class SingleValuedOrdAcc extends OrdAcc implements SlotAcc.MergeableSlotAcc {
     SortedDocValues topLevel;
     SortedDocValues[] subDvs;
     OrdinalMap ordMap;
@@ -442,9 +483,22 @@ public class MinMaxAgg extends SimpleAggValueSource {
         }
       }
     }
+
+    @Override
+    public void merge(SlotAcc other) {
+      // global ords of both accumulators come from the same ordinal map
+      int[] otherSlotOrd = ((SingleValuedOrdAcc) other).slotOrd;
+      for (int slot = 0; slot < slotOrd.length; slot++) {
+        int ord = otherSlotOrd[slot];
+        if (ord == MISSING) continue;
+        if ((ord - slotOrd[slot]) * minmax < 0 || slotOrd[slot]==MISSING) {
+          slotOrd[slot] = ord;
+        }
+      }
+    }
   }
 
-  class MinMaxSortedSetDVAcc extends DocValuesAcc {
+  class MinMaxSortedSetDVAcc extends DocValuesAcc implements SlotAcc.MergeableSlotAcc {
     final static int MISSING = -1;
     SortedSetDocValues topLevel;
     SortedSetDocValues[] subDvs;
@@ -529,6 +583,19 @@ public class MinMaxAgg extends SimpleAggValueSource {
       }
     }
 
+    @Override
+    public void merge(SlotAcc other) {
+      long[] otherSlotOrd = ((MinMaxSortedSetDVAcc) other).slotOrd;
+      for (int slot = 0; slot < slotOrd.length; slot++) {
+        long ord = otherSlotOrd[slot];
+        if (ord == MISSING) continue;
+        long currOrd = slotOrd[slot];
+        if (currOrd == MISSING || Long.compare(ord, currOrd) * minmax < 0) {
+          slotOrd[slot] = ord;
+        }
+      }
+    }
+
     @Override
     protected boolean advanceExact(int doc) throws IOException {
       return subDv.advanceExact(doc);
@@ -36,6 +36,7 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.function.BatchValues;
 
 /**
  * Accumulates statistics separated by a slot number. 
@@ -339,6 +340,79 @@ public abstract class SlotAcc implements Closeable {
     }
   }
 
+  /**
+   * A {@link DoubleFuncSlotAcc} that collects a whole {@link DocSet} into a slot, e.g. for top level, query and
+   * range facet stats, by computing the function for blocks of documents instead of one document at a time.
+   * Used by sum, sumsq and avg; other aggregations, and buckets collected one document at a time, keep the
+   * per-document path.
+   */
+  abstract static class BatchDoubleFuncSlotAcc extends DoubleFuncSlotAcc {
+
+    public BatchDoubleFuncSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
+      super(values, fcontext, numSlots);
+    }
+
+    @Override
+    public int collect(DocSet docs, int slot, IntFunction<SlotContext> slotContext) throws IOException {
+      return collectBatches(docs, slot);
+    }
+
+    /**
+     * Computes the function for up to {@link #BATCH_SIZE} documents of a segment at once, see {@link BatchValues},
+     * and passes them to {@link #collectValues}. Documents are collected in order.
+     */
+    protected int collectBatches(DocSet docs, int slot) throws IOException {
+      final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
+      final int[] segDocs = new int[BATCH_SIZE];
+      final double[] vals = new double[BATCH_SIZE];
+      BatchValues batchValues = null;
+      int leaf = -1;
+      int segBase = 0;
+      int adjustedMax = 0;
+      int count = 0;
+      int pending = 0;
+      for (DocIterator docsIt = docs.iterator(); docsIt.hasNext(); ) {
+        final int doc = docsIt.nextDoc();
+        if (doc >= adjustedMax) {
+          if (pending > 0) {
+            batchValues.doubleVals(segDocs, pending, vals);
+            collectValues(segDocs, vals, pending, slot);
+            pending = 0;
+          }
+          LeafReaderContext ctx;
+          do {
+            ctx = leaves.get(++leaf);
+            segBase = ctx.docBase;
+            adjustedMax = segBase + ctx.reader().maxDoc();
+          } while (doc >= adjustedMax);
+          setNextReader(ctx);
+          batchValues = BatchValues.get(valueSource, fcontext.qcontext, ctx);
+        }
+        segDocs[pending++] = doc - segBase;
+        count++;
+        if (pending == BATCH_SIZE) {
+          batchValues.doubleVals(segDocs, pending, vals);
+          collectValues(segDocs, vals, pending, slot);
+          pending = 0;
+        }
+      }
+      if (pending > 0) {
+        batchValues.doubleVals(segDocs, pending, vals);
+        collectValues(segDocs, vals, pending, slot);
+      }
+      return count;
+    }
+
+    /**
+     * Collects the function values of documents of the current segment, see {@link #collectBatches}.
+     * {@link #values} are positioned on the current segment too.
+     */
+    protected abstract void collectValues(int[] segDocs, double[] vals, int count, int slot) throws IOException;
+  }
+
+  /** Number of documents for which {@link BatchDoubleFuncSlotAcc#collectBatches} computes the function at once */
+  static final int BATCH_SIZE = 256;
+
   public abstract static class LongFuncSlotAcc extends FuncSlotAcc {
     protected long[] result;
     protected long initialValue;
@@ -407,7 +481,7 @@ public abstract class SlotAcc implements Closeable {
     }
   }
 
-  static class SumSlotAcc extends DoubleFuncSlotAcc {
+  static class SumSlotAcc extends BatchDoubleFuncSlotAcc implements MergeableSlotAcc {
     public SumSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
     }
@@ -416,9 +490,26 @@ public abstract class SlotAcc implements Closeable {
       double val = values.doubleVal(doc); // todo: worth trying to share this value across multiple stats that need it?
       result[slotNum] += val;
     }
+
+    @Override
+    protected void collectValues(int[] segDocs, double[] vals, int count, int slot) {
+      double sum = result[slot];
+      for (int i = 0; i < count; i++) {
+        sum += vals[i];
+      }
+      result[slot] = sum;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      double[] otherResult = ((SumSlotAcc) other).result;
+      for (int slot = 0; slot < result.length; slot++) {
+        result[slot] += otherResult[slot];
+      }
+    }
   }
 
-  static class SumsqSlotAcc extends DoubleFuncSlotAcc {
+  static class SumsqSlotAcc extends BatchDoubleFuncSlotAcc {
     public SumsqSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
     }
@@ -429,10 +520,19 @@ public abstract class SlotAcc implements Closeable {
       val = val * val;
       result[slotNum] += val;
     }
+
+    @Override
+    protected void collectValues(int[] segDocs, double[] vals, int count, int slot) {
+      double sumsq = result[slot];
+      for (int i = 0; i < count; i++) {
+        sumsq += vals[i] * vals[i];
+      }
+      result[slot] = sumsq;
+    }
   }
 
 
-  static class AvgSlotAcc extends DoubleFuncSlotAcc {
+  static class AvgSlotAcc extends BatchDoubleFuncSlotAcc {
     int[] counts;
 
     public AvgSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
@@ -457,6 +557,16 @@ public abstract class SlotAcc implements Closeable {
       }
     }
 
+    @Override
+    protected void collectValues(int[] segDocs, double[] vals, int count, int slot) throws IOException {
+      for (int i = 0; i < count; i++) {
+        if (vals[i] != 0 || values.exists(segDocs[i])) {
+          result[slot] += vals[i];
+          counts[slot] += 1;
+        }
+      }
+    }
+
     private double avg(int slot) {
       return AggUtil.avg(result[slot], counts[slot]); // calc once and cache in result?
     }
@@ -634,6 +744,24 @@ public abstract class SlotAcc implements Closeable {
     public T registerSweepingAccs(SweepingCountSlotAcc baseSweepingAcc);
   }
 
+  /**
+   * Implemented by SlotAccs whose values can be combined with those of another instance created by the same
+   * aggregation, with the same number of slots, over a disjoint set of segments.  Processors that collect
+   * slices of segments concurrently (see {@link FacetField.FacetMethod#DV_PARALLEL}) collect each slice into
+   * a private instance and merge them at the end.
+   *
+   * Such instances are collected on other threads than the request's, so implementations must only rely on
+   * per-segment state, and must not make use of the slot context.
+   */
+  static interface MergeableSlotAcc {
+    /**
+     * Folds the values of every slot of <code>other</code> into the same slot of this accumulator.
+     *
+     * @param other - an instance of the same class, created by the same aggregation, whose values may be reused
+     */
+    public void merge(SlotAcc other);
+  }
+
   /**
    * A simple data structure to {@link DocSet} domains with an associated {@link CountSlotAcc}. This may be used
    * to support sweep count accumulation over different {@link DocSet} domains, but the concept is perfectly applicable
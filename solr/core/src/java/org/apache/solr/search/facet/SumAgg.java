@@ -80,7 +80,7 @@ public class SumAgg extends SimpleAggValueSource {
     }
   }
 
-  class SumSortedNumericAcc extends DocValuesAcc.DoubleSortedNumericDVAcc {
+  class SumSortedNumericAcc extends DocValuesAcc.DoubleSortedNumericDVAcc implements SlotAcc.MergeableSlotAcc {
 
     public SumSortedNumericAcc(FacetContext fcontext, SchemaField sf, int numSlots) throws IOException {
       super(fcontext, sf, numSlots, 0);
@@ -93,9 +93,17 @@ public class SumAgg extends SimpleAggValueSource {
       }
     }
 
+    @Override
+    public void merge(SlotAcc other) {
+      double[] otherResult = ((SumSortedNumericAcc) other).result;
+      for (int slot = 0; slot < result.length; slot++) {
+        result[slot] += otherResult[slot];
+      }
+    }
+
   }
 
-  class SumSortedSetAcc extends DocValuesAcc.DoubleSortedSetDVAcc {
+  class SumSortedSetAcc extends DocValuesAcc.DoubleSortedSetDVAcc implements SlotAcc.MergeableSlotAcc {
 
     public SumSortedSetAcc(FacetContext fcontext, SchemaField sf, int numSlots) throws IOException {
       super(fcontext, sf, numSlots, 0);
@@ -111,6 +119,14 @@ public class SumAgg extends SimpleAggValueSource {
         result[slot] += val;
       }
     }
+
+    @Override
+    public void merge(SlotAcc other) {
+      double[] otherResult = ((SumSortedSetAcc) other).result;
+      for (int slot = 0; slot < result.length; slot++) {
+        result[slot] += otherResult[slot];
+      }
+    }
   }
 
   class SumUnInvertedFieldAcc extends UnInvertedFieldAcc.DoubleUnInvertedFieldAcc {
@@ -124,7 +124,7 @@ public class UniqueAgg extends StrAggValueSource {
   }
 
 
-  static abstract class BaseNumericAcc extends DocValuesAcc {
+  static abstract class BaseNumericAcc extends DocValuesAcc implements SlotAcc.MergeableSlotAcc {
     LongSet[] sets;
 
     public BaseNumericAcc(FacetContext fcontext, String field, int numSlots) throws IOException {
@@ -153,6 +153,24 @@ public class UniqueAgg extends StrAggValueSource {
 
     protected abstract void collectValues(int doc, LongSet set) throws IOException;
 
+    @Override
+    public void merge(SlotAcc other) {
+      LongSet[] otherSets = ((BaseNumericAcc) other).sets;
+      for (int slot = 0; slot < sets.length; slot++) {
+        LongSet otherSet = otherSets[slot];
+        if (otherSet == null) continue;
+        LongSet set = sets[slot];
+        if (set == null) {
+          sets[slot] = otherSet;
+          continue;
+        }
+        LongIterator iter = otherSet.iterator();
+        while (iter.hasNext()) {
+          set.add(iter.next());
+        }
+      }
+    }
+
     @Override
     public Object getValue(int slot) throws IOException {
       if (fcontext.isShard()) {
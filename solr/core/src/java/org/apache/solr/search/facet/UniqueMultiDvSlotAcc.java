@@ -29,7 +29,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.schema.SchemaField;
 
-class UniqueMultiDvSlotAcc extends UniqueSlotAcc {
+class UniqueMultiDvSlotAcc extends UniqueSlotAcc implements SlotAcc.MergeableSlotAcc {
   SortedSetDocValues topLevel;
   SortedSetDocValues[] subDvs;
   OrdinalMap ordMap;
@@ -90,4 +90,9 @@ class UniqueMultiDvSlotAcc extends UniqueSlotAcc {
       } while (segOrd >= 0);
     }
   }
+
+  @Override
+  public void merge(SlotAcc other) {
+    mergeOrds((UniqueMultiDvSlotAcc) other);
+  }
 }
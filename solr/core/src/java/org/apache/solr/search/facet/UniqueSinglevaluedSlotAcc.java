@@ -29,7 +29,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.schema.SchemaField;
 
-class UniqueSinglevaluedSlotAcc extends UniqueSlotAcc {
+class UniqueSinglevaluedSlotAcc extends UniqueSlotAcc implements SlotAcc.MergeableSlotAcc {
   SortedDocValues topLevel;
   SortedDocValues[] subDvs;
   OrdinalMap ordMap;
@@ -91,4 +91,9 @@ class UniqueSinglevaluedSlotAcc extends UniqueSlotAcc {
     }
     bits.set(ord);
   }
+
+  @Override
+  public void merge(SlotAcc other) {
+    mergeOrds((UniqueSinglevaluedSlotAcc) other);
+  }
 }
@@ -157,6 +157,24 @@ abstract class UniqueSlotAcc extends SlotAcc {
     return counts[slotA] - counts[slotB];
   }
 
+  /**
+   * Adds the ords collected by <code>other</code> to every slot, for the subclasses that implement
+   * {@link SlotAcc.MergeableSlotAcc}.
+   */
+  protected void mergeOrds(UniqueSlotAcc other) {
+    FixedBitSet[] otherArr = other.arr;
+    for (int slot = 0; slot < arr.length; slot++) {
+      FixedBitSet otherBits = otherArr[slot];
+      if (otherBits == null) continue;
+      if (arr[slot] == null) {
+        arr[slot] = otherBits;
+      } else {
+        arr[slot].or(otherBits);
+      }
+    }
+    counts = null;
+  }
+
   @Override
   public void resize(Resizer resizer) {
     arr = resizer.resize(arr, null);
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Exposes a {@link BatchValueSource} as a {@link DoubleValuesSource}, e.g. to boost the scores of a
+ * {@link FunctionScoreQuery}, reading the values of the documents it is advanced to from a {@link BatchValues.Window}.
+ * Like {@link ValueSource#asDoubleValuesSource}, every document has a value.
+ *
+ * @lucene.experimental
+ */
+public class BatchDoubleValuesSource extends DoubleValuesSource {
+  private final ValueSource source;
+  private final IndexSearcher searcher;
+
+  private BatchDoubleValuesSource(ValueSource source, IndexSearcher searcher) {
+    this.source = source;
+    this.searcher = searcher;
+  }
+
+  /**
+   * Returns the source as a {@link DoubleValuesSource}, computed in batches if it is a {@link BatchValueSource}.
+   */
+  public static DoubleValuesSource of(ValueSource source) {
+    if (source instanceof BatchValueSource) {
+      return new BatchDoubleValuesSource(source, null);
+    }
+    return source.asDoubleValuesSource();
+  }
+
+  @Override
+  public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) throws IOException {
+    @SuppressWarnings({"rawtypes"})
+    final Map context = ValueSource.newContext(searcher);
+    final BatchValues.Window values = new BatchValues.Window(
+        ((BatchValueSource) source).getBatchValues(context, ctx), ctx.reader().maxDoc(), false);
+    return new DoubleValues() {
+      private int doc = -1;
+
+      @Override
+      public double doubleValue() throws IOException {
+        return values.doubleVal(doc);
+      }
+
+      @Override
+      public boolean advanceExact(int target) throws IOException {
+        doc = target;
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public boolean needsScores() {
+    return false;
+  }
+
+  @Override
+  public boolean isCacheable(LeafReaderContext ctx) {
+    return false;
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked"})
+  public Explanation explain(LeafReaderContext ctx, int docId, Explanation scoreExplanation) throws IOException {
+    final FunctionValues values = source.getValues(ValueSource.newContext(searcher), ctx);
+    return values.explain(docId);
+  }
+
+  @Override
+  public DoubleValuesSource rewrite(IndexSearcher searcher) throws IOException {
+    return new BatchDoubleValuesSource(source, searcher);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return source.equals(((BatchDoubleValuesSource) o).source);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(source);
+  }
+
+  @Override
+  public String toString() {
+    return source.toString();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionQuery;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+/**
+ * A {@link FunctionQuery} of a {@link BatchValueSource}, that scores the documents it is advanced to
+ * with the values of a {@link BatchValues.Window}. Scores are the same as the ones of {@link FunctionQuery}.
+ *
+ * @lucene.experimental
+ */
+public class BatchFunctionQuery extends FunctionQuery {
+
+  public BatchFunctionQuery(ValueSource func) {
+    super(func);
+    assert func instanceof BatchValueSource;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    return new FunctionWeight(searcher, boost) {
+      @Override
+      public Scorer scorer(LeafReaderContext readerContext) throws IOException {
+        return new BatchScorer(this, this.context, readerContext, boost);
+      }
+
+      @Override
+      public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+        return new AllScorer(context, this, boost).explain(doc);
+      }
+    };
+  }
+
+  private class BatchScorer extends Scorer {
+    private final float boost;
+    private final DocIdSetIterator iterator;
+    private final BatchValues.Window values;
+
+    BatchScorer(Weight weight, @SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext,
+                float boost) throws IOException {
+      super(weight);
+      this.boost = boost;
+      final int maxDoc = readerContext.reader().maxDoc();
+      this.iterator = DocIdSetIterator.all(maxDoc);
+      this.values = new BatchValues.Window(((BatchValueSource) getValueSource()).getBatchValues(context, readerContext), maxDoc, true);
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return iterator;
+    }
+
+    @Override
+    public int docID() {
+      return iterator.docID();
+    }
+
+    @Override
+    public float score() throws IOException {
+      float val = values.floatVal(docID());
+      if (val >= 0 == false) { // this covers NaN as well since comparisons with NaN return false
+        return 0;
+      } else {
+        return boost * val;
+      }
+    }
+
+    @Override
+    public float getMaxScore(int upTo) throws IOException {
+      return Float.POSITIVE_INFINITY;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.IfFunction;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * An {@link IfFunction} that can also be evaluated for a block of documents at once.
+ * Each branch is only evaluated for the documents it is chosen for.
+ */
+public class BatchIfFunction extends IfFunction implements BatchValueSource {
+  private final ValueSource ifSource;
+  private final ValueSource trueSource;
+  private final ValueSource falseSource;
+
+  public BatchIfFunction(ValueSource ifSource, ValueSource trueSource, ValueSource falseSource) {
+    super(ifSource, trueSource, falseSource);
+    this.ifSource = ifSource;
+    this.trueSource = trueSource;
+    this.falseSource = falseSource;
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked"})
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    final FunctionValues ifVals = ifSource.getValues(context, readerContext);
+    final BatchValues trueVals = BatchValues.get(trueSource, context, readerContext);
+    final BatchValues falseVals = BatchValues.get(falseSource, context, readerContext);
+
+    return new BatchValues() {
+      private final Partition trueDocs = new Partition();
+      private final Partition falseDocs = new Partition();
+      private float[] floats = new float[0];
+      private double[] doubles = new double[0];
+      private long[] longs = new long[0];
+
+      private void partition(int[] docs, int count) throws IOException {
+        trueDocs.reset(count);
+        falseDocs.reset(count);
+        for (int i = 0; i < count; i++) {
+          (ifVals.boolVal(docs[i]) ? trueDocs : falseDocs).add(docs[i], i);
+        }
+      }
+
+      @Override
+      public void floatVals(int[] docs, int count, float[] values) throws IOException {
+        partition(docs, count);
+        floats = ArrayUtil.grow(floats, count);
+        trueVals.floatVals(trueDocs.docs, trueDocs.size, floats);
+        for (int i = 0; i < trueDocs.size; i++) {
+          values[trueDocs.slots[i]] = floats[i];
+        }
+        falseVals.floatVals(falseDocs.docs, falseDocs.size, floats);
+        for (int i = 0; i < falseDocs.size; i++) {
+          values[falseDocs.slots[i]] = floats[i];
+        }
+      }
+
+      @Override
+      public void doubleVals(int[] docs, int count, double[] values) throws IOException {
+        partition(docs, count);
+        doubles = ArrayUtil.grow(doubles, count);
+        trueVals.doubleVals(trueDocs.docs, trueDocs.size, doubles);
+        for (int i = 0; i < trueDocs.size; i++) {
+          values[trueDocs.slots[i]] = doubles[i];
+        }
+        falseVals.doubleVals(falseDocs.docs, falseDocs.size, doubles);
+        for (int i = 0; i < falseDocs.size; i++) {
+          values[falseDocs.slots[i]] = doubles[i];
+        }
+      }
+
+      @Override
+      public void longVals(int[] docs, int count, long[] values) throws IOException {
+        partition(docs, count);
+        longs = ArrayUtil.grow(longs, count);
+        trueVals.longVals(trueDocs.docs, trueDocs.size, longs);
+        for (int i = 0; i < trueDocs.size; i++) {
+          values[trueDocs.slots[i]] = longs[i];
+        }
+        falseVals.longVals(falseDocs.docs, falseDocs.size, longs);
+        for (int i = 0; i < falseDocs.size; i++) {
+          values[falseDocs.slots[i]] = longs[i];
+        }
+      }
+    };
+  }
+
+  // IfFunction equals any IfFunction, which isn't symmetric with subclasses
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || getClass() != o.getClass()) return false;
+    BatchIfFunction other = (BatchIfFunction) o;
+    return ifSource.equals(other.ifSource) && trueSource.equals(other.trueSource) && falseSource.equals(other.falseSource);
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode() + super.hashCode();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.LinearFloatFunction;
+
+/**
+ * A {@link LinearFloatFunction} that can also be evaluated for a block of documents at once.
+ */
+public class BatchLinearFloatFunction extends LinearFloatFunction implements BatchValueSource {
+  private final ValueSource source;
+  private final float slope;
+  private final float intercept;
+
+  public BatchLinearFloatFunction(ValueSource source, float slope, float intercept) {
+    super(source, slope, intercept);
+    this.source = source;
+    this.slope = slope;
+    this.intercept = intercept;
+  }
+
+  @Override
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    final BatchValues vals = BatchValues.get(source, context, readerContext);
+    return new BatchValues.FloatValues() {
+      @Override
+      public void floatVals(int[] docs, int count, float[] values) throws IOException {
+        vals.floatVals(docs, count, values);
+        for (int i = 0; i < count; i++) {
+          values[i] = values[i] * slope + intercept;
+        }
+      }
+    };
+  }
+
+  // LinearFloatFunction only equals instances of its own class
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || getClass() != o.getClass()) return false;
+    BatchLinearFloatFunction other = (BatchLinearFloatFunction) o;
+    return slope == other.slope && intercept == other.intercept && source.equals(other.source);
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode() + super.hashCode();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.ProductFloatFunction;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * A {@link ProductFloatFunction} that can also multiply the values of its sources for a block of documents at once.
+ */
+public class BatchProductFloatFunction extends ProductFloatFunction implements BatchValueSource {
+  private final ValueSource[] batchSources;
+
+  public BatchProductFloatFunction(ValueSource[] sources) {
+    super(sources);
+    this.batchSources = sources;
+  }
+
+  @Override
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    final BatchValues[] valsArr = new BatchValues[batchSources.length];
+    for (int i = 0; i < batchSources.length; i++) {
+      valsArr[i] = BatchValues.get(batchSources[i], context, readerContext);
+    }
+    return new BatchValues.FloatValues() {
+      private float[] floats = new float[0];
+
+      @Override
+      public void floatVals(int[] docs, int count, float[] values) throws IOException {
+        floats = ArrayUtil.grow(floats, count);
+        Arrays.fill(values, 0, count, 1.0f);
+        for (BatchValues vals : valsArr) {
+          vals.floatVals(docs, count, floats);
+          for (int i = 0; i < count; i++) {
+            values[i] *= floats[i];
+          }
+        }
+      }
+    };
+  }
+}
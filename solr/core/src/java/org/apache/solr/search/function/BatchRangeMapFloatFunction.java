@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.RangeMapFloatFunction;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * A {@link RangeMapFloatFunction} that can also be evaluated for a block of documents at once.
+ * The target and default sources are only evaluated for the documents they apply to.
+ */
+public class BatchRangeMapFloatFunction extends RangeMapFloatFunction implements BatchValueSource {
+  private final ValueSource source;
+  private final float min;
+  private final float max;
+  private final ValueSource target;
+  private final ValueSource defaultVal;
+
+  public BatchRangeMapFloatFunction(ValueSource source, float min, float max, ValueSource target, ValueSource def) {
+    super(source, min, max, target, def);
+    this.source = source;
+    this.min = min;
+    this.max = max;
+    this.target = target;
+    this.defaultVal = def;
+  }
+
+  @Override
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    final BatchValues vals = BatchValues.get(source, context, readerContext);
+    final BatchValues targets = BatchValues.get(target, context, readerContext);
+    final BatchValues defaults = (defaultVal == null) ? null : BatchValues.get(defaultVal, context, readerContext);
+
+    return new BatchValues.FloatValues() {
+      private final Partition inRange = new Partition();
+      private final Partition outOfRange = new Partition();
+      private float[] floats = new float[0];
+
+      @Override
+      public void floatVals(int[] docs, int count, float[] values) throws IOException {
+        vals.floatVals(docs, count, values);
+        inRange.reset(count);
+        outOfRange.reset(count);
+        for (int i = 0; i < count; i++) {
+          final float val = values[i];
+          (val >= min && val <= max ? inRange : outOfRange).add(docs[i], i);
+        }
+        floats = ArrayUtil.grow(floats, count);
+        targets.floatVals(inRange.docs, inRange.size, floats);
+        for (int i = 0; i < inRange.size; i++) {
+          values[inRange.slots[i]] = floats[i];
+        }
+        // values out of the range are kept without a default
+        if (defaults != null) {
+          defaults.floatVals(outOfRange.docs, outOfRange.size, floats);
+          for (int i = 0; i < outOfRange.size; i++) {
+            values[outOfRange.slots[i]] = floats[i];
+          }
+        }
+      }
+    };
+  }
+
+  // RangeMapFloatFunction only equals instances of its own class
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || getClass() != o.getClass()) return false;
+    BatchRangeMapFloatFunction other = (BatchRangeMapFloatFunction) o;
+    return min == other.min && max == other.max
+        && source.equals(other.source) && target.equals(other.target)
+        && Objects.equals(defaultVal, other.defaultVal);
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode() + super.hashCode();
+  }
+}
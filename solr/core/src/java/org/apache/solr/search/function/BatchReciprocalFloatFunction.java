@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.ReciprocalFloatFunction;
+
+/**
+ * A {@link ReciprocalFloatFunction} that can also be evaluated for a block of documents at once.
+ */
+public class BatchReciprocalFloatFunction extends ReciprocalFloatFunction implements BatchValueSource {
+  private final ValueSource source;
+  private final float m;
+  private final float a;
+  private final float b;
+
+  public BatchReciprocalFloatFunction(ValueSource source, float m, float a, float b) {
+    super(source, m, a, b);
+    this.source = source;
+    this.m = m;
+    this.a = a;
+    this.b = b;
+  }
+
+  @Override
+  public BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException {
+    final BatchValues vals = BatchValues.get(source, context, readerContext);
+    return new BatchValues.FloatValues() {
+      @Override
+      public void floatVals(int[] docs, int count, float[] values) throws IOException {
+        vals.floatVals(docs, count, values);
+        for (int i = 0; i < count; i++) {
+          values[i] = a / (m * values[i] + b);
+        }
+      }
+    };
+  }
+
+  // ReciprocalFloatFunction only equals instances of its own class
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || getClass() != o.getClass()) return false;
+    BatchReciprocalFloatFunction other = (BatchReciprocalFloatFunction) o;
+    return m == other.m && a == other.a && b == other.b && source.equals(other.source);
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode() + super.hashCode();
+  }
+}
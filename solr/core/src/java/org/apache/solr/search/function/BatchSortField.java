@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SimpleFieldComparator;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Sorts by a {@link BatchValueSource}, comparing the documents with the values of a {@link BatchValues.Window}.
+ * The order is the same as the one of {@link ValueSource#getSortField}.
+ *
+ * @lucene.experimental
+ */
+public class BatchSortField extends SortField {
+  private final ValueSource source;
+
+  private BatchSortField(ValueSource source, boolean reverse) {
+    super(source.description(), SortField.Type.REWRITEABLE, reverse);
+    this.source = source;
+  }
+
+  /**
+   * Returns the sort field of the source, computed in batches if it is a {@link BatchValueSource}.
+   */
+  public static SortField of(ValueSource source, boolean reverse) {
+    if (source instanceof BatchValueSource) {
+      return new BatchSortField(source, reverse);
+    }
+    return source.getSortField(reverse);
+  }
+
+  @Override
+  public SortField rewrite(IndexSearcher searcher) throws IOException {
+    @SuppressWarnings({"rawtypes"})
+    final Map context = ValueSource.newContext(searcher);
+    source.createWeight(context, searcher);
+    return new SortField(getField(), new FieldComparatorSource() {
+      @Override
+      public FieldComparator<?> newComparator(String fieldname, int numHits, int sortPos, boolean reversed) {
+        return new BatchComparator(context, numHits);
+      }
+    }, getReverse());
+  }
+
+  private class BatchComparator extends SimpleFieldComparator<Double> {
+    @SuppressWarnings({"rawtypes"})
+    private final Map context;
+    private final double[] values;
+    private BatchValues.Window docVals;
+    private double bottom;
+    private double topValue;
+
+    BatchComparator(@SuppressWarnings({"rawtypes"})Map context, int numHits) {
+      this.context = context;
+      this.values = new double[numHits];
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext readerContext) throws IOException {
+      docVals = new BatchValues.Window(((BatchValueSource) source).getBatchValues(context, readerContext),
+          readerContext.reader().maxDoc(), false);
+    }
+
+    @Override
+    public int compare(int slot1, int slot2) {
+      return Double.compare(values[slot1], values[slot2]);
+    }
+
+    @Override
+    public int compareBottom(int doc) throws IOException {
+      return Double.compare(bottom, docVals.doubleVal(doc));
+    }
+
+    @Override
+    public void copy(int slot, int doc) throws IOException {
+      values[slot] = docVals.doubleVal(doc);
+    }
+
+    @Override
+    public void setBottom(int slot) {
+      bottom = values[slot];
+    }
+
+    @Override
+    public void setTopValue(Double value) {
+      topValue = value;
+    }
+
+    @Override
+    public Double value(int slot) {
+      return values[slot];
+    }
+
+    @Override
+    public int compareTop(int doc) throws IOException {
+      return Double.compare(topValue, docVals.doubleVal(doc));
+    }
+  }
+}
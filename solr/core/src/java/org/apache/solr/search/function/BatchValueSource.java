@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+
+/**
+ * Implemented by a {@link ValueSource} that can evaluate its function for a block of documents at once,
+ * instead of through one chain of {@link FunctionValues} calls per document.
+ * The batch values must be the same as the ones returned by {@link ValueSource#getValues}.
+ * <p>
+ * Batches are used by the JSON facet <code>sum</code>, <code>sumsq</code> and <code>avg</code> stats when
+ * they collect a whole domain, and through a {@link BatchValues.Window} when scoring with a function
+ * ({@link BatchFunctionQuery}, {@link BatchDoubleValuesSource}) or sorting by it ({@link BatchSortField}).
+ *
+ * @see BatchValues#get
+ * @lucene.experimental
+ */
+public interface BatchValueSource {
+
+  /**
+   * Returns the batch values of the function for the segment.
+   * The context must have been passed to {@link ValueSource#createWeight} as for {@link ValueSource#getValues}.
+   */
+  BatchValues getBatchValues(@SuppressWarnings({"rawtypes"})Map context, LeafReaderContext readerContext) throws IOException;
+}
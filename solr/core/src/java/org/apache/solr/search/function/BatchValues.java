@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.DoubleFieldSource;
+import org.apache.lucene.queries.function.valuesource.FloatFieldSource;
+import org.apache.lucene.queries.function.valuesource.IntFieldSource;
+import org.apache.lucene.queries.function.valuesource.LongFieldSource;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Evaluates a function for blocks of documents of one segment, filling primitive arrays.
+ * Values are the same as the ones of the {@link FunctionValues} of the function, so a float function
+ * returns the widened float values from {@link #doubleVals}, and documents without a value get 0.
+ * <p>
+ * The <code>count</code> first documents of <code>docs</code> are evaluated; they must be in increasing
+ * order, and each call must start after the last document of the previous one.
+ *
+ * @see BatchValueSource
+ * @lucene.experimental
+ */
+public abstract class BatchValues {
+
+  public abstract void floatVals(int[] docs, int count, float[] values) throws IOException;
+
+  public abstract void doubleVals(int[] docs, int count, double[] values) throws IOException;
+
+  public abstract void longVals(int[] docs, int count, long[] values) throws IOException;
+
+  /**
+   * Returns the batch values of the source for the segment. Sources that are neither a
+   * {@link BatchValueSource} nor a single valued numeric field are evaluated one document at a time.
+   */
+  @SuppressWarnings({"unchecked"})
+  public static BatchValues get(ValueSource source, @SuppressWarnings({"rawtypes"})Map context,
+                                LeafReaderContext readerContext) throws IOException {
+    if (source instanceof BatchValueSource) {
+      return ((BatchValueSource) source).getBatchValues(context, readerContext);
+    }
+    // exact classes only: the multi valued sources of field(name,min|max) extend them but read sorted numerics
+    if (source.getClass() == LongFieldSource.class) {
+      return longField(readerContext, ((LongFieldSource) source).getField());
+    }
+    if (source.getClass() == IntFieldSource.class) {
+      return new IntFieldValues(DocValues.getNumeric(readerContext.reader(), ((IntFieldSource) source).getField()));
+    }
+    if (source.getClass() == FloatFieldSource.class) {
+      return new FloatFieldValues(DocValues.getNumeric(readerContext.reader(), ((FloatFieldSource) source).getField()));
+    }
+    if (source.getClass() == DoubleFieldSource.class) {
+      return new DoubleFieldValues(DocValues.getNumeric(readerContext.reader(), ((DoubleFieldSource) source).getField()));
+    }
+    return of(source.getValues(context, readerContext));
+  }
+
+  /**
+   * Returns the batch values of a single valued long field, read like {@link LongFieldSource} does.
+   * Sources extending it, e.g. for dates, can return them from {@link BatchValueSource#getBatchValues}.
+   */
+  public static BatchValues longField(LeafReaderContext readerContext, String field) throws IOException {
+    return new LongFieldValues(DocValues.getNumeric(readerContext.reader(), field));
+  }
+
+  /** Returns batch values evaluating the function values one document at a time. */
+  public static BatchValues of(FunctionValues values) {
+    return new BatchValues() {
+      @Override
+      public void floatVals(int[] docs, int count, float[] out) throws IOException {
+        for (int i = 0; i < count; i++) {
+          out[i] = values.floatVal(docs[i]);
+        }
+      }
+
+      @Override
+      public void doubleVals(int[] docs, int count, double[] out) throws IOException {
+        for (int i = 0; i < count; i++) {
+          out[i] = values.doubleVal(docs[i]);
+        }
+      }
+
+      @Override
+      public void longVals(int[] docs, int count, long[] out) throws IOException {
+        for (int i = 0; i < count; i++) {
+          out[i] = values.longVal(docs[i]);
+        }
+      }
+    };
+  }
+
+  /** Batch values of a function computed as floats; double and long values are derived like FloatDocValues does. */
+  public abstract static class FloatValues extends BatchValues {
+    private float[] floats = new float[0];
+
+    @Override
+    public void doubleVals(int[] docs, int count, double[] values) throws IOException {
+      floats = ArrayUtil.grow(floats, count);
+      floatVals(docs, count, floats);
+      for (int i = 0; i < count; i++) {
+        values[i] = floats[i];
+      }
+    }
+
+    @Override
+    public void longVals(int[] docs, int count, long[] values) throws IOException {
+      floats = ArrayUtil.grow(floats, count);
+      floatVals(docs, count, floats);
+      for (int i = 0; i < count; i++) {
+        values[i] = (long) floats[i];
+      }
+    }
+  }
+
+  /** Batch values of a function computed as doubles; float and long values are derived like DoubleDocValues does. */
+  public abstract static class DoubleValues extends BatchValues {
+    private double[] doubles = new double[0];
+
+    @Override
+    public void floatVals(int[] docs, int count, float[] values) throws IOException {
+      doubles = ArrayUtil.grow(doubles, count);
+      doubleVals(docs, count, doubles);
+      for (int i = 0; i < count; i++) {
+        values[i] = (float) doubles[i];
+      }
+    }
+
+    @Override
+    public void longVals(int[] docs, int count, long[] values) throws IOException {
+      doubles = ArrayUtil.grow(doubles, count);
+      doubleVals(docs, count, doubles);
+      for (int i = 0; i < count; i++) {
+        values[i] = (long) doubles[i];
+      }
+    }
+  }
+
+  /** Batch values of a function computed as longs; float and double values are derived like LongDocValues does. */
+  public abstract static class LongValues extends BatchValues {
+    private long[] longs = new long[0];
+
+    @Override
+    public void floatVals(int[] docs, int count, float[] values) throws IOException {
+      longs = ArrayUtil.grow(longs, count);
+      longVals(docs, count, longs);
+      for (int i = 0; i < count; i++) {
+        values[i] = longs[i];
+      }
+    }
+
+    @Override
+    public void doubleVals(int[] docs, int count, double[] values) throws IOException {
+      longs = ArrayUtil.grow(longs, count);
+      longVals(docs, count, longs);
+      for (int i = 0; i < count; i++) {
+        values[i] = longs[i];
+      }
+    }
+  }
+
+  /**
+   * Splits documents in two groups, keeping the position of each document in the block, so that
+   * functions choosing between two sources only evaluate each source for the documents it applies to.
+   */
+  public static final class Partition {
+    public int[] docs = new int[0];
+    public int[] slots = new int[0];
+    public int size;
+
+    public void reset(int count) {
+      docs = ArrayUtil.grow(docs, count);
+      slots = ArrayUtil.grow(slots, count);
+      size = 0;
+    }
+
+    public void add(int doc, int slot) {
+      docs[size] = doc;
+      slots[size++] = slot;
+    }
+  }
+
+  /**
+   * Evaluates the function for documents visited one at a time in increasing order, e.g. by a scorer or a
+   * sort comparator, by computing the values of a window of consecutive documents starting at the first
+   * document outside of the previous window. The window grows while most of its documents get visited,
+   * and shrinks to the number of visited documents otherwise, so that sparse matches don't compute
+   * many values that are never read.
+   */
+  public static final class Window {
+    /** The maximum number of documents of a window. */
+    public static final int MAX_SIZE = 128;
+
+    static final AtomicLong numWindows = new AtomicLong(); // for tests
+
+    private final BatchValues values;
+    private final boolean floats;
+    private final int maxDoc;
+    private final int[] docs = new int[MAX_SIZE];
+    private final float[] floatVals;
+    private final double[] doubleVals;
+    private int size = 8;
+    private int start;
+    private int end;
+    private int lastDoc = -1;
+    private int visited;
+
+    /**
+     * @param floats whether the values are read with {@link #floatVal} rather than {@link #doubleVal}
+     */
+    public Window(BatchValues values, int maxDoc, boolean floats) {
+      this.values = values;
+      this.maxDoc = maxDoc;
+      this.floats = floats;
+      this.floatVals = floats ? new float[MAX_SIZE] : null;
+      this.doubleVals = floats ? null : new double[MAX_SIZE];
+      numWindows.incrementAndGet();
+    }
+
+    public float floatVal(int doc) throws IOException {
+      assert floats;
+      advance(doc);
+      return floatVals[doc - start];
+    }
+
+    public double doubleVal(int doc) throws IOException {
+      assert !floats;
+      advance(doc);
+      return doubleVals[doc - start];
+    }
+
+    private void advance(int doc) throws IOException {
+      if (doc == lastDoc) {
+        return; // e.g. compared to the bottom and then copied
+      }
+      assert doc > lastDoc : "documents must be visited in increasing order";
+      lastDoc = doc;
+      if (doc < end) {
+        visited++;
+        return;
+      }
+      if (end > start) {
+        final int windowSize = end - start;
+        size = visited * 4 >= windowSize * 3 ? Math.min(size * 2, MAX_SIZE) : Math.max(visited, 1);
+      }
+      start = doc;
+      end = (int) Math.min((long) doc + size, maxDoc);
+      final int count = end - start;
+      for (int i = 0; i < count; i++) {
+        docs[i] = start + i;
+      }
+      if (floats) {
+        values.floatVals(docs, count, floatVals);
+      } else {
+        values.doubleVals(docs, count, doubleVals);
+      }
+      visited = 1;
+    }
+  }
+
+  private static class IntFieldValues extends LongValues {
+    private final NumericDocValues values;
+
+    IntFieldValues(NumericDocValues values) {
+      this.values = values;
+    }
+
+    @Override
+    public void longVals(int[] docs, int count, long[] out) throws IOException {
+      for (int i = 0; i < count; i++) {
+        out[i] = values.advanceExact(docs[i]) ? (int) values.longValue() : 0;
+      }
+    }
+  }
+
+  private static class LongFieldValues extends LongValues {
+    private final NumericDocValues values;
+
+    LongFieldValues(NumericDocValues values) {
+      this.values = values;
+    }
+
+    @Override
+    public void longVals(int[] docs, int count, long[] out) throws IOException {
+      for (int i = 0; i < count; i++) {
+        out[i] = values.advanceExact(docs[i]) ? values.longValue() : 0;
+      }
+    }
+  }
+
+  private static class FloatFieldValues extends FloatValues {
+    private final NumericDocValues values;
+
+    FloatFieldValues(NumericDocValues values) {
+      this.values = values;
+    }
+
+    @Override
+    public void floatVals(int[] docs, int count, float[] out) throws IOException {
+      for (int i = 0; i < count; i++) {
+        out[i] = values.advanceExact(docs[i]) ? Float.intBitsToFloat((int) values.longValue()) : 0f;
+      }
+    }
+  }
+
+  private static class DoubleFieldValues extends DoubleValues {
+    private final NumericDocValues values;
+
+    DoubleFieldValues(NumericDocValues values) {
+      this.values = values;
+    }
+
+    @Override
+    public void doubleVals(int[] docs, int count, double[] out) throws IOException {
+      for (int i = 0; i < count; i++) {
+        out[i] = values.advanceExact(docs[i]) ? Double.longBitsToDouble(values.longValue()) : 0d;
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.JoinIndex;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RTimer;
+
+/**
+ * Breadth first graph traversal that keeps the frontier and the visited documents as bitsets, and follows edges
+ * through the docValues ordinals of the node and edge fields instead of searching a query of the collected edge
+ * values on every hop.  Edge ordinals are mapped to node ordinals with a {@link JoinIndex}, and node ordinals to
+ * the documents that have them with a table built once per traversal.
+ * <p>
+ * Both fields must be string fields with docValues.
+ * @lucene.internal
+ */
+class BitsetGraphTraversal {
+
+  private final SolrIndexSearcher searcher;
+  private final SchemaField nodeField;  // the "from" field of the graph query
+  private final SchemaField edgeField;  // the "to" field of the graph query
+  private final DocSet traversalFilter; // may be null
+  private final Bits liveDocs;
+  private final int maxDoc;
+
+  private JoinIndex edgeToNode;
+  private JoinIndex nodeToEdge;
+  private OrdDocs nodeDocs;
+  private OrdDocs edgeDocs;
+
+  // per hop statistics for debugging, may be null
+  private NamedList<Object> hops;
+
+  BitsetGraphTraversal(SolrIndexSearcher searcher, SchemaField nodeField, SchemaField edgeField, DocSet traversalFilter) throws IOException {
+    this.searcher = searcher;
+    this.nodeField = nodeField;
+    this.edgeField = edgeField;
+    this.traversalFilter = traversalFilter;
+    this.liveDocs = searcher.getLiveDocsBits();
+    this.maxDoc = searcher.maxDoc();
+  }
+
+  /** Records the direction, new documents and time of each hop in the returned list. */
+  NamedList<Object> trackHops() {
+    hops = new NamedList<>();
+    return hops;
+  }
+
+  /**
+   * Returns every document reachable from the roots within maxDepth hops (-1 for no limit), including the roots.
+   */
+  FixedBitSet traverse(FixedBitSet roots, int maxDepth) throws IOException {
+    final FixedBitSet visited = roots.clone();
+    FixedBitSet frontier = roots;
+    for (int depth = 0; (maxDepth == -1 || depth < maxDepth) && frontier.cardinality() > 0; depth++) {
+      frontier = expandForward(frontier, visited, depth);
+      visited.or(frontier);
+    }
+    return visited;
+  }
+
+  /**
+   * Returns true if the target is reachable from the roots within maxDepth hops (-1 for no limit), searching forward
+   * from the roots and backward from the target, always from the side with the smaller frontier.
+   */
+  boolean isReachable(FixedBitSet roots, int target, int maxDepth) throws IOException {
+    if (roots.get(target)) {
+      return true;
+    }
+    if (!passesFilter(target)) {
+      return false;
+    }
+    final FixedBitSet forwardVisited = roots.clone();
+    FixedBitSet forwardFrontier = roots;
+    final FixedBitSet backwardVisited = new FixedBitSet(maxDoc);
+    backwardVisited.set(target);
+    FixedBitSet backwardFrontier = backwardVisited.clone();
+
+    for (int depth = 0; maxDepth == -1 || depth < maxDepth; depth++) {
+      final int forwardSize = forwardFrontier.cardinality();
+      final int backwardSize = backwardFrontier.cardinality();
+      if (forwardSize == 0 || backwardSize == 0) {
+        return false;
+      }
+      if (forwardSize <= backwardSize) {
+        forwardFrontier = expandForward(forwardFrontier, forwardVisited, depth);
+        if (forwardFrontier.intersects(backwardVisited)) {
+          return true;
+        }
+        forwardVisited.or(forwardFrontier);
+      } else {
+        backwardFrontier = expandBackward(backwardFrontier, backwardVisited, roots, depth);
+        if (backwardFrontier.intersects(forwardVisited)) {
+          return true;
+        }
+        backwardVisited.or(backwardFrontier);
+      }
+    }
+    return false;
+  }
+
+  /** Returns the unvisited documents whose node id is an edge of the frontier and that pass the traversal filter. */
+  private FixedBitSet expandForward(FixedBitSet frontier, FixedBitSet visited, int depth) throws IOException {
+    final RTimer timer = hops == null ? null : new RTimer();
+    if (edgeToNode == null) {
+      edgeToNode = getJoinIndex(edgeField, nodeField);
+      nodeDocs = new OrdDocs(searcher, nodeField, liveDocs);
+    }
+    final LongBitSet edgeOrds = collectOrds(frontier, JoinIndex.getTopLevelDocValues(searcher, edgeField));
+    final LongBitSet nodeOrds = new LongBitSet(Math.max(1, nodeDocs.valueCount()));
+    edgeToNode.mapOrds(edgeOrds, nodeOrds);
+
+    final FixedBitSet next = new FixedBitSet(maxDoc);
+    nodeDocs.addDocs(nodeOrds, doc -> !visited.get(doc) && passesFilter(doc), next);
+    recordHop("forward", depth, next, timer);
+    return next;
+  }
+
+  /**
+   * Returns the unvisited documents with an edge to a node id of the frontier that pass the traversal filter, or are
+   * roots.
+   */
+  private FixedBitSet expandBackward(FixedBitSet frontier, FixedBitSet visited, FixedBitSet roots, int depth) throws IOException {
+    final RTimer timer = hops == null ? null : new RTimer();
+    if (nodeToEdge == null) {
+      nodeToEdge = getJoinIndex(nodeField, edgeField);
+      edgeDocs = new OrdDocs(searcher, edgeField, liveDocs);
+    }
+    final LongBitSet nodeOrds = collectOrds(frontier, JoinIndex.getTopLevelDocValues(searcher, nodeField));
+    final LongBitSet edgeOrds = new LongBitSet(Math.max(1, edgeDocs.valueCount()));
+    nodeToEdge.mapOrds(nodeOrds, edgeOrds);
+
+    final FixedBitSet next = new FixedBitSet(maxDoc);
+    edgeDocs.addDocs(edgeOrds, doc -> !visited.get(doc) && (roots.get(doc) || passesFilter(doc)), next);
+    recordHop("backward", depth, next, timer);
+    return next;
+  }
+
+  private boolean passesFilter(int doc) {
+    return traversalFilter == null || traversalFilter.exists(doc);
+  }
+
+  private JoinIndex getJoinIndex(SchemaField from, SchemaField to) throws IOException {
+    final JoinIndex index = JoinIndex.getOrBuild(searcher, from, to);
+    if (index == null) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+          "field " + from.getName() + " has too many values for a bitset graph traversal");
+    }
+    return index;
+  }
+
+  /** Returns the ordinals of the values of the docs in the set. */
+  private static LongBitSet collectOrds(FixedBitSet docs, SortedSetDocValues values) throws IOException {
+    final LongBitSet ords = new LongBitSet(Math.max(1, values.getValueCount()));
+    final DocIdSetIterator it = new BitSetIterator(docs, 0L); // cost is not useful here
+    for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+      if (values.advanceExact(doc)) {
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          ords.set(ord);
+        }
+      }
+    }
+    return ords;
+  }
+
+  private void recordHop(String direction, int depth, FixedBitSet next, RTimer timer) {
+    if (hops == null) {
+      return;
+    }
+    final SimpleOrderedMap<Object> hop = new SimpleOrderedMap<>();
+    hop.add("direction", direction);
+    hop.add("depth", depth + 1);
+    hop.add("frontierSize", next.cardinality());
+    hop.add("time", timer.getTime());
+    hops.add("hop", hop);
+  }
+
+  @FunctionalInterface
+  private interface DocPredicate {
+    boolean test(int doc);
+  }
+
+  /** The live documents of each ordinal of a field. */
+  private static class OrdDocs {
+    private final int[] starts; // the docs of ord are docs[starts[ord]] to docs[starts[ord + 1] - 1]
+    private final int[] docs;
+
+    OrdDocs(SolrIndexSearcher searcher, SchemaField field, Bits liveDocs) throws IOException {
+      // first count the docs of every ord, shifted by one so that the prefix sums are the starts
+      SortedSetDocValues values = JoinIndex.getTopLevelDocValues(searcher, field);
+      if (values.getValueCount() >= Integer.MAX_VALUE) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "field " + field.getName() + " has too many values for a bitset graph traversal");
+      }
+      final int valueCount = (int) values.getValueCount();
+      starts = new int[valueCount + 1];
+      long total = 0;
+      for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+        if (liveDocs != null && !liveDocs.get(doc)) {
+          continue;
+        }
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          starts[(int) ord + 1]++;
+          total++;
+        }
+      }
+      if (total >= Integer.MAX_VALUE) {
+        throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+            "field " + field.getName() + " has too many values for a bitset graph traversal");
+      }
+      for (int ord = 0; ord < valueCount; ord++) {
+        starts[ord + 1] += starts[ord];
+      }
+
+      // then fill them in, in doc order
+      docs = new int[(int) total];
+      final int[] next = ArrayUtil.copyOfSubArray(starts, 0, valueCount);
+      values = JoinIndex.getTopLevelDocValues(searcher, field);
+      for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+        if (liveDocs != null && !liveDocs.get(doc)) {
+          continue;
+        }
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          docs[next[(int) ord]++] = doc;
+        }
+      }
+    }
+
+    int valueCount() {
+      return starts.length - 1;
+    }
+
+    void addDocs(LongBitSet ords, DocPredicate accept, FixedBitSet target) {
+      final long length = Math.min(ords.length(), valueCount());
+      for (long ord = length > 0 ? ords.nextSetBit(0) : -1; ord >= 0; ) {
+        for (int i = starts[(int) ord]; i < starts[(int) ord + 1]; i++) {
+          final int doc = docs[i];
+          if (accept.test(doc)) {
+            target.set(doc);
+          }
+        }
+        ord = ord + 1 < length ? ords.nextSetBit(ord + 1) : -1;
+      }
+    }
+  }
+}
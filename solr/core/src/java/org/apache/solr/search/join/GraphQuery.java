@@ -43,10 +43,15 @@ import org.apache.lucene.util.BytesRefHash;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.DaciukMihovAutomatonBuilder;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.BitDocSet;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RTimer;
 
 /**
  * GraphQuery - search for nodes and traverse edges in an index.
@@ -58,6 +63,9 @@ import org.apache.solr.search.SolrIndexSearcher;
  * maxDepth = the max depth to traverse.  (start nodes is depth=1)
  * onlyLeafNodes = only return documents that have no edge id values.
  * returnRoot = if false, the documents matching the initial query will not be returned.
+ * bitsetTraversal = traverse with bitsets and docValues ordinals instead of a query per hop.
+ * target = only return the documents matching this query that are reachable.
+ * bidirectional = with a bitset traversal and a single target, also search backward from the target.
  *
  * @lucene.experimental
  */
@@ -83,6 +91,15 @@ public class GraphQuery extends Query {
   
   /** False if documents matching the start query for the graph will be excluded from the final result set.  */
   private boolean returnRoot = true;
+
+  /** Traverse with bitsets and docValues ordinals (see {@link BitsetGraphTraversal}) instead of a query per hop. */
+  private boolean bitsetTraversal = false;
+
+  /** If not null, only the reachable documents matching this query are returned. */
+  private Query target;
+
+  /** Search backward from the target too, when it matches a single document and the traversal uses bitsets. */
+  private boolean bidirectional = false;
   
   /**
    * Create a graph query 
@@ -125,6 +142,13 @@ public class GraphQuery extends Query {
     sb.append("[returnRoot=").append(returnRoot).append(']');
     sb.append("[onlyLeafNodes=").append(onlyLeafNodes).append(']');
     sb.append("[useAutn=").append(useAutn).append(']');
+    if (bitsetTraversal) {
+      sb.append("[traversal=bitset]");
+    }
+    if (target != null) {
+      sb.append(" [Target: ").append(target.toString()).append(']');
+      sb.append("[bidirectional=").append(bidirectional).append(']');
+    }
     return sb.toString();
   }
   
@@ -169,6 +193,70 @@ public class GraphQuery extends Query {
      * @throws IOException - if a sub search fails... maybe other cases too! :)
      */
     private DocSet getDocSet() throws IOException {
+      if (bitsetTraversal) {
+        return getBitsetDocSet();
+      }
+      DocSet result = getQueryDocSet();
+      if (target != null) {
+        result = result.intersection(fromSearcher.getDocSet(target));
+      }
+      return result;
+    }
+
+    /**
+     * Computes the matching doc set with a {@link BitsetGraphTraversal}, adding the size of every hop to the debug
+     * output.
+     */
+    private DocSet getBitsetDocSet() throws IOException {
+      final SolrRequestInfo info = SolrRequestInfo.getRequestInfo();
+      final ResponseBuilder rb = info == null ? null : info.getResponseBuilder();
+      final boolean debug = rb != null && rb.isDebug();
+      final RTimer timer = debug ? new RTimer() : null;
+
+      final DocSet filter = traversalFilter == null ? null : fromSearcher.getDocSet(traversalFilter);
+      final BitsetGraphTraversal traversal = new BitsetGraphTraversal(fromSearcher, matchSchemaField, collectSchemaField, filter);
+      final NamedList<Object> hops = debug ? traversal.trackHops() : null;
+      // cached sets, which the traversal doesn't modify
+      final FixedBitSet roots = fromSearcher.getDocSetBits(q).getBits();
+      final FixedBitSet targets = target == null ? null : fromSearcher.getDocSetBits(target).getBits();
+
+      final FixedBitSet resultBits;
+      if (targets != null && bidirectional && targets.cardinality() == 1) {
+        final int targetDoc = targets.nextSetBit(0);
+        resultBits = new FixedBitSet(fromSearcher.maxDoc());
+        if (traversal.isReachable(roots, targetDoc, maxDepth)) {
+          resultBits.set(targetDoc);
+        }
+      } else {
+        resultBits = traversal.traverse(roots, maxDepth);
+        if (targets != null) {
+          resultBits.and(targets);
+        }
+      }
+      if (!returnRoot) {
+        resultBits.andNot(roots);
+      }
+      DocSet result = new BitDocSet(resultBits);
+      if (onlyLeafNodes) {
+        result = result.intersection(resolveLeafNodes());
+      }
+
+      if (debug) {
+        timer.stop();
+        SimpleOrderedMap<Object> dbg = new SimpleOrderedMap<>();
+        dbg.add("time", (long) timer.getTime());
+        dbg.add("rootSetSize", roots.cardinality());
+        dbg.add("resultSetSize", result.size());
+        dbg.add("hops", hops);
+        rb.addDebug(dbg, "graph", GraphQuery.this.toString());
+      }
+      return result;
+    }
+
+    /**
+     * Computes the matching doc set by searching a query of the edges collected at each hop.
+     */
+    private DocSet getQueryDocSet() throws IOException {
       // Size that the bit set needs to be.
       int capacity = fromSearcher.getRawReader().maxDoc();
       // The bit set to contain the results that match the query.
@@ -276,7 +364,8 @@ public class GraphQuery extends Query {
 
     @Override
     public boolean isCacheable(LeafReaderContext ctx) {
-      return true;
+      // the matches of a segment depend on the traversal of the whole index
+      return false;
     }
     
   }
@@ -402,6 +491,39 @@ public class GraphQuery extends Query {
     this.returnRoot = returnRoot;
   }
   
+  /**
+   * @return if true, the graph is traversed with bitsets and docValues ordinals rather than a query per hop.
+   */
+  public boolean isBitsetTraversal() {
+    return bitsetTraversal;
+  }
+
+  public void setBitsetTraversal(boolean bitsetTraversal) {
+    this.bitsetTraversal = bitsetTraversal;
+  }
+
+  /**
+   * @return the query that reachable documents must match to be returned, or null to return all of them.
+   */
+  public Query getTarget() {
+    return target;
+  }
+
+  public void setTarget(Query target) {
+    this.target = target;
+  }
+
+  /**
+   * @return if true, reachability of a single target is searched from both ends of the graph.
+   */
+  public boolean isBidirectional() {
+    return bidirectional;
+  }
+
+  public void setBidirectional(boolean bidirectional) {
+    this.bidirectional = bidirectional;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -414,6 +536,9 @@ public class GraphQuery extends Query {
     result = prime * result + Objects.hashCode(toField);
     result = prime * result + Objects.hashCode(traversalFilter);
     result = prime * result + (useAutn ? 1231 : 1237);
+    result = prime * result + (bitsetTraversal ? 1231 : 1237);
+    result = prime * result + Objects.hashCode(target);
+    result = prime * result + (bidirectional ? 1231 : 1237);
     return result;
   }
 
@@ -431,7 +556,10 @@ public class GraphQuery extends Query {
            useAutn == other.useAutn &&
            Objects.equals(q, other.q) &&
            Objects.equals(toField, other.toField) &&
-           Objects.equals(traversalFilter, other.traversalFilter);
+           Objects.equals(traversalFilter, other.traversalFilter) &&
+           bitsetTraversal == other.bitsetTraversal &&
+           Objects.equals(target, other.target) &&
+           bidirectional == other.bidirectional;
   }
 
   @Override
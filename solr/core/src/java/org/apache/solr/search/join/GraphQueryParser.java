@@ -19,6 +19,7 @@ package org.apache.solr.search.join;
 import org.apache.lucene.search.Query;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.SchemaField;
 import org.apache.solr.schema.StrField;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryParsing;
@@ -59,6 +60,24 @@ public class GraphQueryParser extends QParser {
     // this avoid having a large number of boolean clauses. (and it's faster too!)
     boolean useAutn = localParams.getBool("useAutn", false);
 
+    // "bitset" to traverse the graph with bitsets and docValues ordinals rather than a query per hop
+    String traversal = localParams.get("traversal", "query");
+    boolean bitsetTraversal;
+    if ("bitset".equals(traversal)) {
+      bitsetTraversal = true;
+      validateBitsetField(fromField);
+      validateBitsetField(toField);
+    } else if ("query".equals(traversal)) {
+      bitsetTraversal = false;
+    } else {
+      throw new SyntaxError("Unknown graph traversal: " + traversal);
+    }
+    // only the reachable documents that match the target query are returned
+    String targetS = localParams.get("target");
+    Query target = targetS == null ? null : subQuery(targetS, null).getQuery();
+    // search for a single target from both ends of the graph
+    boolean bidirectional = localParams.getBool("bidirectional", false);
+
     // Construct a graph query object based on parameters passed in.
     GraphQuery gq = new GraphQuery(rootNodeQuery, fromField, toField, traversalFilter);
     // set additional parameters that are not in the constructor.
@@ -66,6 +85,9 @@ public class GraphQueryParser extends QParser {
     gq.setOnlyLeafNodes(onlyLeafNodes);
     gq.setReturnRoot(returnRootNodes);
     gq.setUseAutn(useAutn);
+    gq.setBitsetTraversal(bitsetTraversal);
+    gq.setTarget(target);
+    gq.setBidirectional(bidirectional);
     // return the parsed graph query.
     return gq;
   }
@@ -95,5 +117,12 @@ public class GraphQueryParser extends QParser {
     throw new SyntaxError("FieldType for field=" + field + " not supported");
 
   }
+
+  private void validateBitsetField(String field) throws SyntaxError {
+    SchemaField sf = req.getSchema().getField(field);
+    if (!(sf.getType() instanceof StrField) || !sf.hasDocValues()) {
+      throw new SyntaxError("traversal=bitset requires string fields with docValues=true, but field " + field + " is not");
+    }
+  }
   
 }
@@ -41,6 +41,18 @@ public class MemOutputStream extends FastOutputStream {
     }
   }
 
+  /** Discards the content written so far, keeping the current buffer for reuse. */
+  public void reset() {
+    buffers.clear();
+    pos = 0;
+    written = 0;
+  }
+
+  /** Returns how many bytes fit before the current buffer has to be replaced. */
+  public int capacity() {
+    return buf.length;
+  }
+
   public void writeAll(FastOutputStream fos) throws IOException {
     for (byte[] buffer : buffers) {
       fos.write(buffer);
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.lang.invoke.MethodHandles;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.apache.solr.update.SolrCmdDistributor.Error;
+import org.apache.solr.update.SolrCmdDistributor.Req;
+import org.apache.solr.update.processor.DistributedUpdateProcessor.DistribPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.solr.update.processor.DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM;
+
+/**
+ * Coalesces the adds that concurrent update requests send from a shard leader to the same replica, so that
+ * many small client requests share one request per replica instead of each streaming its own.
+ * <p>
+ * Adds are queued per replica, request params and user principal. A single sender per queue takes whatever
+ * is queued, waits up to the linger time for more (but never beyond the maximum batch size), and sends it
+ * as one javabin request while the next batch builds up. Each {@link Req} gets its own result, so every
+ * client request is still acknowledged only once its own adds were accepted or failed. If a batch fails, its
+ * requests are sent again one by one, so that an error is only reported for the request that caused it.
+ * A queue is dropped once its sender finds it empty.
+ * <p>
+ * A batch carries the headers, such as the tracing context, of its first request.
+ * <p>
+ * Enabled by setting the <code>solr.cloud.replication.batchLingerMs</code> system property to a value
+ * greater than 0; <code>solr.cloud.replication.maxBatchSize</code> bounds the number of documents per batch.
+ */
+public class ReplicaUpdateBatcher {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final UpdateShardHandler updateShardHandler;
+  private final long lingerNanos;
+  private final int maxBatchSize;
+  private final Map<Key, Pipeline> pipelines = new ConcurrentHashMap<>();
+
+  private volatile Histogram batchSizes;
+  private volatile Timer lingerTimes;
+
+  /** Returns a batcher configured from system properties, or null if batching is disabled. */
+  static ReplicaUpdateBatcher fromSystemProperties(UpdateShardHandler updateShardHandler) {
+    int lingerMs = Integer.getInteger("solr.cloud.replication.batchLingerMs", 0);
+    if (lingerMs <= 0) {
+      return null;
+    }
+    int maxBatchSize = Integer.getInteger("solr.cloud.replication.maxBatchSize", 1000);
+    return new ReplicaUpdateBatcher(updateShardHandler, TimeUnit.MILLISECONDS.toNanos(lingerMs), maxBatchSize);
+  }
+
+  ReplicaUpdateBatcher(UpdateShardHandler updateShardHandler, long lingerNanos, int maxBatchSize) {
+    this.updateShardHandler = updateShardHandler;
+    this.lingerNanos = lingerNanos;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+  }
+
+  void initializeMetrics(SolrMetricsContext solrMetricsContext, String scope) {
+    batchSizes = solrMetricsContext.histogram("batchSize", scope, "replicationBatches");
+    lingerTimes = solrMetricsContext.timer("linger", scope, "replicationBatches");
+  }
+
+  /** Whether the request is a plain add from a leader to one of its replicas. */
+  static boolean isBatchable(Req req) {
+    return !req.synchronous
+        && req.cmd instanceof AddUpdateCommand
+        && !((AddUpdateCommand) req.cmd).isInPlaceUpdate()
+        && !(req.node instanceof SolrCmdDistributor.ForwardNode)
+        && DistribPhase.FROMLEADER.toString().equals(req.uReq.getParams().get(DISTRIB_UPDATE_PARAM))
+        && req.uReq.getDeleteByIdMap() == null && req.uReq.getDeleteQuery() == null
+        && req.uReq.getDocumentsMap() != null;
+  }
+
+  /**
+   * Queues the documents of the request for its replica.
+   * @return completes once the batch holding the documents was sent, with the error if it failed and null otherwise
+   */
+  public Future<Error> submit(Req req) {
+    ModifiableSolrParams params = new ModifiableSolrParams(req.uReq.getParams());
+    Key key = new Key(req.node.getUrl(), params.toQueryString(), req.uReq.getUserPrincipal());
+    Pending pending = new Pending(req);
+    // atomic with the removal of an idle pipeline, so the request can't end up in a pipeline that is gone
+    Pipeline pipeline = pipelines.compute(key, (k, p) -> {
+      Pipeline target = p == null ? new Pipeline(k, params) : p;
+      target.queue.add(pending);
+      return target;
+    });
+    pipeline.start();
+    return pending.result;
+  }
+
+  /** The number of queues, for tests. */
+  int numPipelines() {
+    return pipelines.size();
+  }
+
+  private static final class Key {
+    final String url;
+    final String params;
+    final Principal principal;
+
+    Key(String url, String params, Principal principal) {
+      this.url = url;
+      this.params = params;
+      this.principal = principal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return url.equals(other.url) && params.equals(other.params) && Objects.equals(principal, other.principal);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(url, params, principal);
+    }
+  }
+
+  private static final class Pending {
+    final Req req;
+    final CompletableFuture<Error> result = new CompletableFuture<>();
+
+    Pending(Req req) {
+      this.req = req;
+    }
+  }
+
+  private final class Pipeline implements Runnable {
+    final Key key;
+    final ModifiableSolrParams params;
+    final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private boolean running;  // guarded by this
+
+    Pipeline(Key key, ModifiableSolrParams params) {
+      this.key = key;
+      this.params = params;
+    }
+
+    void start() {
+      synchronized (this) {
+        if (running) return;
+        running = true;
+      }
+      try {
+        updateShardHandler.getUpdateExecutor().execute(this);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          running = false;
+        }
+        fail(drain(), e);
+      }
+    }
+
+    private List<Pending> drain() {
+      List<Pending> all = new ArrayList<>();
+      queue.drainTo(all);
+      return all;
+    }
+
+    @Override
+    public void run() {
+      for (;;) {
+        List<Pending> batch = new ArrayList<>();
+        long start = System.nanoTime();
+        int numDocs = take(batch, start + lingerNanos);
+        if (batch.isEmpty()) {
+          synchronized (this) {
+            if (queue.isEmpty()) {
+              running = false;
+              pipelines.computeIfPresent(key, (k, p) -> p == this && queue.isEmpty() ? null : p);
+              return;
+            }
+          }
+          continue;
+        }
+        Timer lingerTimes = ReplicaUpdateBatcher.this.lingerTimes;
+        if (lingerTimes != null) lingerTimes.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Histogram batchSizes = ReplicaUpdateBatcher.this.batchSizes;
+        if (batchSizes != null) batchSizes.update(numDocs);
+        send(batch);
+      }
+    }
+
+    /** Takes queued requests until the batch is full or the deadline passed; returns the number of documents. */
+    private int take(List<Pending> batch, long deadline) {
+      int numDocs = 0;
+      while (numDocs < maxBatchSize) {
+        Pending pending = queue.poll();
+        if (pending == null && !batch.isEmpty()) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) break;
+          try {
+            pending = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+        if (pending == null) break;
+        batch.add(pending);
+        numDocs += pending.req.uReq.getDocumentsMap().size();
+      }
+      return numDocs;
+    }
+
+    private void send(List<Pending> batch) {
+      try {
+        updateShardHandler.getUpdateOnlyHttpClient().request(newRequest(batch));
+      } catch (Exception e) {
+        if (batch.size() > 1) {
+          // one bad document fails the whole batch; find out which requests it belongs to
+          log.warn("Error sending a batch of {} requests to {}, sending them one by one", batch.size(), key.url, e);
+          for (Pending pending : batch) {
+            send(Collections.singletonList(pending));
+          }
+        } else {
+          log.error("Error sending an update to {}", key.url, e);
+          fail(batch, e);
+        }
+        return;
+      }
+      for (Pending pending : batch) {
+        pending.req.trackRequestResult(null, null, true);
+        pending.result.complete(null);
+      }
+    }
+
+    private UpdateRequest newRequest(List<Pending> batch) {
+      UpdateRequest uReq = new UpdateRequest();
+      uReq.setParams(new ModifiableSolrParams(params));
+      uReq.setUserPrincipal(key.principal);
+      // headers such as the tracing context were added to each request by SolrCmdDistributor
+      Map<String, String> headers = batch.get(0).req.uReq.getHeaders();
+      if (headers != null) {
+        headers.forEach(uReq::addHeader);
+      }
+      for (Pending pending : batch) {
+        for (Map.Entry<SolrInputDocument, Map<String, Object>> doc : pending.req.uReq.getDocumentsMap().entrySet()) {
+          Map<String, Object> options = doc.getValue();
+          uReq.add(doc.getKey(),
+              options == null ? null : (Integer) options.get(UpdateRequest.COMMIT_WITHIN),
+              options == null ? null : (Boolean) options.get(UpdateRequest.OVERWRITE));
+        }
+      }
+      // the replica flushes its buffered updates after the last doc of a client batch
+      if (batch.get(batch.size() - 1).req.uReq.isLastDocInBatch()) {
+        uReq.lastDocInBatch();
+      }
+      uReq.setBasePath(key.url);
+      return uReq;
+    }
+
+    private void fail(List<Pending> batch, Exception e) {
+      for (Pending pending : batch) {
+        Error error = new Error();
+        error.e = e;
+        error.req = pending.req;
+        if (e instanceof SolrException) {
+          error.statusCode = ((SolrException) e).code();
+        }
+        if (!pending.req.shouldRetry(error)) {
+          // only track the error if the request is not going to be retried
+          pending.req.trackRequestResult(null, null, false);
+        }
+        pending.result.complete(error);
+      }
+    }
+  }
+}
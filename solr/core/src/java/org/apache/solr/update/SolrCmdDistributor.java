@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import io.opentracing.Span;
@@ -73,6 +74,9 @@ public class SolrCmdDistributor implements Closeable {
   
   private final CompletionService<Object> completionService;
   private final Set<Future<Object>> pending = new HashSet<>();
+
+  private final ReplicaUpdateBatcher batcher;  // null unless adds to replicas are batched across requests
+  private final List<Future<Error>> batched = new ArrayList<>();
   
   public static interface AbortCheck {
     public boolean abortCheck();
@@ -81,6 +85,7 @@ public class SolrCmdDistributor implements Closeable {
   public SolrCmdDistributor(UpdateShardHandler updateShardHandler) {
     this.clients = new StreamingSolrClients(updateShardHandler);
     this.completionService = new ExecutorCompletionService<>(updateShardHandler.getUpdateExecutor());
+    this.batcher = updateShardHandler.getReplicaUpdateBatcher();
   }
   
   /* For tests only */
@@ -88,6 +93,7 @@ public class SolrCmdDistributor implements Closeable {
     this.clients = clients;
     this.retryPause = retryPause;
     completionService = new ExecutorCompletionService<>(clients.getUpdateExecutor());
+    this.batcher = null;
   }
   
   public void finish() {    
@@ -264,6 +270,7 @@ public class SolrCmdDistributor implements Closeable {
 
   public void blockAndDoRetries() throws IOException {
     clients.blockUntilFinished();
+    awaitBatched();
     
     // wait for any async commits to complete
     while (pending != null && pending.size() > 0) {
@@ -281,6 +288,25 @@ public class SolrCmdDistributor implements Closeable {
 
   }
   
+  // waits for the adds handed to the batcher, collecting their errors for retries
+  private void awaitBatched() {
+    for (Future<Error> future : batched) {
+      try {
+        Error error = future.get();
+        if (error != null) {
+          errors.add(error);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.error("awaitBatched interrupted", e);
+        break;
+      } catch (ExecutionException e) {
+        log.error("Unexpected error from a batched update", e);
+      }
+    }
+    batched.clear();
+  }
+
   void addCommit(UpdateRequest ureq, CommitUpdateCommand cmd) {
     if (cmd == null) return;
     ureq.setAction(cmd.optimize ? AbstractUpdateRequest.ACTION.OPTIMIZE
@@ -300,6 +326,19 @@ public class SolrCmdDistributor implements Closeable {
           new SolrRequestCarrier(req.uReq));
     }
 
+    if (batcher != null && ReplicaUpdateBatcher.isBatchable(req)) {
+      if (log.isDebugEnabled()) {
+        log.debug("batching update to {} retry: {} {} params {}"
+            , req.node.getUrl(), req.retries, req.cmd, req.uReq.getParams());
+      }
+      batched.add(batcher.submit(req));
+      return;
+    }
+    if (!batched.isEmpty()) {
+      // keep the order of this request's updates: earlier adds reach the replicas first
+      awaitBatched();
+    }
+
     if (req.synchronous) {
       blockAndDoRetries();
 
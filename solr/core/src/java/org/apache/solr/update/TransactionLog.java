@@ -17,11 +17,16 @@
 package org.apache.solr.update;
 
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
@@ -35,8 +40,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Constants;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.DataInputInputStream;
@@ -44,6 +52,7 @@ import org.apache.solr.common.util.FastInputStream;
 import org.apache.solr.common.util.FastOutputStream;
 import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.common.util.ObjectReleaseTracker;
+import org.apache.solr.common.util.SuppressForbidden;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,6 +94,32 @@ public class TransactionLog implements Closeable {
   AtomicInteger refcount = new AtomicInteger(1);
   Map<String, Integer> globalStringMap = new HashMap<>();
   List<String> globalStringList = new ArrayList<>();
+  // set once the header, and so the global strings, are final; records can then be encoded without the lock
+  protected volatile boolean headerWritten;
+
+  // records are serialized into a buffer of the writing thread before being appended under the lock
+  private static final ThreadLocal<MemOutputStream> recordBuffer = new ThreadLocal<>();
+  // the largest buffer kept by a thread between records; larger records get a buffer of their own
+  private static final int MAX_REUSED_RECORD_BUFFER = 64 * 1024;
+
+  // group commit of fsyncs: one thread syncs on behalf of all the requests waiting for it
+  private final Object syncLock = new Object();
+  private long syncedPosition;    // guarded by syncLock
+  private boolean syncing;        // guarded by syncLock
+  private long syncCount;         // guarded by syncLock
+  // how long a syncing thread waits for concurrent requests to add their records to the same fsync
+  protected volatile long groupSyncMaxWaitNanos;
+
+  // once the log is no longer appended to, lookups and reverse reads go through a mapping of the file
+  protected volatile boolean mapReads;
+  private volatile MappedLog mapped;
+  // every mapping made of this log; earlier ones may still be read, so they are all released on close
+  private final List<MappedLog> mappings = new ArrayList<>(); // guarded by this
+  private boolean forceClosed;
+  // mapped files can't be deleted on Windows until the mapping is garbage collected
+  private static final boolean MAP_READS_SUPPORTED = Constants.JRE_IS_64BIT && !Constants.WINDOWS;
+  // releases a mapping without waiting for GC, or null if the JVM doesn't allow it
+  private static final MethodHandle UNMAPPER = unmapper();
 
   // write a BytesRef as a byte array
   static final JavaBinCodec.ObjectResolver resolver = new JavaBinCodec.ObjectResolver() {
@@ -189,6 +224,7 @@ public class TransactionLog implements Closeable {
           assert channel.position() == start;
           fos.setWritten(start);    // reflect that we aren't starting at the beginning
           assert fos.size() == channel.size();
+          headerWritten = true;
         } else {
           addGlobalStrings(globalStrings);
         }
@@ -320,6 +356,7 @@ public class TransactionLog implements Closeable {
     codec.marshal(header, fos);
 
     endRecord(pos);
+    headerWritten = true;
   }
 
   protected void endRecord(long startRecordPosition) throws IOException {
@@ -375,29 +412,77 @@ public class TransactionLog implements Closeable {
 
     try {
       checkWriteHeader(codec, sdoc);
+      return append(encode(codec, cmd, prevPointer));
+    } catch (IOException e) {
+      // TODO: reset our file pointer back to "pos", the start of this record.
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error logging add", e);
+    }
+  }
 
-      // adaptive buffer sizing
-      int bufSize = lastAddSize;    // unsynchronized access of lastAddSize should be fine
-      // at least 256 bytes and at most 1 MB
-      bufSize = Math.min(1024 * 1024, Math.max(256, bufSize + (bufSize >> 3) + 256));
+  /**
+   * Serializes an add command for {@link #append(MemOutputStream)} without holding any lock, so that
+   * concurrent indexing threads only contend for the append itself.
+   * The result can only be appended to this log, and lives in a buffer of the calling thread that its next
+   * call to encode overwrites.
+   * @return the serialized command, or null if it has to be written with {@link #write(AddUpdateCommand, long)}:
+   * in-place updates need the previous pointer, and the first record of a log also writes its header.
+   */
+  public MemOutputStream encode(AddUpdateCommand cmd) {
+    if (cmd.isInPlaceUpdate() || !headerWritten) {
+      return null;
+    }
+    try {
+      return encode(new LogCodec(resolver), cmd, -1);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error logging add", e);
+    }
+  }
 
-      MemOutputStream out = new MemOutputStream(new byte[bufSize]);
-      codec.init(out);
-      if (cmd.isInPlaceUpdate()) {
-        codec.writeTag(JavaBinCodec.ARR, 5);
-        codec.writeInt(UpdateLog.UPDATE_INPLACE);  // should just take one byte
-        codec.writeLong(cmd.getVersion());
-        codec.writeLong(prevPointer);
-        codec.writeLong(cmd.prevVersion);
-        codec.writeSolrInputDocument(cmd.getSolrInputDocument());
-      } else {
-        codec.writeTag(JavaBinCodec.ARR, 3);
-        codec.writeInt(UpdateLog.ADD);  // should just take one byte
-        codec.writeLong(cmd.getVersion());
-        codec.writeSolrInputDocument(cmd.getSolrInputDocument());
-      }
-      lastAddSize = (int) out.size();
+  private MemOutputStream encode(LogCodec codec, AddUpdateCommand cmd, long prevPointer) throws IOException {
+    // adaptive buffer sizing
+    int bufSize = lastAddSize;    // unsynchronized access of lastAddSize should be fine
+    // at least 256 bytes and at most 1 MB
+    bufSize = Math.min(1024 * 1024, Math.max(256, bufSize + (bufSize >> 3) + 256));
+
+    MemOutputStream out = recordBuffer.get();
+    if (bufSize > MAX_REUSED_RECORD_BUFFER) {
+      // don't keep up to 1MB per indexing thread around for the occasional large document
+      recordBuffer.remove();
+      out = new MemOutputStream(new byte[bufSize]);
+    } else if (out == null || out.capacity() < bufSize) {
+      out = new MemOutputStream(new byte[bufSize]);
+      recordBuffer.set(out);
+    } else {
+      out.reset();
+    }
+    codec.init(out);
+    if (cmd.isInPlaceUpdate()) {
+      codec.writeTag(JavaBinCodec.ARR, 5);
+      codec.writeInt(UpdateLog.UPDATE_INPLACE);  // should just take one byte
+      codec.writeLong(cmd.getVersion());
+      codec.writeLong(prevPointer);
+      codec.writeLong(cmd.prevVersion);
+      codec.writeSolrInputDocument(cmd.getSolrInputDocument());
+    } else {
+      codec.writeTag(JavaBinCodec.ARR, 3);
+      codec.writeInt(UpdateLog.ADD);  // should just take one byte
+      codec.writeLong(cmd.getVersion());
+      codec.writeSolrInputDocument(cmd.getSolrInputDocument());
+    }
+    lastAddSize = (int) out.size();
+    if (!out.buffers.isEmpty() && recordBuffer.get() == out) {
+      // the record overflowed into extra chunks, which the thread shouldn't hold on to once it's appended
+      recordBuffer.remove();
+    }
+    return out;
+  }
 
+  /**
+   * Appends a record serialized by {@link #encode(AddUpdateCommand)}.
+   * @return the position pointer of the record
+   */
+  public long append(MemOutputStream out) {
+    try {
       synchronized (this) {
         long pos = fos.size();   // if we had flushed, this should be equal to channel.position()
         assert pos != 0;
@@ -414,7 +499,6 @@ public class TransactionLog implements Closeable {
         // fos.flushBuffer();  // flush later
         return pos;
       }
-
     } catch (IOException e) {
       // TODO: reset our file pointer back to "pos", the start of this record.
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error logging add", e);
@@ -514,6 +598,13 @@ public class TransactionLog implements Closeable {
     if (pos < 0) return null;
 
     try {
+      MappedLog m = mapReads ? mapped(pos + 1) : null;
+      if (m != null) {
+        try (LogCodec codec = new LogCodec(resolver)) {
+          return codec.readVal(m.stream(pos));
+        }
+      }
+
       // make sure any unflushed buffer has been flushed
       synchronized (this) {
         // TODO: optimize this by keeping track of what we have flushed up to
@@ -559,6 +650,41 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Called once updates are no longer appended to this log. From then on {@link #lookup(long)} and
+   * {@link #getReverseReader()} read the log through a memory mapping of the file instead of seeking
+   * and copying through the channel. A later append (for instance a commit record) just extends the mapping.
+   */
+  public void mapForReads() {
+    mapReads = MAP_READS_SUPPORTED;
+  }
+
+  /**
+   * Returns a mapping of the log covering at least <code>end</code> bytes, or null if the log is too
+   * large for a single mapping.
+   */
+  private MappedLog mapped(long end) throws IOException {
+    MappedLog m = mapped;
+    if (m != null && end <= m.length) {
+      return m;
+    }
+    synchronized (this) {
+      fos.flushBuffer();
+      // records are written entirely under this lock, so the mapping ends on a record boundary
+      long size = fos.size();
+      if (size > Integer.MAX_VALUE || end > size) {
+        return null;
+      }
+      m = mapped;
+      if (m == null || m.length < size) {
+        m = new MappedLog(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        mappings.add(m);
+        mapped = m;
+      }
+      return m;
+    }
+  }
+
   /** Move to a read-only state, closing and releasing resources while keeping the log available for reads */
   public void closeOutput() {
 
@@ -567,15 +693,17 @@ public class TransactionLog implements Closeable {
   public void finish(UpdateLog.SyncLevel syncLevel) {
     if (syncLevel == UpdateLog.SyncLevel.NONE) return;
     try {
+      long target;
       synchronized (this) {
         fos.flushBuffer();
+        target = fos.size();
       }
 
       if (syncLevel == UpdateLog.SyncLevel.FSYNC) {
         // Since fsync is outside of synchronized block, we can end up with a partial
         // last record on power failure (which is OK, and does not represent an error...
         // we just need to be aware of it when reading).
-        raf.getFD().sync();
+        sync(target);
       }
 
     } catch (IOException e) {
@@ -583,6 +711,60 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Makes sure everything up to <code>target</code> is on disk. Concurrent callers are grouped: while one
+   * thread syncs, the others wait for it and only sync themselves if their records were flushed after
+   * it started.
+   */
+  private void sync(long target) throws IOException {
+    synchronized (syncLock) {
+      while (syncedPosition < target && syncing) {
+        try {
+          syncLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Interrupted while waiting for fsync", e);
+        }
+      }
+      if (syncedPosition >= target) {
+        return;
+      }
+      syncing = true;
+    }
+
+    long synced = 0;
+    try {
+      long waitNanos = groupSyncMaxWaitNanos;
+      if (waitNanos > 0) {
+        // give concurrent requests a chance to add their records to this fsync
+        LockSupport.parkNanos(waitNanos);
+      }
+      long end;
+      synchronized (this) {
+        fos.flushBuffer();
+        end = fos.size();
+      }
+      raf.getFD().sync();
+      synced = end;
+    } finally {
+      synchronized (syncLock) {
+        if (synced > 0) {
+          syncCount++;
+        }
+        syncedPosition = Math.max(syncedPosition, synced);
+        syncing = false;
+        syncLock.notifyAll();
+      }
+    }
+  }
+
+  /** The number of fsyncs of this log, for tests. */
+  long getSyncCount() {
+    synchronized (syncLock) {
+      return syncCount;
+    }
+  }
+
   public void close() {
     try {
       if (debug) {
@@ -592,6 +774,12 @@ public class TransactionLog implements Closeable {
       synchronized (this) {
         fos.flush();
         fos.close();
+        mapped = null;
+        // once the last reference is gone nothing reads the mappings anymore; a forced close may still have readers
+        if (refcount.get() <= 0 && !forceClosed) {
+          unmap();
+        }
+        mappings.clear();
       }
 
       if (deleteOnClose) {
@@ -609,10 +797,48 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /** The number of mappings of this log that haven't been released, for tests. */
+  synchronized int numMappings() {
+    return mappings.size();
+  }
+
+  private void unmap() {
+    if (UNMAPPER == null) {
+      return;
+    }
+    for (MappedLog m : mappings) {
+      try {
+        UNMAPPER.invokeExact(m.buffer);
+      } catch (Throwable t) {
+        log.warn("Unable to unmap {}, leaving it to garbage collection", tlogFile, t);
+        return;
+      }
+    }
+  }
+
+  /** The same unmap hack as Lucene's MMapDirectory: sun.misc.Unsafe#invokeCleaner(ByteBuffer) */
+  @SuppressForbidden(reason = "Needs access to sun.misc.Unsafe to unmap logs")
+  private static MethodHandle unmapper() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+          MethodType.methodType(void.class, ByteBuffer.class));
+      Field f = unsafeClass.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      return invokeCleaner.bindTo(f.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.info("Transaction log mappings can't be unmapped on this JVM, they are released by garbage collection: {}", e.toString());
+      return null;
+    }
+  }
+
   public void forceClose() {
     if (refcount.get() > 0) {
       log.error("Error: Forcing close of {}", this);
       refcount.set(0);
+      synchronized (this) {
+        forceClosed = true;
+      }
       close();
     }
   }
@@ -650,6 +876,10 @@ public class TransactionLog implements Closeable {
 
   /** Returns a single threaded reverse reader */
   public ReverseReader getReverseReader() throws IOException {
+    MappedLog m = mapReads ? mapped(position()) : null;
+    if (m != null) {
+      return new MappedReverseReader(m);
+    }
     return new FSReverseReader();
   }
 
@@ -888,6 +1118,207 @@ public class TransactionLog implements Closeable {
 
   }
 
+  /** Reads the records of a mapped log from the end, using its index of record offsets. */
+  public class MappedReverseReader extends ReverseReader {
+    private final MappedLog mappedLog;
+    private final long[] offsets;
+    private int index;
+    private LogCodec codec = new LogCodec(resolver) {
+      @Override
+      public SolrInputDocument readSolrInputDocument(DataInputInputStream dis) {
+        // Given that the SolrInputDocument is last in an add record, it's OK to just skip
+        // reading it completely.
+        return null;
+      }
+    };
+
+    MappedReverseReader(MappedLog mappedLog) {
+      incref();
+      this.mappedLog = mappedLog;
+      this.offsets = mappedLog.offsets();
+      this.index = offsets.length;
+    }
+
+    @Override
+    public Object next() throws IOException {
+      if (index <= 0) return null;
+      return codec.readVal(mappedLog.stream(offsets[--index]));
+    }
+
+    @Override
+    public long position() {
+      return offsets[index];
+    }
+
+    @Override
+    public void close() {
+      decref();
+    }
+
+    @Override
+    public String toString() {
+      return "MappedReverseReader{" + "file=" + tlogFile + ", position=" + (index < offsets.length ? offsets[index] : mappedLog.length) + "}";
+    }
+  }
+
+  /**
+   * A read only mapping of the first <code>length</code> bytes of a log. The offsets of its records are
+   * indexed the first time they are needed, by following the record lengths back from the end.
+   */
+  static class MappedLog {
+    final ByteBuffer buffer;
+    final long length;
+    private volatile long[] offsets;
+
+    MappedLog(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.length = buffer.capacity();
+    }
+
+    MappedInputStream stream(long pos) {
+      ByteBuffer bb = buffer.duplicate();
+      bb.position((int) pos);
+      return new MappedInputStream(bb);
+    }
+
+    /** Returns the start of every record after the header, in log order. */
+    long[] offsets() {
+      long[] o = offsets;
+      if (o == null) {
+        long[] starts = new long[16];
+        int n = 0;
+        long end = length;
+        while (end >= 8) {
+          long start = end - 4 - buffer.getInt((int) (end - 4));
+          // stop at the header, or at anything that doesn't look like a record (e.g. a partial last record)
+          if (start <= 0 || start >= end - 4) break;
+          starts = ArrayUtil.grow(starts, n + 1);
+          starts[n++] = start;
+          end = start;
+        }
+        o = new long[n];
+        for (int i = 0; i < n; i++) {
+          o[i] = starts[n - 1 - i];
+        }
+        offsets = o;
+      }
+      return o;
+    }
+  }
+
+  /** A {@link DataInputInputStream} over a slice of a mapped log, reading without any copying or syscalls. */
+  static class MappedInputStream extends DataInputInputStream {
+    private final ByteBuffer bb;
+
+    MappedInputStream(ByteBuffer bb) {
+      this.bb = bb;
+    }
+
+    private void require(int n) throws EOFException {
+      if (bb.remaining() < n) {
+        throw new EOFException("Read past the end of the mapped log: position=" + bb.position() + " length=" + bb.limit());
+      }
+    }
+
+    @Override
+    public int read() {
+      return bb.hasRemaining() ? bb.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!bb.hasRemaining()) return -1;
+      len = Math.min(len, bb.remaining());
+      bb.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+      readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+      require(len);
+      bb.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+      n = Math.max(0, Math.min(n, bb.remaining()));
+      bb.position(bb.position() + n);
+      return n;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+      return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      require(1);
+      return bb.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+      return readByte() & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+      require(2);
+      return bb.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+      return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+      require(2);
+      return bb.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      require(4);
+      return bb.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+      require(8);
+      return bb.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+      require(4);
+      return bb.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+      require(8);
+      return bb.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+    }
+  }
+
   static class ChannelFastInputStream extends FastInputStream {
     private FileChannel ch;
 
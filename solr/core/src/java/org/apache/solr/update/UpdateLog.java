@@ -187,8 +187,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   long id = -1;
   protected volatile State state = State.ACTIVE;
 
-  protected TransactionLog bufferTlog;
-  protected TransactionLog tlog;
+  // volatile so that add() can serialize documents for the current log before taking the lock
+  protected volatile TransactionLog bufferTlog;
+  protected volatile TransactionLog tlog;
   protected TransactionLog prevTlog;
   protected TransactionLog prevTlogOnPrecommit;
   protected final Deque<TransactionLog> logs = new LinkedList<>();  // list of recent logs, newest first
@@ -242,6 +243,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected VersionInfo versionInfo;
 
   protected SyncLevel defaultSyncLevel = SyncLevel.FLUSH;
+  // with syncLevel=FSYNC, how long a request syncing the log waits for others to share its fsync
+  protected int groupSyncMaxWaitMs;
 
   volatile UpdateHandler uhandler;    // a core reload can change this reference!
   protected volatile boolean cancelApplyBufferUpdate;
@@ -345,9 +348,13 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     if (numVersionBuckets <= 0)
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
           "Number of version buckets must be greater than 0!");
+    groupSyncMaxWaitMs = objToInt(info.initArgs.get("groupSyncMaxWaitMs"), 0);
+    if (groupSyncMaxWaitMs < 0)
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+          "groupSyncMaxWaitMs must not be negative!");
 
-    log.info("Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={}",
-        dataDir, defaultSyncLevel, numRecordsToKeep, maxNumLogsToKeep, numVersionBuckets);
+    log.info("Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={} groupSyncMaxWaitMs={}",
+        dataDir, defaultSyncLevel, numRecordsToKeep, maxNumLogsToKeep, numVersionBuckets, groupSyncMaxWaitMs);
   }
 
   /* Note, when this is called, uhandler is not completely constructed.
@@ -517,6 +524,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       break;
     }
 
+    if (oldLog != tlog) {
+      // nothing but a commit is appended to old logs, they are only read from now on
+      oldLog.mapForReads();
+    }
+
     // don't incref... we are taking ownership from the caller.
     logs.addFirst(oldLog);
   }
@@ -572,10 +584,22 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       cmd.solrDoc.setField(IndexSchema.ROOT_FIELD_NAME, cmd.getIndexedIdStr());
     }
 
+    // Serialize the document before taking the lock, so that concurrent adds only serialize on
+    // appending the bytes and updating the maps. If the log is switched in the meantime the
+    // document is serialized again for the new one below.
+    final boolean buffering = (cmd.getFlags() & UpdateCommand.BUFFERING) != 0;
+    final TransactionLog encodedFor = buffering ? bufferTlog : tlog;
+    final MemOutputStream encoded = encodedFor == null || (cmd.getFlags() & UpdateCommand.REPLAY) != 0 ?
+        null : encodedFor.encode(cmd);
+
     synchronized (this) {
-      if ((cmd.getFlags() & UpdateCommand.BUFFERING) != 0) {
+      if (buffering) {
         ensureBufferTlog();
-        bufferTlog.write(cmd);
+        if (encoded != null && bufferTlog == encodedFor) {
+          bufferTlog.append(encoded);
+        } else {
+          bufferTlog.write(cmd);
+        }
         return;
       }
 
@@ -585,7 +609,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       // don't log if we are replaying from another log
       if (!updateFromOldTlogs(cmd)) {
         ensureLog();
-        pos = tlog.write(cmd, prevPointer);
+        if (encoded != null && tlog == encodedFor) {
+          pos = tlog.append(encoded);
+        } else {
+          pos = tlog.write(cmd, prevPointer);
+        }
       }
 
       if (!clearCaches) {
@@ -1331,6 +1359,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     String newLogName = String.format(Locale.ROOT, LOG_FILENAME_PATTERN, BUFFER_TLOG_NAME, System.nanoTime());
     bufferTlog = newTransactionLog(new File(tlogDir, newLogName), globalStrings, false);
     bufferTlog.isBuffer = true;
+    bufferTlog.groupSyncMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(groupSyncMaxWaitMs);
   }
 
   // Cleanup old buffer tlogs
@@ -1347,7 +1376,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected void ensureLog() {
     if (tlog == null) {
       String newLogName = String.format(Locale.ROOT, LOG_FILENAME_PATTERN, TLOG_NAME, id);
-      tlog = newTransactionLog(new File(tlogDir, newLogName), globalStrings, false);
+      TransactionLog newLog = newTransactionLog(new File(tlogDir, newLogName), globalStrings, false);
+      newLog.groupSyncMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(groupSyncMaxWaitMs);
+      tlog = newLog;
     }
   }
 
@@ -87,6 +87,7 @@ public class UpdateShardHandler implements SolrInfoBean {
 
   private final InstrumentedHttpListenerFactory updateHttpListenerFactory;
 
+  private final ReplicaUpdateBatcher replicaUpdateBatcher;
 
   private final Set<String> metricNames = ConcurrentHashMap.newKeySet();
   private SolrMetricsContext solrMetricsContext;
@@ -136,6 +137,8 @@ public class UpdateShardHandler implements SolrInfoBean {
     queryParams.add(DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM);
     updateOnlyClient.setQueryParams(queryParams);
 
+    replicaUpdateBatcher = ReplicaUpdateBatcher.fromSystemProperties(this);
+
     ThreadFactory recoveryThreadFactory = new SolrNamedThreadFactory("recoveryExecutor");
     if (cfg != null && cfg.getMaxRecoveryThreads() > 0) {
       if (log.isDebugEnabled()) {
@@ -189,6 +192,9 @@ public class UpdateShardHandler implements SolrInfoBean {
         SolrMetricManager.mkName("updateOnlyExecutor", expandedScope, "threadPool"));
     recoveryExecutor = MetricUtils.instrumentedExecutorService(recoveryExecutor, this, solrMetricsContext.getMetricRegistry(),
         SolrMetricManager.mkName("recoveryExecutor", expandedScope, "threadPool"));
+    if (replicaUpdateBatcher != null) {
+      replicaUpdateBatcher.initializeMetrics(solrMetricsContext, expandedScope);
+    }
   }
 
   @Override
@@ -231,6 +237,14 @@ public class UpdateShardHandler implements SolrInfoBean {
     return updateExecutor;
   }
 
+  /**
+   * @return the batcher coalescing adds sent from leaders to replicas, or null if batching is disabled
+   * @see ReplicaUpdateBatcher
+   */
+  public ReplicaUpdateBatcher getReplicaUpdateBatcher() {
+    return replicaUpdateBatcher;
+  }
+
   public PoolingHttpClientConnectionManager getDefaultConnectionManager() {
     return defaultConnectionManager;
   }
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.util.SuppressForbidden;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts long values in an open addressing hash table (power of two sized) whose values and counts live in
+ * direct memory, so that counting many distinct values doesn't allocate large heap arrays.  Every distinct value
+ * gets a slot, which stays the same until the table grows (see {@link RehashListener}).
+ * <p>
+ * The buffers are recycled through a pool shared by all tables, bounded by the
+ * <code>solr.offHeapLongCounts.poolMB</code> system property (64 by default), so they must be released with
+ * {@link #close()} once the slots aren't needed anymore.  Buffers that don't fit in the pool are freed right away,
+ * or left to the GC if the JVM doesn't allow it.
+ * </p>
+ * @lucene.internal
+ */
+public class OffHeapLongCounts implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  // frees a direct buffer without waiting for GC, or null if the JVM doesn't allow it
+  private static final MethodHandle CLEANER = cleaner();
+
+  public static final float LOAD_FACTOR = 0.7f;
+
+  private static final BufferPool POOL = new BufferPool(Integer.getInteger("solr.offHeapLongCounts.poolMB", 64) * 1024L * 1024L);
+
+  /** Called when the table grew, before any slot of the new table is handed out */
+  public interface RehashListener {
+    /**
+     * @param oldToNewMapping the new slot of every slot of the old table, -1 for empty slots
+     */
+    void rehashed(int[] oldToNewMapping);
+  }
+
+  // the value of a slot is at index 2*slot, its count at 2*slot+1.  A count of 0 means the slot is empty.
+  private ByteBuffer buffer;
+  private LongBuffer table;
+  private int mask;
+  private int cardinality;
+  private int threshold;
+  private RehashListener rehashListener;
+
+  /** sz must be a power of two */
+  public OffHeapLongCounts(int sz) {
+    allocate(sz);
+  }
+
+  private void allocate(int sz) {
+    final long capacity = (long) sz * 2 * Long.BYTES;
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too many distinct values to count: " + sz + " slots don't fit in a buffer");
+    }
+    buffer = POOL.acquire((int) capacity);
+    table = buffer.asLongBuffer();
+    mask = sz - 1;
+    threshold = (int) (sz * LOAD_FACTOR);
+  }
+
+  /** Sets the listener to notify when the table grows.  The mapping of old to new slots is only computed if set. */
+  public void setRehashListener(RehashListener rehashListener) {
+    this.rehashListener = rehashListener;
+  }
+
+  /** Current number of slots in the hash table */
+  public int numSlots() {
+    return mask + 1;
+  }
+
+  /** The number of distinct values counted */
+  public int cardinality() {
+    return cardinality;
+  }
+
+  /** The value of a slot, only meaningful if its count isn't 0 */
+  public long getVal(int slot) {
+    return table.get(slot << 1);
+  }
+
+  /** The count of a slot, 0 for empty slots */
+  public long getCount(int slot) {
+    return table.get((slot << 1) + 1);
+  }
+
+  private static int hash(long val) {
+    // For floats: exponent bits start at bit 23 for single precision,
+    // and bit 52 for double precision.
+    // Many values will only have significant bits just to the right of that,
+    // and the leftmost bits will all be zero.
+
+    // For now, lets just settle to get first 8 significant mantissa bits of double or float in the lowest bits of our hash
+    // The upper bits of our hash will be irrelevant.
+    return (int) (val + (val >>> 44) + (val >>> 15));
+  }
+
+  /** Counts one more occurrence of the value, and returns its slot */
+  public int add(long val) {
+    if (cardinality >= threshold) {
+      rehash();
+    }
+
+    int h = hash(val);
+    for (int slot = h & mask;  ;slot = (slot + ((h>>7)|1)) & mask) {
+      final int idx = slot << 1;
+      long count = table.get(idx + 1);
+      if (count == 0) {
+        table.put(idx, val);
+        table.put(idx + 1, 1);
+        cardinality++;
+        return slot;
+      } else if (table.get(idx) == val) {
+        // val is already in the set
+        table.put(idx + 1, count + 1);
+        return slot;
+      }
+    }
+  }
+
+  private void rehash() {
+    final ByteBuffer oldBuffer = buffer;
+    final LongBuffer oldTable = table;
+    final int oldSize = numSlots();
+    allocate(oldSize << 1);
+
+    final int[] oldToNewMapping = rehashListener == null ? null : new int[oldSize];
+    for (int i = 0; i < oldSize; i++) {
+      long count = oldTable.get((i << 1) + 1);
+      if (count == 0) {
+        if (oldToNewMapping != null) oldToNewMapping[i] = -1;
+        continue;
+      }
+
+      long val = oldTable.get(i << 1);
+
+      int h = hash(val);
+      int slot = h & mask;
+      while (table.get((slot << 1) + 1) != 0) {
+        slot = (slot + ((h>>7)|1)) & mask;
+      }
+      table.put(slot << 1, val);
+      table.put((slot << 1) + 1, count);
+      if (oldToNewMapping != null) oldToNewMapping[i] = slot;
+    }
+    POOL.release(oldBuffer);
+
+    if (rehashListener != null) {
+      rehashListener.rehashed(oldToNewMapping);
+    }
+  }
+
+  /** Returns the buffer of this table to the pool.  The table can't be used anymore. */
+  @Override
+  public void close() {
+    if (buffer != null) {
+      POOL.release(buffer);
+      buffer = null;
+      table = null;
+    }
+  }
+
+  /** Bytes of direct memory currently held by the pool, for tests */
+  static long pooledBytes() {
+    return POOL.pooledBytes();
+  }
+
+  /** The same hack as Lucene's MMapDirectory uses to unmap: sun.misc.Unsafe#invokeCleaner(ByteBuffer) */
+  @SuppressForbidden(reason = "Needs access to sun.misc.Unsafe to free direct buffers")
+  private static MethodHandle cleaner() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+          MethodType.methodType(void.class, ByteBuffer.class));
+      Field f = unsafeClass.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      return invokeCleaner.bindTo(f.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.info("Direct buffers of counts can't be freed on this JVM, they are released by garbage collection: {}", e.toString());
+      return null;
+    }
+  }
+
+  /** Direct buffers by capacity, up to a maximum number of bytes overall */
+  static class BufferPool {
+    private final Map<Integer, Queue<ByteBuffer>> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong freedBytes = new AtomicLong();
+    private final long maxBytes;
+
+    BufferPool(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    /** Returns a buffer of the given capacity with every count cleared */
+    ByteBuffer acquire(int capacity) {
+      final Queue<ByteBuffer> queue = buffers.get(capacity);
+      final ByteBuffer pooled = queue == null ? null : queue.poll();
+      if (pooled == null) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+      }
+      pooledBytes.addAndGet(-capacity);
+      final LongBuffer longs = pooled.asLongBuffer();
+      for (int i = 1, n = longs.capacity(); i < n; i += 2) {
+        longs.put(i, 0L);
+      }
+      return pooled;
+    }
+
+    void release(ByteBuffer buffer) {
+      final int capacity = buffer.capacity();
+      if (pooledBytes.addAndGet(capacity) > maxBytes) {
+        pooledBytes.addAndGet(-capacity);
+        free(buffer);
+        return;
+      }
+      buffers.computeIfAbsent(capacity, k -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    private void free(ByteBuffer buffer) {
+      if (CLEANER == null) {
+        return;
+      }
+      final int capacity = buffer.capacity();
+      try {
+        CLEANER.invokeExact(buffer);
+        freedBytes.addAndGet(capacity);
+      } catch (Throwable t) {
+        log.warn("Unable to free a direct buffer, leaving it to garbage collection", t);
+      }
+    }
+
+    /** Bytes of direct memory held by the pool */
+    long pooledBytes() {
+      return pooledBytes.get();
+    }
+
+    /** Bytes of direct memory freed because they didn't fit in the pool, for tests */
+    long freedBytes() {
+      return freedBytes.get();
+    }
+
+    /** Whether buffers that don't fit in the pool are freed right away, for tests */
+    static boolean canFree() {
+      return CLEANER != null;
+    }
+  }
+}
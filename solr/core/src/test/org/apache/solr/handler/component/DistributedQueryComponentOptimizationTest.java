@@ -135,6 +135,75 @@ public class DistributedQueryComponentOptimizationTest extends SolrCloudTestCase
 
   }
 
+  @Test
+  public void testDistribSinglePassMaxDocs() throws Exception {
+    QueryResponse nonDistribRsp = cluster.getSolrClient().query(COLLECTION,
+        new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", "payload asc", "rows", "5"));
+
+    // 5 rows from each of the shards fit in the limit, so the fields are fetched in the first phase
+    QueryResponse rsp = cluster.getSolrClient().query(COLLECTION,
+        new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", "payload asc", "rows", "5",
+            ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, Integer.toString(5 * sliceCount), "debug", "track"));
+    assertNull("A single pass request should not have a GET_FIELDS phase", getTrack(rsp).get("GET_FIELDS"));
+    compareResults(rsp, nonDistribRsp);
+
+    rsp = cluster.getSolrClient().query(COLLECTION,
+        new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", "payload asc", "rows", "5",
+            ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, Integer.toString(5 * sliceCount - 1), "debug", "track"));
+    assertNotNull(getTrack(rsp).get("GET_FIELDS"));
+    compareResults(rsp, nonDistribRsp);
+
+    // an explicit distrib.singlePass wins
+    rsp = cluster.getSolrClient().query(COLLECTION,
+        new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", "payload asc", "rows", "5",
+            ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, "1000", ShardParams.DISTRIB_SINGLE_PASS, "false", "debug", "track"));
+    assertNotNull(getTrack(rsp).get("GET_FIELDS"));
+  }
+
+  @Test
+  public void testShardsRowsInitial() throws Exception {
+    for (String sort : new String[] {"payload asc", "payload desc", "id asc"}) {
+      QueryResponse expected = cluster.getSolrClient().query(COLLECTION,
+          new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", sort, "start", "2", "rows", "8"));
+      for (int initialRows = 1; initialRows <= 11; initialRows++) {
+        // shards whose last document made it into the top 10 are asked again for 10 rows
+        QueryResponse rsp = cluster.getSolrClient().query(COLLECTION,
+            new SolrQuery("q", "*:*", "fl", "id,test_sS,score", "sort", sort, "start", "2", "rows", "8",
+                ShardParams.SHARDS_ROWS_INITIAL, Integer.toString(initialRows)));
+        compareResults(rsp, expected);
+      }
+    }
+
+    // one-pass queries, explicit or for fl=id, ignore it
+    for (String[] onePass : new String[][] {{"fl", "id"}, {"fl", "id,score"}, {"fl", "id,test_sS", "distrib.singlePass", "true"}}) {
+      SolrQuery query = new SolrQuery("q", "*:*", "sort", "payload desc", "start", "2", "rows", "8");
+      for (int i = 0; i < onePass.length; i += 2) {
+        query.set(onePass[i], onePass[i + 1]);
+      }
+      QueryResponse expected = cluster.getSolrClient().query(COLLECTION, query);
+      query.set(ShardParams.SHARDS_ROWS_INITIAL, "1");
+      QueryResponse rsp = cluster.getSolrClient().query(COLLECTION, query);
+      compareResults(rsp, expected);
+    }
+  }
+
+  private static void compareResults(QueryResponse rsp1, QueryResponse rsp2) {
+    assertEquals(rsp2.getResults().getNumFound(), rsp1.getResults().getNumFound());
+    assertEquals(rsp2.getResults().size(), rsp1.getResults().size());
+    for (int i = 0; i < rsp1.getResults().size(); i++) {
+      for (String field : new String[] {"id", "test_sS", "score"}) {
+        assertEquals(field, rsp2.getResults().get(i).getFieldValue(field), rsp1.getResults().get(i).getFieldValue(field));
+      }
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  private static SimpleOrderedMap<Object> getTrack(QueryResponse rsp) {
+    SimpleOrderedMap<Object> track = (SimpleOrderedMap<Object>) rsp.getDebugMap().get("track");
+    assertNotNull(track);
+    return track;
+  }
+
   @Test
   public void testOptimizations() throws Exception {
 
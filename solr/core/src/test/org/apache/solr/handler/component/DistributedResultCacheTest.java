@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the coordinator result cache of distributed requests, see the distribResultCache option of
+ * {@link SearchHandler}.
+ */
+public class DistributedResultCacheTest extends BaseDistributedSearchTestCase {
+
+  @BeforeClass
+  public static void beforeSuperClass() throws Exception {
+    configString = "solrconfig-distribresultcache.xml";
+  }
+
+  public DistributedResultCacheTest() {
+    stress = 0;
+  }
+
+  @Test
+  @ShardsFixed(num = 2)
+  public void test() throws Exception {
+    del("*:*");
+    for (int i = 0; i < 20; i++) {
+      index(id, Integer.toString(i), "text", i % 2 == 0 ? "even" : "odd");
+    }
+    commit();
+    handle.put("timestamp", SKIPVAL);
+    handle.put("maxScore", SKIPVAL);
+
+    // compared to the non-distributed control, both when missing and when hitting the cache
+    for (int i = 0; i < 2; i++) {
+      query("qt", "/distribCached", "q", "text:even", "fl", "id", "sort", "id asc", "facet", "true", "facet.field", "text");
+    }
+
+    SolrClient client = clients.get(0);
+    QueryResponse first = client.query(shardParams("qt", "/distribCached", "q", "*:*", "rows", "5", "sort", "id asc"));
+    int size = cacheSize();
+    assertTrue(size > 0);
+    // the same params in another order are the same entry
+    QueryResponse second = client.query(shardParams("sort", "id asc", "rows", "5", "q", "*:*", "qt", "/distribCached"));
+    assertEquals(size, cacheSize());
+    assertEquals(first.getResults().getNumFound(), second.getResults().getNumFound());
+    assertEquals(first.getResults().toString(), second.getResults().toString());
+
+    // debug requests aren't cached
+    client.query(shardParams("qt", "/distribCached", "q", "*:*", "rows", "5", "sort", "id asc", "debug", "true"));
+    assertEquals(size, cacheSize());
+
+    // a commit opens a new searcher on the coordinator, without the cached responses
+    index(id, "100", "text", "even");
+    commit();
+    assertEquals(0, cacheSize());
+    QueryResponse third = client.query(shardParams("qt", "/distribCached", "q", "*:*", "rows", "5", "sort", "id asc"));
+    assertEquals(21, third.getResults().getNumFound());
+  }
+
+  private ModifiableSolrParams shardParams(String... params) {
+    ModifiableSolrParams p = new ModifiableSolrParams();
+    for (int i = 0; i < params.length; i += 2) {
+      p.add(params[i], params[i + 1]);
+    }
+    p.set("shards", shards);
+    return p;
+  }
+
+  private int cacheSize() {
+    try (SolrCore core = jettys.get(0).getCoreContainer().getCore(DEFAULT_TEST_CORENAME)) {
+      return core.withSearcher(searcher -> searcher.getCache("distribResultCache").size());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class LatencyReplicaListTransformerTest extends SolrTestCase {
+
+  private static final String FAST = "http://host1:8983/solr/c1_s1_r1/";
+  private static final String SLOW = "http://host2:8983/solr/c1_s1_r2/";
+  private static final String NEW = "http://host3:8983/solr/c1_s1_r3/";
+
+  @Test
+  public void testFastestFirst() {
+    ReplicaLatencies latencies = new ReplicaLatencies(false);
+    for (int i = 0; i < 10; i++) {
+      latencies.record(FAST, TimeUnit.MILLISECONDS.toNanos(5));
+      latencies.record(SLOW, TimeUnit.MILLISECONDS.toNanos(200));
+    }
+    LatencyReplicaListTransformer transformer = new LatencyReplicaListTransformer(latencies, random());
+
+    List<String> urls = new ArrayList<>(Arrays.asList(SLOW, FAST));
+    Collections.shuffle(urls, random());
+    transformer.transform(urls);
+    assertEquals(Arrays.asList(FAST, SLOW), urls);
+
+    // replicas that never answered are tried first
+    urls = new ArrayList<>(Arrays.asList(SLOW, FAST, NEW));
+    Collections.shuffle(urls, random());
+    transformer.transform(urls);
+    assertEquals(Arrays.asList(NEW, FAST, SLOW), urls);
+
+    // the same URL without the trailing slash
+    urls = new ArrayList<>(Arrays.asList(SLOW.substring(0, SLOW.length() - 1), FAST.substring(0, FAST.length() - 1)));
+    transformer.transform(urls);
+    assertEquals(FAST.substring(0, FAST.length() - 1), urls.get(0));
+  }
+
+  @Test
+  public void testOutstandingRequests() {
+    ReplicaLatencies latencies = new ReplicaLatencies(false);
+    for (int i = 0; i < 10; i++) {
+      latencies.record(FAST, TimeUnit.MILLISECONDS.toNanos(10));
+      latencies.record(SLOW, TimeUnit.MILLISECONDS.toNanos(30));
+    }
+    LatencyReplicaListTransformer transformer = new LatencyReplicaListTransformer(latencies, random());
+
+    // a fast replica that's busy with many requests is expected to answer later than a slower idle one
+    for (int i = 0; i < 5; i++) {
+      latencies.started(FAST);
+    }
+    List<String> urls = new ArrayList<>(Arrays.asList(FAST, SLOW));
+    transformer.transform(urls);
+    assertEquals(Arrays.asList(SLOW, FAST), urls);
+
+    for (int i = 0; i < 5; i++) {
+      latencies.finished(FAST);
+    }
+    transformer.transform(urls);
+    assertEquals(Arrays.asList(FAST, SLOW), urls);
+  }
+
+  @Test
+  public void testFailuresArePenalized() {
+    ReplicaLatencies latencies = new ReplicaLatencies(false);
+    for (int i = 0; i < 10; i++) {
+      latencies.record(SLOW, TimeUnit.MILLISECONDS.toNanos(200));
+    }
+    LatencyReplicaListTransformer transformer = new LatencyReplicaListTransformer(latencies, random());
+
+    // a replica that fails fast is not taken for a fast one, whether it answered before or not
+    latencies.failed(NEW, TimeUnit.MILLISECONDS.toNanos(1));
+    for (int i = 0; i < 10; i++) {
+      latencies.record(FAST, TimeUnit.MILLISECONDS.toNanos(5));
+    }
+    for (int i = 0; i < 3; i++) {
+      latencies.failed(FAST, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertTrue(latencies.getExpectedLatency(NEW) >= ReplicaLatencies.MIN_FAILURE_NANOS * 0.9);
+    List<String> urls = new ArrayList<>(Arrays.asList(NEW, FAST, SLOW));
+    Collections.shuffle(urls, random());
+    transformer.transform(urls);
+    assertEquals(Arrays.asList(SLOW, FAST, NEW), urls);
+  }
+
+  @Test
+  public void testIdleReplicasAreForgotten() throws Exception {
+    ReplicaLatencies latencies = new ReplicaLatencies(false, TimeUnit.MILLISECONDS.toNanos(50));
+    latencies.record(FAST, TimeUnit.MILLISECONDS.toNanos(5));
+    latencies.record(SLOW, TimeUnit.MILLISECONDS.toNanos(200));
+    latencies.started(SLOW);
+    assertEquals(2, latencies.size());
+
+    Thread.sleep(200);
+    latencies.record(NEW, TimeUnit.MILLISECONDS.toNanos(10));
+    // the replica that is still busy with a request is kept
+    assertEquals(2, latencies.size());
+    assertEquals(0, latencies.getExpectedLatency(FAST), 0);
+    assertTrue(latencies.getExpectedLatency(SLOW) > 0);
+
+    // a request that finishes after its replica was forgotten doesn't make the replica look idler than it is
+    latencies.finished(FAST);
+    latencies.started(FAST);
+    latencies.record(FAST, TimeUnit.MILLISECONDS.toNanos(5));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), latencies.getExpectedLatency(FAST), TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
@@ -20,16 +20,38 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.impl.LBHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.LBSolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.util.AsyncListener;
+import org.apache.solr.client.solrj.util.Cancellable;
 import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.common.util.TimeSource;
 import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.PluginInfo;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.util.TimeOut;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -108,6 +130,157 @@ public class TestHttpShardHandlerFactory extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testHedgeDelay() throws Exception {
+    HttpShardHandlerFactory factory = new HttpShardHandlerFactory();
+    try {
+      NamedList<Object> args = new NamedList<>();
+      args.add(HttpShardHandlerFactory.HEDGE_DELAY_PERCENTILE, 90f);
+      args.add(HttpShardHandlerFactory.HEDGE_MIN_DELAY_MS, 2);
+      factory.init(new PluginInfo("shardHandlerFactory", Collections.emptyMap(), args, null));
+
+      String url = "http://host1:8983/solr/collection1_shard1_replica_n1/";
+      for (int i = 0; i < ReplicaLatencies.MIN_SAMPLES - 1; i++) {
+        factory.getReplicaLatencies().record(url, TimeUnit.MILLISECONDS.toNanos(i % 10 == 9 ? 100 : 10));
+      }
+      assertEquals("too few samples to hedge", -1, factory.getHedgeDelayNanos(url));
+      factory.getReplicaLatencies().record(url, TimeUnit.MILLISECONDS.toNanos(10));
+      assertEquals(TimeUnit.MILLISECONDS.toNanos(10), factory.getHedgeDelayNanos(url));
+      assertEquals(-1, factory.getHedgeDelayNanos("http://host2:8983/solr/collection1_shard1_replica_n2/"));
+
+      String fastUrl = "http://host3:8983/solr/collection1_shard1_replica_n3/";
+      for (int i = 0; i < ReplicaLatencies.MIN_SAMPLES; i++) {
+        factory.getReplicaLatencies().record(fastUrl, TimeUnit.MICROSECONDS.toNanos(100));
+      }
+      assertEquals("never below the minimum delay", TimeUnit.MILLISECONDS.toNanos(2), factory.getHedgeDelayNanos(fastUrl));
+    } finally {
+      factory.close();
+    }
+
+    HttpShardHandlerFactory disabled = new HttpShardHandlerFactory();
+    try {
+      disabled.init(new PluginInfo("shardHandlerFactory", Collections.emptyMap(), new NamedList<>(), null));
+      disabled.getReplicaLatencies().record("http://host1:8983/solr/", 1);
+      assertEquals(-1, disabled.getHedgeDelayNanos("http://host1:8983/solr/"));
+    } finally {
+      disabled.close();
+    }
+  }
+
+  @Test
+  public void testRecordingLatencies() throws Exception {
+    HttpShardHandlerFactory hedging = new HttpShardHandlerFactory();
+    try {
+      NamedList<Object> args = new NamedList<>();
+      args.add(HttpShardHandlerFactory.HEDGE_DELAY_PERCENTILE, 90f);
+      hedging.init(new PluginInfo("shardHandlerFactory", Collections.emptyMap(), args, null));
+      assertTrue(hedging.isRecordingLatencies());
+    } finally {
+      hedging.close();
+    }
+
+    HttpShardHandlerFactory factory = new HttpShardHandlerFactory();
+    try {
+      factory.init(new PluginInfo("shardHandlerFactory", Collections.emptyMap(), new NamedList<>(), null));
+      assertFalse("neither hedging nor routing by latency", factory.isRecordingLatencies());
+      try (SolrQueryRequest req = new LocalSolrQueryRequest(null, params(ShardParams.SHARDS_PREFERENCE,
+          ShardParams.SHARDS_PREFERENCE_REPLICA_BASE + ":" + ShardParams.REPLICA_STABLE))) {
+        factory.getReplicaListTransformer(req);
+      }
+      assertFalse(factory.isRecordingLatencies());
+      try (SolrQueryRequest req = new LocalSolrQueryRequest(null,
+          params(ShardParams.SHARDS_PREFERENCE, ShardParams.SHARDS_PREFERENCE_REPLICA_BASE + ":" + ShardParams.REPLICA_LATENCY))) {
+        assertTrue(factory.getReplicaListTransformer(req) instanceof LatencyReplicaListTransformer);
+      }
+      assertTrue("a request was routed by latency", factory.isRecordingLatencies());
+    } finally {
+      factory.close();
+    }
+  }
+
+  @Test
+  public void testHedgedRequest() throws Exception {
+    String slowUrl = "http://slow:8983/solr/collection1_shard1_replica_n1";
+    String fastUrl = "http://fast:8983/solr/collection1_shard1_replica_n2";
+    HttpShardHandlerFactory factory = new HttpShardHandlerFactory();
+    ScheduledExecutorService replicaExecutor = Executors.newSingleThreadScheduledExecutor(new SolrNamedThreadFactory("fakeReplica"));
+    try {
+      NamedList<Object> args = new NamedList<>();
+      args.add(HttpShardHandlerFactory.HEDGE_DELAY_PERCENTILE, 90f);
+      args.add(HttpShardHandlerFactory.HEDGE_MIN_DELAY_MS, 2);
+      factory.init(new PluginInfo("shardHandlerFactory", Collections.emptyMap(), args, null));
+      factory.loadbalancer.close();
+      FakeReplicasClient replicas = new FakeReplicasClient(factory.defaultClient, fastUrl, replicaExecutor);
+      factory.loadbalancer = replicas;
+      for (int i = 0; i < ReplicaLatencies.MIN_SAMPLES; i++) {
+        factory.getReplicaLatencies().record(slowUrl, TimeUnit.MILLISECONDS.toNanos(10));
+      }
+
+      HttpShardHandler shardHandler = (HttpShardHandler) factory.getShardHandler();
+      String shard = slowUrl + "|" + fastUrl;
+      ShardRequest sreq = new ShardRequest();
+      sreq.actualShards = new String[] {shard};
+      shardHandler.submit(sreq, shard, new ModifiableSolrParams());
+
+      ShardResponse srsp = shardHandler.takeCompletedOrError();
+      assertNull(srsp.getException());
+      assertEquals("the hedged request answered first", fastUrl, srsp.getShardAddress());
+      assertEquals(fastUrl, srsp.getSolrResponse().getResponse().get("server"));
+      assertEquals(Arrays.asList(slowUrl, fastUrl), replicas.requested);
+      assertEquals(1, factory.hedgedRequests.getCount());
+
+      new TimeOut(10, TimeUnit.SECONDS, TimeSource.NANO_TIME)
+          .waitFor("the request to the slow replica wasn't cancelled", () -> replicas.cancelled.contains(slowUrl));
+      assertEquals(Collections.singleton(slowUrl), replicas.cancelled);
+    } finally {
+      factory.close();
+      ExecutorUtil.shutdownAndAwaitTermination(replicaExecutor);
+    }
+  }
+
+  /**
+   * Answers the requests sent to the fast replica after a few ms, and never answers the ones sent to any other
+   * replica: those only fail once they are cancelled, like aborted http requests do.
+   */
+  private static class FakeReplicasClient extends LBHttp2SolrClient {
+    final List<String> requested = new CopyOnWriteArrayList<>();
+    final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+    private final String fastUrl;
+    private final ScheduledExecutorService executor;
+
+    FakeReplicasClient(Http2SolrClient httpClient, String fastUrl, ScheduledExecutorService executor) {
+      super(httpClient);
+      this.fastUrl = fastUrl;
+      this.executor = executor;
+    }
+
+    @Override
+    public Cancellable asyncReq(Req req, AsyncListener<Rsp> asyncListener) {
+      final String url = req.getServers().get(0);
+      requested.add(url);
+      asyncListener.onStart();
+      final AtomicBoolean finished = new AtomicBoolean();
+      if (url.equals(fastUrl)) {
+        executor.schedule(() -> {
+          if (finished.compareAndSet(false, true)) {
+            NamedList<Object> response = new NamedList<>();
+            response.add("server", url);
+            asyncListener.onSuccess(new Rsp() {{
+              this.server = url;
+              this.rsp = response;
+            }});
+          }
+        }, 5, TimeUnit.MILLISECONDS);
+      }
+      return () -> {
+        if (finished.compareAndSet(false, true)) {
+          cancelled.add(url);
+          asyncListener.onFailure(new CancellationException());
+        }
+      };
+    }
+  }
+
   @Test
   public void getShardsAllowList() throws Exception {
     System.setProperty(TEST_URL_ALLOW_LIST, "http://abc:8983/,http://def:8984/,");
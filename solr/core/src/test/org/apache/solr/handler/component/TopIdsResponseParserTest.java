@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class TopIdsResponseParserTest extends SolrTestCase {
+
+  @Test
+  public void testDropsDocumentsOutOfTopN() throws Exception {
+    TopIdsResponseParser parser = new TopIdsResponseParser("id", 3);
+
+    NamedList<Object> first = parser.processResponse(shardResponse("a", 10f, 9f, 8f, 7f), null);
+    assertIds(first, "a0", "a1", "a2");
+    SolrDocumentList docs = (SolrDocumentList) first.get("response");
+    assertEquals(4, docs.getNumFound());
+    assertEquals(10f, docs.getMaxScore(), 0f);
+    assertNotNull(first.get("sort_values"));
+
+    // 9.5 makes the top 3 (10, 9.5, 9) and 9 ties with it, 6 can't make it
+    NamedList<Object> second = parser.processResponse(shardResponse("b", 9.5f, 9f, 6f, 5f), null);
+    assertIds(second, "b0", "b1");
+    assertEquals(4, ((SolrDocumentList) second.get("response")).getNumFound());
+  }
+
+  @Test
+  public void testDuplicateIdsCountOnce() throws Exception {
+    TopIdsResponseParser parser = new TopIdsResponseParser("id", 2);
+    parser.processResponse(shardResponse("a", 10f), null);
+    // a0 again counts once, so there is still room for b0
+    NamedList<Object> second = parser.processResponse(shardResponse("a", 10f), null);
+    assertIds(second, "a0");
+    NamedList<Object> third = parser.processResponse(shardResponse("b", 9f, 8f, 1f), null);
+    assertIds(third, "b0");
+  }
+
+  private static void assertIds(NamedList<Object> rsp, String... ids) {
+    SolrDocumentList docs = (SolrDocumentList) rsp.get("response");
+    assertEquals(ids.length, docs.size());
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(ids[i], docs.get(i).getFieldValue("id"));
+    }
+  }
+
+  private static ByteArrayInputStream shardResponse(String prefix, float... scores) throws IOException {
+    SolrDocumentList docs = new SolrDocumentList();
+    docs.setNumFound(scores.length);
+    docs.setStart(0);
+    docs.setMaxScore(scores[0]);
+    for (int i = 0; i < scores.length; i++) {
+      SolrDocument doc = new SolrDocument();
+      doc.setField("id", prefix + i);
+      doc.setField("score", scores[i]);
+      docs.add(doc);
+    }
+    NamedList<Object> rsp = new SimpleOrderedMap<>();
+    rsp.add("responseHeader", new SimpleOrderedMap<>());
+    rsp.add("response", docs);
+    rsp.add("sort_values", new SimpleOrderedMap<>());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (JavaBinCodec codec = new JavaBinCodec()) {
+      codec.marshal(rsp, out);
+    }
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+}
@@ -709,6 +709,41 @@ public class TestExportWriter extends SolrTestCaseJ4 {
     validateSort(numDocs);
   }
 
+  @Test
+  public void testSortWorkers() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+
+    int numDocs = 1000;
+    for (int i = 0; i < numDocs; i++) {
+      assertU(adoc("id", String.valueOf(i),
+          "intdv", String.valueOf(random().nextInt(50)),
+          "stringdv", TestUtil.randomSimpleString(random(), 1, 2),
+          "longdv", String.valueOf(random().nextLong())));
+      if (i % 100 == 99) {
+        // several segments, so that more than one of them is sorted at a time
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    for (String sort : new String[] {"intdv asc,id desc", "stringdv desc,longdv asc", "longdv desc"}) {
+      // a small queue makes every segment produce several batches
+      String queueSize = String.valueOf(TestUtil.nextInt(random(), 10, 300));
+      String serial = h.query(req("q", "*:*", "qt", "/export", "fl", "id,intdv,stringdv,longdv", "sort", sort,
+          "queueSize", queueSize));
+      String parallel = h.query(req("q", "*:*", "qt", "/export", "fl", "id,intdv,stringdv,longdv", "sort", sort,
+          "queueSize", queueSize, ExportWriter.SORT_WORKERS_PARAM, String.valueOf(TestUtil.nextInt(random(), 2, 8))));
+      assertJsonEquals(serial, parallel);
+
+      String filtered = h.query(req("q", "id:[1 TO 5]", "qt", "/export", "fl", "id,intdv", "sort", sort,
+          "queueSize", queueSize));
+      String filteredParallel = h.query(req("q", "id:[1 TO 5]", "qt", "/export", "fl", "id,intdv", "sort", sort,
+          "queueSize", queueSize, ExportWriter.SORT_WORKERS_PARAM, "4"));
+      assertJsonEquals(filtered, filteredParallel);
+    }
+  }
+
   private void createLargeIndex() throws Exception {
     int BATCH_SIZE = 5000;
     int NUM_BATCHES = 20;
@@ -18,22 +18,27 @@ package org.apache.solr.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
 import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
@@ -124,6 +129,66 @@ public class TestSlowCompositeReaderWrapper extends SolrTestCase {
     dir.close();
   }
 
+  public void testOrdMapsAreWarmed() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    w.addDocument(newOrdMapDoc("1", "a", "b", "c"));
+    w.addDocument(newOrdMapDoc("2", "b", "c", "d"));
+    w.commit();
+    w.addDocument(newOrdMapDoc("3", "c", "d", "e"));
+    DirectoryReader reader1 = DirectoryReader.open(w);
+    assertTrue(reader1.leaves().size() > 1);
+    SlowCompositeReaderWrapper slowWrapper1 = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader1);
+    slowWrapper1.getSortedDocValues("sorted");
+    slowWrapper1.getSortedSetDocValues("sorted_set");
+    assertEquals(2, slowWrapper1.cachedOrdMaps.size());
+
+    // deletions don't change the ordinal maps
+    w.deleteDocuments(new Term("id", "1"));
+    DirectoryReader reader2 = DirectoryReader.openIfChanged(reader1, w);
+    assertNotNull(reader2);
+    SlowCompositeReaderWrapper slowWrapper2 = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader2);
+    slowWrapper2.warmOrdinalMaps(slowWrapper1);
+    assertSame(slowWrapper1.cachedOrdMaps.get("sorted"), slowWrapper2.cachedOrdMaps.get("sorted"));
+    assertSame(slowWrapper1.cachedOrdMaps.get("sorted_set"), slowWrapper2.cachedOrdMaps.get("sorted_set"));
+    Map<String,Object> metrics = new HashMap<>();
+    slowWrapper2.getOrdinalMapMetrics(metrics::put);
+    assertEquals(2L, metrics.get("reused"));
+    assertEquals(0L, metrics.get("built"));
+    assertEquals(MultiSortedDocValues.class, slowWrapper2.getSortedDocValues("sorted").getClass());
+
+    // a new segment needs a new map, and only maps that were asked for are carried over
+    w.addDocument(newOrdMapDoc("4", "d", "e", "f"));
+    DirectoryReader reader3 = DirectoryReader.openIfChanged(reader2, w);
+    assertNotNull(reader3);
+    SlowCompositeReaderWrapper slowWrapper3 = (SlowCompositeReaderWrapper) SlowCompositeReaderWrapper.wrap(reader3);
+    slowWrapper3.warmOrdinalMaps(slowWrapper2);
+    assertEquals(1, slowWrapper3.cachedOrdMaps.size());
+    assertNotSame(slowWrapper2.cachedOrdMaps.get("sorted"), slowWrapper3.cachedOrdMaps.get("sorted"));
+    assertEquals(4, slowWrapper3.cachedOrdMaps.get("sorted").getValueCount());
+    metrics.clear();
+    slowWrapper3.getOrdinalMapMetrics(metrics::put);
+    assertEquals(0L, metrics.get("reused"));
+    assertEquals(1L, metrics.get("built"));
+    assertTrue((Long) metrics.get("ramBytesUsed") > 0);
+
+    reader1.close();
+    reader2.close();
+    reader3.close();
+    w.close();
+    dir.close();
+  }
+
+  private static Document newOrdMapDoc(String id, String sorted, String... sortedSet) {
+    Document doc = new Document();
+    doc.add(new StringField("id", id, Field.Store.NO));
+    doc.add(new SortedDocValuesField("sorted", new BytesRef(sorted)));
+    for (String value : sortedSet) {
+      doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(value)));
+    }
+    return doc;
+  }
+
   public void testTermsAreCached() throws IOException {
     Directory dir = newDirectory();
     RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
@@ -120,6 +121,117 @@ public class TestBinaryResponseWriter extends SolrTestCaseJ4 {
     req.close();
   }
 
+  /**
+   * Documents whose fields all come from docValues are streamed without SolrDocuments, the result must be
+   * the same as when they are read together with a stored field.
+   */
+  public void testDocValuesOnlyFields() throws Exception {
+    String fl = "foo_i_dv,foo_l_dv,foo_f_dv,foo_d_dv,foo_dt_dv,foo_s_dv,foo_sdv,foo_bdv";
+    for (int i = 0; i < 20; i++) {
+      if (i % 7 == 0) {
+        // some docs have no docValues at all
+        assertU(adoc("id", "dv" + i));
+      } else {
+        assertU(adoc("id", "dv" + i, "foo_i_dv", String.valueOf(i - 10), "foo_l_dv", String.valueOf(i * 1000000000L),
+            "foo_f_dv", String.valueOf(i / 3f), "foo_d_dv", String.valueOf(-i / 7d),
+            "foo_dt_dv", "2020-01-" + (10 + i) + "T00:00:00Z", "foo_s_dv", "s" + i, "foo_sdv", "ประเทศไทย" + i,
+            "foo_bdv", String.valueOf(i % 2 == 0)));
+      }
+      if (i % 5 == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    long streamed = DocValuesJavaBinWriter.numResultsWritten.get();
+    SolrDocumentList dvOnly = queryJavabin("q", "id:dv*", "fl", fl, "sort", "foo_d_dv asc, id desc");
+    assertEquals("docValues only fields are streamed", streamed + 1, DocValuesJavaBinWriter.numResultsWritten.get());
+    SolrDocumentList mixed = queryJavabin("q", "id:dv*", "fl", "id," + fl, "sort", "foo_d_dv asc, id desc");
+    assertEquals("stored fields go through SolrDocuments", streamed + 1, DocValuesJavaBinWriter.numResultsWritten.get());
+    assertEquals(20, dvOnly.size());
+    assertEquals(mixed.size(), dvOnly.size());
+    int complete = 0;
+    for (int i = 0; i < dvOnly.size(); i++) {
+      SolrDocument expected = mixed.get(i);
+      SolrDocument actual = dvOnly.get(i);
+      expected.removeFields("id");
+      assertEquals(expected.getFieldNames(), actual.getFieldNames());
+      for (String field : expected.getFieldNames()) {
+        assertEquals(field, expected.getFieldValue(field), actual.getFieldValue(field));
+      }
+      if (actual.size() == 8) {
+        complete++;
+      }
+    }
+    assertEquals(17, complete);
+  }
+
+  /**
+   * Multi-valued fields that are only in docValues are written as arrays from the docValues, the same as
+   * the lists the stored field path decorates documents with.
+   */
+  public void testMultiValuedDocValuesOnlyFields() throws Exception {
+    String fl = "foo_is_sdv,foo_ls_sdv,foo_ds_sdv,foo_dts_sdv,foo_ss_sdv,foo_bs_sdv";
+    for (int i = 0; i < 20; i++) {
+      if (i % 6 == 0) {
+        assertU(adoc("id", "mdv" + i));
+      } else {
+        assertU(adoc("id", "mdv" + i,
+            "foo_is_sdv", String.valueOf(i), "foo_is_sdv", String.valueOf(-i), "foo_is_sdv", String.valueOf(i),
+            "foo_ls_sdv", String.valueOf(i * 1000000000L),
+            "foo_ds_sdv", String.valueOf(i / 7d), "foo_ds_sdv", String.valueOf(-i / 3d),
+            "foo_dts_sdv", "2020-01-" + (10 + i) + "T00:00:00Z", "foo_dts_sdv", "1999-12-31T23:59:59Z",
+            "foo_ss_sdv", "z" + i, "foo_ss_sdv", "a" + i, "foo_ss_sdv", "ประเทศไทย",
+            "foo_bs_sdv", "true", "foo_bs_sdv", String.valueOf(i % 2 == 0)));
+      }
+      if (i % 5 == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    long streamed = DocValuesJavaBinWriter.numResultsWritten.get();
+    SolrDocumentList dvOnly = queryJavabin("q", "id:mdv*", "fl", fl, "sort", "id asc");
+    assertEquals("docValues only fields are streamed", streamed + 1, DocValuesJavaBinWriter.numResultsWritten.get());
+    SolrDocumentList mixed = queryJavabin("q", "id:mdv*", "fl", "id," + fl, "sort", "id asc");
+    assertEquals("stored fields go through SolrDocuments", streamed + 1, DocValuesJavaBinWriter.numResultsWritten.get());
+    assertEquals(20, dvOnly.size());
+    assertEquals(mixed.size(), dvOnly.size());
+    int complete = 0;
+    for (int i = 0; i < dvOnly.size(); i++) {
+      SolrDocument expected = mixed.get(i);
+      SolrDocument actual = dvOnly.get(i);
+      expected.removeFields("id");
+      assertEquals(expected.getFieldNames(), actual.getFieldNames());
+      for (String field : expected.getFieldNames()) {
+        assertEquals(field, expected.getFieldValue(field), actual.getFieldValue(field));
+      }
+      if (actual.size() == 6) {
+        assertTrue(actual.getFieldValue("foo_ss_sdv") instanceof List);
+        complete++;
+      }
+    }
+    assertEquals(16, complete);
+  }
+
+  @SuppressWarnings({"rawtypes"})
+  private SolrDocumentList queryJavabin(String... params) throws Exception {
+    SolrQueryRequest req = req(params);
+    try {
+      SolrQueryResponse rsp = h.queryAndResponse(null, req);
+      BinaryQueryResponseWriter writer = (BinaryQueryResponseWriter) h.getCore().getQueryResponseWriter("javabin");
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      writer.write(baos, req, rsp);
+      NamedList res;
+      try (JavaBinCodec jbc = new JavaBinCodec()) {
+        res = (NamedList) jbc.unmarshal(new ByteArrayInputStream(baos.toByteArray()));
+      }
+      return (SolrDocumentList) res.get("response");
+    } finally {
+      req.close();
+    }
+  }
+
   public void testOmitHeader() throws Exception {
     SolrQueryRequest req = req("q", "*:*", "omitHeader", "true");
     SolrQueryResponse rsp = h.queryAndResponse(null, req);
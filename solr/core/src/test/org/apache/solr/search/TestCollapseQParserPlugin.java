@@ -31,8 +31,10 @@ import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.index.NoMergePolicyFactory;
 import org.apache.solr.search.CollapsingQParserPlugin.GroupHeadSelector;
 import org.apache.solr.search.CollapsingQParserPlugin.GroupHeadSelectorType;
+import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -44,9 +46,16 @@ public class TestCollapseQParserPlugin extends SolrTestCaseJ4 {
   public static void beforeClass() throws Exception {
     // we need DVs on point fields to compute stats & facets
     if (Boolean.getBoolean(NUMERIC_POINTS_SYSPROP)) System.setProperty(NUMERIC_DOCVALUES_SYSPROP,"true");
+    // keep every commit in its own segment, so that testParallelHint knows how many segments it collapses
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
     initCore("solrconfig-collapseqparser.xml", "schema11.xml");
   }
 
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
   @Override
   @Before
   public void setUp() throws Exception {
@@ -1278,4 +1287,35 @@ public class TestCollapseQParserPlugin extends SolrTestCaseJ4 {
       }
     }
   }
+
+  public void testParallelHint() throws Exception {
+    final int numSegments = 4;
+    final int numDocs = numSegments * atLeast(25);
+    for (int i = 0; i < numDocs; i++) {
+      final SolrInputDocument doc = sdoc("id", String.valueOf(i), "rank_i", String.valueOf(random().nextInt(10)));
+      if (random().nextInt(5) != 0) {
+        doc.setField("group_s", "g" + random().nextInt(20));
+      }
+      assertU(adoc(doc));
+      if ((i + 1) % (numDocs / numSegments) == 0) {
+        assertU(commit());
+      }
+    }
+    assertEquals(numSegments, h.getCore().withSearcher(searcher -> searcher.getIndexReader().leaves().size()).intValue());
+    // group heads are only found in parallel when there is more than one processor to slice the segments for
+    final boolean parallel = Runtime.getRuntime().availableProcessors() > 1;
+
+    // ties on score are common, so this checks the same doc wins them
+    for (String nullPolicy : Arrays.asList("ignore", "collapse", "expand")) {
+      final String collapse = "{!collapse field=group_s nullPolicy=" + nullPolicy;
+      final String expected = h.query(req("q", "{!func}rank_i", "fq", collapse + "}",
+          "fl", "id,score", "rows", String.valueOf(numDocs), "omitHeader", "true"));
+      final long parallelBefore = CollapsingQParserPlugin.numParallelCollapses.get();
+      final String actual = h.query(req("q", "{!func}rank_i", "fq", collapse + " hint=parallel}",
+          "fl", "id,score", "rows", String.valueOf(numDocs), "omitHeader", "true"));
+      assertEquals(nullPolicy, expected, actual);
+      assertEquals(nullPolicy, parallel ? parallelBefore + 1 : parallelBefore,
+          CollapsingQParserPlugin.numParallelCollapses.get());
+    }
+  }
 }
@@ -106,6 +106,15 @@ public class TestDocSet extends SolrTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getOffHeapDocSet(FixedBitSet bs) {
+    return OffHeapBitDocSet.copyOf(new BitDocSet(bs.clone()));
+  }
+
+  public DocSet getRoaringDocSet(FixedBitSet bs) {
+    return rand.nextBoolean() ? RoaringDocSet.from(new BitDocSet(bs.clone()), bs.length())
+        : RoaringDocSet.from(getIntDocSet(bs), bs.length());
+  }
+
   public DocSlice getDocSlice(FixedBitSet bs) {
     int len = bs.cardinality();
     int[] arr = new int[len+5];
@@ -124,9 +133,12 @@ public class TestDocSet extends SolrTestCase {
 
 
   public DocSet getDocSet(FixedBitSet bs) {
-    switch(rand.nextInt(9)) {
+    switch(rand.nextInt(11)) {
       case 0: case 1: case 2: case 3: return getBitDocSet(bs);
 
+      case 9: return getOffHeapDocSet(bs);
+      case 10: return getRoaringDocSet(bs);
+
       case 4: return getIntDocSet(bs);
       case 5: return getIntDocSet(bs);
       case 6: return getIntDocSet(bs);
@@ -544,9 +556,13 @@ public class TestDocSet extends SolrTestCase {
     FixedBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc()+1));
     DocSet a = new BitDocSet(bs);
     DocSet b = getIntDocSet(bs);
+    DocSet c = getOffHeapDocSet(bs);
+    DocSet d = getRoaringDocSet(bs);
 
     Filter fa = a.getTopFilter();
     Filter fb = b.getTopFilter();
+    Filter fc = c.getTopFilter();
+    Filter fd = d.getTopFilter();
 
     /* top level filters are no longer supported
     // test top-level
@@ -557,15 +573,23 @@ public class TestDocSet extends SolrTestCase {
 
     DocIdSet da;
     DocIdSet db;
+    DocIdSet dc;
+    DocIdSet dd;
     List<LeafReaderContext> leaves = topLevelContext.leaves();
 
     // first test in-sequence sub readers
     for (LeafReaderContext readerContext : leaves) {
       da = fa.getDocIdSet(readerContext, null);
       db = fb.getDocIdSet(readerContext, null);
+      dc = fc.getDocIdSet(readerContext, null);
+      dd = fd.getDocIdSet(readerContext, null);
 
       // there are various ways that disis can be retrieved for each leafReader; they should all be equivalent.
-      doTestIteratorEqual(da.bits(), disiSupplier(da), disiSupplier(db), () -> a.iterator(readerContext), () -> b.iterator(readerContext));
+      doTestIteratorEqual(da.bits(), disiSupplier(da), disiSupplier(db), disiSupplier(dc), disiSupplier(dd),
+          () -> a.iterator(readerContext), () -> b.iterator(readerContext), () -> c.iterator(readerContext),
+          () -> d.iterator(readerContext));
+      doTestIteratorEqual(dc.bits(), disiSupplier(da));
+      doTestIteratorEqual(dd.bits(), disiSupplier(da));
 
       // set b is SortedIntDocSet, so derivatives should not support random-access via Bits
       assertNull(db.bits());
@@ -577,11 +601,78 @@ public class TestDocSet extends SolrTestCase {
       LeafReaderContext readerContext = leaves.get(rand.nextInt(nReaders));
       da = fa.getDocIdSet(readerContext, null);
       db = fb.getDocIdSet(readerContext, null);
-      doTestIteratorEqual(da.bits(), disiSupplier(da), disiSupplier(db), () -> a.iterator(readerContext), () -> b.iterator(readerContext));
+      dc = fc.getDocIdSet(readerContext, null);
+      dd = fd.getDocIdSet(readerContext, null);
+      doTestIteratorEqual(da.bits(), disiSupplier(da), disiSupplier(db), disiSupplier(dc), disiSupplier(dd),
+          () -> a.iterator(readerContext), () -> b.iterator(readerContext), () -> c.iterator(readerContext),
+          () -> d.iterator(readerContext));
       assertNull(db.bits());
     }
   }
 
+  /** Sets spanning several 64K blocks, so that all container types and their combinations are used */
+  public void testRoaringDocSets() {
+    for (int iter = 0; iter < 20; iter++) {
+      int maxDoc = RoaringDocSet.BLOCK_SIZE * (1 + rand.nextInt(3)) + rand.nextInt(RoaringDocSet.BLOCK_SIZE);
+      FixedBitSet bs1 = getMixedSet(maxDoc);
+      FixedBitSet bs2 = getMixedSet(maxDoc);
+
+      DocSet r1 = RoaringDocSet.from(new BitDocSet(bs1.clone()), maxDoc);
+      DocSet r2 = RoaringDocSet.from(getIntDocSet(bs2), maxDoc);
+      checkEqual(bs1, r1);
+      iter(new BitDocSet(bs1), r1);
+
+      FixedBitSet a_and = bs1.clone(); a_and.and(bs2);
+      FixedBitSet a_or = bs1.clone(); a_or.or(bs2);
+      FixedBitSet a_andn = bs1.clone(); a_andn.andNot(bs2);
+
+      for (DocSet other : new DocSet[] {r2, new BitDocSet(bs2), getIntDocSet(bs2), getOffHeapDocSet(bs2)}) {
+        checkEqual(a_and, r1.intersection(other));
+        checkEqual(a_or, r1.union(other));
+        checkEqual(a_andn, r1.andNot(other));
+        assertEquals(a_and.cardinality(), r1.intersectionSize(other));
+        assertEquals(a_and.cardinality() > 0, r1.intersects(other));
+        assertEquals(a_andn.cardinality(), r1.andNotSize(other));
+        // and the other way around
+        checkEqual(a_and, other.intersection(r1));
+        assertEquals(a_and.cardinality(), other.intersectionSize(r1));
+      }
+
+      FixedBitSet target = new FixedBitSet(maxDoc);
+      r1.addAllTo(target);
+      assertEquals(bs1, target);
+
+      DocSet compressed = DocSetUtil.compress(new BitDocSet(bs1.clone()), maxDoc);
+      checkEqual(bs1, compressed);
+      assertTrue(compressed.ramBytesUsed() <= new BitDocSet(bs1).ramBytesUsed());
+    }
+  }
+
+  /** Each 64K block gets a random mix of sparse, dense and run-heavy content. */
+  private FixedBitSet getMixedSet(int maxDoc) {
+    FixedBitSet bs = new FixedBitSet(maxDoc);
+    for (int start = 0; start < maxDoc; start += RoaringDocSet.BLOCK_SIZE) {
+      int end = Math.min(maxDoc, start + RoaringDocSet.BLOCK_SIZE);
+      switch (rand.nextInt(4)) {
+        case 0: // empty
+          break;
+        case 1: // sparse
+          for (int i = rand.nextInt(1000); i > 0; i--) bs.set(start + rand.nextInt(end - start));
+          break;
+        case 2: // dense
+          for (int i = start; i < end; i++) if (rand.nextInt(3) != 0) bs.set(i);
+          break;
+        case 3: // a few runs
+          for (int i = rand.nextInt(20); i > 0; i--) {
+            int from = start + rand.nextInt(end - start);
+            bs.set(from, Math.min(end, from + rand.nextInt(5000)));
+          }
+          break;
+      }
+    }
+    return bs;
+  }
+
   public void testFilter() throws IOException {
     // keeping these numbers smaller help hit more edge cases
     int maxSeg=4;
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestJoinIndex extends SolrTestCaseJ4 {
+
+  private static final String DEPT_FIELD = "dept_ss_dv";
+  private static final String DEPT_ID_FIELD = "dept_id_indexed_sdv";
+
+  @BeforeClass
+  public static void beforeTests() throws Exception {
+    System.setProperty("enable.update.log", "false"); // schema12 doesn't support _version_
+
+    if (System.getProperty("solr.tests.IntegerFieldType").contains("Point")) { // all points change at the same time
+      // point fields need docvalues
+      System.setProperty("solr.tests.numeric.dv", "true");
+    }
+
+    initCore("solrconfig-joinindex.xml","schema12.xml");
+  }
+
+  @AfterClass
+  public static void afterTests() {
+    System.clearProperty("enable.update.log");
+  }
+
+  @Test
+  public void testJoinIndex() throws Exception {
+    assertU(add(doc("id", "1","name", "john", "title", "Director", DEPT_FIELD,"Engineering")));
+    assertU(add(doc("id", "2","name", "mark", "title", "VP", DEPT_FIELD,"Marketing")));
+    assertU(add(doc("id", "3","name", "nancy", "title", "MTS", DEPT_FIELD,"Sales")));
+    assertU(add(doc("id", "4","name", "dave", "title", "MTS", DEPT_FIELD,"Support", DEPT_FIELD,"Engineering")));
+    assertU(add(doc("id", "5","name", "tina", "title", "VP", DEPT_FIELD,"Engineering")));
+
+    assertU(add(doc("id","10", DEPT_ID_FIELD, "Engineering", "text","These guys develop stuff")));
+    assertU(add(doc("id","11", DEPT_ID_FIELD, "Marketing", "text","These guys make you look good")));
+    assertU(add(doc("id","12", DEPT_ID_FIELD, "Sales", "text","These guys sell stuff")));
+    assertU(add(doc("id","13", DEPT_ID_FIELD, "Support", "text","These guys help customers")));
+    assertU(commit());
+
+    ModifiableSolrParams p = params("sort","id asc", "fl","id");
+    final List<String> key = Arrays.asList(DEPT_FIELD, DEPT_ID_FIELD);
+
+    for (String method : new String[] {"index", "topLevelDV"}) {
+      assertJQ(req(p, "q", "{!join from=" + DEPT_FIELD + " to=" + DEPT_ID_FIELD + " method=" + method + "}title:MTS")
+          ,"/response=={'numFound':3,'start':0,'numFoundExact':true,'docs':[{'id':'10'},{'id':'12'},{'id':'13'}]}"
+      );
+    }
+    assertNotNull(h.getCore().withSearcher(searcher -> searcher.cacheLookup(JoinIndex.CACHE_NAME, key)));
+
+    // new values and deletes: the new searcher warms the index
+    assertU(add(doc("id", "6","name", "sam", "title", "MTS", DEPT_FIELD,"Legal")));
+    assertU(add(doc("id","14", DEPT_ID_FIELD, "Legal", "text","These guys keep us out of trouble")));
+    assertU(delI("12"));
+    assertU(commit());
+    assertNotNull(h.getCore().withSearcher(searcher -> searcher.cacheLookup(JoinIndex.CACHE_NAME, key)));
+
+    for (String method : new String[] {"index", "topLevelDV"}) {
+      assertJQ(req(p, "q", "{!join from=" + DEPT_FIELD + " to=" + DEPT_ID_FIELD + " method=" + method + "}title:MTS")
+          ,"/response=={'numFound':3,'start':0,'numFoundExact':true,'docs':[{'id':'10'},{'id':'13'},{'id':'14'}]}"
+      );
+    }
+
+    // self joins aren't indexed
+    assertJQ(req(p, "q", "{!join from=" + DEPT_FIELD + " to=" + DEPT_FIELD + " method=index}name:dave")
+        ,"/response=={'numFound':3,'start':0,'numFoundExact':true,'docs':[{'id':'1'},{'id':'4'},{'id':'5'}]}"
+    );
+    assertNull(h.getCore().withSearcher(searcher -> searcher.cacheLookup(JoinIndex.CACHE_NAME, Arrays.asList(DEPT_FIELD, DEPT_FIELD))));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/** Multi-threaded searches must give the same results as serial ones. */
+public class TestMultiThreadedSearch extends SolrTestCaseJ4 {
+
+  private static final int NUM_SEGMENTS = 6;
+  private static final int DOCS_PER_SEGMENT = 50;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // no merges, so that there are several slices of segments to search
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema.xml");
+    int id = 0;
+    for (int seg = 0; seg < NUM_SEGMENTS; seg++) {
+      for (int i = 0; i < DOCS_PER_SEGMENT; i++, id++) {
+        assertU(adoc("id", String.valueOf(id),
+            "field1_s", "foo",
+            "field2_s", String.valueOf(id % 3),
+            "field3_i_dvo", String.valueOf(id % 17),
+            "field4_t", "foo " + (id % 5 == 0 ? "bar bar" : "baz")));
+      }
+      assertU(commit());
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private static QueryCommand command(String field, String value, int len, Sort sort, int flags) {
+    return new QueryCommand()
+        .setQuery(new TermQuery(new Term(field, value)))
+        .setSort(sort)
+        .setLen(len)
+        .setFlags(SolrIndexSearcher.NO_CHECK_QCACHE | SolrIndexSearcher.NO_SET_QCACHE
+            | SolrIndexSearcher.NO_CHECK_FILTERCACHE | flags);
+  }
+
+  private void assertSameResults(QueryCommand cmd) throws IOException {
+    h.getCore().withSearcher(searcher -> {
+      assertEquals(NUM_SEGMENTS, searcher.getIndexReader().leaves().size());
+      assumeTrue("segments are only searched in parallel with more than one processor",
+          Runtime.getRuntime().availableProcessors() > 1);
+      assertTrue(searcher.getCollectorSlices().size() > 1);
+
+      QueryResult serial = new QueryResult();
+      long multiThreadedBefore = SolrIndexSearcher.numMultiThreadedSearches.get();
+      searcher.search(serial, cmd.setMultiThreaded(false));
+      assertEquals(multiThreadedBefore, SolrIndexSearcher.numMultiThreadedSearches.get());
+      QueryResult parallel = new QueryResult();
+      searcher.search(parallel, cmd.setMultiThreaded(true));
+      assertEquals(multiThreadedBefore + 1, SolrIndexSearcher.numMultiThreadedSearches.get());
+
+      DocList expected = serial.getDocList();
+      DocList actual = parallel.getDocList();
+      assertEquals(expected.matches(), actual.matches());
+      assertEquals(expected.hitCountRelation(), actual.hitCountRelation());
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.maxScore(), actual.maxScore(), 0.0f);
+      DocIterator expectedIter = expected.iterator();
+      DocIterator actualIter = actual.iterator();
+      while (expectedIter.hasNext()) {
+        assertEquals(expectedIter.nextDoc(), actualIter.nextDoc());
+        if (expected.hasScores()) {
+          assertEquals(expectedIter.score(), actualIter.score(), 0.0f);
+        }
+      }
+      if (serial.getDocSet() != null) {
+        assertTrue(DocSetUtil.equals(serial.getDocSet(), parallel.getDocSet()));
+      }
+      assertFalse(parallel.isPartialResults());
+      return null;
+    });
+  }
+
+  public void testScoreSorted() throws IOException {
+    assertSameResults(command("field4_t", "foo", 10, null, SolrIndexSearcher.GET_SCORES));
+    assertSameResults(command("field4_t", "bar", 25, null, SolrIndexSearcher.GET_SCORES));
+    assertSameResults(command("field4_t", "baz", 1000, null, 0));
+  }
+
+  public void testFieldSorted() throws IOException {
+    Sort sort = new Sort(new SortField("field3_i_dvo", SortField.Type.INT, true));
+    assertSameResults(command("field1_s", "foo", 10, sort, 0));
+    assertSameResults(command("field2_s", "1", 30, sort, SolrIndexSearcher.GET_SCORES));
+  }
+
+  public void testCountOnly() throws IOException {
+    assertSameResults(command("field2_s", "2", 0, null, 0));
+    assertSameResults(command("field4_t", "bar", 0, null, SolrIndexSearcher.GET_SCORES));
+  }
+
+  public void testWithDocSet() throws IOException {
+    assertSameResults(command("field2_s", "0", 10, null, SolrIndexSearcher.GET_SCORES).setNeedDocSet(true));
+    assertSameResults(command("field1_s", "foo", 0, null, 0).setNeedDocSet(true));
+  }
+
+  public void testRequestParam() {
+    assertQ(req("q", "field4_t:bar", "fq", "field2_s:1", "multiThreaded", "true", "sort", "id asc", "rows", "3")
+        , "//result[@numFound='20']"
+        , "//result/doc[1]/str[@name='id'][.='10']"
+    );
+    // post filters are collected serially
+    assertQ(req("q", "field1_s:foo", "fq", "{!frange l=16 cache=false cost=200}field3_i_dvo",
+        "multiThreaded", "true")
+        , "//result[@numFound='" + (NUM_SEGMENTS * DOCS_PER_SEGMENT / 17) + "']"
+    );
+  }
+}
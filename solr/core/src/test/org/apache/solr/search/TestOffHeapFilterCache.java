@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+/**
+ * Test for {@link OffHeapFilterCache}.
+ */
+public class TestOffHeapFilterCache extends SolrTestCase {
+
+  private OffHeapFilterCache newCache(Map<String, String> params) {
+    OffHeapFilterCache cache = new OffHeapFilterCache();
+    cache.init(params, null, new NoOpRegenerator());
+    cache.setState(SolrCache.State.LIVE);
+    return cache;
+  }
+
+  private static BitDocSet randomBitDocSet(int maxDoc) {
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    for (int i = 0; i < maxDoc; i++) {
+      if (random().nextInt(4) == 0) {
+        bits.set(i);
+      }
+    }
+    return new BitDocSet(bits);
+  }
+
+  @Test
+  public void testBitDocSetsAreMovedOffHeap() throws Exception {
+    OffHeapFilterCache cache = newCache(new HashMap<>());
+    int maxDoc = 1 + random().nextInt(10000);
+    BitDocSet heap = randomBitDocSet(maxDoc);
+    TermQuery key = new TermQuery(new Term("f", "a"));
+    cache.put(key, heap);
+
+    DocSet cached = cache.get(key);
+    assertTrue(cached instanceof OffHeapBitDocSet);
+    assertEquals(heap.size(), cached.size());
+    assertEquals(heap.size(), cached.intersectionSize(heap));
+    assertEquals(heap.size(), heap.intersectionSize(cached));
+    assertEquals(0, cached.andNot(heap).size());
+    assertEquals(0, heap.andNot(cached).size());
+    assertEquals(heap.getBits(), ((OffHeapBitDocSet) cached).toBitDocSet().getBits());
+    // the heap view is only copied once
+    BitDocSet view = ((OffHeapBitDocSet) cached).heapView();
+    assertEquals(heap.getBits(), view.getBits());
+    assertSame(view, ((OffHeapBitDocSet) cached).heapView());
+    assertNotSame(view.getBits(), cached.clone().getFixedBitSet());
+
+    // small sets are left alone
+    SortedIntDocSet small = new SortedIntDocSet(new int[] {1, 5, 9});
+    TermQuery smallKey = new TermQuery(new Term("f", "b"));
+    assertSame(small, cache.computeIfAbsent(smallKey, k -> small));
+    assertEquals(1, cache.get(smallKey).intersectionSize(new SortedIntDocSet(new int[] {5})));
+    cache.close();
+  }
+
+  @Test
+  public void testMaxRamMBCountsOffHeapBytes() throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put(SolrCache.MAX_RAM_MB_PARAM, "1");
+    OffHeapFilterCache cache = newCache(params);
+    // each entry holds 128KB off heap, so no more than 8 of them fit in 1MB
+    int maxDoc = 128 * 1024 * 8;
+    for (int i = 0; i < 32; i++) {
+      cache.put(new TermQuery(new Term("f", Integer.toString(i))), randomBitDocSet(maxDoc));
+    }
+    assertTrue("size=" + cache.size(), cache.size() <= 8);
+    assertTrue(cache.ramBytesUsed() >= cache.size() * (long) maxDoc / 8);
+    cache.close();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+public class TestSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // keep segments as they are, so that cache hits are predictable
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-segmentfiltercache.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private static Map<String, Object> stats() {
+    SegmentFilterCache segmentFilterCache = h.getCore().getSegmentFilterCache();
+    assertNotNull(segmentFilterCache);
+    return ((CaffeineCache<?, ?>) segmentFilterCache.getCache()).getMetricsMap().getValue();
+  }
+
+  private static long stat(Map<String, Object> stats, String name) {
+    return ((Number) stats.get(name)).longValue();
+  }
+
+  public void testReuseAcrossSearchers() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", String.valueOf(i), "cat_s", i % 2 == 0 ? "even" : "odd"));
+    }
+    assertU(commit());
+    for (int i = 20; i < 40; i++) {
+      assertU(adoc("id", String.valueOf(i), "cat_s", i % 2 == 0 ? "even" : "odd"));
+    }
+    assertU(commit());
+
+    assertQ(req("q", "*:*", "fq", "cat_s:even"), "//result[@numFound='20']");
+    Map<String, Object> before = stats();
+
+    // a new segment, and a delete in an existing one
+    assertU(adoc("id", "40", "cat_s", "even"));
+    assertU(delI("0"));
+    assertU(commit());
+
+    assertQ(req("q", "*:*", "fq", "cat_s:even"), "//result[@numFound='20']");
+    assertQ(req("q", "id:0", "fq", "cat_s:even"), "//result[@numFound='0']");
+    assertQ(req("q", "id:40", "fq", "cat_s:even"), "//result[@numFound='1']");
+    Map<String, Object> after = stats();
+
+    // the filter was only computed again on the new segment
+    assertEquals(stat(before, "inserts") + 1, stat(after, "inserts"));
+    assertTrue(stat(after, "hits") > stat(before, "hits"));
+  }
+
+  public void testNotCachedQueries() throws Exception {
+    assertU(adoc("id", "100", "cat_s", "x"));
+    assertU(commit());
+    long inserts = stat(stats(), "inserts");
+    assertQ(req("q", "*:*", "fq", "{!cache=false}cat_s:x"), "//result[@numFound='1']");
+    assertEquals(inserts, stat(stats(), "inserts"));
+  }
+
+  public void testKeyedByRewrittenQuery() throws Exception {
+    assertU(adoc("id", "200", "cat_s", "fuzzy"));
+    assertU(commit());
+    assertQ(req("q", "*:*", "fq", "cat_s:fuzzi~1"), "//result[@numFound='1']");
+
+    SolrQueryRequest req = req();
+    try {
+      SolrIndexSearcher searcher = req.getSearcher();
+      Query query = QParser.getParser("cat_s:fuzzi~1", req).getQuery();
+      // the terms a fuzzy query expands to depend on the whole index
+      Query rewritten = searcher.rewrite(query);
+      assertFalse(query.equals(rewritten));
+
+      SolrCache<SegmentFilterCache.Key, DocSet> cache = h.getCore().getSegmentFilterCache().getCache();
+      for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+        assertNotNull(cache.get(new SegmentFilterCache.Key(leaf.reader().getCoreCacheHelper().getKey(), rewritten)));
+        assertNull(cache.get(new SegmentFilterCache.Key(leaf.reader().getCoreCacheHelper().getKey(), query)));
+      }
+    } finally {
+      req.close();
+    }
+  }
+
+  public void testEvictedKeysAreNotTracked() throws Exception {
+    assertU(adoc("id", "300", "cat_s", "evicted"));
+    assertU(commit());
+
+    CaffeineCache<SegmentFilterCache.Key, DocSet> cache = new CaffeineCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "2");
+    params.put("initialSize", "2");
+    cache.init(params, null, new NoOpRegenerator());
+    SegmentFilterCache segmentFilterCache = new SegmentFilterCache(cache);
+    try {
+      h.getCore().withSearcher(searcher -> {
+        for (int i = 0; i < 10; i++) {
+          segmentFilterCache.getDocSet(searcher, new TermQuery(new Term("cat_s", "evicted" + i)));
+        }
+        // Caffeine evicts on the thread of the writes, there is no cleanup thread
+        assertEquals(2, cache.size());
+        assertEquals(cache.size(), segmentFilterCache.numTrackedKeys());
+        return null;
+      });
+    } finally {
+      segmentFilterCache.close();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.Map;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.search.CaffeineCache;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestFacetCountsCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeTests() throws Exception {
+    initCore("solrconfig-facetcountscache.xml", "schema_latest.xml");
+
+    assertU(adoc("id", "1", "cat_s", "A", "where_s", "NY"));
+    assertU(adoc("id", "2", "cat_s", "B", "where_s", "NJ"));
+    assertU(commit());
+    assertU(adoc("id", "3", "cat_s", "A", "where_s", "NJ"));
+    assertU(adoc("id", "4", "cat_s", "B", "where_s", "NY"));
+    assertU(adoc("id", "5", "cat_s", "A", "where_s", "NY"));
+    assertU(adoc("id", "6", "cat_s", "C"));
+    assertU(commit());
+  }
+
+  private static Map<String, Object> stats() throws Exception {
+    return h.getCore().withSearcher(searcher ->
+        ((CaffeineCache<?, ?>) searcher.getCache(FacetFieldProcessorByArray.COUNTS_CACHE_NAME)).getMetricsMap().getValue());
+  }
+
+  private static long stat(Map<String, Object> stats, String name) {
+    return ((Number) stats.get(name)).longValue();
+  }
+
+  @Test
+  public void testResortAndPageFromCache() throws Exception {
+    Map<String, Object> before = stats();
+
+    assertJQ(req("q", "*:*", "fq", "-cat_s:C", "rows", "0",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv, limit:1}}")
+        , "facets=={count:5, cats:{buckets:[{val:A, count:3}]}}");
+    Map<String, Object> first = stats();
+    assertEquals(stat(before, "inserts") + 1, stat(first, "inserts"));
+
+    // same domain, different sort and page: counted from the cache
+    assertJQ(req("q", "*:*", "fq", "-cat_s:C", "rows", "0",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv, sort:'index desc', offset:1, limit:2}}")
+        , "facets=={count:5, cats:{buckets:[{val:A, count:3}]}}");
+    Map<String, Object> second = stats();
+    assertEquals(stat(first, "inserts"), stat(second, "inserts"));
+    assertEquals(stat(first, "hits") + 1, stat(second, "hits"));
+
+    // another filter is another domain
+    assertJQ(req("q", "*:*", "fq", "where_s:NY", "rows", "0",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv}}")
+        , "facets=={count:3, cats:{buckets:[{val:A, count:2}, {val:B, count:1}]}}");
+    assertEquals(stat(second, "inserts") + 1, stat(stats(), "inserts"));
+  }
+
+  @Test
+  public void testNotCached() throws Exception {
+    Map<String, Object> before = stats();
+
+    // sorted by a stat, with allBuckets, on a sub-domain, or with cache=false: nothing is cached
+    assertJQ(req("q", "*:*", "rows", "0",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv, sort:'u desc', facet:{u:'unique(where_s)'}}}")
+        , "facets=={count:6, cats:{buckets:[{val:A, count:3, u:2}, {val:B, count:2, u:2}, {val:C, count:1, u:0}]}}");
+    assertJQ(req("q", "*:*", "rows", "0",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv, allBuckets:true}}")
+        , "facets=={count:6, cats:{allBuckets:{count:6}, buckets:[{val:A, count:3}, {val:B, count:2}, {val:C, count:1}]}}");
+    assertJQ(req("q", "*:*", "rows", "0",
+        "json.facet", "{ny:{type:query, q:'where_s:NY', facet:{cats:{type:terms, field:cat_s, method:dv}}}}")
+        , "facets=={count:6, ny:{count:3, cats:{buckets:[{val:A, count:2}, {val:B, count:1}]}}}");
+    assertJQ(req("q", "*:*", "fq", "where_s:NJ", "rows", "0", "cache", "false",
+        "json.facet", "{cats:{type:terms, field:cat_s, method:dv}}")
+        , "facets=={count:2, cats:{buckets:[{val:A, count:1}, {val:B, count:1}]}}");
+
+    assertEquals(stat(before, "inserts"), stat(stats(), "inserts"));
+  }
+}
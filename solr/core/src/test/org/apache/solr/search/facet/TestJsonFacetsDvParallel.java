@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.search.facet;
+
+import org.apache.solr.JSONTestUtil;
+import org.apache.solr.SolrTestCaseHS;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Tests method:dvparallel of terms facets, over an index with several segments
+ */
+public class TestJsonFacetsDvParallel extends SolrTestCaseHS {
+
+  @BeforeClass
+  public static void beforeTests() throws Exception {
+    JSONTestUtil.failRepeatedKeys = true;
+    // keep every commit in its own segment
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+
+    // we need DVs on point fields to compute stats & facets
+    if (Boolean.getBoolean(NUMERIC_POINTS_SYSPROP)) System.setProperty(NUMERIC_DOCVALUES_SYSPROP,"true");
+
+    initCore("solrconfig-tlog.xml","schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterTests() throws Exception {
+    JSONTestUtil.failRepeatedKeys = false;
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  /**
+   * A segment per pair of docs, so that several slices of segments are collected and merged
+   */
+  public void testMethodDvParallel() throws Exception {
+    final Client client = Client.localClient();
+
+    final SolrParams p = params("rows","0");
+
+    client.deleteByQuery("*:*", null);
+
+    client.add(sdoc("id", "1", "cat_s","A", "where_s","NY", "num_i","2", "tag_ss","x", "tag_ss","y"), null);
+    client.add(sdoc("id", "2", "cat_s","B", "where_s","NJ", "num_i","-5", "tag_ss","x"), null);
+    client.commit();
+    client.add(sdoc("id", "3", "cat_s","A", "where_s","NJ", "num_i","3", "tag_ss","y"), null);
+    client.add(sdoc("id", "4", "cat_s","B", "where_s","NY", "num_i","7"), null);
+    client.commit();
+    client.add(sdoc("id", "5", "cat_s","A", "where_s","NY", "num_i","-1", "tag_ss","x", "tag_ss","z"), null);
+    client.add(sdoc("id", "6", "cat_s","C", "num_i","10", "tag_ss","z"), null);
+    client.commit();
+
+    client.testJQ(params(p, "q", "*:*"
+        , "json.facet", "{" +
+            "  cats: {" +
+            "    type:terms," +
+            "    field:cat_s," +
+            "    method:dvparallel," +
+            "    limit:-1," +
+            "    facet: { s:'sum(num_i)', mn:'min(num_i)', mx:'max(num_i)', u:'unique(where_s)' }" +
+            "  }," +
+            "  by_sum: {" +
+            "    type:terms," +
+            "    field:cat_s," +
+            "    method:dvparallel," +
+            "    sort:'s desc'," +
+            "    facet: { s:'sum(num_i)' }" +
+            "  }," +
+            "  tags: {" +
+            "    type:terms," +
+            "    field:tag_ss," +
+            "    method:dvparallel," +
+            "    facet: { u:'unique(where_s)' }" +
+            "  }," +
+            "  tag_prefix: {" +
+            "    type:terms," +
+            "    field:tag_ss," +
+            "    method:dvparallel," +
+            "    prefix:y," +
+            "    sort:'mx desc'," +
+            "    facet: { mx:'max(num_i)' }" +
+            "  }" +
+            "}" )
+
+        , "facets=={ count:6," +
+            "cats:{" +
+            "    buckets:[ " +
+            "     {val:A, count:3, s:4.0, mn:-1, mx:3, u:2}," +
+            "     {val:B, count:2, s:2.0, mn:-5, mx:7, u:2}," +
+            "     {val:C, count:1, s:10.0, mn:10, mx:10, u:0}" +
+            "    ]}," +
+            "by_sum:{" +
+            "    buckets:[ {val:C, count:1, s:10.0}, {val:A, count:3, s:4.0}, {val:B, count:2, s:2.0} ]}," +
+            "tags:{" +
+            "    buckets:[ {val:x, count:3, u:2}, {val:y, count:2, u:2}, {val:z, count:2, u:1} ]}," +
+            "tag_prefix:{" +
+            "    buckets:[ {val:y, count:2, mx:3} ]}" +
+            "}"
+    );
+
+    // the segments are collected in parallel, as long as there is more than one processor to slice them for
+    final int numSlices = Math.min(3, Runtime.getRuntime().availableProcessors());
+    if (numSlices > 1) {
+      client.testJQ(params(p, "q", "*:*", "debug", "true"
+          , "json.facet", "{ cats: { type:terms, field:cat_s, method:dvparallel, facet: { s:'sum(num_i)' } } }")
+          , "facets=={ count:6, cats:{ buckets:[ {val:A, count:3, s:4.0}, {val:B, count:2, s:2.0}, {val:C, count:1, s:10.0} ]} }"
+          , "debug/facet-trace/sub-facet/[0]/processor=='FacetFieldProcessorByArrayDV'"
+          , "debug/facet-trace/sub-facet/[0]/parallelSlices==" + numSlices
+      );
+    }
+  }
+}
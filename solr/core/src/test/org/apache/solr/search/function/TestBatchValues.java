@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.function;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.function.FunctionQuery;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+public class TestBatchValues extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema11.xml");
+  }
+
+  @Before
+  public void before() throws Exception {
+    clearIndex();
+    assertU(commit());
+  }
+
+  public void testSameValuesAsFunctionValues() throws Exception {
+    long sum = 0;
+    long sumsq = 0;
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      SolrInputDocument doc = sdoc("id", Integer.toString(i));
+      if (random().nextInt(4) != 0) {
+        int val = random().nextInt(100) - 50;
+        doc.addField("a_i", val);
+        sum += 2 * val;
+        sumsq += 4 * val * val;
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_l", random().nextLong() >> 20);
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_f", random().nextFloat() * 100 - 50);
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_d", random().nextDouble() * 1000);
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_dt", Instant.ofEpochMilli(random().nextInt(Integer.MAX_VALUE) * 1000L).toString());
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_b", random().nextBoolean());
+      }
+      // multi valued fields, only read through field(name,min|max)
+      for (int j = random().nextInt(3); j > 0; j--) {
+        doc.addField("m_is_p", random().nextInt(100) - 50);
+        doc.addField("m_ls_p", random().nextLong() >> 20);
+        doc.addField("m_ds_p", random().nextDouble() * 1000);
+        doc.addField("m_dts_p", Instant.ofEpochMilli(random().nextInt(Integer.MAX_VALUE) * 1000L).toString());
+      }
+      assertU(adoc(doc));
+      if (random().nextInt(10) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    final String[] functions = {
+        "a_i", "a_l", "a_f", "a_d", "a_dt", "a_b",
+        "sum(a_i,a_f,3)", "product(a_l,a_d)", "linear(a_f,2,3)",
+        "ms(NOW,a_dt)", "ms(a_dt,NOW-1YEAR)", "ms(a_dt,a_dt)",
+        "recip(ms(NOW,a_dt),3.16e-11,1,1)",
+        "map(a_i,0,10,a_f,a_d)", "map(a_i,0,10,5)",
+        "if(a_b,a_i,a_f)", "if(exists(a_d),sum(a_d,1),a_l)",
+        "log(sum(a_f,100))", "sqrt(a_d)", "pow(a_i,2)", "atan2(a_f,a_d)",
+        "product(log(sum(a_i,60)),recip(ms(NOW,a_dt),3.16e-11,1,1))",
+        "sum(a_i,abs(a_f))", // abs is evaluated one document at a time
+        "field(m_is_p,min)", "field(m_ls_p,min)", "field(m_ls_p,max)", "field(m_ds_p,max)", "field(m_dts_p,min)",
+        "sum(field(m_ls_p,max),a_i)"
+    };
+
+    try (SolrQueryRequest req = req()) {
+      final SolrIndexSearcher searcher = req.getSearcher();
+      for (String function : functions) {
+        final ValueSource vs = ((FunctionQuery) QParser.getParser(function, "func", req).getQuery()).getValueSource();
+        if (!function.startsWith("a_") && !function.startsWith("field(")) {
+          assertTrue(function, vs instanceof BatchValueSource);
+        }
+
+        @SuppressWarnings({"rawtypes"})
+        final Map context = ValueSource.newContext(searcher);
+        vs.createWeight(context, searcher);
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+          @SuppressWarnings({"unchecked"})
+          final FunctionValues values = vs.getValues(context, leaf);
+          final BatchValues floatVals = BatchValues.get(vs, context, leaf);
+          final BatchValues doubleVals = BatchValues.get(vs, context, leaf);
+          final BatchValues longVals = BatchValues.get(vs, context, leaf);
+          final int maxDoc = leaf.reader().maxDoc();
+          final int[] docs = new int[maxDoc];
+          final float[] floats = new float[maxDoc];
+          final double[] doubles = new double[maxDoc];
+          final long[] longs = new long[maxDoc];
+
+          int doc = random().nextInt(2);
+          while (doc < maxDoc) {
+            // a block of increasing docs, with gaps
+            int count = 0;
+            final int blockSize = 1 + random().nextInt(10);
+            for (; count < blockSize && doc < maxDoc; count++) {
+              docs[count] = doc;
+              doc += 1 + random().nextInt(3);
+            }
+            floatVals.floatVals(docs, count, floats);
+            doubleVals.doubleVals(docs, count, doubles);
+            longVals.longVals(docs, count, longs);
+            for (int i = 0; i < count; i++) {
+              final String msg = function + " doc=" + docs[i];
+              assertEquals(msg, values.floatVal(docs[i]), floats[i], 0f);
+              assertEquals(msg, values.doubleVal(docs[i]), doubles[i], 0d);
+              assertEquals(msg, values.longVal(docs[i]), longs[i]);
+            }
+          }
+        }
+      }
+    }
+
+    // function stats over the whole result are computed in batches
+    assertJQ(req("q", "*:*", "rows", "0",
+        "json.facet", "{s:'sum(product(a_i,2))', sq:'sumsq(product(a_i,2))'}")
+        , "/facets=={count:" + numDocs + ", s:" + (double) sum + ", sq:" + (double) sumsq + "}");
+  }
+
+  public void testEquality() throws Exception {
+    // the same function parsed twice, and a variant of it
+    final String[][] functions = {
+        {"linear(a_f,2,3)", "linear(field(a_f), 2, 3)", "linear(a_f,2,4)"},
+        {"recip(a_i,3.16e-11,1,1)", "recip(field('a_i'), 3.16e-11, 1, 1)", "recip(a_i,3.16e-11,1,2)"},
+        {"map(a_i,0,10,a_f,a_d)", "map(field(a_i), 0.0, 10, a_f, a_d)", "map(a_i,0,10,a_f)"},
+        {"sum(a_i,a_f,3)", "add(a_i, a_f, 3)", "sum(a_i,a_f,4)"},
+        {"product(a_l,a_d)", "mul(a_l, a_d)", "product(a_d,a_l)"},
+        {"if(a_b,a_i,a_f)", "if(field(a_b), a_i, a_f)", "if(a_b,a_f,a_i)"}
+    };
+    try (SolrQueryRequest req = req()) {
+      for (String[] function : functions) {
+        final Query query = QParser.getParser(function[0], "func", req).getQuery();
+        final Query same = QParser.getParser(function[1], "func", req).getQuery();
+        final Query other = QParser.getParser(function[2], "func", req).getQuery();
+        assertTrue(function[0], ((FunctionQuery) query).getValueSource() instanceof BatchValueSource);
+        QueryUtils.check(query);
+        QueryUtils.checkEqual(query, same);
+        QueryUtils.checkUnequal(query, other);
+      }
+    }
+  }
+
+  public void testScoringAndSortingInBatches() throws Exception {
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      SolrInputDocument doc = sdoc("id", Integer.toString(i), "cat_s", "c" + random().nextInt(5));
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_i", random().nextInt(100) - 20);
+      }
+      if (random().nextInt(4) != 0) {
+        doc.addField("a_f", random().nextFloat() * 100 - 20);
+      }
+      assertU(adoc(doc));
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    final String[] functions = {
+        "sum(a_i,a_f)", "linear(a_f,2,-3)", "if(exists(a_i),a_i,a_f)", "recip(a_i,1,100,10)", "map(a_i,0,10,a_f,-1)"
+    };
+    try (SolrQueryRequest req = req()) {
+      final SolrIndexSearcher searcher = req.getSearcher();
+      for (String function : functions) {
+        final ValueSource vs = ((FunctionQuery) QParser.getParser(function, "func", req).getQuery()).getValueSource();
+        assertTrue(function, vs instanceof BatchValueSource);
+        // dense and sparse matches
+        final Query filter = random().nextBoolean()
+            ? new TermQuery(new Term("cat_s", "c" + random().nextInt(5)))
+            : new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("cat_s", "c0")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term("cat_s", "c1")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term("cat_s", "c2")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term("cat_s", "c3")), BooleanClause.Occur.SHOULD)
+                .build();
+
+        long windows = BatchValues.Window.numWindows.get();
+        assertSameDocs(function,
+            searcher.search(functionQuery(filter, new FunctionQuery(vs)), numDocs),
+            searcher.search(functionQuery(filter, new BatchFunctionQuery(vs)), numDocs));
+        assertTrue(function, BatchValues.Window.numWindows.get() > windows);
+
+        windows = BatchValues.Window.numWindows.get();
+        assertSameDocs(function,
+            searcher.search(FunctionScoreQuery.boostByValue(filter, vs.asDoubleValuesSource()), numDocs),
+            searcher.search(FunctionScoreQuery.boostByValue(filter, BatchDoubleValuesSource.of(vs)), numDocs));
+        assertTrue(function, BatchValues.Window.numWindows.get() > windows);
+
+        final boolean reverse = random().nextBoolean();
+        windows = BatchValues.Window.numWindows.get();
+        assertSameDocs(function,
+            searcher.search(filter, numDocs, new Sort(vs.getSortField(reverse))),
+            searcher.search(filter, numDocs, new Sort(BatchSortField.of(vs, reverse))));
+        assertTrue(function, BatchValues.Window.numWindows.get() > windows);
+      }
+    }
+
+    // bf, boost and function sorts are computed in batches
+    final String[][] requests = {
+        {"q", "*:*", "defType", "edismax", "bf", "sum(a_i,a_f)"},
+        {"q", "*:*", "defType", "edismax", "bf", "linear(a_f,2,3)^2"},
+        {"q", "{!func}product(a_i,a_f)"},
+        {"q", "*:*", "defType", "edismax", "boost", "sum(a_f,100)"},
+        {"q", "*:*", "defType", "edismax", "boost", "sum(a_f,100)", "boost", "linear(a_i,1,100)"},
+        {"q", "{!boost b=recip(a_i,1,100,10)}*:*"},
+        {"q", "*:*", "sort", "sum(a_i,a_f) desc"}
+    };
+    for (String[] request : requests) {
+      final long windows = BatchValues.Window.numWindows.get();
+      assertJQ(req(request), "/response/numFound==" + numDocs);
+      assertTrue(String.join(" ", request), BatchValues.Window.numWindows.get() > windows);
+    }
+  }
+
+  private static Query functionQuery(Query filter, FunctionQuery function) {
+    return new BooleanQuery.Builder()
+        .add(filter, BooleanClause.Occur.FILTER)
+        .add(function, BooleanClause.Occur.MUST)
+        .build();
+  }
+
+  private static void assertSameDocs(String msg, TopDocs expected, TopDocs actual) {
+    assertEquals(msg, expected.totalHits.value, actual.totalHits.value);
+    assertEquals(msg, expected.scoreDocs.length, actual.scoreDocs.length);
+    for (int i = 0; i < expected.scoreDocs.length; i++) {
+      assertEquals(msg, expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      assertEquals(msg, expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+      if (expected.scoreDocs[i] instanceof FieldDoc) {
+        assertArrayEquals(msg, ((FieldDoc) expected.scoreDocs[i]).fields, ((FieldDoc) actual.scoreDocs[i]).fields);
+      }
+    }
+  }
+}
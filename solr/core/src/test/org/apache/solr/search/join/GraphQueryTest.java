@@ -47,6 +47,11 @@ public class GraphQueryTest extends SolrTestCaseJ4 {
 
     // string with indexed=false and docValues=true
     doGraph( params("node_id","node_sdN", "edge_id","edge_sdsN") );
+
+    // traversal with bitsets and docValues ordinals
+    doGraph( params("node_id","node_s",  "edge_id","edge_ss", "traversal","bitset") );
+    doGraph( params("node_id","node_ss", "edge_id","edge_ss", "traversal","bitset") );
+    doGraph( params("node_id","node_sdN", "edge_id","edge_sdsN", "traversal","bitset") );
   }
 
   public void doGraph(SolrParams p) throws Exception {
@@ -82,47 +87,95 @@ public class GraphQueryTest extends SolrTestCaseJ4 {
     // start traversal from node id to edge id
 
     // TODO: assert which documents actually come back
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id}}id:doc_1")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query}}id:doc_1")
         , "/response/numFound==7"
     );
 
     // reverse the order to test single/multi-valued on the opposite fields
     // start with doc1, look up node_id (1) and match to edge_id (docs 7 and 8)
-    assertJQ(req(p, "q","{!graph from=${edge_id} to=${node_id} maxDepth=1}id:doc_1")
+    assertJQ(req(p, "q","{!graph from=${edge_id} to=${node_id} traversal=${traversal:query} maxDepth=1}id:doc_1")
         , "/response/numFound==3"
     );
 
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=true returnOnlyLeaf=false}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=true returnOnlyLeaf=false}id:doc_8")
         , "/response/numFound==8"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=false returnOnlyLeaf=false}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=false returnOnlyLeaf=false}id:doc_8")
         , "/response/numFound==7"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=true returnOnlyLeaf=false traversalFilter='text:foo11'}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=true returnOnlyLeaf=false traversalFilter='text:foo11'}id:doc_8")
         , "/response/numFound==2"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=true returnOnlyLeaf=false maxDepth=0}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=true returnOnlyLeaf=false maxDepth=0}id:doc_8")
         , "/response/numFound==1"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=true returnOnlyLeaf=false maxDepth=1}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=true returnOnlyLeaf=false maxDepth=1}id:doc_8")
         , "/response/numFound==3"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=false returnOnlyLeaf=false maxDepth=1}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=false returnOnlyLeaf=false maxDepth=1}id:doc_8")
         , "/response/numFound==2"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=false returnOnlyLeaf=true maxDepth=2}id:doc_8")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=false returnOnlyLeaf=true maxDepth=2}id:doc_8")
         , "/response/numFound==1"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} maxDepth=1}id:doc_1")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} maxDepth=1}id:doc_1")
         , "/response/numFound==2"
     );
-    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} returnRoot=false maxDepth=1}id:doc_1")
+    assertJQ(req(p, "q","{!graph from=${node_id} to=${edge_id} traversal=${traversal:query} returnRoot=false maxDepth=1}id:doc_1")
         , "/response/numFound==1"
     );
   }
-  
+
+  @Test
+  public void testTarget() throws Exception {
+    // a1->a2->a3->a4, a5->a3, a6 alone
+    assertU(adoc("id", "t_1", "node_s", "a1", "edge_ss", "a2"));
+    assertU(adoc("id", "t_2", "node_s", "a2", "edge_ss", "a3"));
+    assertU(commit());
+    assertU(adoc("id", "t_3", "node_s", "a3", "edge_ss", "a4"));
+    assertU(adoc("id", "t_4", "node_s", "a4"));
+    assertU(adoc("id", "t_5", "node_s", "a5", "edge_ss", "a3"));
+    assertU(adoc("id", "t_6", "node_s", "a6"));
+    assertU(commit());
+
+    for (String traversal : new String[] {"query", "bitset"}) {
+      for (String bidirectional : new String[] {"false", "true"}) {
+        final SolrParams p = params("traversal", traversal, "bidirectional", bidirectional);
+        final String graph = "{!graph from=node_s to=edge_ss traversal=${traversal} bidirectional=${bidirectional} ";
+
+        assertJQ(req(p, "q", graph + "target=id:t_4}id:t_1", "fl", "id")
+            , "/response/docs==[{'id':'t_4'}]");
+        assertJQ(req(p, "q", graph + "target=id:t_4 maxDepth=2}id:t_1")
+            , "/response/numFound==0");
+        // a3 is filtered out
+        assertJQ(req(p, "q", graph + "target=id:t_4 traversalFilter='id:(t_2 OR t_4)'}id:t_1")
+            , "/response/numFound==0");
+        assertJQ(req(p, "q", graph + "target=id:t_6}id:t_1")
+            , "/response/numFound==0");
+        // a root is reachable, unless roots aren't returned
+        assertJQ(req(p, "q", graph + "target=id:t_1}id:t_1")
+            , "/response/numFound==1");
+        assertJQ(req(p, "q", graph + "target=id:t_1 returnRoot=false}id:t_1")
+            , "/response/numFound==0");
+        // several roots or targets
+        assertJQ(req(p, "q", graph + "target='id:(t_3 OR t_4 OR t_6)'}id:(t_1 OR t_5)", "fl", "id", "sort", "id asc")
+            , "/response/docs==[{'id':'t_3'},{'id':'t_4'}]");
+      }
+    }
+
+    // the hops of bitset traversals are in the debug output
+    final String response = h.query(req("q", "{!graph from=node_s to=edge_ss traversal=bitset}id:t_1",
+        "debugQuery", "true", "wt", "json", "indent", "false"));
+    assertTrue(response, response.contains("\"rootSetSize\":1,\"resultSetSize\":4"));
+    assertTrue(response, response.contains("{\"direction\":\"forward\",\"depth\":1,\"frontierSize\":1,"));
+  }
+
   @Test
   public void testGraphQueryParserValidation() throws Exception {
+    // bitset traversal needs string fields with docValues
+    assertQEx("points are not supported", "traversal=bitset requires string fields",
+        req("q", "{!graph from=node_ip to=edge_ips traversal=bitset}id:doc_1"), SolrException.ErrorCode.BAD_REQUEST);
+
     // from schema field existence
     doGraphQuery( params("node_id","node_nothere",  "edge_id","edge_ss",
         "message", "field node_nothere not defined in schema", "errorCode", String.valueOf(SolrException.ErrorCode.BAD_REQUEST.code)) );
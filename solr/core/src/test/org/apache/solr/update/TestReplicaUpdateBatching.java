@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.embedded.JettySolrRunner;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.common.util.TimeSource;
+import org.apache.solr.util.TimeOut;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Adds sent from the leader to its replica are batched across concurrent requests without losing any. */
+public class TestReplicaUpdateBatching extends SolrCloudTestCase {
+
+  private static final String COLLECTION = "batching";
+
+  @BeforeClass
+  public static void setupCluster() throws Exception {
+    System.setProperty("solr.cloud.replication.batchLingerMs", "5");
+    System.setProperty("solr.cloud.replication.maxBatchSize", "20");
+    configureCluster(2)
+        .addConfig("conf", configset("cloud-minimal"))
+        .configure();
+    CollectionAdminRequest.createCollection(COLLECTION, "conf", 1, 2)
+        .process(cluster.getSolrClient());
+    cluster.waitForActiveCollection(COLLECTION, 1, 2);
+  }
+
+  @AfterClass
+  public static void clearProperties() {
+    System.clearProperty("solr.cloud.replication.batchLingerMs");
+    System.clearProperty("solr.cloud.replication.maxBatchSize");
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    int numThreads = 4;
+    int docsPerThread = atLeast(50);
+    ExecutorService executor = ExecutorUtil.newMDCAwareFixedThreadPool(numThreads, new SolrNamedThreadFactory("testBatching"));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < docsPerThread; i++) {
+            String id = thread + "-" + i;
+            new UpdateRequest().add(sdoc("id", id)).process(cluster.getSolrClient(), COLLECTION);
+            if (i % 10 == 0) {
+              // a delete right after the add must not overtake it on the replica
+              new UpdateRequest().add(sdoc("id", id + "-deleted")).deleteById(id + "-deleted")
+                  .process(cluster.getSolrClient(), COLLECTION);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+    cluster.getSolrClient().commit(COLLECTION);
+
+    for (Replica replica : getCollectionState(COLLECTION).getReplicas()) {
+      try (SolrClient client = new HttpSolrClient.Builder(replica.getCoreUrl()).build()) {
+        assertEquals(replica.getName(), numThreads * docsPerThread,
+            client.query(new SolrQuery("q", "*:*", "distrib", "false")).getResults().getNumFound());
+      }
+    }
+
+    long batches = 0;
+    long maxBatchSize = 0;
+    for (JettySolrRunner jetty : cluster.getJettySolrRunners()) {
+      Histogram batchSizes = (Histogram) jetty.getCoreContainer().getMetricManager().registry("solr.node")
+          .getMetrics().get("UPDATE.updateShardHandler.replicationBatches.batchSize");
+      if (batchSizes != null) {
+        batches += batchSizes.getCount();
+        maxBatchSize = Math.max(maxBatchSize, batchSizes.getSnapshot().getMax());
+      }
+    }
+    assertTrue("no batches were sent", batches > 0);
+    // the adds of the concurrent requests were coalesced, not only sent through the batcher one by one
+    assertTrue("no batch held more than one doc: " + maxBatchSize, maxBatchSize > 1);
+    assertTrue("batches are bounded by maxBatchSize: " + maxBatchSize, maxBatchSize <= 20);
+
+    // idle queues are dropped
+    for (JettySolrRunner jetty : cluster.getJettySolrRunners()) {
+      ReplicaUpdateBatcher batcher = jetty.getCoreContainer().getUpdateShardHandler().getReplicaUpdateBatcher();
+      new TimeOut(30, TimeUnit.SECONDS, TimeSource.NANO_TIME)
+          .waitFor("replica queues were not dropped", () -> batcher.numPipelines() == 0);
+    }
+  }
+}
@@ -24,7 +24,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.lucene.util.Constants;
 import org.apache.solr.SolrTestCase;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.update.TransactionLog.LogReader;
@@ -72,4 +75,142 @@ public class TransactionLogTest extends SolrTestCase {
       assertEquals(uuid, (UUID) doc.getFieldValue("uuid"));
     }
   }
+
+  @Test
+  public void testEncodeThenAppend() throws IOException, InterruptedException {
+    String tlogFileName = String.format(Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME,
+        Long.MAX_VALUE);
+    Path path = createTempDir();
+    File logFile = new File(path.toFile(), tlogFileName);
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>())) {
+      tlog.deleteOnClose = false;
+      AddUpdateCommand first = new AddUpdateCommand(null);
+      first.solrDoc = new SolrInputDocument("id", "1");
+      first.setVersion(1);
+      // the header isn't written yet
+      assertNull(tlog.encode(first));
+      tlog.write(first);
+
+      for (int i = 2; i <= 3; i++) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = new SolrInputDocument("id", Integer.toString(i), "name_s", "doc" + i);
+        cmd.setVersion(i);
+        MemOutputStream out = tlog.encode(cmd);
+        assertNotNull(out);
+        tlog.append(out);
+      }
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>(), true)) {
+      LogReader reader = tlog.getReader(0);
+      for (int i = 1; i <= 3; i++) {
+        List<?> entry = (List<?>) reader.next();
+        assertNotNull(entry);
+        assertEquals(UpdateLog.ADD, entry.get(0));
+        assertEquals((long) i, entry.get(1));
+        SolrInputDocument doc = (SolrInputDocument) entry.get(2);
+        assertEquals(Integer.toString(i), doc.getFieldValue("id"));
+      }
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void testConcurrentFsync() throws Exception {
+    String tlogFileName = String.format(Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME,
+        Long.MAX_VALUE);
+    Path path = createTempDir();
+    File logFile = new File(path.toFile(), tlogFileName);
+    int numThreads = 4;
+    int docsPerThread = 50;
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>())) {
+      tlog.deleteOnClose = false;
+      tlog.groupSyncMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(1 + random().nextInt(5));
+      AtomicLong version = new AtomicLong();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        Thread thread = new Thread(() -> {
+          for (int i = 0; i < docsPerThread; i++) {
+            AddUpdateCommand cmd = new AddUpdateCommand(null);
+            cmd.setVersion(version.incrementAndGet());
+            cmd.solrDoc = new SolrInputDocument("id", Long.toString(cmd.getVersion()));
+            tlog.write(cmd);
+            tlog.finish(UpdateLog.SyncLevel.FSYNC);
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      // requests waiting for a sync share it
+      long syncs = tlog.getSyncCount();
+      assertTrue("syncs=" + syncs, syncs > 0 && syncs < numThreads * docsPerThread);
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>(), true)) {
+      LogReader reader = tlog.getReader(0);
+      int count = 0;
+      while (reader.next() != null) {
+        count++;
+      }
+      assertEquals(numThreads * docsPerThread, count);
+    }
+  }
+
+  @Test
+  public void testMappedReads() throws IOException {
+    assumeTrue("log mapping is not used on this platform", Constants.JRE_IS_64BIT && !Constants.WINDOWS);
+    String tlogFileName = String.format(Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME,
+        Long.MAX_VALUE);
+    Path path = createTempDir();
+    File logFile = new File(path.toFile(), tlogFileName);
+    TransactionLog tlog = new TransactionLog(logFile, new ArrayList<>());
+    try {
+      int numDocs = atLeast(10);
+      long[] positions = new long[numDocs];
+      for (int i = 0; i < numDocs; i++) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = new SolrInputDocument("id", Integer.toString(i));
+        cmd.setVersion(i + 1);
+        positions[i] = tlog.write(cmd);
+      }
+      tlog.mapForReads();
+
+      for (int i = 0; i < numDocs; i++) {
+        List<?> entry = (List<?>) tlog.lookup(positions[i]);
+        assertEquals((long) (i + 1), entry.get(UpdateLog.VERSION_IDX));
+        assertEquals(Integer.toString(i), ((SolrInputDocument) entry.get(2)).getFieldValue("id"));
+      }
+
+      // records appended after the log was mapped are still visible
+      CommitUpdateCommand commit = new CommitUpdateCommand(null, false);
+      commit.setVersion(numDocs + 1);
+      long commitPos = tlog.writeCommit(commit);
+      assertTrue(tlog.endsWithCommit());
+
+      TransactionLog.ReverseReader reader = tlog.getReverseReader();
+      try {
+        assertTrue(reader instanceof TransactionLog.MappedReverseReader);
+        List<?> entry = (List<?>) reader.next();
+        assertEquals(UpdateLog.COMMIT, entry.get(UpdateLog.FLAGS_IDX));
+        assertEquals(commitPos, reader.position());
+        for (int i = numDocs - 1; i >= 0; i--) {
+          entry = (List<?>) reader.next();
+          assertEquals((long) (i + 1), entry.get(UpdateLog.VERSION_IDX));
+          assertEquals(positions[i], reader.position());
+        }
+        assertNull(reader.next());
+      } finally {
+        reader.close();
+      }
+      // the log was mapped again to read the commit
+      assertEquals(2, tlog.numMappings());
+    } finally {
+      // releasing the last reference unmaps the log
+      tlog.decref();
+    }
+    assertEquals(0, tlog.numMappings());
+  }
 }
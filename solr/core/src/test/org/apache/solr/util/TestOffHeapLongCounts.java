@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.SolrTestCase;
+
+public class TestOffHeapLongCounts extends SolrTestCase {
+
+  public void testCountsAndRehash() {
+    final Map<Long, Integer> expected = new HashMap<>();
+    final Map<Long, Integer> slots = new HashMap<>();
+    final int[] rehashes = new int[1];
+
+    try (OffHeapLongCounts counts = new OffHeapLongCounts(2)) {
+      counts.setRehashListener(oldToNewMapping -> {
+        rehashes[0]++;
+        assertEquals(counts.numSlots() / 2, oldToNewMapping.length);
+        for (Map.Entry<Long, Integer> entry : slots.entrySet()) {
+          int newSlot = oldToNewMapping[entry.getValue()];
+          assertEquals(entry.getKey().longValue(), counts.getVal(newSlot));
+          entry.setValue(newSlot);
+        }
+      });
+
+      final int numAdds = atLeast(1000);
+      for (int i = 0; i < numAdds; i++) {
+        final long val = random().nextBoolean() ? random().nextInt(100) : random().nextLong();
+        final int slot = counts.add(val);
+        expected.merge(val, 1, Integer::sum);
+        final Integer previousSlot = slots.put(val, slot);
+        assertTrue(previousSlot == null || previousSlot == slot);
+      }
+
+      assertTrue(rehashes[0] > 0);
+      assertEquals(expected.size(), counts.cardinality());
+      long total = 0;
+      for (int slot = 0; slot < counts.numSlots(); slot++) {
+        total += counts.getCount(slot);
+      }
+      assertEquals(numAdds, total);
+      for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+        final int slot = slots.get(entry.getKey());
+        assertEquals(entry.getKey().longValue(), counts.getVal(slot));
+        assertEquals(entry.getValue().longValue(), counts.getCount(slot));
+      }
+    }
+  }
+
+  public void testPooledBuffersAreCleared() {
+    // larger than the tables of testCountsAndRehash, so the pool holds no other buffer of this capacity
+    final int sz = 1 << 17;
+    final long capacity = sz * 2L * Long.BYTES;
+    final OffHeapLongCounts first = new OffHeapLongCounts(sz);
+    for (int i = 0; i < 40; i++) {
+      first.add(i);
+    }
+    final long pooledBefore = OffHeapLongCounts.pooledBytes();
+    first.close();
+    assertEquals(pooledBefore + capacity, OffHeapLongCounts.pooledBytes());
+
+    try (OffHeapLongCounts second = new OffHeapLongCounts(sz)) {
+      // the buffer of first was taken back out of the pool
+      assertEquals(pooledBefore, OffHeapLongCounts.pooledBytes());
+      for (int slot = 0; slot < second.numSlots(); slot++) {
+        assertEquals(0, second.getCount(slot));
+      }
+      assertEquals(1, second.getCount(second.add(7)));
+      assertEquals(1, second.cardinality());
+    }
+    assertEquals(pooledBefore + capacity, OffHeapLongCounts.pooledBytes());
+  }
+
+  public void testBuffersBeyondThePoolAreFreed() {
+    final OffHeapLongCounts.BufferPool pool = new OffHeapLongCounts.BufferPool(1024);
+    final ByteBuffer first = pool.acquire(1024);
+    final ByteBuffer second = pool.acquire(1024);
+    pool.release(first);
+    assertEquals(1024, pool.pooledBytes());
+    assertEquals(0, pool.freedBytes());
+    pool.release(second);
+    assertEquals(1024, pool.pooledBytes());
+    assertEquals(OffHeapLongCounts.BufferPool.canFree() ? 1024 : 0, pool.freedBytes());
+  }
+
+  public void testTooManySlots() {
+    // 2^28 slots of a value and a count take 4GB, more than a buffer holds
+    expectThrows(IllegalStateException.class, () -> new OffHeapLongCounts(1 << 28));
+  }
+}
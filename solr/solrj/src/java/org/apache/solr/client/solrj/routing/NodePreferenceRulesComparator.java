@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.apache.solr.common.StringUtils;
 import org.apache.solr.common.cloud.NodesSysPropsCacher;
@@ -36,7 +37,7 @@ import org.apache.solr.common.params.SolrParams;
    * to one bad node.
    *
    * Optional final preferenceRule is *not* used for pairwise sorting, but instead defines how "equivalent"
-   * replicas will be ordered (the base ordering). Defaults to "random"; may specify "stable".
+   * replicas will be ordered (the base ordering). Defaults to "random"; may specify "stable" or "latency".
    */
 public class NodePreferenceRulesComparator implements Comparator<Object> {
 
@@ -55,6 +56,17 @@ public class NodePreferenceRulesComparator implements Comparator<Object> {
   public NodePreferenceRulesComparator(final List<PreferenceRule> preferenceRules, final SolrParams requestParams,
       final String nodeName, final String localHostAddress, final NodesSysPropsCacher sysPropsCache,
       final ReplicaListTransformerFactory defaultRltFactory, final ReplicaListTransformerFactory stableRltFactory) {
+    this(preferenceRules, requestParams, nodeName, localHostAddress, sysPropsCache, defaultRltFactory, stableRltFactory, null);
+  }
+
+  /**
+   * @param latencyRltFactory orders replicas for a "latency" base ordering; replicas are ordered randomly if null,
+   *                          where no latencies are known
+   */
+  public NodePreferenceRulesComparator(final List<PreferenceRule> preferenceRules, final SolrParams requestParams,
+      final String nodeName, final String localHostAddress, final NodesSysPropsCacher sysPropsCache,
+      final ReplicaListTransformerFactory defaultRltFactory, final ReplicaListTransformerFactory stableRltFactory,
+      final ReplicaListTransformerFactory latencyRltFactory) {
     this.sysPropsCache = sysPropsCache;
     this.preferenceRules = preferenceRules;
     this.nodeName = nodeName;
@@ -78,6 +90,10 @@ public class NodePreferenceRulesComparator implements Comparator<Object> {
         case ShardParams.REPLICA_STABLE:
           this.baseReplicaListTransformer = stableRltFactory.getInstance(parts.length == 1 ? null : parts[1], requestParams, RequestReplicaListTransformerGenerator.RANDOM_RLTF);
           break;
+        case ShardParams.REPLICA_LATENCY:
+          this.baseReplicaListTransformer = Objects.requireNonNullElse(latencyRltFactory, RequestReplicaListTransformerGenerator.RANDOM_RLTF)
+              .getInstance(parts.length == 1 ? null : parts[1], requestParams, RequestReplicaListTransformerGenerator.RANDOM_RLTF);
+          break;
         default:
           throw new IllegalArgumentException("Invalid base replica order spec");
       }
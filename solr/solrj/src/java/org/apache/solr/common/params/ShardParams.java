@@ -35,6 +35,12 @@ public interface ShardParams {
   /** per-shard start and rows */
   String SHARDS_ROWS = "shards.rows";
   String SHARDS_START = "shards.start";
+
+  /**
+   * Rows asked from each shard in the first phase of a distributed search, fewer than start+rows. Shards that
+   * may hold more of the merged top documents are asked again for start+rows.
+   */
+  String SHARDS_ROWS_INITIAL = "shards.rows.initial";
   
   /** IDs of the shard documents */
   String IDS = "ids";
@@ -84,6 +90,9 @@ public interface ShardParams {
   /** Value denoting stable replica sort */
   String REPLICA_STABLE = "stable";
 
+  /** Value denoting replica sort by observed latency and outstanding requests */
+  String REPLICA_LATENCY = "latency";
+
   /** configure dividend param for stable replica sort */
   String ROUTING_DIVIDEND = "dividend";
 
@@ -94,6 +103,12 @@ public interface ShardParams {
 
   /** Force a single-pass distributed query? (true/false) */
   String DISTRIB_SINGLE_PASS = "distrib.singlePass";
+
+  /**
+   * When {@value #DISTRIB_SINGLE_PASS} isn't set, use a single-pass distributed query if the shards would
+   * return at most this many documents in total, i.e. <code>(start + rows) * number of shards</code>.
+   */
+  String DISTRIB_SINGLE_PASS_MAX_DOCS = "distrib.singlePass.maxDocs";
   
   /**
    * Throw an error from search requests when the {@value #SHARDS_TOLERANT} param
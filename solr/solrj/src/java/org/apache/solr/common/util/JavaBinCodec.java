@@ -1075,8 +1075,7 @@ public class JavaBinCodec implements PushWriter {
       return false;
 
     } else if (val instanceof Date) {
-      daos.writeByte(DATE);
-      daos.writeLong(((Date) val).getTime());
+      writeDate(((Date) val).getTime());
       return true;
     } else if (val instanceof Boolean) {
       writeBoolean((Boolean) val);
@@ -1095,16 +1094,24 @@ public class JavaBinCodec implements PushWriter {
     return false;
   }
 
-  protected void writeBoolean(boolean val) throws IOException {
+  public void writeBoolean(boolean val) throws IOException {
     if (val) daos.writeByte(BOOL_TRUE);
     else daos.writeByte(BOOL_FALSE);
   }
 
-  protected void writeDouble(double val) throws IOException {
+  public void writeDouble(double val) throws IOException {
     daos.writeByte(DOUBLE);
     daos.writeDouble(val);
   }
 
+  /**
+   * write a date given as milliseconds since the epoch, without creating a {@link Date}
+   */
+  public void writeDate(long time) throws IOException {
+    daos.writeByte(DATE);
+    daos.writeLong(time);
+  }
+
 
   public void writeMap(Map<?,?> val) throws IOException {
     writeTag(MAP, val.size());
@@ -18,6 +18,7 @@
 package org.apache.solr.client.solrj.routing;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.solr.SolrTestCaseJ4;
@@ -25,6 +26,7 @@ import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.ZkStateReader;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
 import org.junit.Test;
 
 public class RequestReplicaListTransformerGeneratorTest extends SolrTestCaseJ4 {
@@ -129,6 +131,27 @@ public class RequestReplicaListTransformerGeneratorTest extends SolrTestCaseJ4 {
     assertEquals("node3", getHost(replicas.get(4).getNodeName()));
   }
 
+  @Test
+  public void testLatencyReplicaBase() {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.add(ShardParams.SHARDS_PREFERENCE, ShardParams.SHARDS_PREFERENCE_REPLICA_BASE + ":" + ShardParams.REPLICA_LATENCY);
+
+    // without latencies, e.g. in a client, replicas are shuffled
+    List<Replica> replicas = getBasicReplicaList();
+    new RequestReplicaListTransformerGenerator().getReplicaListTransformer(params).transform(replicas);
+    assertEquals(3, replicas.size());
+
+    ReplicaListTransformer reverse = (List<?> choices) -> Collections.reverse(choices);
+    RequestReplicaListTransformerGenerator generator = new RequestReplicaListTransformerGenerator(null, null,
+        (String configSpec, SolrParams requestParams, ReplicaListTransformerFactory fallback) -> reverse,
+        null, null, null, null);
+    replicas = getBasicReplicaList();
+    generator.getReplicaListTransformer(params).transform(replicas);
+    assertEquals("node3", getHost(replicas.get(0).getNodeName()));
+    assertEquals("node2", getHost(replicas.get(1).getNodeName()));
+    assertEquals("node1", getHost(replicas.get(2).getNodeName()));
+  }
+
   @SuppressWarnings("unchecked")
   private static List<Replica> getBasicReplicaList() {
     List<Replica> replicas = new ArrayList<Replica>();
@@ -30,6 +30,7 @@ public class ShardParamsTest extends SolrTestCase
 
   public void testShardsRows() { assertEquals(ShardParams.SHARDS_ROWS, "shards.rows"); }
   public void testShardsStart() { assertEquals(ShardParams.SHARDS_START, "shards.start"); }
+  public void testShardsRowsInitial() { assertEquals(ShardParams.SHARDS_ROWS_INITIAL, "shards.rows.initial"); }
 
   public void testIds() { assertEquals(ShardParams.IDS, "ids"); }
   
@@ -50,6 +51,7 @@ public class ShardParamsTest extends SolrTestCase
   public void testRoute() { assertEquals(ShardParams._ROUTE_, "_route_"); }
   
   public void testDistribSinglePass() { assertEquals(ShardParams.DISTRIB_SINGLE_PASS, "distrib.singlePass"); }
+  public void testDistribSinglePassMaxDocs() { assertEquals(ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, "distrib.singlePass.maxDocs"); }
 
   @Test
   public void testGetShardsTolerantAsBool() {